@@ -4,9 +4,11 @@ import com.pi4j.component.adafruithat.AdafruitMotorHat;
 public class Actuators implements Runnable {
 
     private AdafruitDcMotor motor;
+    //Motor command updates per second
+    private static final double rateHz = 200;
     
     public void run() {
-	AdafruitMotorHat motorHat = new AdafruitMotorHat(0X60);
+	AdafruitMotorHat motorHat = new AdafruitMotorHat(Rig.bus(), 0X60);
 
 	Runtime.getRuntime().addShutdownHook(new Thread() {
 		public void run() {
@@ -19,14 +21,16 @@ public class Actuators implements Runnable {
 	motor = motorHat.getDcMotor("M3");
 	motor.setPowerRange(100.0f);
 
-	int loopCount = 0;	
-	while(!Thread.currentThread().isInterrupted()) {
-	    float temp = Main.getPower();
-	    temp = temp > 99.9f ? 99.9f : (temp < -99.9f ? -99.9f : temp);
-	    motor.speed(temp);
-	    //motor.speed(40);
-	}
-	    
+	ControlLoop loop = new ControlLoop(rateHz);
+	loop.add(new ControlLoop.Task() {
+		public void tick(long tickTime) {
+		    float temp = Main.getPower();
+		    temp = temp > 99.9f ? 99.9f : (temp < -99.9f ? -99.9f : temp);
+		    motor.speed(temp);
+		    //motor.speed(40);
+		}
+	    });
+	loop.run();
 	
 	motor.stop();
     }
@@ -0,0 +1,872 @@
+package com.pi4j.component.adafruithat;
+/*
+ * #%L
+ * **********************************************************************
+ * ORGANIZATION  :  Pi4J
+ * PROJECT       :  Pi4J :: Java Library (Core)
+ * FILENAME      :  AdafruitBusManager.java
+ *
+ * This file is part of the Pi4J project. More information about
+ * this project can be found here:  http://www.pi4j.com/
+ * **********************************************************************
+ * %%
+ * Copyright (C) 2012 - 2016 Pi4J
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import com.pi4j.io.i2c.I2CFactory;
+
+/**
+ * Arbitrates one I2C bus between all the Adafruit HATs stacked on it. Several
+ * threads commanding motors and servos would otherwise reach the bus at the same
+ * time with nothing deciding who goes first.
+ * <p>
+ * getDevice() hands out a Device per HAT address, to be passed to the AdafruitHat
+ * constructors. Every read or write on a Device becomes a command in a bounded
+ * queue that a single dispatch thread carries out in priority order: stop-all
+ * first, then motor, then servo, and in the order submitted within a priority.
+ * A write to the ALL_LED registers, as AdafruitHat.stopAll() does, is always a
+ * stop-all command whatever the Device's own priority. The calling thread waits
+ * for its command to be done, so I2C errors are still thrown to the HAT classes.
+ * A command is reused by its thread, so commanding does not allocate.
+ * <p>
+ * Each Device reports its queue depth and a histogram of write latency, the time
+ * from submitting a write to the chip acknowledging it.
+ * <p>
+ * emergencyStop() does not wait for the bus. The dispatch thread sends the
+ * pre-encoded ALL_LED_OFF block to each HAT as soon as the transaction on the
+ * bus, if any, is finished, ahead of everything queued. Writes that were queued
+ * for the stopped HATs are dropped and fail with a DroppedWriteException, so they
+ * can not turn a motor back on. Commands submitted after the stop are carried
+ * out. The returned StopReport tells when the stop reached each chip.
+ * <p>
+ * Example:
+ * <pre>
+ * AdafruitBusManager bus = new AdafruitBusManager(I2CBus.BUS_1);
+ * AdafruitMotorHat motorHat = new AdafruitMotorHat(bus, 0X60);
+ * AdafruitServoHat servoHat = new AdafruitServoHat(bus, 0X40);
+ * ...
+ * System.out.println(bus.getDevice(0X60).getWriteLatency());
+ * </pre>
+ *
+ * @see com.pi4j.component.adafruithat.AdafruitHat
+ */
+public class AdafruitBusManager {
+
+	/**
+	 * Command priorities, highest first.
+	 */
+	public enum Priority {
+		/**
+		 * Writes to the ALL_LED registers, stopping every channel of a HAT
+		 */
+		STOP,
+		/**
+		 * Motor HATs
+		 */
+		MOTOR,
+		/**
+		 * Servo HATs
+		 */
+		SERVO
+	}
+
+	/**
+	 * Default number of commands that can be waiting for the bus
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	//PCA9685 ALL_LED register range, see AdafruitHat
+	private static final int ALL_LED_ON_L  = 0XFA;
+	private static final int ALL_LED_OFF_H = 0XFD;
+	
+	/*
+	 * ALL_LED_ON_L..ALL_LED_OFF_H block turning every LED PWM fully off: ON count 0
+	 * and the full OFF bit (bit 4 of LEDn_OFF_H), which overrides every other setting.
+	 */
+	static final byte[] ALL_LED_OFF = new byte[] {0X00, 0X00, 0X00, 0X10};
+
+	//Command operations, one per I2CDevice method
+	private static final int WRITE_BYTE        = 0;
+	private static final int WRITE_BUFFER      = 1;
+	private static final int WRITE_ADDR_BYTE   = 2;
+	private static final int WRITE_ADDR_BUFFER = 3;
+	private static final int READ_BYTE         = 4;
+	private static final int READ_BUFFER       = 5;
+	private static final int READ_ADDR_BYTE    = 6;
+	private static final int READ_ADDR_BUFFER  = 7;
+	private static final int WRITE_READ        = 8;
+
+	/**
+	 * A HAT's I2C device as seen through the bus manager.
+	 */
+	public class Device implements I2CDevice {
+
+		private final I2CDevice target;
+		private final Priority priority;
+		//Commands of this device waiting for the bus, and the most there have been
+		private int queueDepth = 0;
+		private int maxQueueDepth = 0;
+		private final Histogram writeLatency = new Histogram();
+		//Emergency stops sent to the chip
+		private volatile long stops = 0;
+
+		private Device(I2CDevice target, Priority priority) {
+			this.target = target;
+			this.priority = priority;
+		}
+
+		/**
+		 * Return the priority of this device's commands, other than stop-all.
+		 * @return priority
+		 */
+		public Priority getPriority() {
+			return priority;
+		}
+
+		/**
+		 * Return the number of commands of this device waiting for the bus.
+		 * @return queue depth
+		 */
+		public int getQueueDepth() {
+			lock.lock();
+			try {
+				return queueDepth;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Return the largest number of commands of this device that have waited
+		 * for the bus at once.
+		 * @return maximum queue depth since construction or resetStatistics()
+		 */
+		public int getMaxQueueDepth() {
+			lock.lock();
+			try {
+				return maxQueueDepth;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Return a copy of the write latency histogram.
+		 * @return write latencies since construction or resetStatistics()
+		 */
+		public Histogram getWriteLatency() {
+			lock.lock();
+			try {
+				return writeLatency.copy();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Clear the maximum queue depth and the write latency histogram.
+		 */
+		public void resetStatistics() {
+			lock.lock();
+			try {
+				maxQueueDepth = queueDepth;
+				writeLatency.clear();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Return the number of emergency stops sent to this HAT. AdafruitHat watches
+		 * this to forget its shadow registers after a stop.
+		 * @return stops since construction
+		 */
+		public long getStops() {
+			return stops;
+		}
+
+		/**
+		 * Stop this HAT without waiting for the bus, see AdafruitBusManager.emergencyStop().
+		 * @return report of when the stop reached the chip
+		 */
+		public StopReport emergencyStop() {
+			return AdafruitBusManager.this.emergencyStop(new Device[] {this});
+		}
+
+		@Override
+		public int getAddress() {
+			return target.getAddress();
+		}
+
+		@Override
+		public void write(byte b) throws IOException {
+			Command command = command(this, WRITE_BYTE, 0);
+			command.value = b;
+			submit(command, priority);
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int size) throws IOException {
+			Command command = command(this, WRITE_BUFFER, 0);
+			command.buffer(buffer, offset, size);
+			submit(command, priority);
+		}
+
+		@Override
+		public void write(byte[] buffer) throws IOException {
+			write(buffer, 0, buffer.length);
+		}
+
+		@Override
+		public void write(int addr, byte b) throws IOException {
+			Command command = command(this, WRITE_ADDR_BYTE, addr);
+			command.value = b;
+			submit(command, priorityOf(addr));
+		}
+
+		@Override
+		public void write(int addr, byte[] buffer, int offset, int size) throws IOException {
+			Command command = command(this, WRITE_ADDR_BUFFER, addr);
+			command.buffer(buffer, offset, size);
+			submit(command, priorityOf(addr));
+		}
+
+		@Override
+		public void write(int addr, byte[] buffer) throws IOException {
+			write(addr, buffer, 0, buffer.length);
+		}
+
+		@Override
+		public int read() throws IOException {
+			return submit(command(this, READ_BYTE, 0), priority);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int size) throws IOException {
+			Command command = command(this, READ_BUFFER, 0);
+			command.buffer(buffer, offset, size);
+			return submit(command, priority);
+		}
+
+		@Override
+		public int read(int addr) throws IOException {
+			return submit(command(this, READ_ADDR_BYTE, addr), priority);
+		}
+
+		@Override
+		public int read(int addr, byte[] buffer, int offset, int size) throws IOException {
+			Command command = command(this, READ_ADDR_BUFFER, addr);
+			command.buffer(buffer, offset, size);
+			return submit(command, priority);
+		}
+
+		@Override
+		public int read(byte[] writeBuffer, int writeOffset, int writeSize,
+						byte[] readBuffer, int readOffset, int readSize) throws IOException {
+			Command command = command(this, WRITE_READ, 0);
+			command.buffer(writeBuffer, writeOffset, writeSize);
+			command.readBuffer = readBuffer;
+			command.readOffset = readOffset;
+			command.readSize = readSize;
+			return submit(command, priority);
+		}
+
+		/**
+		 * Writes to the ALL_LED registers stop every channel and go first.
+		 */
+		private Priority priorityOf(int addr) {
+			return addr >= ALL_LED_ON_L && addr <= ALL_LED_OFF_H ? Priority.STOP : priority;
+		}
+	}
+
+	/**
+	 * Thrown for a queued write that an emergency stop dropped before it was sent.
+	 */
+	public static class DroppedWriteException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public DroppedWriteException() {
+			super("Write dropped by emergency stop");
+		}
+	}
+
+	/**
+	 * Histogram of latencies in power of two nanosecond buckets: bucket i counts
+	 * latencies from 2^i up to 2^(i+1) nanoseconds, bucket 0 also counts 0.
+	 */
+	public static class Histogram {
+
+		private final long[] counts = new long[64];
+		private long count = 0;
+		private long total = 0;
+		private long max = 0;
+
+		/**
+		 * Record a latency.
+		 * @param nanos latency in nanoseconds, negative values count as 0
+		 */
+		public void add(long nanos) {
+			if (nanos < 0) nanos = 0;
+			counts[bucket(nanos)]++;
+			count++;
+			total += nanos;
+			if (nanos > max) max = nanos;
+		}
+
+		/**
+		 * Forget all latencies recorded.
+		 */
+		public void clear() {
+			for (int i = 0; i < counts.length; i++) counts[i] = 0;
+			count = 0;
+			total = 0;
+			max = 0;
+		}
+
+		/**
+		 * Return a copy of the histogram.
+		 * @return copy
+		 */
+		public Histogram copy() {
+			Histogram copy = new Histogram();
+			System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+			copy.count = count;
+			copy.total = total;
+			copy.max = max;
+			return copy;
+		}
+
+		private static int bucket(long nanos) {
+			return nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+		}
+
+		/**
+		 * Return the number of buckets.
+		 * @return 64
+		 */
+		public int getBuckets() {
+			return counts.length;
+		}
+
+		/**
+		 * Return the number of latencies in a bucket.
+		 * @param bucket 0 to getBuckets()-1
+		 * @return count
+		 */
+		public long getCount(int bucket) {
+			return counts[bucket];
+		}
+
+		/**
+		 * Return the number of latencies recorded.
+		 * @return count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Return the mean latency.
+		 * @return nanoseconds, 0 if nothing was recorded
+		 */
+		public double getMean() {
+			return count == 0 ? 0 : (double) total / count;
+		}
+
+		/**
+		 * Return the largest latency.
+		 * @return nanoseconds
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * Return an upper bound of a percentile: the end of the bucket it falls in,
+		 * or the largest latency if that is smaller.
+		 * @param percentile 0 to 100
+		 * @return nanoseconds
+		 */
+		public long getPercentile(double percentile) {
+			long rank = (long) Math.ceil(percentile / 100 * count);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank && seen > 0) return Math.min(max, i == 62 ? Long.MAX_VALUE : (2L << i) - 1);
+			}
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d samples, mean %.1f us, 50%% < %.1f us, 99%% < %.1f us, max %.1f us",
+					count, getMean() / 1000, getPercentile(50) / 1000.0, getPercentile(99) / 1000.0, max / 1000.0);
+		}
+	}
+
+	/**
+	 * One bus operation. Each thread has its own and waits for it to be done, so
+	 * the caller's buffers can be used without copying.
+	 */
+	private static class Command {
+		Device device;
+		int operation;
+		int addr;
+		byte value;
+		byte[] buffer;
+		int offset;
+		int size;
+		byte[] readBuffer;
+		int readOffset;
+		int readSize;
+		long submitted;
+		int result;
+		IOException error;
+		boolean done;
+
+		void buffer(byte[] buffer, int offset, int size) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		boolean isWrite() {
+			return operation <= WRITE_ADDR_BUFFER;
+		}
+
+		/**
+		 * Carry out the operation on the device, on the dispatch thread.
+		 */
+		void run() {
+			I2CDevice target = device.target;
+			try {
+				switch (operation) {
+				case WRITE_BYTE:        target.write(value); break;
+				case WRITE_BUFFER:      target.write(buffer, offset, size); break;
+				case WRITE_ADDR_BYTE:   target.write(addr, value); break;
+				case WRITE_ADDR_BUFFER: target.write(addr, buffer, offset, size); break;
+				case READ_BYTE:         result = target.read(); break;
+				case READ_BUFFER:       result = target.read(buffer, offset, size); break;
+				case READ_ADDR_BYTE:    result = target.read(addr); break;
+				case READ_ADDR_BUFFER:  result = target.read(addr, buffer, offset, size); break;
+				case WRITE_READ:        result = target.read(buffer, offset, size, readBuffer, readOffset, readSize); break;
+				}
+			} catch (IOException e) {
+				error = e;
+			} catch (RuntimeException e) {
+				error = new IOException(e);
+			}
+		}
+	}
+
+	/**
+	 * An emergency stop and the HATs it is for.
+	 */
+	private static class Stop {
+		final Device[] devices;
+		final StopReport report;
+
+		Stop(Device[] devices, StopReport report) {
+			this.devices = devices;
+			this.report = report;
+		}
+
+		boolean includes(Device device) {
+			for (Device stopped : devices) {
+				if (stopped == device) return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Write the pre-encoded ALL_LED_OFF block to every HAT and report when it got there.
+		 */
+		void run() {
+			for (int i = 0; i < devices.length; i++) {
+				try {
+					devices[i].target.write(ALL_LED_ON_L, ALL_LED_OFF, 0, ALL_LED_OFF.length);
+					report.reached(i, System.nanoTime());
+				} catch (IOException e) {
+					System.out.println("*** Error *** Emergency stop failed to reach AdafruitHat device");
+					report.failed(i, e);
+				} catch (RuntimeException e) {
+					report.failed(i, new IOException(e));
+				}
+				devices[i].stops++;
+			}
+		}
+	}
+
+	private final I2CBus bus;
+	//Close the bus with the manager, only if the manager opened it
+	private final boolean ownsBus;
+	private final int capacity;
+	private final Map<Integer, Device> devices = new HashMap<Integer, Device>();
+	//One queue per priority, Priority.STOP first
+	private final List<ArrayDeque<Command>> queues = new ArrayList<ArrayDeque<Command>>();
+	private int queued = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition done = lock.newCondition();
+	private final ThreadLocal<Command> commands = new ThreadLocal<Command>() {
+		@Override
+		protected Command initialValue() {
+			return new Command();
+		}
+	};
+	//Emergency stops waiting for the dispatch thread
+	private final ConcurrentLinkedQueue<Stop> stops = new ConcurrentLinkedQueue<Stop>();
+	private Thread dispatcher;
+	//Set by the dispatch thread, with the lock held, when it leaves for good
+	private boolean dispatcherExited = false;
+	private boolean closed = false;
+
+	/**
+	 * Open an I2C bus and manage it.
+	 * @param i2cBus Valid bus numbers are I2CBus.BUS_1 or I2CBus.BUS_2
+	 * @throws IOException if the bus can not be opened
+	 */
+	public AdafruitBusManager(int i2cBus) throws IOException {
+		this(openBus(i2cBus), DEFAULT_CAPACITY, true);
+	}
+
+	/**
+	 * Manage an already opened I2C bus.
+	 * @param bus the bus, or null if devices will only be added with getDevice(I2CDevice, Priority)
+	 * @param capacity number of commands that can be waiting for the bus, callers wait when it is full
+	 */
+	public AdafruitBusManager(I2CBus bus, int capacity) {
+		this(bus, capacity, false);
+	}
+
+	private AdafruitBusManager(I2CBus bus, int capacity, boolean ownsBus) {
+		if (capacity < 1) {
+			System.out.println("*** Error *** Bus manager capacity must be at least 1");
+			throw new IllegalArgumentException(Integer.toString(capacity));
+		}
+		this.bus = bus;
+		this.ownsBus = ownsBus;
+		this.capacity = capacity;
+		for (int i = 0; i < Priority.values().length; i++) queues.add(new ArrayDeque<Command>(capacity));
+	}
+
+	private static I2CBus openBus(int i2cBus) throws IOException {
+		try {
+			return I2CFactory.getInstance(i2cBus);
+		} catch (I2CFactory.UnsupportedBusNumberException e) {
+			System.out.println("*** Error *** unsupported I2C bus");
+			throw new IllegalArgumentException(Integer.toString(i2cBus), e);
+		}
+	}
+
+	/**
+	 * Return the device for a HAT on the managed bus, opening it the first time.
+	 * @param address I2C device address of the HAT
+	 * @param priority priority of the HAT's commands
+	 * @return device to pass to the AdafruitHat constructors
+	 * @throws IOException if the device can not be opened
+	 */
+	public Device getDevice(int address, Priority priority) throws IOException {
+		lock.lock();
+		try {
+			Device device = devices.get(address);
+			if (device == null) {
+				if (bus == null) throw new IOException("No I2C bus to open device " + String.format("0X%02X", address));
+				device = add(bus.getDevice(address), priority);
+			}
+			checkPriority(device, priority);
+			return device;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Manage an already opened device, e.g. a RecordingI2CDevice or one from another
+	 * bus owner. If a device at the same address is already managed it is returned
+	 * instead.
+	 * @param target the device
+	 * @param priority priority of the HAT's commands
+	 * @return device to pass to the AdafruitHat constructors
+	 */
+	public Device getDevice(I2CDevice target, Priority priority) {
+		lock.lock();
+		try {
+			Device device = devices.get(target.getAddress());
+			if (device == null) device = add(target, priority);
+			checkPriority(device, priority);
+			return device;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Return a managed device.
+	 * @param address I2C device address of the HAT
+	 * @return the device, or null if there is none at the address
+	 */
+	public Device getDevice(int address) {
+		lock.lock();
+		try {
+			return devices.get(address);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Return all managed devices.
+	 * @return devices in no particular order
+	 */
+	public List<Device> getDevices() {
+		lock.lock();
+		try {
+			return new ArrayList<Device>(devices.values());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Return the number of commands waiting for the bus.
+	 * @return queue depth of all devices
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stop every managed HAT without waiting for the bus. The stop is sent ahead of
+	 * all queued commands, which are dropped if they are writes.
+	 * @return report of when the stop reached each chip
+	 */
+	public StopReport emergencyStop() {
+		return emergencyStop(getDevices().toArray(new Device[0]));
+	}
+
+	private StopReport emergencyStop(Device[] targets) {
+		long requested = System.nanoTime();
+		int[] addresses = new int[targets.length];
+		for (int i = 0; i < targets.length; i++) addresses[i] = targets[i].getAddress();
+		Stop stop = new Stop(targets, new StopReport(requested, addresses));
+		stops.add(stop);
+		//The lock is only held for queue bookkeeping, never during a bus transaction
+		lock.lock();
+		try {
+			dropWrites(stop);
+			if (dispatcher == null || dispatcherExited) {
+				//no dispatch thread to send it, send it from here unless another caller has
+				if (stops.remove(stop)) stop.run();
+			} else {
+				//the dispatch thread sends it, even while close() has it draining the queue
+				notEmpty.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+		return stop.report;
+	}
+
+	/**
+	 * Fail the queued writes of the HATs being stopped, with the lock held.
+	 */
+	private void dropWrites(Stop stop) {
+		boolean dropped = false;
+		for (ArrayDeque<Command> queue : queues) {
+			for (Iterator<Command> i = queue.iterator(); i.hasNext(); ) {
+				Command command = i.next();
+				if (command.isWrite() && stop.includes(command.device)) {
+					i.remove();
+					queued--;
+					command.device.queueDepth--;
+					command.error = new DroppedWriteException();
+					command.done = true;
+					dropped = true;
+				}
+			}
+		}
+		if (dropped) {
+			notFull.signalAll();
+			done.signalAll();
+		}
+	}
+
+	private Device add(I2CDevice target, Priority priority) {
+		if (closed) {
+			System.out.println("*** Error *** Bus manager is closed");
+			throw new IllegalStateException();
+		}
+		if (priority == null || priority == Priority.STOP) {
+			System.out.println("*** Error *** Device priority must be Priority.MOTOR or Priority.SERVO");
+			throw new IllegalArgumentException(String.valueOf(priority));
+		}
+		Device device = new Device(target, priority);
+		devices.put(target.getAddress(), device);
+		if (dispatcher == null) {
+			dispatcher = new Thread("I2C dispatch") {
+				@Override
+				public void run() {
+					dispatch();
+				}
+			};
+			dispatcher.setDaemon(true);
+			dispatcher.start();
+		}
+		return device;
+	}
+
+	private void checkPriority(Device device, Priority priority) {
+		if (device.priority != priority) {
+			System.out.println("*** Error *** Device already managed with another priority");
+			throw new IllegalArgumentException(String.format("0X%02X %s", device.getAddress(), priority));
+		}
+	}
+
+	/**
+	 * The calling thread's command, set up for an operation.
+	 */
+	private Command command(Device device, int operation, int addr) {
+		Command command = commands.get();
+		command.device = device;
+		command.operation = operation;
+		command.addr = addr;
+		return command;
+	}
+
+	/**
+	 * Queue a command and wait for the dispatch thread to carry it out.
+	 * @return the result of a read
+	 */
+	private int submit(Command command, Priority priority) throws IOException {
+		lock.lock();
+		try {
+			while (queued >= capacity && !closed) notFull.awaitUninterruptibly();
+			if (closed) throw new IOException("Bus manager is closed");
+			command.done = false;
+			command.error = null;
+			command.submitted = System.nanoTime();
+			queues.get(priority.ordinal()).add(command);
+			queued++;
+			Device device = command.device;
+			device.queueDepth++;
+			if (device.queueDepth > device.maxQueueDepth) device.maxQueueDepth = device.queueDepth;
+			notEmpty.signal();
+			while (!command.done) done.awaitUninterruptibly();
+		} finally {
+			lock.unlock();
+		}
+		//let go of the caller's buffers
+		command.buffer = null;
+		command.readBuffer = null;
+		IOException error = command.error;
+		if (error != null) {
+			command.error = null;
+			throw error;
+		}
+		return command.result;
+	}
+
+	/**
+	 * Dispatch thread: carry out commands, highest priority first, until closed.
+	 * Emergency stops go before any command.
+	 */
+	private void dispatch() {
+		while (true) {
+			Stop stop;
+			while ((stop = stops.poll()) != null) stop.run();
+			Command command = null;
+			lock.lock();
+			try {
+				while (queued == 0 && stops.isEmpty() && !closed) notEmpty.awaitUninterruptibly();
+				if (!stops.isEmpty()) continue;
+				if (queued == 0) {
+					//stops submitted from now on are sent by their callers
+					dispatcherExited = true;
+					return;
+				}
+				for (ArrayDeque<Command> queue : queues) {
+					command = queue.poll();
+					if (command != null) break;
+				}
+				queued--;
+				command.device.queueDepth--;
+				notFull.signal();
+			} finally {
+				lock.unlock();
+			}
+			command.run();
+			long finished = System.nanoTime();
+			lock.lock();
+			try {
+				if (command.isWrite() && command.error == null) command.device.writeLatency.add(finished - command.submitted);
+				command.done = true;
+				done.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Carry out the commands already queued, stop the dispatch thread and close the
+	 * bus if the manager opened it. Commands submitted later fail with an IOException.
+	 * @throws IOException if the bus can not be closed
+	 */
+	public void close() throws IOException {
+		Thread thread;
+		lock.lock();
+		try {
+			if (closed) return;
+			closed = true;
+			thread = dispatcher;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if (thread != null) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (ownsBus) bus.close();
+	}
+}
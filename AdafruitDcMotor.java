@@ -78,6 +78,11 @@ public class AdafruitDcMotor implements Motor {
 	//Corresponding motor direction values
 	private byte[] IN2_VALUES;
 	
+	//The PWM, IN2 and IN1 registers of a motor are neighboring channels. They are
+	//staged here and sent in one auto-increment block write starting at BLOCK_ADDR.
+	private int BLOCK_ADDR;
+	private byte[] BLOCK_VALUES;
+	
 	//Relative maximum power value to command motor. This is a somewhat arbitrary value
 	//that can be set by the setPowerRange() method. Some applications may want to use
 	//a different range other than 0.0 (no power) to 1.0 (full throttle).
@@ -160,6 +165,8 @@ public class AdafruitDcMotor implements Motor {
 			motorHat.stopAll();
 			throw new IllegalArgumentException(motor);			
 		}
+		BLOCK_ADDR = AdafruitHat.blockAddr(PWM_ADDR, IN2_ADDR, IN1_ADDR);
+		BLOCK_VALUES = new byte[AdafruitHat.blockSize(PWM_ADDR, IN2_ADDR, IN1_ADDR)];
 		
 		//Clear the LED PWM registers and stop motor.
 		PWM_VALUES = PWM_STOP;
@@ -172,11 +179,13 @@ public class AdafruitDcMotor implements Motor {
 	 * PWM_VALUES = speed control
 	 * IN1_VALUES = 1st PWM for controlling direction
 	 * IN2_VALUES = 2nd PWM for controlling direction
+	 * All 12 registers are sent in a single I2C transaction.
 	 */
 	private void sendCommands() {
-		for (int i=0; i<4; i++) motorHat.write(PWM_ADDR[i],PWM_VALUES[i]);
-		for (int i=0; i<4; i++) motorHat.write(IN2_ADDR[i],IN2_VALUES[i]);
-		for (int i=0; i<4; i++) motorHat.write(IN1_ADDR[i],IN1_VALUES[i]);		
+		for (int i=0; i<4; i++) BLOCK_VALUES[PWM_ADDR[i] - BLOCK_ADDR] = PWM_VALUES[i];
+		for (int i=0; i<4; i++) BLOCK_VALUES[IN2_ADDR[i] - BLOCK_ADDR] = IN2_VALUES[i];
+		for (int i=0; i<4; i++) BLOCK_VALUES[IN1_ADDR[i] - BLOCK_ADDR] = IN1_VALUES[i];
+		motorHat.write(BLOCK_ADDR, BLOCK_VALUES, 0, BLOCK_VALUES.length);
 	}
 	
 	/**
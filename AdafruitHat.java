@@ -28,6 +28,7 @@ package com.pi4j.component.adafruithat;
  * #L%
  */
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 //import java.util.HashMap;
 //import java.util.Map;
 
@@ -208,6 +209,7 @@ public  class AdafruitHat {
 	protected final int COMMAND_ALLCALL = 0X01; //MODE1 command, enable LED ALLCALL 
 	protected final int COMMAND_OUTDRV  = 0x04; //MODE2 command, 16 LED outputs are configured with totem pole structure
 	protected final int COMMAND_RESTART = 0X80; //MODE1 command, enable restart
+	protected final int COMMAND_AI      = 0X20; //MODE1 command, register auto-increment enabled
 	//protected final int COMMAND_INVRT   = 0X10; //MODE2 command, output logic  state is inverted
 	
 	protected I2CBus HatI2C;
@@ -217,11 +219,34 @@ public  class AdafruitHat {
     private final int DEFAULT_I2C_BUS = I2CBus.BUS_1;
     private int I2C_BUS;
     
-    //Register addresses for simultaneously commanding all LED PWMs
-    private final int[]  PWM_ALL_ADDR = new int[] {ALL_LED_ON_L,ALL_LED_ON_H,ALL_LED_OFF_L,ALL_LED_OFF_H};
+    //Pre-encoded ALL_LED_ON_L..ALL_LED_OFF_H block stopping all LED PWMs, see emergencyStop()
+    private final byte[] PWM_ALL_OFF = AdafruitBusManager.ALL_LED_OFF;
     
-    //Values to stop all LED PWMs
-    private final byte[] PWM_ALL_STOP = new byte[] {0X00, 0X00, 0X00, 0X00};
+    //Longest stopAll() waits for the emergency stop to reach the chip
+    private final long STOP_TIMEOUT_NANOS = 100000000;
+    
+    //Emergency stops written straight to hatDevice, and the stops the shadow has seen.
+    //A shutdown hook and the caller may both stop the HAT, so the count is atomic.
+    private final AtomicLong directStops = new AtomicLong();
+    private long seenStops = 0;
+    
+    /*
+     * Shadow copy of the 256-register PCA9685 map. Writes to the LED PWM registers
+     * that would not change the chip are skipped. A shadow value is only trusted 
+     * once it has been written through this class (shadowValid), so the first
+     * command after setup or invalidateShadow() always reaches the chip.
+     */
+    private final byte[] shadow = new byte[256];
+    private final boolean[] shadowValid = new boolean[256];
+    
+    //Clean registers inside a dirty run shorter than this are rewritten rather than
+    //splitting the block write, a new transaction costs more than a few extra bytes.
+    private final int MAX_CLEAN_GAP = 2;
+    
+    //Bus bandwidth counters, see getIssuedBytes() and getSkippedBytes()
+    private long issuedBytes = 0;
+    private long skippedBytes = 0;
+    private long writeTransactions = 0;
    
 	
 	/**
@@ -254,6 +279,43 @@ public  class AdafruitHat {
 		setup();
 	}
 	
+	/**
+	 * Pass an already opened I2C device to the constructor. The HAT is commanded 
+	 * through this device instead of one obtained from the I2CFactory. This
+	 * allows a recording or simulated device to stand in for the PCA9685 chip
+	 * when no Raspberry Pi is available.
+	 * @param hatDevice I2C device whose address is in range 0X40 to 0X7F
+	 * @see com.pi4j.component.adafruithat.RecordingI2CDevice
+	 */
+	public AdafruitHat(I2CDevice hatDevice) {
+		checkDeviceAddr(hatDevice.getAddress());
+		DEVICE_ADDR = hatDevice.getAddress();
+		I2C_BUS = DEFAULT_I2C_BUS;
+		this.hatDevice = hatDevice;
+		setup();
+	}
+	
+	/**
+	 * Command the HAT through a bus manager that arbitrates the I2C bus between all
+	 * HATs and threads. The subclasses pass the priority of their commands.
+	 * @param bus Bus manager for the I2C bus the HAT is on
+	 * @param deviceAddr Valid addresses range 0X40 to 0X7F
+	 * @param priority Priority of the HAT's commands
+	 * @see com.pi4j.component.adafruithat.AdafruitBusManager
+	 */
+	protected AdafruitHat(AdafruitBusManager bus, int deviceAddr, AdafruitBusManager.Priority priority) {
+		checkDeviceAddr(deviceAddr);
+		DEVICE_ADDR = deviceAddr;
+		I2C_BUS = DEFAULT_I2C_BUS;
+		try {
+			hatDevice = bus.getDevice(deviceAddr, priority);
+		} catch (IOException e) {
+			System.out.println("*** Error *** failed to open AdafruitHat device through the bus manager");
+			throw new IllegalStateException(String.format("0X%02X", deviceAddr), e);
+		}
+		setup();
+	}
+	
 	/**
 	 * Check for a valid Adafruit HAT device address
 	 * @param deviceAddr Valid values range 0X40 to 0X7F
@@ -281,9 +343,11 @@ public  class AdafruitHat {
 	 */
 	private void setup() {	
 		try {
-			//instantiate I2C and I2C Device interface
-			HatI2C = I2CFactory.getInstance(I2C_BUS);		
-			hatDevice = HatI2C.getDevice(DEVICE_ADDR);
+			//instantiate I2C and I2C Device interface unless a device was passed in
+			if (hatDevice == null) {
+				HatI2C = I2CFactory.getInstance(I2C_BUS);		
+				hatDevice = HatI2C.getDevice(DEVICE_ADDR);
+			}
 			
 			//Enable the All Call mode to simultaneously command all LED PWMs
 			hatDevice.write(MODE1, (byte) COMMAND_ALLCALL);
@@ -301,7 +365,9 @@ public  class AdafruitHat {
 			}
 			//No sleeping allowed
 			mode1 = mode1 & ~COMMAND_SLEEP; 
-			//Write back the MODE1 register with no sleep
+			//Auto-increment the register address so block writes land on consecutive registers
+			mode1 = mode1 | COMMAND_AI;
+			//Write back the MODE1 register with no sleep and auto-increment enabled
 			hatDevice.write(MODE1, (byte) mode1);
 			//wait for oscillator
 			sleep(10);
@@ -389,19 +455,184 @@ public  class AdafruitHat {
 		
 	}	
 	/**
-	 * Write the 8-bit value to the indicated address
+	 * Write the 8-bit value to the indicated address. The write is skipped if the
+	 * shadow register map shows the LED PWM register already holds the value.
 	 * @param addr Register address I2C device
 	 * @param value Value to write at register address
 	 */
-	public void write(int addr, byte value) {		
+	public synchronized void write(int addr, byte value) {		
+		checkStopped();
+		if (isClean(addr, value)) {
+			skippedBytes++;
+			return;
+		}
 		try {
 			//System.out.format("address: 0X%02X value: 0x%02X\n",addr,value);
 			hatDevice.write(addr,value);
+			updateShadow(addr, value);
+		} catch (AdafruitBusManager.DroppedWriteException e) {
+			//an emergency stop overtook the write, it never reached the chip
+			shadowValid[addr & 0XFF] = false;
+			return;
 		} catch (IOException e) {
+			shadowValid[addr & 0XFF] = false;
 			System.out.println("*** ERROR *** Can not perform I2C write to AdafruitHat Device");
 			e.printStackTrace();
+			return;
+		}
+		issuedBytes++;
+		writeTransactions++;
+	}
+	/**
+	 * Write a contiguous run of registers. The PCA9685 MODE1 auto-increment bit 
+	 * (set in setup) advances the register address after every byte, so one 
+	 * LEDn_ON_L..LEDn_OFF_H quad, or the quads of several neighboring channels, 
+	 * can be sent at once instead of one transaction per byte.
+	 * <p>
+	 * Registers the shadow register map shows are unchanged are skipped and only
+	 * the dirty runs are flushed, each in a single I2C transaction. A block that
+	 * changes nothing causes no bus traffic at all.
+	 * @param addr Register address of the first byte
+	 * @param values Values to write starting at the register address
+	 * @param offset Index of the first value to write
+	 * @param size Number of values to write
+	 */
+	public synchronized void write(int addr, byte[] values, int offset, int size) {
+		checkStopped();
+		int i = 0;
+		while (i < size) {
+			if (isClean(addr + i, values[offset + i])) {
+				skippedBytes++;
+				i++;
+				continue;
+			}
+			//extend the dirty run across short clean gaps
+			int last = i;
+			for (int j = i + 1; j < size && j - last <= MAX_CLEAN_GAP + 1; j++) {
+				if (!isClean(addr + j, values[offset + j])) last = j;
+			}
+			flush(addr + i, values, offset + i, last - i + 1);
+			i = last + 1;
+		}
+	}
+	/**
+	 * Send one run of registers in a single I2C transaction and record it in the
+	 * shadow register map.
+	 */
+	private void flush(int addr, byte[] values, int offset, int size) {
+		try {
+			hatDevice.write(addr, values, offset, size);
+			for (int i = 0; i < size; i++) updateShadow(addr + i, values[offset + i]);
+		} catch (AdafruitBusManager.DroppedWriteException e) {
+			//an emergency stop overtook the write, it never reached the chip
+			for (int i = 0; i < size; i++) shadowValid[(addr + i) & 0XFF] = false;
+			return;
+		} catch (IOException e) {
+			for (int i = 0; i < size; i++) shadowValid[(addr + i) & 0XFF] = false;
+			System.out.println("*** Error *** Can not perform I2C block write to AdafruitHat Device");
+			e.printStackTrace();
+			return;
+		}
+		issuedBytes += size;
+		writeTransactions++;
+	}
+	/**
+	 * Does the chip already hold this value? Only the LED PWM registers are
+	 * cached. MODE1, PRE_SCALE and the ALL_LED registers are always written.
+	 */
+	private boolean isClean(int addr, byte value) {
+		return addr >= LED0_ON_L && addr <= LED15_OFF_H && shadowValid[addr] && shadow[addr] == value;
+	}
+	/**
+	 * Record a register write in the shadow register map. A write to an ALL_LED
+	 * register loads the corresponding register of all 16 LED PWMs.
+	 */
+	private void updateShadow(int addr, byte value) {
+		addr = addr & 0XFF;
+		shadow[addr] = value;
+		shadowValid[addr] = true;
+		if (addr >= ALL_LED_ON_L && addr <= ALL_LED_OFF_H) {
+			for (int led = LED0_ON_L + addr - ALL_LED_ON_L; led <= LED15_OFF_H; led += 4) {
+				shadow[led] = value;
+				shadowValid[led] = true;
+			}
 		}
 	}
+	/**
+	 * An emergency stop reaches the chip without going through write(). Forget
+	 * the shadow register map if one did since the last write.
+	 */
+	private void checkStopped() {
+		long stops = (hatDevice instanceof AdafruitBusManager.Device) ?
+				((AdafruitBusManager.Device) hatDevice).getStops() : directStops.get();
+		if (stops != seenStops) {
+			seenStops = stops;
+			invalidateShadow();
+		}
+	}
+	/**
+	 * Forget the shadow register map so the next command for every LED PWM is
+	 * written to the chip. Use this if the chip could have been changed by 
+	 * something else, e.g. a power cycle or another program.
+	 */
+	public synchronized void invalidateShadow() {
+		for (int i = 0; i < shadowValid.length; i++) shadowValid[i] = false;
+	}
+	/**
+	 * Return the number of register bytes sent to the chip.
+	 * @return issued bytes since construction or resetWriteCounters()
+	 */
+	public synchronized long getIssuedBytes() {
+		return issuedBytes;
+	}
+	/**
+	 * Return the number of register bytes not sent because the chip already
+	 * held the value.
+	 * @return skipped bytes since construction or resetWriteCounters()
+	 */
+	public synchronized long getSkippedBytes() {
+		return skippedBytes;
+	}
+	/**
+	 * Return the number of I2C write transactions sent to the chip.
+	 * @return write transactions since construction or resetWriteCounters()
+	 */
+	public synchronized long getWriteTransactions() {
+		return writeTransactions;
+	}
+	/**
+	 * Clear the issued byte, skipped byte and write transaction counters.
+	 */
+	public synchronized void resetWriteCounters() {
+		issuedBytes = 0;
+		skippedBytes = 0;
+		writeTransactions = 0;
+	}
+	/**
+	 * Find the lowest register address of one or more register sets. Motor and servo
+	 * classes use this as the start address of their block writes.
+	 * @param addrs Register address sets, e.g. the LEDn_ON_L..LEDn_OFF_H quads of a motor
+	 * @return lowest register address
+	 */
+	protected static int blockAddr(int[]... addrs) {
+		int low = Integer.MAX_VALUE;
+		for (int[] set : addrs) {
+			for (int addr : set) low = Math.min(low, addr);
+		}
+		return low;
+	}
+	/**
+	 * Find the number of registers spanned by one or more register sets.
+	 * @param addrs Register address sets, e.g. the LEDn_ON_L..LEDn_OFF_H quads of a motor
+	 * @return number of registers from the lowest to the highest address
+	 */
+	protected static int blockSize(int[]... addrs) {
+		int high = Integer.MIN_VALUE;
+		for (int[] set : addrs) {
+			for (int addr : set) high = Math.max(high, addr);
+		}
+		return high - blockAddr(addrs) + 1;
+	}
 	/**
 	 * Sleep and force all motors or servos to stop if interrupted.
 	 * @param milliseconds Sleep time
@@ -416,9 +647,47 @@ public  class AdafruitHat {
 		}
 	}
 	/**
-	 * Stop all motors and servos for this Adafruit HAT. 
+	 * Stop all motors and servos for this Adafruit HAT and wait until the chip
+	 * has the stop. This is the emergency stop, so it does not wait for other
+	 * commands being sent to the HAT.
 	 */
 	public void stopAll() {
-		for (int i=0; i<4; i++) write(PWM_ALL_ADDR[i], PWM_ALL_STOP[i]);
+		StopReport report = emergencyStop();
+		try {
+			if (!report.await(STOP_TIMEOUT_NANOS)) {
+				System.out.println("*** Error *** Stop has not reached AdafruitHat device");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	/**
+	 * Stop all motors and servos for this Adafruit HAT without waiting. One
+	 * pre-encoded block write to the ALL_LED registers sets the full OFF bit of
+	 * every LED PWM.
+	 * <p>
+	 * When the HAT is commanded through an AdafruitBusManager the stop goes to the
+	 * chip ahead of all queued bus traffic, and writes queued for this HAT are
+	 * dropped. Otherwise it is written from the calling thread without taking
+	 * the lock other commands to the HAT hold.
+	 * @return report of when the stop reached the chip
+	 * @see com.pi4j.component.adafruithat.AdafruitBusManager#emergencyStop()
+	 */
+	public StopReport emergencyStop() {
+		I2CDevice device = hatDevice;
+		if (device instanceof AdafruitBusManager.Device) {
+			return ((AdafruitBusManager.Device) device).emergencyStop();
+		}
+		StopReport report = new StopReport(System.nanoTime(), new int[] {DEVICE_ADDR});
+		try {
+			if (device == null) throw new IOException("No AdafruitHat device");
+			device.write(ALL_LED_ON_L, PWM_ALL_OFF, 0, PWM_ALL_OFF.length);
+			report.reached(0, System.nanoTime());
+		} catch (IOException e) {
+			System.out.println("*** Error *** Emergency stop failed to reach AdafruitHat device");
+			report.failed(0, e);
+		}
+		directStops.incrementAndGet();
+		return report;
 	}
 }
@@ -29,6 +29,8 @@ package com.pi4j.component.adafruithat;
  */
 import java.util.HashMap;
 import java.util.Map;
+
+import com.pi4j.io.i2c.I2CDevice;
 /**
  * This class extends the AdafruitHat superclass and handles the specific operating
  * commanding for DC and Stepper motors. 
@@ -66,6 +68,21 @@ public class AdafruitMotorHat extends AdafruitHat {
 		setup();
 	}
 	
+	public AdafruitMotorHat(I2CDevice hatDevice) {
+		super(hatDevice);
+		setup();
+	}
+	
+	/**
+	 * Command the HAT through a bus manager, with motor priority.
+	 * @param bus Bus manager for the I2C bus the HAT is on
+	 * @param deviceAddr Valid addresses range 0X40 to 0X7F
+	 */
+	public AdafruitMotorHat(AdafruitBusManager bus, int deviceAddr) {
+		super(bus, deviceAddr, AdafruitBusManager.Priority.MOTOR);
+		setup();
+	}
+	
 	/**
 	 * Set the maximum PWM frequency of the PC9885 chip for minimal motor vibration.
 	 */
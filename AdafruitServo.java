@@ -311,10 +311,11 @@ public class AdafruitServo implements Servo {
 	}
 
 	/**
-	 *  Send commands to the I2C device.
+	 *  Send commands to the I2C device. The four registers of the servo's
+	 *  LED PWM are sent in a single I2C transaction.
 	 */
 	private void sendCommands() {
-		for (int i=0; i<4; i++) servoHat.write(PWM_ADDR[i],PWM_VALUES[i]);
+		servoHat.write(PWM_ADDR[0], PWM_VALUES, 0, PWM_VALUES.length);
 	}
 
 	
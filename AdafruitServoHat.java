@@ -29,6 +29,8 @@ package com.pi4j.component.adafruithat;
  */
 import java.util.HashMap;
 import java.util.Map;
+
+import com.pi4j.io.i2c.I2CDevice;
 /**
  * This class extends the AdafruitHat superclass and handles the specific operating
  * commanding for servos. 
@@ -71,6 +73,21 @@ public class AdafruitServoHat extends AdafruitHat {
 		setup();
 	}
 	
+	public AdafruitServoHat(I2CDevice hatDevice) {
+		super(hatDevice);
+		setup();
+	}
+	
+	/**
+	 * Command the HAT through a bus manager, with servo priority.
+	 * @param bus Bus manager for the I2C bus the HAT is on
+	 * @param deviceAddr Valid addresses range 0X40 to 0X7F
+	 */
+	public AdafruitServoHat(AdafruitBusManager bus, int deviceAddr) {
+		super(bus, deviceAddr, AdafruitBusManager.Priority.SERVO);
+		setup();
+	}
+	
 	/**
 	 * For servos set the operating pulse frequency (duty-cycle) to 50HZ on 
 	 * the PCA9685 chip. Applications can  override this initial default by 
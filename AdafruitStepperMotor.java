@@ -88,17 +88,10 @@ public class AdafruitStepperMotor extends StepperMotorBase  {
 	//in the setStepsPerRevolution() method.
 	private int stepsPerRevolution = 0;
 	
-	private int coilIndex;
-	private int powerIndex;
-	private int pwmA;
-	private int pwmB;
-	
 	private int[][] singleStepCoils = new int[][] {{1,0,0,0}, {0,1,0,0}, {0,0,1,0}, {0,0,0,1}};
 	private int[][] halfStepCoils   = new int[][] {{1,0,0,0}, {1,1,0,0}, {0,1,0,0}, {0,1,1,0}, {0,0,1,0}, {0,0,1,1}, {0,0,0,1}, {1,0,0,1}};
 	private int[][] microStepCoils = new int[][] {{1,1,0,0},{0,1,1,0},{0,0,1,1},{1,0,0,1}};
 	private int[] microStepCurve = new int[] {0, 800, 1568, 2272, 2880, 3392, 3776, 4000, 4095};
-	private int[] coils = new int[4];
-	private byte[] ZERO = new byte[] {0,0,0,0};
 
 	/*
 	 * PCA9685-chip addresses to control coil A on the stepper motor
@@ -106,12 +99,6 @@ public class AdafruitStepperMotor extends StepperMotorBase  {
 	private int[] A_PWM_ADDR;
 	private int[] A_IN2_ADDR;
 	private int[] A_IN1_ADDR;
-	/*
-	 * Corresponding PWM values for coil A
-	 */
-	private byte[] A_PWM_VALUES;
-	private byte[] A_IN2_VALUES;
-	private byte[] A_IN1_VALUES;
 	/*
 	 * PCA9685-chip addresses to control coil B on the stepper motor
 	 */
@@ -119,11 +106,19 @@ public class AdafruitStepperMotor extends StepperMotorBase  {
 	private int[] B_IN2_ADDR;
 	private int[] B_IN1_ADDR;
 	/*
-	 * Corresponding PWM values for coil B
+	 * Coils A and B drive six neighboring channels. Their registers are sent in one
+	 * auto-increment block write of BLOCK_SIZE bytes starting at BLOCK_ADDR.
 	 */
-	private byte[] B_PWM_VALUES;
-	private byte[] B_IN2_VALUES;
-	private byte[] B_IN1_VALUES;	
+	private int BLOCK_ADDR;
+	private int BLOCK_SIZE;
+	/*
+	 * Register images for the block, built once in setup(). STEP_IMAGES holds one
+	 * image per coil phase for each stepper mode, indexed by StepperMode ordinal and
+	 * phase, so a step only picks an image and writes it. STOP_IMAGE turns both
+	 * coils off.
+	 */
+	private byte[][][] STEP_IMAGES;
+	private byte[] STOP_IMAGE;
 	/**
 	 * Stepper Motor Constructor
 	 * @param motorHat - must be created by caller
@@ -161,6 +156,26 @@ public class AdafruitStepperMotor extends StepperMotorBase  {
 			motorHat.stopAll();
 			throw new IllegalArgumentException(motor);			
 		}
+		BLOCK_ADDR = AdafruitHat.blockAddr(A_PWM_ADDR, A_IN2_ADDR, A_IN1_ADDR, B_PWM_ADDR, B_IN2_ADDR, B_IN1_ADDR);
+		BLOCK_SIZE = AdafruitHat.blockSize(A_PWM_ADDR, A_IN2_ADDR, A_IN1_ADDR, B_PWM_ADDR, B_IN2_ADDR, B_IN1_ADDR);
+		
+		StepperMode[] modes = StepperMode.values();
+		STEP_IMAGES = new byte[modes.length][][];
+		for (StepperMode mode : modes) {
+			byte[][] images = new byte[phases(mode)][];
+			for (int phase=0; phase<images.length; phase++) images[phase] = phaseImage(mode, phase);
+			STEP_IMAGES[mode.ordinal()] = images;
+		}
+		STOP_IMAGE = new byte[BLOCK_SIZE];
+	}
+	
+	/**
+	 * Number of coil phases the stepper mode cycles through.
+	 */
+	private int phases(StepperMode mode) {
+		if (mode == StepperMode.HALF_STEP) return halfStepCoils.length;
+		else if (mode == StepperMode.MULTI_STEP) return microSteps*4;
+		else return singleStepCoils.length;
 	}
 	
 	/**
@@ -182,130 +197,85 @@ public class AdafruitStepperMotor extends StepperMotorBase  {
 	
 	/**
 	 * Move the stepper motor one step use previously set motor direction.
+	 * The register image for the new coil phase was built in setup(), so
+	 * stepping does not allocate.
 	 */
 	public void oneStep() {
-		if (stepperMode == StepperMode.SINGLE_PHASE) stepSingleStep();
-		else if (stepperMode == StepperMode.DOUBLE_PHASE) stepSingleStep();
-		else if (stepperMode == StepperMode.HALF_STEP) stepHalfStep();
-		else if (stepperMode == StepperMode.MULTI_STEP) stepMultiStep();
-		else {
-			System.out.println("*** Error *** Invalid stepperMode.");
-			motorHat.stopAll();
-			throw new IllegalArgumentException(stepperMode.name());	
-		}
+		if (motorState == MotorState.FORWARD) currentStep += 1;
+		else currentStep -= 1;
+		
+		//floorMod keeps the phase sequence going the right way below step 1
+		byte[][] images = STEP_IMAGES[stepperMode.ordinal()];
+		byte[] image = images[(int) Math.floorMod(currentStep-1, (long) images.length)];
+		//Command the PCA9685 chip to step the motor.
+		motorHat.write(BLOCK_ADDR, image, 0, BLOCK_SIZE);
 	}
 	
 	/**
-	 * Move the stepper motor one step in SINGLE_PHASE or DOUBLE_PHASE mode.
+	 * Build the register image for one coil phase of a stepper mode, phase
+	 * being (currentStep-1) modulo the number of phases.
 	 */
-	private void stepSingleStep() {
-		if (motorState == MotorState.FORWARD) currentStep += 1;
-		else currentStep -= 1;
-		
-		powerIndex = Math.abs((int) ((currentStep-1) % 2));
+	private byte[] phaseImage(StepperMode mode, int phase) {
+		int pwmA, pwmB;
+		int[] coils;
 		
-		/*
-		 * For SINGLE_PHASE alternate power on/off for coils A & B. We use
-		 * 4095(12-bit) to indicate the PWM is on for the full pulse width.
-		 */
-		if (stepperMode == StepperMode.SINGLE_PHASE) {
-			if (powerIndex == 0) {
+		if (mode == StepperMode.SINGLE_PHASE || mode == StepperMode.DOUBLE_PHASE) {
+			/*
+			 * For SINGLE_PHASE alternate power on/off for coils A & B. We use
+			 * 4095(12-bit) to indicate the PWM is on for the full pulse width.
+			 * For DOUBLE_PHASE stepping the power on both coils is always 100%
+			 */
+			if (mode == StepperMode.DOUBLE_PHASE) {
+				pwmA = 4095;
+				pwmB = 4095;
+			}
+			else if (phase % 2 == 0) {
 				pwmA = 4095;   //100% power for coil A
-				pwmB = 0;      //power turned off on coil B			
+				pwmB = 0;      //power turned off on coil B
 			}
 			else {
-				pwmA = 0;		//power turned off on coil A 
-				pwmB = 4095;	//100% power for coil B
+				pwmA = 0;      //power turned off on coil A
+				pwmB = 4095;   //100% power for coil B
 			}
+			coils = singleStepCoils[phase];
 		}
-		/*
-		 * For DOUBLE_PHASE stepping the power on both coils is always 100%
-		 */
-		else {
+		else if (mode == StepperMode.HALF_STEP) {
+			//Always maximum power for both coils in half-step
 			pwmA = 4095;
 			pwmB = 4095;
+			coils = halfStepCoils[phase];
+		}
+		else {
+			//MULTI_STEP, phase runs through 8 micro-steps of each of 4 coil pairs
+			int quarter = phase / microSteps;
+			int micro = phase % microSteps;
+			if (quarter % 2 == 0) {
+				pwmA = microStepCurve[microSteps-micro];
+				pwmB = microStepCurve[micro];
+			}
+			else {
+				pwmA = microStepCurve[micro];
+				pwmB = microStepCurve[microSteps-micro];
+			}
+			coils = microStepCoils[quarter];
 		}
 		
-		//Set the power levels for coils A & B.
-		A_PWM_VALUES = this.setStepperPWM(0,pwmA); 
-		B_PWM_VALUES = this.setStepperPWM(0,pwmB);
-			
-		coilIndex =  Math.abs((int) ((currentStep-1) % 4));	
-		//Set the direction and movement PWMs for coils A & B
-		A_IN2_VALUES = this.setPin(singleStepCoils[coilIndex][0]);
-		B_IN1_VALUES = this.setPin(singleStepCoils[coilIndex][1]);
-		A_IN1_VALUES = this.setPin(singleStepCoils[coilIndex][2]);
-		B_IN2_VALUES = this.setPin(singleStepCoils[coilIndex][3]);
-		//Command the PCA9685 chip to step the motor.
-		this.sendCommands();
-	}
-	
-	/**
-	 * Move the stepper motor one step in HALF_STEP mode.
-	 */
-	private void stepHalfStep() {
-		if (motorState == MotorState.FORWARD) currentStep += 1;
-		else currentStep -= 1;
-		
-		//Set the power levels for coils A & B. 
-		//Always maximum power for both coils in half-step
-		A_PWM_VALUES = this.setStepperPWM(0,4095); 
-		B_PWM_VALUES = this.setStepperPWM(0,4095);
-		
-		coilIndex =  Math.abs((int) ((currentStep-1) % 8));	
-		//Set the direction and movement PWMs for coils A & B
-		A_IN2_VALUES = this.setPin(halfStepCoils[coilIndex][0]);
-		B_IN1_VALUES = this.setPin(halfStepCoils[coilIndex][1]);
-		A_IN1_VALUES = this.setPin(halfStepCoils[coilIndex][2]);
-		B_IN2_VALUES = this.setPin(halfStepCoils[coilIndex][3]);
-		//Command the PCA9685 chip to step the motor.
-		this.sendCommands();
-		
+		//Stage the power levels and the direction and movement PWMs for coils A & B
+		byte[] image = new byte[BLOCK_SIZE];
+		stage(image, A_PWM_ADDR, setStepperPWM(0,pwmA));
+		stage(image, B_PWM_ADDR, setStepperPWM(0,pwmB));
+		stage(image, A_IN2_ADDR, setPin(coils[0]));
+		stage(image, B_IN1_ADDR, setPin(coils[1]));
+		stage(image, A_IN1_ADDR, setPin(coils[2]));
+		stage(image, B_IN2_ADDR, setPin(coils[3]));
+		return image;
 	}
 	
 	/**
-	 * Move the stepper motor one step in MULTI_STEP mode.
+	 * Copy a channel's four register values into a block image.
 	 */
-	private void stepMultiStep() {
-		
-		if (motorState == MotorState.FORWARD) currentStep += 1;
-		else currentStep -= 1;
-		
-		powerIndex = Math.abs((int) ((currentStep - 1) % (microSteps*4)));
-		
-		if (powerIndex >=0 && powerIndex < microSteps) {
-			pwmA = microStepCurve[microSteps-powerIndex];
-			pwmB = microStepCurve[powerIndex];
-			coils = microStepCoils[0];
-		}
-		else if (powerIndex >= microSteps && powerIndex < microSteps*2) {
-			pwmA = microStepCurve[powerIndex - microSteps];
-			pwmB = microStepCurve[microSteps*2 - powerIndex];
-			coils = microStepCoils[1];
-		}
-		else if (powerIndex >= microSteps*2 && powerIndex < microSteps*3) {
-			pwmA = microStepCurve[microSteps*3 - powerIndex];
-			pwmB = microStepCurve[powerIndex-microSteps*2];
-			coils = microStepCoils[2];
-		}
-		else if (powerIndex >= microSteps*3 && powerIndex < microSteps*4) {
-			pwmA = microStepCurve[powerIndex - microSteps*3];
-			pwmB = microStepCurve[microSteps*4 - powerIndex];
-			coils = microStepCoils[3];
-		}
-		
-		//Set the power levels for coils A & B.
-		A_PWM_VALUES = this.setStepperPWM(0,pwmA); 
-		B_PWM_VALUES = this.setStepperPWM(0,pwmB);
-		
-		//Set the direction and movement PWMs for coils A & B
-		A_IN2_VALUES = this.setPin(coils[0]);
-		B_IN1_VALUES = this.setPin(coils[1]);
-		A_IN1_VALUES = this.setPin(coils[2]);
-		B_IN2_VALUES = this.setPin(coils[3]);
-		
-		this.sendCommands();
-
+	private void stage(byte[] image, int[] addr, byte[] values) {
+		for (int i=0; i<4; i++) image[addr[i] - BLOCK_ADDR] = values[i];
 	}
 
 	/**
@@ -340,31 +310,12 @@ public class AdafruitStepperMotor extends StepperMotorBase  {
 		return pwm;
 	}
 
-	/**
-	 * Command the LED PWMs to set the motor power and direction.
-	 * A_PWM - PWM for coil A
-	 * A_IN2 - 2nd direction PWM, coil A
-	 * A_IN1 - 1st direction PWM, coil A
-	 * 
-	 * B_PWM - PWM for coil B
-	 * B_IN2 - 2nd direction PWM, coil B
-	 * B_IN1 - 1st direction PWM, coil B
-	 */
- 	private void sendCommands() {
- 		//Command A coil
-		for (int i=0; i<4; i++) motorHat.write(A_PWM_ADDR[i],A_PWM_VALUES[i]);
-		for (int i=0; i<4; i++) motorHat.write(A_IN2_ADDR[i],A_IN2_VALUES[i]);
-		for (int i=0; i<4; i++) motorHat.write(A_IN1_ADDR[i],A_IN1_VALUES[i]);
-		//Command B coil
-		for (int i=0; i<4; i++) motorHat.write(B_PWM_ADDR[i],B_PWM_VALUES[i]);
-		for (int i=0; i<4; i++) motorHat.write(B_IN2_ADDR[i],B_IN2_VALUES[i]);
-		for (int i=0; i<4; i++) motorHat.write(B_IN1_ADDR[i],B_IN1_VALUES[i]);		
-	}
-	
 	 /**
 	  * Move the number of steps specified.
 	  * Positive values will move stepper motor in forward direction, negative
-	  * values move motor in reverse direction.
+	  * values move motor in reverse direction. Steps are paced from System.nanoTime()
+	  * at the interval given to setStepInterval(), each due a whole number of
+	  * intervals after the first so timing errors do not accumulate.
 	  */
 	@Override
 	public void step(long steps) {
@@ -386,23 +337,72 @@ public class AdafruitStepperMotor extends StepperMotorBase  {
 		}
 		if (milliSeconds == 0) for (long iStep=0;  iStep<mySteps; iStep++) this.oneStep();
 		else {
-			for (long iStep=0;  iStep<mySteps; iStep++) {
-				long tStart = System.currentTimeMillis();
-				this.oneStep();
-				long deltaT = System.currentTimeMillis() - tStart;
-				//wait the additional time for the desired time interval
-				if (deltaT < milliSeconds) {
-					long wait = milliSeconds - deltaT;
-					motorHat.sleep(wait);
-				}
-				else if (killFlag) {
-					//If the time interval per step can not be achieved 
-					//and the killFlag is true then get out of here.
-					System.out.println("*** Error *** Time interval per step can not be achieved");
-					motorHat.stopAll();
-					throw new IllegalArgumentException();	
-				}				
+			StepTrain train = new StepTrain(mySteps, 1000.0 / milliSeconds, Double.POSITIVE_INFINITY);
+			//Start one interval back so the first step is taken right away
+			this.run(train, System.nanoTime() - train.timeOf(1));
+		}
+	}
+	
+	/**
+	 * Move the number of steps specified, ramping the step rate up from standstill
+	 * to maxRate and back down again with constant acceleration. Positive values move
+	 * the stepper motor in forward direction, negative values in reverse direction.
+	 * The killFlag given to setStepInterval() applies.
+	 * 
+	 * @param steps number of steps
+	 * @param maxRate cruising step rate, steps per second
+	 * @param acceleration steps per second per second
+	 * @see com.pi4j.component.adafruithat.StepTrain
+	 */
+	public void step(long steps, double maxRate, double acceleration) {
+		if (steps == 0) {
+			setState(MotorState.STOP);
+			return;
+		}
+		this.step(new StepTrain(Math.abs(steps), maxRate, acceleration), steps < 0 ? MotorState.REVERSE : MotorState.FORWARD);
+	}
+	
+	/**
+	 * Move through a step train in the direction given. A train can be built once
+	 * and run any number of times.
+	 * 
+	 * @param train the steps and their timing
+	 * @param motorState stepper movement direction 
+	 * (MotorState.FORWARD or MotorState.REVERSE)
+	 */
+	public void step(StepTrain train, MotorState motorState) {
+		if (motorState != MotorState.FORWARD && motorState != MotorState.REVERSE) {
+			System.out.println("*** Error *** Illegal motorState. Must be MotorSate.FORWARD or MotorState.REVERSE");
+			motorHat.stopAll();
+			throw new IllegalArgumentException(motorState.name());	
+		}
+		setState(motorState);
+		this.run(train, System.nanoTime());
+	}
+	
+	/**
+	 * Take each step of the train at its time after the origin.
+	 */
+	private void run(StepTrain train, long origin) {
+		long steps = train.getSteps();
+		long previous = origin;
+		for (long k=1; k<=steps; k++) {
+			long due = origin + train.timeOf(k);
+			StepTrain.waitUntil(due);
+			if (Thread.currentThread().isInterrupted()) {
+				System.out.println("*** Error *** Interrupted step train");
+				motorHat.stopAll();
+				return;
+			}
+			this.oneStep();
+			if (killFlag && System.nanoTime() - due > due - previous) {
+				//If the time interval per step can not be achieved 
+				//and the killFlag is true then get out of here.
+				System.out.println("*** Error *** Time interval per step can not be achieved");
+				motorHat.stopAll();
+				throw new IllegalArgumentException();	
 			}
+			previous = due;
 		}
 	}
 	
@@ -539,14 +539,8 @@ public class AdafruitStepperMotor extends StepperMotorBase  {
 	 */
 	@Override
 	public void stop() {
-		A_PWM_VALUES = ZERO;
-		A_IN2_VALUES = ZERO;
-		A_IN1_VALUES = ZERO;
-		B_PWM_VALUES = ZERO;
-		B_IN2_VALUES = ZERO;
-		B_IN1_VALUES = ZERO;
 		motorState = MotorState.STOP;
-		sendCommands();
+		motorHat.write(BLOCK_ADDR, STOP_IMAGE, 0, BLOCK_SIZE);
 	}
 	
 	/**
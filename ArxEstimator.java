@@ -0,0 +1,320 @@
+import org.apache.commons.math3.stat.regression.MillerUpdatingRegression;
+import org.apache.commons.math3.stat.regression.RegressionResults;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * ARX and ARMAX models of a system from a streamed input and output.
+ *
+ * The model is
+ *   y(t) + a1 y(t-1) + ... + an y(t-n)
+ *     = b1 u(t-d) + ... + bn u(t-d-n+1) + e(t) + c1 e(t-1) + ... + cn e(t-n)
+ * with the c terms only for ARMAX. Each sample's regressor row is built from
+ * short rings of past samples and handed to a MillerUpdatingRegression, which
+ * keeps only its triangular factor, so neither the rows nor the Hankel
+ * matrix they form are ever stored and a run of any length is fitted in
+ * constant memory.
+ *
+ * The regressors of each lag are kept together, lag 1 first, so the first
+ * k lags of the row are exactly the model of order k and regress(int)
+ * fits every order up to the largest from the same factor. select() picks
+ * the order by AIC or BIC.
+ *
+ * For ARMAX the unmeasured e(t) is replaced by the residual of a long ARX
+ * model, of four times the largest order, fitted alongside in a second
+ * MillerUpdatingRegression and refreshed every few hundred rows: a long
+ * enough ARX model whitens the noise, so its residuals stand in for e(t) as
+ * in the Hannan-Rissanen method. Until its first refresh the residuals are
+ * taken as 0, so the noise terms are learnt from the rows after it.
+ *
+ * There is no constant term; remove offsets from the signals first.
+ *
+ * Usage: java ArxEstimator log [motor] [encoder] [maxOrder] [delay] [armax]
+ * fits an ExperimentLog, from one motor's power to one encoder's velocity.
+ */
+public class ArxEstimator {
+
+    //Rows between refreshes of the ARMAX residual model
+    private static final int refresh = 256;
+    //Order of the residual model, per order of the ARMAX model
+    private static final int longOrder = 4;
+
+    /**
+     * A model of one order.
+     */
+    public static class Model {
+        private final double[] a;
+        private final double[] b;
+        private final double[] c;
+        private final double sse;
+        private final long n;
+        private final int parameters;
+
+        Model(double[] a, double[] b, double[] c, double sse, long n) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.sse = sse;
+            this.n = n;
+            this.parameters = a.length + b.length + c.length;
+        }
+
+        public int getOrder() {
+            return a.length;
+        }
+
+        /**
+         * a1 to an, the output coefficients.
+         */
+        public double[] getA() {
+            return a.clone();
+        }
+
+        /**
+         * b1 to bn, the input coefficients.
+         */
+        public double[] getB() {
+            return b.clone();
+        }
+
+        /**
+         * c1 to cn, the noise coefficients, empty for ARX.
+         */
+        public double[] getC() {
+            return c.clone();
+        }
+
+        public double getErrorSumSquares() {
+            return sse;
+        }
+
+        /**
+         * N ln(SSE / N) + 2k, for k parameters over N rows.
+         */
+        public double getAic() {
+            return n * Math.log(sse / n) + 2 * parameters;
+        }
+
+        /**
+         * N ln(SSE / N) + k ln N, which penalises extra parameters harder.
+         */
+        public double getBic() {
+            return n * Math.log(sse / n) + parameters * Math.log(n);
+        }
+
+        public String toString() {
+            return String.format("order %d: a=%s b=%s%s, SSE %.4g, AIC %.1f, BIC %.1f",
+                                 getOrder(), Arrays.toString(a), Arrays.toString(b),
+                                 c.length > 0 ? " c=" + Arrays.toString(c) : "", sse, getAic(), getBic());
+        }
+    }
+
+    private final int maxOrder;
+    private final int delay;
+    private final boolean movingAverage;
+    private final int perLag;
+    private final MillerUpdatingRegression reg;
+
+    //Past outputs, inputs and residuals, as rings indexed by sample number
+    private final int lags;
+    private final double[] ys;
+    private final double[] us;
+    private final double[] es;
+    private long samples = 0;
+    //Samples needed before the first row is complete
+    private final int warmUp;
+
+    //The row being added, and X'y and y'y for the error sums of the lower orders
+    private final double[] row;
+    private final double[] xty;
+    private double yty = 0;
+
+    //ARMAX only: the long ARX model the residuals come from, its row and its parameters
+    private final MillerUpdatingRegression residualReg;
+    private final double[] residualRow;
+    private final double[] theta;
+    private boolean residualsFitted = false;
+
+    /**
+     * @param maxOrder highest order that will be fitted, n above
+     * @param delay input delay d in samples, at least 0
+     * @param movingAverage true for ARMAX, false for ARX
+     */
+    public ArxEstimator(int maxOrder, int delay, boolean movingAverage) {
+        if (maxOrder < 1) {
+            throw new IllegalArgumentException("order must be at least 1: " + maxOrder);
+        }
+        if (delay < 0) {
+            throw new IllegalArgumentException("delay must not be negative: " + delay);
+        }
+        this.maxOrder = maxOrder;
+        this.delay = delay;
+        this.movingAverage = movingAverage;
+        perLag = movingAverage ? 3 : 2;
+        lags = movingAverage ? longOrder * maxOrder : maxOrder;
+        int p = maxOrder * perLag;
+        reg = new MillerUpdatingRegression(p, false);
+        ys = new double[lags + 1];
+        us = new double[lags + delay];
+        es = new double[maxOrder + 1];
+        warmUp = Math.max(lags, lags + delay - 1);
+        row = new double[p];
+        xty = new double[p];
+        if (movingAverage) {
+            residualReg = new MillerUpdatingRegression(2 * lags, false);
+            residualRow = new double[2 * lags];
+            theta = new double[2 * lags];
+        } else {
+            residualReg = null;
+            residualRow = null;
+            theta = null;
+        }
+    }
+
+    public int getMaxOrder() {
+        return maxOrder;
+    }
+
+    /**
+     * Number of rows in the regression, the samples after the warm-up.
+     */
+    public long getN() {
+        return reg.getN();
+    }
+
+    /**
+     * Add one sample of input and output.
+     */
+    public void add(double input, double output) {
+        long t = samples;
+        us[(int) (t % us.length)] = input;
+        ys[(int) (t % ys.length)] = output;
+        double residual = 0;
+        if (t >= warmUp) {
+            fillArx(row, maxOrder, perLag, t);
+            if (movingAverage) {
+                for (int j = 0; j < maxOrder; j++) {
+                    row[j * perLag + 2] = es[(int) ((t - 1 - j) % es.length)];
+                }
+                residual = residual(t, output);
+            }
+            reg.addObservation(row, output);
+            for (int i = 0; i < row.length; i++) {
+                xty[i] += row[i] * output;
+            }
+            yty += output * output;
+        }
+        if (movingAverage) es[(int) (t % es.length)] = residual;
+        samples++;
+    }
+
+    /**
+     * Write the output and input lags of sample t into a row, stride apart.
+     */
+    private void fillArx(double[] dest, int order, int stride, long t) {
+        for (int j = 0; j < order; j++) {
+            int base = j * stride;
+            dest[base] = -ys[(int) ((t - 1 - j) % ys.length)];
+            dest[base + 1] = us[(int) ((t - delay - j) % us.length)];
+        }
+    }
+
+    /**
+     * Add sample t to the long ARX model and return its residual.
+     */
+    private double residual(long t, double output) {
+        fillArx(residualRow, lags, 2, t);
+        residualReg.addObservation(residualRow, output);
+        long n = residualReg.getN();
+        if (n > 2 * residualRow.length && n % refresh == 0) {
+            double[] beta = residualReg.regress().getParameterEstimates();
+            System.arraycopy(beta, 0, theta, 0, theta.length);
+            residualsFitted = true;
+        }
+        if (!residualsFitted) return 0;
+        double residual = output;
+        for (int i = 0; i < residualRow.length; i++) {
+            residual -= residualRow[i] * theta[i];
+        }
+        return residual;
+    }
+
+    /**
+     * Add the samples remaining in two buffers, as many as the shorter has.
+     * The buffers' positions are not moved.
+     */
+    public void add(DoubleBuffer input, DoubleBuffer output) {
+        int n = Math.min(input.remaining(), output.remaining());
+        int i0 = input.position();
+        int o0 = output.position();
+        for (int k = 0; k < n; k++) {
+            add(input.get(i0 + k), output.get(o0 + k));
+        }
+    }
+
+    /**
+     * Fit the model of one order from the rows added so far.
+     * @param order 1 to getMaxOrder()
+     */
+    public Model fit(int order) {
+        if (order < 1 || order > maxOrder) {
+            throw new IllegalArgumentException("order must be from 1 to " + maxOrder + ": " + order);
+        }
+        int k = order * perLag;
+        RegressionResults results = reg.regress(k);
+        double[] beta = results.getParameterEstimates();
+        //regress(int) reports the error of the full model, so work out this order's from the normal equations
+        double sse = yty;
+        for (int i = 0; i < k; i++) {
+            sse -= beta[i] * xty[i];
+        }
+        sse = Math.max(sse, yty * 1e-15);
+        double[] a = new double[order];
+        double[] b = new double[order];
+        double[] c = new double[movingAverage ? order : 0];
+        for (int j = 0; j < order; j++) {
+            a[j] = beta[j * perLag];
+            b[j] = beta[j * perLag + 1];
+            if (movingAverage) c[j] = beta[j * perLag + 2];
+        }
+        return new Model(a, b, c, sse, reg.getN());
+    }
+
+    /**
+     * The order from 1 to getMaxOrder() with the lowest information criterion.
+     * @param bic true to select by BIC, false by AIC
+     */
+    public Model select(boolean bic) {
+        Model best = null;
+        for (int order = 1; order <= maxOrder; order++) {
+            Model model = fit(order);
+            if (best == null || (bic ? model.getBic() < best.getBic() : model.getAic() < best.getAic())) {
+                best = model;
+            }
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java ArxEstimator log [motor] [encoder] [maxOrder] [delay] [armax]");
+            System.exit(1);
+        }
+        int motor = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int encoder = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int maxOrder = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int delay = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        boolean armax = args.length > 5 && Boolean.parseBoolean(args[5]);
+
+        ExperimentLogReader log = new ExperimentLogReader(args[0]);
+        ArxEstimator estimator = new ArxEstimator(maxOrder, delay, armax);
+        estimator.add(log.power(motor), log.velocity(encoder));
+        System.out.format("%d records, %d rows%n", log.size(), estimator.getN());
+        for (int order = 1; order <= maxOrder; order++) {
+            System.out.println(estimator.fit(order));
+        }
+        System.out.println("AIC selects order " + estimator.select(false).getOrder()
+                           + ", BIC order " + estimator.select(true).getOrder());
+    }
+}
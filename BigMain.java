@@ -1,118 +1,90 @@
-import com.pi4j.io.gpio.GpioController;
-import com.pi4j.io.gpio.GpioFactory;
-import com.pi4j.io.gpio.RaspiPin;
-import com.pi4j.io.gpio.PinState;
-import com.pi4j.io.gpio.GpioPinDigitalInput;
+import java.io.IOException;
 
+/**
+ * Identification run for the three motors on the Servo HAT.
+ *
+ * Usage: java BigMain [log file] [prbs|multisine|schroeder|chirp]
+ *
+ * All motors are driven at once for one run by an Excitation signal, each
+ * with its own frequencies so they can be told apart, and every sample is
+ * logged with the encoder readings. The spectral content of the signal is
+ * printed before it is played.
+ */
 public class BigMain {
 
     private static final String[] ports = {"S01", "S02", "S03"};
     private static final String[] dport = {"S05", "S06", "S07"};
-    private static final GpioController gpio = GpioFactory.getInstance();
-    private static final GpioPinDigitalInput button = gpio.provisionDigitalInputPin(RaspiPin.GPIO_23);
-    private static long startTime = 0;
+    private static final Hardware hardware = Rig.get();
     private static final long dataTimeStep = 100000000;
-    private static final int expMultiplier = 5;
+    private static final String defaultLog = "experiment.log";
+    private static final String defaultSignal = "schroeder";
+    //Samples in the run, a power of two so the multisines are periodic in it
+    private static final int steps = 1024;
+    //Band to excite, Hz, and the peak power
+    private static final double fLow = 0.05;
+    private static final double fHigh = 2;
+    private static final float amplitude = 80;
     
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws InterruptedException, IOException {
 	
-	MotorSignal power = new MotorSignal(ports.length);
+	final MotorSignal power = new MotorSignal(ports.length);
 	Thread motors = new Thread(new BigMotor(ports, dport, power));
-	DataCollector manager = new DataCollector();
-	float[][] currExperiment = new float[3][3];
-	boolean doneWithExperiment = false;
-	Double[] powers = new Double[3];
-	
-	Thread.sleep(100);
-	motors.start();
-	Thread.sleep(1000);
+	final DataCollector manager = new DataCollector(args.length > 0 ? args[0] : defaultLog, ports.length);
+	final float[][] experiment = genExperiment(args.length > 1 ? args[1] : defaultSignal);
+	final float[] off = new float[ports.length];
+
+	Runtime.getRuntime().addShutdownHook(new Thread() {
+	    public void run() {
+		manager.close();
+	    }
+	});
 
-	currExperiment = genExperiment();
-	long lastTime;
-	long thisTime;
+	double rateHz = 1e9 / dataTimeStep;
+	for(int m = 0; m < ports.length; m++) {
+	    System.out.format("%s: %.1f%% of power in %.2f-%.2f Hz, crest factor %.2f%n", ports[m],
+			      100 * Excitation.bandFraction(experiment, m, rateHz, fLow, fHigh),
+			      fLow, fHigh, Excitation.crestFactor(experiment, m));
+	}
 	
-	for(int i = 0; i < 20; i += 2) {
-	    
-            int section = 0;
-	    startTime = System.nanoTime();
-	    lastTime = getMuTime();
-	    
-	    while(!doneWithExperiment) {
-		
-		for(int q = 0; q < expMultiplier; q++) {
-		    
-		    power.setPower(currExperiment[section]);
-		    thisTime = getMuTime();
-                    System.out.println(getMuTime());
-		    powers = floatsToDoubles(currExperiment[section]);
-		    
-		    while((lastTime % dataTimeStep) < (thisTime % dataTimeStep)) {
-			lastTime = thisTime;
-			thisTime = getMuTime();
-		    }
+	hardware.sleep(100);
+	motors.start();
+	hardware.sleep(1000);
 
-		    System.out.println(lastTime % dataTimeStep + ", " + thisTime % dataTimeStep);
-		    
-		    lastTime = getMuTime();
- 
-		    manager.collectData(powers);
-		    
-		}
+	final ControlLoop loop = new ControlLoop(rateHz);
+	loop.add(new ControlLoop.Task() {
+		int section = 0;
 
-		section++;
-                if(section >= currExperiment.length) {
-		    doneWithExperiment = true;
+		public void tick(long tickTime) {
+		    if(section >= experiment.length) {
+			power.setPower(off);
+			manager.collectData(off);
+			loop.stop();
+			return;
+		    }
+		    power.setPower(experiment[section]);
+		    manager.collectData(experiment[section]);
+		    section++;
 		}
-		
-	    }
-
-            System.out.println("Waiting...");
-	    
-	    while(button.isLow()) {
-	        Thread.sleep(10);
-	    }
-
-	    doneWithExperiment = false;
-	    currExperiment = genExperiment();
-        
-	    Thread.sleep(1000);
-	    
-	}
+	    });
+	loop.run();
 
-	System.out.println("DONE!!!");
+	manager.close();
+	System.out.println("DONE!!! " + loop.getTicks() + " samples, " + loop.getMissedTicks() + " missed");
 	    
     }
 
-    public static long getMuTime() {
-        return (System.nanoTime() - startTime);
-    }
-
-    public static float[][] genExperiment() {
-	float[][] experiments = new float[4][3];
-	for(int i = 0; i < experiments.length - 1; i++) {
-	    for(int j = 0; j < experiments[i].length; j++) {
-		experiments[i][j] = (float) (Math.random() * 200.0) - 100.0f;
-	    }
+    public static float[][] genExperiment(String signal) {
+	double rateHz = 1e9 / dataTimeStep;
+	if(signal.equals("prbs")) {
+	    return Excitation.prbs(steps, ports.length, rateHz, fHigh, amplitude);
+	} else if(signal.equals("multisine")) {
+	    return Excitation.multisine(steps, ports.length, rateHz, fLow, fHigh, amplitude, System.nanoTime());
+	} else if(signal.equals("schroeder")) {
+	    return Excitation.schroeder(steps, ports.length, rateHz, fLow, fHigh, amplitude);
+	} else if(signal.equals("chirp")) {
+	    return Excitation.logChirp(steps, ports.length, rateHz, fLow, fHigh, amplitude);
 	}
-	
-	for(int i = 0; i < experiments[experiments.length - 1].length; i++) {
-	    experiments[experiments.length - 1][i] = 0.0f;
-	}
-	
-	return experiments;
-    }
-
-    public static Double[] floatsToDoubles(float[] input) {
-        if (input == null) {
-            return null;
-        }
-	
-        Double[] output = new Double[input.length];
-        for (int i = 0; i < input.length; i++) {
-            output[i] = new Double(input[i]);
-        }
-	
-        return output;
+	throw new IllegalArgumentException("unknown excitation " + signal + ", use prbs, multisine, schroeder or chirp");
     }
     
 }
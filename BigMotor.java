@@ -11,6 +11,8 @@ public class BigMotor implements Runnable {
     private final float maxPulse = 1.999f;
     private float[] powers;
     private MotorSignal signal;
+    //Motor command updates per second
+    private static final double rateHz = 200;
 
     public BigMotor(String[] pwmPorts, String[] dirPorts, MotorSignal signal) {
 	pwms = new String[pwmPorts.length];
@@ -19,13 +21,13 @@ public class BigMotor implements Runnable {
 	    pwms[i] = pwmPorts[i];
 	    dirs[i] = dirPorts[i];
 	}
-	powers = new float[pwmPorts.length];
+	powers = new float[signal.size()];
 	this.signal = signal;
     }
     
     public void run() {
 	
-	AdafruitServoHat hat = new AdafruitServoHat(Address);
+	AdafruitServoHat hat = new AdafruitServoHat(Rig.bus(), Address);
 	AdafruitServo[] servos = new AdafruitServo[pwms.length];
         AdafruitServo[] dirport = new AdafruitServo[dirs.length];
 	for(int i = 0; i < pwms.length; i++) {
@@ -45,13 +47,21 @@ public class BigMotor implements Runnable {
 
 	System.out.println("Motors ready!");
 
-	while(!Thread.currentThread().isInterrupted()) {
-	    powers = signal.getPower();
-	    for(int i = 0; i < servos.length; i++) {
-		servos[i].setPosition(Math.abs(powers[i]));
-		dirport[i].setPosition(powers[i] < 0 ? 0 : 1);
-	    }
-	}
+	ControlLoop loop = new ControlLoop(rateHz);
+	loop.add(new ControlLoop.Task() {
+		//Generation of the frame last sent to the HAT
+		long seen = -1;
+
+		public void tick(long tickTime) {
+		    if(!signal.changedSince(seen)) return;
+		    seen = signal.getPower(powers);
+		    for(int i = 0; i < servos.length; i++) {
+			servos[i].setPosition(Math.abs(powers[i]));
+			dirport[i].setPosition(powers[i] < 0 ? 0 : 1);
+		    }
+		}
+	    });
+	loop.run();
     }
     
 }
@@ -0,0 +1,23 @@
+/**
+ * Time source for the rig programs. On the Pi this is System.nanoTime();
+ * the simulator runs its own clock, which may go faster than real time.
+ */
+public interface Clock {
+
+    /**
+     * Current time in nanoseconds, only meaningful relative to other readings.
+     */
+    long nanoTime();
+
+    /**
+     * Wait until nanoTime() reaches the deadline, parking while it is more
+     * than spinNanos away. Returns early if the thread is interrupted,
+     * leaving the interrupt flag set.
+     */
+    void sleepUntil(long deadline, long spinNanos);
+
+    /**
+     * Like Thread.sleep(), in this clock's time.
+     */
+    void sleep(long millis) throws InterruptedException;
+}
@@ -0,0 +1,173 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-rate scheduler for the rig's control loops.
+ *
+ * Every period the registered tasks are run one after another on the loop's
+ * thread. Waiting for the next period parks the thread with
+ * LockSupport.parkNanos and only spins for the last few microseconds, so the
+ * loop neither burns a core nor wakes up late by a scheduler quantum.
+ *
+ * Time comes from a Clock, by default that of the hardware in Rig.get(), so
+ * the same loops run against the Pi or the simulator.
+ *
+ * Deadlines are absolute (start + n * period), so the loop does not drift.
+ * A tick whose tasks run past the next deadline counts as an overrun and the
+ * periods it ran over are skipped rather than replayed in a burst.
+ */
+public class ControlLoop implements Runnable {
+
+    /**
+     * Work done once per period.
+     */
+    public interface Task {
+        /**
+         * @param tickTime scheduled clock time of this tick
+         */
+        void tick(long tickTime);
+    }
+
+    //Park until this close to the deadline, then spin
+    public static final long DEFAULT_SPIN_NANOS = 100000;
+
+    private final long period;
+    private final long spinNanos;
+    private final Clock clock;
+    private final CopyOnWriteArrayList<Task> tasks = new CopyOnWriteArrayList<Task>();
+    private volatile boolean running = false;
+
+    private volatile long ticks = 0;
+    private volatile long overruns = 0;
+    private volatile long missedTicks = 0;
+    private volatile long maxLateness = 0;
+    private volatile long maxRunTime = 0;
+
+    public ControlLoop(double rateHz) {
+        this(rateHz, DEFAULT_SPIN_NANOS);
+    }
+
+    public ControlLoop(double rateHz, long spinNanos) {
+        this(rateHz, spinNanos, Rig.get());
+    }
+
+    public ControlLoop(double rateHz, long spinNanos, Clock clock) {
+        if (rateHz <= 0) {
+            throw new IllegalArgumentException("rate must be positive: " + rateHz);
+        }
+        period = Math.round(1e9 / rateHz);
+        this.spinNanos = spinNanos;
+        this.clock = clock;
+    }
+
+    public void add(Task task) {
+        tasks.add(task);
+    }
+
+    public void remove(Task task) {
+        tasks.remove(task);
+    }
+
+    /**
+     * Run the loop on the calling thread until stop() is called or the
+     * thread is interrupted.
+     */
+    public void run() {
+        running = true;
+        long deadline = clock.nanoTime();
+        while (running && !Thread.currentThread().isInterrupted()) {
+            clock.sleepUntil(deadline, spinNanos);
+            long start = clock.nanoTime();
+            maxLateness = Math.max(maxLateness, start - deadline);
+
+            for (Task task : tasks) {
+                task.tick(deadline);
+            }
+
+            long end = clock.nanoTime();
+            maxRunTime = Math.max(maxRunTime, end - start);
+            ticks++;
+
+            deadline += period;
+            if (end - deadline > 0) {
+                //Ran past the next deadline, skip to the next one still ahead
+                long missed = (end - deadline) / period + 1;
+                overruns++;
+                missedTicks += missed;
+                deadline += missed * period;
+            }
+        }
+        running = false;
+    }
+
+    /**
+     * Start the loop on a new thread.
+     */
+    public Thread start(String name) {
+        Thread thread = new Thread(this, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Let the loop finish its current tick and return.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+
+    /**
+     * Worst wake-up delay after a deadline, in nanoseconds.
+     */
+    public long getMaxLateness() {
+        return maxLateness;
+    }
+
+    /**
+     * Worst time taken by one tick's tasks, in nanoseconds.
+     */
+    public long getMaxRunTime() {
+        return maxRunTime;
+    }
+
+    public void resetStats() {
+        ticks = 0;
+        overruns = 0;
+        missedTicks = 0;
+        maxLateness = 0;
+        maxRunTime = 0;
+    }
+
+    /**
+     * Wait until System.nanoTime() reaches the deadline. Parks until the
+     * deadline is spinNanos away, then spins. Returns early if the thread is
+     * interrupted, leaving the interrupt flag set.
+     */
+    public static void sleepUntil(long deadline, long spinNanos) {
+        long remaining = deadline - System.nanoTime();
+        while (remaining > spinNanos) {
+            LockSupport.parkNanos(remaining - spinNanos);
+            if (Thread.currentThread().isInterrupted()) return;
+            remaining = deadline - System.nanoTime();
+        }
+        while (deadline - System.nanoTime() > 0) {
+            //spin
+        }
+    }
+}
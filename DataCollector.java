@@ -1,32 +1,48 @@
 import com.pi4j.io.gpio.RaspiPin;
-import java.util.*;
+import java.io.IOException;
 
 public class DataCollector {
+
+    //Encoder samples kept for derivatives, several seconds at full encoder rate
+    private static final int history = 4096;
+    //Records the log has room for, about seven hours at BigMain's 10 Hz
+    private static final int logCapacity = 1 << 18;
+    //Window for the logged velocities, seconds
+    private static final double velocityWindow = 0.05;
     
-    public volatile Readout inEnc1 = new Readout(30);
-    public volatile Readout inEnc2 = new Readout(30);
-    private Thread encoder1 = new Thread(new Encoder(inEnc1, RaspiPin.GPIO_28, RaspiPin.GPIO_29));
-    private Thread encoder2 = new Thread(new Encoder(inEnc2, RaspiPin.GPIO_24, RaspiPin.GPIO_25));
-    //{resultant state} {old state} {power inputs}
-    private ArrayList<Double[][]> stateData = new ArrayList<Double[][]>();
-    private Double[] derivs = new Double[3];
-    private Double[][] transformation = new Double[3][3];
+    public volatile Readout inEnc1 = new Readout(history);
+    public volatile Readout inEnc2 = new Readout(history);
+    private Thread encoder1 = new Thread(new Encoder(inEnc1, RaspiPin.GPIO_28, RaspiPin.GPIO_29, true));
+    private Thread encoder2 = new Thread(new Encoder(inEnc2, RaspiPin.GPIO_24, RaspiPin.GPIO_25, true));
+    private final ExperimentLog log;
+    //Reused for every record
+    private final double[] positions = new double[2];
+    private final double[] velocities = new double[2];
 
-    public DataCollector() {
+    /**
+     * @param logFile where the experiment log is written, see ExperimentLogReader
+     * @param motors number of motor powers in each record
+     */
+    public DataCollector(String logFile, int motors) throws IOException {
+	log = new ExperimentLog(logFile, positions.length, motors, logCapacity);
 	encoder1.start();
 	encoder2.start();
-	Double[][] initialState = {{0.0, 0.0, 0.0}, {0.0, 0.0, 0.0}, {0.0, 0.0, 0.0}};
-	stateData.add(initialState);
     }
 
-    public void collectData(Double[] currentPowers) {
-	derivs[0] = inEnc1.getDeriv(0.05);
-	derivs[1] = inEnc2.getDeriv(0.05);
-	derivs[2] = 0.0;
-        transformation[0] = derivs;
-        transformation[1] = stateData.get(stateData.size() - 1)[0];
-	transformation[2] = currentPowers;
-	stateData.add(transformation);
-    }    
+    public void collectData(float[] currentPowers) {
+	long time = Rig.get().nanoTime();
+	positions[0] = inEnc1.getVal();
+	positions[1] = inEnc2.getVal();
+	velocities[0] = inEnc1.getDeriv(velocityWindow);
+	velocities[1] = inEnc2.getDeriv(velocityWindow);
+	log.append(time, positions, velocities, currentPowers);
+    }
+
+    /**
+     * Flush the log to disk and stop logging.
+     */
+    public void close() {
+	log.close();
+    }
     
 }
@@ -0,0 +1,129 @@
+import com.pi4j.component.adafruithat.RecordingI2CDevice;
+
+/**
+ * First-order model of a DC motor and its load: the velocity approaches
+ * gain * command with time constant tau, and the position integrates the
+ * velocity. Each step is integrated exactly for a command held over it.
+ *
+ * The command, from -1 to 1, is read back from the PCA9685 registers the
+ * HAT classes write, so the plant is driven by AdafruitDcMotor.speed() or,
+ * for BigMotor's speed controllers, by a pair of AdafruitServo channels.
+ */
+public class DcMotorPlant implements SimHardware.Model {
+
+    /**
+     * Where the plant's command comes from.
+     */
+    public interface Drive {
+        /**
+         * @return command from -1 (full reverse) to 1 (full forward)
+         */
+        double command();
+    }
+
+    //PCA9685 register layout, see AdafruitHat
+    private static final int LED0_ON_H = 0X07;
+    private static final int FULL = 0X10;
+
+    private final Drive drive;
+    private final double gain;
+    private final double tau;
+    private volatile double velocity = 0;
+    private volatile double position = 0;
+
+    /**
+     * @param drive source of the command
+     * @param gain steady state velocity at full command, units per second
+     * @param tau time constant, seconds
+     */
+    public DcMotorPlant(Drive drive, double gain, double tau) {
+        if (!(tau > 0)) {
+            throw new IllegalArgumentException("time constant must be positive: " + tau);
+        }
+        this.drive = drive;
+        this.gain = gain;
+        this.tau = tau;
+    }
+
+    public void step(long now, long dt) {
+        double h = dt / 1e9;
+        double target = gain * drive.command();
+        double decay = Math.exp(-h / tau);
+        double v = velocity;
+        position += target * h + (v - target) * tau * (1 - decay);
+        velocity = target + (v - target) * decay;
+    }
+
+    public double getPosition() {
+        return position;
+    }
+
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * Duty cycle of an LED PWM from 0 to 1, honouring the full on and full off bits.
+     */
+    static double duty(RecordingI2CDevice hat, int channel) {
+        int off = hat.getPwmOff(channel);
+        if (off >= 4096) return 0;
+        if ((hat.getRegister(LED0_ON_H + 4 * channel) & FULL) != 0) return 1;
+        return off / 4095.0;
+    }
+
+    /**
+     * A motor on the Motor HAT.
+     * @param hat the HAT's fake PCA9685
+     * @param motor "M1" to "M4"
+     */
+    public static Drive dcMotor(final RecordingI2CDevice hat, String motor) {
+        //PWM, IN2 and IN1 channels as wired in AdafruitDcMotor
+        final int pwm, in2, in1;
+        if (motor.equals("M1")) {
+            pwm = 8; in2 = 9; in1 = 10;
+        } else if (motor.equals("M2")) {
+            pwm = 13; in2 = 12; in1 = 11;
+        } else if (motor.equals("M3")) {
+            pwm = 2; in2 = 3; in1 = 4;
+        } else if (motor.equals("M4")) {
+            pwm = 7; in2 = 6; in1 = 5;
+        } else {
+            throw new IllegalArgumentException("no motor " + motor);
+        }
+        return new Drive() {
+            public double command() {
+                boolean forward = duty(hat, in2) > 0.5;
+                boolean reverse = duty(hat, in1) > 0.5;
+                if (forward == reverse) return 0; //coasting or braking
+                double power = duty(hat, pwm);
+                return forward ? power : -power;
+            }
+        };
+    }
+
+    /**
+     * A speed controller fed by two servo channels as BigMotor drives it:
+     * one pulse sets the power, the other the direction.
+     * @param hat the Servo HAT's fake PCA9685
+     * @param pwmChannel power channel, 0 to 15
+     * @param dirChannel direction channel, forward when its pulse is the longer one
+     * @param minPulse pulse for no power, milliseconds
+     * @param maxPulse pulse for full power, milliseconds
+     * @param frequency PWM frequency of the HAT, Hz
+     */
+    public static Drive servo(final RecordingI2CDevice hat, final int pwmChannel, final int dirChannel,
+                              double minPulse, double maxPulse, double frequency) {
+        final double period = 1000.0 / frequency;
+        final double min = minPulse / period;
+        final double span = (maxPulse - minPulse) / period;
+        return new Drive() {
+            public double command() {
+                double duty = duty(hat, pwmChannel);
+                if (duty == 0) return 0; //not commanded yet
+                double power = Math.max(0, Math.min(1, (duty - min) / span));
+                return duty(hat, dirChannel) > min + span / 2 ? power : -power;
+            }
+        };
+    }
+}
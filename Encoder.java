@@ -1,76 +1,98 @@
-import com.pi4j.io.gpio.*;
-import com.pi4j.io.gpio.GpioController;
-import com.pi4j.io.gpio.GpioFactory;
-import com.pi4j.io.gpio.GpioPinDigitalOutput;
-import com.pi4j.io.gpio.PinState;
-import com.pi4j.io.gpio.RaspiPin;
-import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
-import com.pi4j.io.gpio.event.GpioPinListenerDigital;
+import com.pi4j.io.gpio.Pin;
 
 public class Encoder implements Runnable{
 
-    private final GpioController gpio = GpioFactory.getInstance();
+    private final Hardware hardware = Rig.get();
     private Readout output;
-    private final GpioPinDigitalInput phaseA;
-    private final GpioPinDigitalInput phaseB;
+    private final Hardware.Input phaseA;
+    private final Hardware.Input phaseB;
+    private final QuadratureDecoder decoder = new QuadratureDecoder();
+    private final boolean interrupts;
+    //Counts per output unit
+    static final double countsPerUnit = 1462.0;
+    //Publish at least this often even if the encoder is not moving
+    private static final long idleNanos = 100000000;
+    //Position publish rate when decoding from edge interrupts
+    private static final double publishRateHz = 1000;
 
+    /**
+     * Busy-poll the phases on the thread running this encoder.
+     */
     public Encoder(Readout out, Pin A, Pin B) {
+	this(out, A, B, false);
+    }
+
+    /**
+     * @param interrupts true to decode from GPIO edge callbacks instead of
+     * busy-polling; the thread running this encoder then only publishes
+     */
+    public Encoder(Readout out, Pin A, Pin B, boolean interrupts) {
 	output = out;
-	phaseA = gpio.provisionDigitalInputPin(A);
-	phaseB = gpio.provisionDigitalInputPin(B);
+	phaseA = hardware.input(A);
+	phaseB = hardware.input(B);
+	this.interrupts = interrupts;
+    }
+
+    public long getPosition() {
+	return decoder.getPosition();
+    }
+
+    public long getIllegalTransitions() {
+	return decoder.getIllegalTransitions();
     }
 
     public void run() {
+	decoder.reset(phaseA.isHigh(), phaseB.isHigh());
+	if(interrupts) {
+	    runInterrupts();
+	} else {
+	    runPolling();
+	}
+    }
 
-        int state = 0;
-	int pos = 0;
-	boolean a;
-	boolean b;
-        int last;
-	long lastTime = System.nanoTime();	
-	
-	while(true) {
+    private void runPolling() {
+	long last;
+	long pos = 0;
+	long lastTime = hardware.nanoTime();
+
+	while(!Thread.currentThread().isInterrupted()) {
 	    last = pos;
-	    a = phaseA.isHigh();
-	    b = phaseB.isHigh();
-	    if(state == 0) {
-		if(a && !b) {
-		    pos++;
-		    state = 1;
-		} else if(!a && b) {
-		    pos--;
-		    state = 3;
-		}
-	    } else if(state == 1) {
-		if(a && b) {
-		    pos++;
-		    state = 2;
-		} else if(!a && !b) {
-		    pos--;
-		    state = 0;
-		}
-	    } else if(state == 2) {
-		if(!a && b) {
-		    pos++;
-		    state = 3;
-		} else if(a && !b) {
-		    pos--;
-		    state = 1;
-		}
-	    } else if(state == 3) {
-		if(!a && !b) {
-		    pos++;
-		    state = 0;
-		} else if(a && b) {
-		    pos--;
-		    state = 2;
-		}
-	    }
-	    if(last != pos || System.nanoTime() - lastTime > 100000000) {
+	    decoder.update(phaseA.isHigh(), phaseB.isHigh());
+	    pos = decoder.getPosition();
+	    if(last != pos || hardware.nanoTime() - lastTime > idleNanos) {
 	      //System.out.println(pos);
-	      output.setVal((double) pos / 1462.0);
-	      lastTime = System.nanoTime();
+	      output.setVal((double) pos / countsPerUnit);
+	      lastTime = hardware.nanoTime();
 	    }
 	}
     }
+
+    private void runInterrupts() {
+	Hardware.EdgeListener listener = new Hardware.EdgeListener() {
+		public void edge(boolean high, long nanos) {
+		    //The event only carries one pin's level, read both so the state is whole
+		    decoder.update(phaseA.isHigh(), phaseB.isHigh());
+		}
+	    };
+	phaseA.addListener(listener);
+	phaseB.addListener(listener);
+
+	ControlLoop loop = new ControlLoop(publishRateHz);
+	loop.add(new ControlLoop.Task() {
+		long pos = 0;
+		long lastTime = hardware.nanoTime();
+
+		public void tick(long tickTime) {
+		    long last = pos;
+		    pos = decoder.getPosition();
+		    if(last != pos || tickTime - lastTime > idleNanos) {
+			output.setVal((double) pos / countsPerUnit);
+			lastTime = tickTime;
+		    }
+		}
+	    });
+	loop.run();
+	phaseA.removeListener(listener);
+	phaseB.removeListener(listener);
+    }
 }
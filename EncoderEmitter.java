@@ -0,0 +1,62 @@
+import com.pi4j.io.gpio.Pin;
+
+/**
+ * Quadrature A/B phases for a simulated plant's position. Every count the
+ * position moves through produces its own edge, timed by interpolating
+ * across the physics step, so a decoder fed from edge listeners never sees
+ * an illegal transition. Polling the phases can miss counts just as it can
+ * on the Pi.
+ */
+public class EncoderEmitter implements SimHardware.Model {
+
+    //(A << 1) | B for count mod 4, counting up goes 00 -> 10 -> 11 -> 01
+    private static final int[] GRAY = {0, 2, 3, 1};
+
+    private final DcMotorPlant plant;
+    private final double countsPerUnit;
+    private final SimHardware.SimInput phaseA;
+    private final SimHardware.SimInput phaseB;
+    private long count;
+
+    /**
+     * @param sim simulated hardware the phases are wired to
+     * @param plant whose position is encoded
+     * @param a phase A pin
+     * @param b phase B pin
+     * @param countsPerUnit encoder counts per unit of plant position
+     */
+    public EncoderEmitter(SimHardware sim, DcMotorPlant plant, Pin a, Pin b, double countsPerUnit) {
+        this.plant = plant;
+        this.countsPerUnit = countsPerUnit;
+        phaseA = sim.simInput(a);
+        phaseB = sim.simInput(b);
+        count = target();
+        emit(count, sim.nanoTime());
+    }
+
+    private long target() {
+        return (long) Math.floor(plant.getPosition() * countsPerUnit);
+    }
+
+    private void emit(long c, long nanos) {
+        int state = GRAY[(int) (c & 3)];
+        phaseA.set((state & 2) != 0, nanos);
+        phaseB.set((state & 1) != 0, nanos);
+    }
+
+    public void step(long now, long dt) {
+        long next = target();
+        long moves = Math.abs(next - count);
+        if (moves == 0) return;
+        long dir = next > count ? 1 : -1;
+        long start = now - dt;
+        for (long i = 1; i <= moves; i++) {
+            count += dir;
+            emit(count, start + dt * i / moves);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
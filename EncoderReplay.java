@@ -0,0 +1,169 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Simulated A/B phase source that replays a recorded quadrature sequence,
+ * for benchmarking QuadratureDecoder off the Pi.
+ *
+ * Usage: java EncoderReplay [recording]
+ * The recording has one sample per line, the A and B levels as 0 or 1
+ * separated by a space. Without a recording a back and forth sweep is made up.
+ *
+ * The benchmark reports decode throughput when every edge is delivered to the
+ * decoder (the interrupt mode of Encoder) and the missed edges, illegal
+ * transitions and position error when a polling thread samples the phases
+ * while they are replayed at increasing rates (the polling mode).
+ */
+public class EncoderReplay {
+
+    /**
+     * Called with the new phase levels on every replayed edge.
+     */
+    public interface EdgeListener {
+        void edge(boolean a, boolean b);
+    }
+
+    private final int[] states;
+    //Current (A << 1) | B levels
+    private volatile int levels;
+
+    /**
+     * @param states phase levels per sample, (A << 1) | B
+     */
+    public EncoderReplay(int[] states) {
+        this.states = states;
+        levels = states.length > 0 ? states[0] : 0;
+    }
+
+    public boolean isHighA() {
+        return (levels & 2) != 0;
+    }
+
+    public boolean isHighB() {
+        return (levels & 1) != 0;
+    }
+
+    public int edges() {
+        return states.length - 1;
+    }
+
+    /**
+     * Net count the sequence should decode to.
+     */
+    public long expectedPosition() {
+        QuadratureDecoder decoder = new QuadratureDecoder();
+        decoder.reset((states[0] & 2) != 0, (states[0] & 1) != 0);
+        for (int i = 1; i < states.length; i++) decoder.update(states[i]);
+        return decoder.getPosition();
+    }
+
+    /**
+     * Step through the sequence on the calling thread.
+     * @param edgeNanos time between edges, 0 for as fast as possible
+     * @param listener told about every edge, may be null
+     * @return elapsed nanoseconds
+     */
+    public long replay(long edgeNanos, EdgeListener listener) {
+        levels = states[0];
+        long start = System.nanoTime();
+        long deadline = start;
+        for (int i = 1; i < states.length; i++) {
+            if (edgeNanos > 0) {
+                deadline += edgeNanos;
+                while (System.nanoTime() - deadline < 0) {
+                    //spin, edges are far shorter than a park
+                }
+            }
+            int next = states[i];
+            levels = next;
+            if (listener != null) listener.edge((next & 2) != 0, (next & 1) != 0);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Make up a sequence that sweeps forward and back.
+     * @param counts counts per sweep
+     * @param sweeps number of sweeps, alternating direction
+     */
+    public static int[] sweep(int counts, int sweeps) {
+        final int[] gray = {0, 2, 3, 1};
+        int[] states = new int[counts * sweeps + 1];
+        int phase = 0;
+        int n = 0;
+        states[n++] = gray[phase];
+        for (int s = 0; s < sweeps; s++) {
+            int dir = s % 2 == 0 ? 1 : 3;
+            for (int c = 0; c < counts; c++) {
+                phase = (phase + dir) % 4;
+                states[n++] = gray[phase];
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Read a recording with one "A B" sample per line.
+     */
+    public static int[] load(String file) throws IOException {
+        ArrayList<Integer> list = new ArrayList<Integer>();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length < 2) continue;
+                list.add(QuadratureDecoder.state(parts[0].equals("1"), parts[1].equals("1")));
+            }
+        } finally {
+            in.close();
+        }
+        int[] states = new int[list.size()];
+        for (int i = 0; i < states.length; i++) states[i] = list.get(i);
+        return states;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] states = args.length > 0 ? load(args[0]) : sweep(100000, 20);
+        final EncoderReplay replay = new EncoderReplay(states);
+        long expected = replay.expectedPosition();
+        System.out.println("edges: " + replay.edges() + " expected position: " + expected);
+
+        //Interrupt mode: the decoder sees every edge
+        for (int run = 0; run < 5; run++) {
+            final QuadratureDecoder decoder = new QuadratureDecoder();
+            decoder.reset(replay.isHighA(), replay.isHighB());
+            long nanos = replay.replay(0, new EdgeListener() {
+                    public void edge(boolean a, boolean b) {
+                        decoder.update(a, b);
+                    }
+                });
+            System.out.format("interrupt decode: %8.1f Medges/s position %d illegal %d%n",
+                              replay.edges() * 1e3 / nanos, decoder.getPosition(), decoder.getIllegalTransitions());
+        }
+
+        //Polling mode: a thread samples the phases while they change
+        for (long edgeNanos : new long[] {10000, 2000, 1000, 500, 200, 100}) {
+            final QuadratureDecoder decoder = new QuadratureDecoder();
+            decoder.reset(replay.isHighA(), replay.isHighB());
+            final AtomicBoolean done = new AtomicBoolean(false);
+            Thread poller = new Thread() {
+                    public void run() {
+                        while (!done.get()) {
+                            decoder.update(replay.isHighA(), replay.isHighB());
+                        }
+                        decoder.update(replay.isHighA(), replay.isHighB());
+                    }
+                };
+            poller.start();
+            replay.replay(edgeNanos, null);
+            done.set(true);
+            poller.join();
+            System.out.format("polling at %6d ns/edge: position error %d illegal %d%n",
+                              edgeNanos, expected - decoder.getPosition(), decoder.getIllegalTransitions());
+        }
+    }
+}
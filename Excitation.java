@@ -0,0 +1,269 @@
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Excitation signals for identification experiments.
+ *
+ * Every generator returns one row per sample and one column per motor, the
+ * float[][] shape MotorSignal.setPower() takes a row of, with values within
+ * +/-amplitude. The bandwidth is given in Hz for the rate the rows are played
+ * at, so the same experiment can be planned for any sample rate.
+ *
+ * The motors of one experiment are excited with uncorrelated signals where
+ * the signal allows it, so all of them can be identified from one run:
+ * - PRBS: the same maximum length sequence, shifted a fraction of its period
+ *   for each motor
+ * - multisine and Schroeder: the band's frequencies dealt out in turn to the
+ *   motors, so no two motors share a frequency
+ * - log chirp: one chirp, circularly delayed for each motor
+ *
+ * Multisines are periodic in the number of steps, so with a power of two
+ * steps powerSpectrum() shows exactly the frequencies excited.
+ */
+public class Excitation {
+
+    //Feedback taps of maximum length LFSRs, indexed by order, see Xilinx XAPP052
+    private static final int[][] taps = {
+        null, null,
+        {2, 1}, {3, 2}, {4, 3}, {5, 3}, {6, 5}, {7, 6}, {8, 6, 5, 4}, {9, 5},
+        {10, 7}, {11, 9}, {12, 6, 4, 1}, {13, 4, 3, 1}, {14, 5, 3, 1}, {15, 14},
+        {16, 15, 13, 4}, {17, 14}, {18, 11}, {19, 6, 2, 1}, {20, 17},
+        {21, 19}, {22, 21}, {23, 18}, {24, 23, 22, 17}
+    };
+
+    //A PRBS bit held for h samples has its power within 3 dB up to this fraction of rate / h
+    private static final double prbsBand = 0.44;
+
+    /**
+     * Pseudo random binary sequence switching between +amplitude and
+     * -amplitude. Each bit is held long enough to put the power below
+     * bandwidth, and the sequence is the shortest maximum length one that
+     * does not repeat within the run. The longest sequence has 2^24 - 1 bits,
+     * so a run may hold at most that many bits.
+     * @param steps number of samples
+     * @param motors number of motors
+     * @param rateHz rate the samples are played at
+     * @param bandwidth highest frequency to excite, Hz
+     * @param amplitude power of each level
+     * @throws IllegalArgumentException if the run holds more than 2^24 - 1 bits
+     */
+    public static float[][] prbs(int steps, int motors, double rateHz, double bandwidth, float amplitude) {
+        checkBand(steps, motors, rateHz, 0, bandwidth);
+        int hold = Math.max(1, (int) Math.floor(prbsBand * rateHz / bandwidth));
+        long bits = (steps + hold - 1) / hold;
+        int order = 2;
+        while (order < taps.length - 1 && (1L << order) - 1 < bits) {
+            order++;
+        }
+        if ((1L << order) - 1 < bits) {
+            throw new IllegalArgumentException(bits + " PRBS bits of " + hold + " samples would repeat, at most "
+                                               + ((1L << order) - 1) + " fit in a run");
+        }
+        int period = (1 << order) - 1;
+        boolean[] sequence = mSequence(order);
+
+        float[][] signal = new float[steps][motors];
+        for (int m = 0; m < motors; m++) {
+            int shift = (int) ((long) m * period / motors);
+            for (int k = 0; k < steps; k++) {
+                signal[k][m] = sequence[(k / hold + shift) % period] ? amplitude : -amplitude;
+            }
+        }
+        return signal;
+    }
+
+    /**
+     * One period of a maximum length sequence.
+     */
+    static boolean[] mSequence(int order) {
+        int period = (1 << order) - 1;
+        int mask = (1 << order) - 1;
+        int state = 1;
+        boolean[] sequence = new boolean[period];
+        for (int i = 0; i < period; i++) {
+            sequence[i] = ((state >> (order - 1)) & 1) != 0;
+            int feedback = 0;
+            for (int tap : taps[order]) {
+                feedback ^= (state >> (tap - 1)) & 1;
+            }
+            state = ((state << 1) | feedback) & mask;
+        }
+        return sequence;
+    }
+
+    /**
+     * Sum of equal cosines at every frequency of the band that is periodic in
+     * steps, with random phases, scaled to a peak of amplitude.
+     * @param steps number of samples, the period of the signal
+     * @param motors number of motors
+     * @param rateHz rate the samples are played at
+     * @param fLow lowest frequency to excite, Hz
+     * @param fHigh highest frequency to excite, Hz
+     * @param amplitude peak power
+     * @param seed seed for the phases
+     */
+    public static float[][] multisine(int steps, int motors, double rateHz, double fLow, double fHigh,
+                                      float amplitude, long seed) {
+        return multisine(steps, motors, rateHz, fLow, fHigh, amplitude, new Random(seed));
+    }
+
+    /**
+     * Multisine with Schroeder phases, which keep the peak low for the power
+     * put in: for the k-th of K frequencies the phase is -pi k (k - 1) / K.
+     * @param steps number of samples, the period of the signal
+     * @param motors number of motors
+     * @param rateHz rate the samples are played at
+     * @param fLow lowest frequency to excite, Hz
+     * @param fHigh highest frequency to excite, Hz
+     * @param amplitude peak power
+     */
+    public static float[][] schroeder(int steps, int motors, double rateHz, double fLow, double fHigh,
+                                      float amplitude) {
+        return multisine(steps, motors, rateHz, fLow, fHigh, amplitude, null);
+    }
+
+    /**
+     * @param random source of the phases, null for Schroeder phases
+     */
+    private static float[][] multisine(int steps, int motors, double rateHz, double fLow, double fHigh,
+                                       float amplitude, Random random) {
+        checkBand(steps, motors, rateHz, fLow, fHigh);
+        //Frequency bins in the band, bin b being b * rateHz / steps
+        int first = Math.max(1, (int) Math.ceil(fLow * steps / rateHz));
+        int last = Math.min((steps - 1) / 2, (int) Math.floor(fHigh * steps / rateHz));
+        if (last - first + 1 < motors) {
+            throw new IllegalArgumentException("band " + fLow + " to " + fHigh + " Hz has fewer than "
+                                               + motors + " frequencies for " + steps + " steps");
+        }
+
+        float[][] signal = new float[steps][motors];
+        double[] x = new double[steps];
+        for (int m = 0; m < motors; m++) {
+            Arrays.fill(x, 0);
+            int count = (last - first - m) / motors + 1;
+            int k = 0;
+            for (int bin = first + m; bin <= last; bin += motors) {
+                k++;
+                double phase = random == null ? -Math.PI * k * (k - 1) / count : 2 * Math.PI * random.nextDouble();
+                double w = 2 * Math.PI * bin / steps;
+                for (int t = 0; t < steps; t++) {
+                    x[t] += Math.cos(w * t + phase);
+                }
+            }
+            scale(x, amplitude, signal, m);
+        }
+        return signal;
+    }
+
+    /**
+     * Sine sweeping from fLow to fHigh with the frequency rising exponentially,
+     * so every decade gets the same time.
+     * @param steps number of samples
+     * @param motors number of motors
+     * @param rateHz rate the samples are played at
+     * @param fLow starting frequency, Hz
+     * @param fHigh final frequency, Hz
+     * @param amplitude peak power
+     */
+    public static float[][] logChirp(int steps, int motors, double rateHz, double fLow, double fHigh,
+                                     float amplitude) {
+        checkBand(steps, motors, rateHz, fLow, fHigh);
+        if (!(fLow > 0)) {
+            throw new IllegalArgumentException("log chirp must start above 0 Hz: " + fLow);
+        }
+        double duration = steps / rateHz;
+        double rise = duration / Math.log(fHigh / fLow);
+        float[][] signal = new float[steps][motors];
+        for (int t = 0; t < steps; t++) {
+            double time = t / rateHz;
+            float value = (float) (amplitude * Math.sin(2 * Math.PI * fLow * rise * (Math.exp(time / rise) - 1)));
+            for (int m = 0; m < motors; m++) {
+                signal[(int) ((t + (long) m * steps / motors) % steps)][m] = value;
+            }
+        }
+        return signal;
+    }
+
+    /**
+     * Power spectrum of one motor's signal, from FastFourierTransformer. The
+     * signal is zero padded to a power of two, so only with a power of two
+     * steps are the bins those of the signal's period.
+     * @return power of bins 0 to n/2, bin b being b * rateHz / n for padded length n
+     */
+    public static double[] powerSpectrum(float[][] signal, int motor) {
+        int n = Integer.highestOneBit(Math.max(1, signal.length));
+        if (n < signal.length) {
+            n <<= 1;
+        }
+        double[] x = new double[n];
+        for (int t = 0; t < signal.length; t++) {
+            x[t] = signal[t][motor];
+        }
+        Complex[] spectrum = new FastFourierTransformer(DftNormalization.STANDARD).transform(x, TransformType.FORWARD);
+        double[] power = new double[n / 2 + 1];
+        for (int b = 0; b < power.length; b++) {
+            double re = spectrum[b].getReal();
+            double im = spectrum[b].getImaginary();
+            power[b] = (re * re + im * im) / ((double) n * n);
+        }
+        return power;
+    }
+
+    /**
+     * Fraction of the power of one motor's signal, leaving out its mean, that
+     * lies between fLow and fHigh.
+     */
+    public static double bandFraction(float[][] signal, int motor, double rateHz, double fLow, double fHigh) {
+        double[] power = powerSpectrum(signal, motor);
+        int n = 2 * (power.length - 1);
+        double inBand = 0;
+        double total = 0;
+        for (int b = 1; b < power.length; b++) {
+            double f = b * rateHz / n;
+            total += power[b];
+            if (f >= fLow && f <= fHigh) {
+                inBand += power[b];
+            }
+        }
+        return total == 0 ? 0 : inBand / total;
+    }
+
+    /**
+     * Peak over RMS of one motor's signal, 1 for a square wave and about 1.4
+     * for a sine; lower means more power for the same peak.
+     */
+    public static double crestFactor(float[][] signal, int motor) {
+        double peak = 0;
+        double sum = 0;
+        for (float[] row : signal) {
+            peak = Math.max(peak, Math.abs(row[motor]));
+            sum += row[motor] * row[motor];
+        }
+        return sum == 0 ? 0 : peak / Math.sqrt(sum / signal.length);
+    }
+
+    private static void scale(double[] x, float amplitude, float[][] signal, int motor) {
+        double peak = 0;
+        for (double v : x) {
+            peak = Math.max(peak, Math.abs(v));
+        }
+        double gain = peak == 0 ? 0 : amplitude / peak;
+        for (int t = 0; t < x.length; t++) {
+            signal[t][motor] = (float) (x[t] * gain);
+        }
+    }
+
+    private static void checkBand(int steps, int motors, double rateHz, double fLow, double fHigh) {
+        if (steps < 1 || motors < 1) {
+            throw new IllegalArgumentException(steps + " steps for " + motors + " motors");
+        }
+        if (!(rateHz > 0) || fLow < 0 || !(fHigh > fLow) || fHigh > rateHz / 2) {
+            throw new IllegalArgumentException("band " + fLow + " to " + fHigh + " Hz at " + rateHz
+                                               + " Hz sample rate");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed-record binary log of an experiment, written through a memory-mapped
+ * file so appending a record is a handful of stores with no allocation and
+ * no system call.
+ *
+ * Every record holds a System.nanoTime() timestamp, the position and
+ * velocity of each encoder and the commanded power of each motor. The file
+ * is laid out by column: a 64 byte header followed by one region of
+ * capacity values per column (the times as longs, then the positions,
+ * velocities and powers as doubles, all little-endian). That way
+ * ExperimentLogReader can hand out each column as a buffer view without
+ * copying. The whole file is sized up front, so the log never grows on the
+ * heap; appends past the capacity are dropped and counted.
+ *
+ * The record count in the header is written after each record's values, so
+ * the file always describes complete records. The mapping is forced to disk
+ * every forceNanos and on close().
+ *
+ * Only one thread may append.
+ */
+public class ExperimentLog {
+
+    static final int MAGIC = 0x5359534C; //"SYSL"
+    static final int VERSION = 1;
+    static final int HEADER = 64;
+    //Header fields
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int ENCODERS_OFFSET = 8;
+    static final int MOTORS_OFFSET = 12;
+    static final int CAPACITY_OFFSET = 16;
+    static final int COUNT_OFFSET = 24;
+
+    //Force at least this often by default
+    public static final long DEFAULT_FORCE_NANOS = 1000000000;
+
+    private final MappedByteBuffer map;
+    private final int encoders;
+    private final int motors;
+    private final int capacity;
+    private final long forceNanos;
+    private int count = 0;
+    private long dropped = 0;
+    private long lastForce;
+    private boolean closed = false;
+
+    /**
+     * Column regions start at HEADER + column * capacity * 8. Column 0 holds
+     * the times, then come the positions, velocities and powers.
+     */
+    static long columnOffset(int column, int capacity) {
+        return HEADER + (long) column * capacity * 8;
+    }
+
+    static int columns(int encoders, int motors) {
+        return 1 + 2 * encoders + motors;
+    }
+
+    public ExperimentLog(String file, int encoders, int motors, int capacity) throws IOException {
+        this(file, encoders, motors, capacity, DEFAULT_FORCE_NANOS);
+    }
+
+    /**
+     * Create the log, replacing any existing file.
+     * @param file path of the log
+     * @param encoders encoders per record
+     * @param motors motor powers per record
+     * @param capacity most records the log will hold
+     * @param forceNanos flush to disk at least this often while appending
+     */
+    public ExperimentLog(String file, int encoders, int motors, int capacity, long forceNanos) throws IOException {
+        if (encoders < 0 || motors < 0 || capacity < 1) {
+            throw new IllegalArgumentException("bad log shape: " + encoders + " encoders, "
+                                               + motors + " motors, " + capacity + " records");
+        }
+        long size = columnOffset(columns(encoders, motors), capacity);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("log of " + capacity + " records is too big to map");
+        }
+        this.encoders = encoders;
+        this.motors = motors;
+        this.capacity = capacity;
+        this.forceNanos = forceNanos;
+
+        new File(file).delete();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            //The mapping stays valid after the channel is closed
+            raf.close();
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        map.putInt(MAGIC_OFFSET, MAGIC);
+        map.putInt(VERSION_OFFSET, VERSION);
+        map.putInt(ENCODERS_OFFSET, encoders);
+        map.putInt(MOTORS_OFFSET, motors);
+        map.putLong(CAPACITY_OFFSET, capacity);
+        map.putLong(COUNT_OFFSET, 0);
+        lastForce = System.nanoTime();
+    }
+
+    public int getEncoders() {
+        return encoders;
+    }
+
+    public int getMotors() {
+        return motors;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of records written.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Number of records dropped because the log was full.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Append one record.
+     * @param time System.nanoTime() of the sample
+     * @param positions one per encoder
+     * @param velocities one per encoder
+     * @param powers one per motor
+     * @return false if the log is full and the record was dropped
+     */
+    public boolean append(long time, double[] positions, double[] velocities, float[] powers) {
+        if (closed) {
+            throw new IllegalStateException("log is closed");
+        }
+        if (positions.length != encoders || velocities.length != encoders || powers.length != motors) {
+            throw new IllegalArgumentException("record does not match " + encoders + " encoders and "
+                                               + motors + " motors");
+        }
+        if (count == capacity) {
+            dropped++;
+            return false;
+        }
+        long offset = (long) count * 8;
+        int column = 0;
+        map.putLong((int) (columnOffset(column++, capacity) + offset), time);
+        for (int i = 0; i < encoders; i++) {
+            map.putDouble((int) (columnOffset(column++, capacity) + offset), positions[i]);
+        }
+        for (int i = 0; i < encoders; i++) {
+            map.putDouble((int) (columnOffset(column++, capacity) + offset), velocities[i]);
+        }
+        for (int i = 0; i < motors; i++) {
+            map.putDouble((int) (columnOffset(column++, capacity) + offset), powers[i]);
+        }
+        count++;
+        map.putLong(COUNT_OFFSET, count);
+
+        if (time - lastForce >= forceNanos) {
+            force();
+        }
+        return true;
+    }
+
+    /**
+     * Write the records so far to disk.
+     */
+    public void force() {
+        map.force();
+        lastForce = System.nanoTime();
+    }
+
+    /**
+     * Force the log to disk and stop appending. The file keeps its full
+     * capacity; readers only look at the records counted in the header.
+     */
+    public void close() {
+        if (closed) return;
+        force();
+        closed = true;
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only view of a log written by ExperimentLog.
+ *
+ * The file is mapped and every column is handed out as a buffer over the
+ * mapping, limited to the records written, so nothing is copied until a
+ * caller asks for an array. Columns are indexed by encoder or motor number.
+ *
+ * The record count is read when the log is opened; records appended later
+ * by a writer that is still running are not seen.
+ */
+public class ExperimentLogReader {
+
+    private final MappedByteBuffer map;
+    private final int encoders;
+    private final int motors;
+    private final int capacity;
+    private final int count;
+
+    public ExperimentLogReader(String file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length < ExperimentLog.HEADER) {
+                throw new IOException(file + " is not an experiment log");
+            }
+            map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            raf.close();
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.getInt(ExperimentLog.MAGIC_OFFSET) != ExperimentLog.MAGIC) {
+            throw new IOException(file + " is not an experiment log");
+        }
+        int version = map.getInt(ExperimentLog.VERSION_OFFSET);
+        if (version != ExperimentLog.VERSION) {
+            throw new IOException(file + " has unsupported log version " + version);
+        }
+        encoders = map.getInt(ExperimentLog.ENCODERS_OFFSET);
+        motors = map.getInt(ExperimentLog.MOTORS_OFFSET);
+        capacity = (int) map.getLong(ExperimentLog.CAPACITY_OFFSET);
+        count = (int) map.getLong(ExperimentLog.COUNT_OFFSET);
+        long needed = ExperimentLog.columnOffset(ExperimentLog.columns(encoders, motors), capacity);
+        if (encoders < 0 || motors < 0 || count < 0 || count > capacity || map.capacity() < needed) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+    }
+
+    public int getEncoders() {
+        return encoders;
+    }
+
+    public int getMotors() {
+        return motors;
+    }
+
+    /**
+     * Number of records in the log.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * System.nanoTime() of every record.
+     */
+    public LongBuffer times() {
+        return column(0).asLongBuffer();
+    }
+
+    public DoubleBuffer position(int encoder) {
+        checkIndex(encoder, encoders);
+        return column(1 + encoder).asDoubleBuffer();
+    }
+
+    public DoubleBuffer velocity(int encoder) {
+        checkIndex(encoder, encoders);
+        return column(1 + encoders + encoder).asDoubleBuffer();
+    }
+
+    public DoubleBuffer power(int motor) {
+        checkIndex(motor, motors);
+        return column(1 + 2 * encoders + motor).asDoubleBuffer();
+    }
+
+    /**
+     * Copy a column into an array, for APIs that only take double[].
+     * @param column a column from position(), velocity() or power()
+     * @param out receives the values, allocated if null or too short
+     * @return out, or the array allocated
+     */
+    public static double[] toArray(DoubleBuffer column, double[] out) {
+        DoubleBuffer values = column.duplicate();
+        if (out == null || out.length < values.remaining()) {
+            out = new double[values.remaining()];
+        }
+        values.get(out, 0, values.remaining());
+        return out;
+    }
+
+    private ByteBuffer column(int column) {
+        ByteBuffer view = map.duplicate();
+        int start = (int) ExperimentLog.columnOffset(column, capacity);
+        view.limit(start + count * 8);
+        view.position(start);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index + " not in [0, " + size + ")");
+        }
+    }
+}
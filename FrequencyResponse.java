@@ -0,0 +1,345 @@
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Frequency response of a system from a recorded input and output, by
+ * Welch's method.
+ *
+ * Samples are fed in as they are read and kept only for the current
+ * segment, so a log of any length is analysed in constant memory. Every
+ * half segment the last segment of input and output is detrended, Hann
+ * windowed and transformed with FastFourierTransformer, and the input and
+ * output auto-spectra and their cross-spectrum are added to running sums.
+ * The estimate is H1 = Suy / Suu, which is unbiased by noise on the output,
+ * and the coherence |Suy|^2 / (Suu Syy) tells how much of the output the
+ * input explains at each frequency.
+ *
+ * fit() fits a rational transfer function to the estimate by weighted
+ * linear least squares with Sanathanan-Koerner iterations. Errors are taken
+ * relative to the measured gain and weighted by the coherence.
+ *
+ * Usage: java FrequencyResponse log [motor] [encoder] [segment] [poles] [zeros]
+ * analyses an ExperimentLog, from one motor's power to one encoder's
+ * velocity, and fits a first order model by default.
+ */
+public class FrequencyResponse {
+
+    //Sanathanan-Koerner reweightings after the first linear fit
+    private static final int iterations = 10;
+
+    private final int segment;
+    private final int hop;
+    private final double rateHz;
+    private final double[] window;
+    private final FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
+
+    //The last segment of samples, as rings
+    private final double[] inputs;
+    private final double[] outputs;
+    private long samples = 0;
+    private int segments = 0;
+    //Work arrays for one segment
+    private final double[] u;
+    private final double[] y;
+
+    //Sums over segments of the spectra, bins 0 to segment / 2
+    private final double[] suu;
+    private final double[] syy;
+    private final double[] suyRe;
+    private final double[] suyIm;
+
+    /**
+     * @param segment samples per segment, a power of two; the frequency
+     *        resolution is rateHz / segment
+     * @param rateHz sample rate
+     */
+    public FrequencyResponse(int segment, double rateHz) {
+        if (segment < 4 || Integer.bitCount(segment) != 1) {
+            throw new IllegalArgumentException("segment must be a power of two of at least 4: " + segment);
+        }
+        if (!(rateHz > 0)) {
+            throw new IllegalArgumentException("sample rate must be positive: " + rateHz);
+        }
+        this.segment = segment;
+        this.hop = segment / 2;
+        this.rateHz = rateHz;
+        window = new double[segment];
+        for (int i = 0; i < segment; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / segment);
+        }
+        inputs = new double[segment];
+        outputs = new double[segment];
+        u = new double[segment];
+        y = new double[segment];
+        int bins = segment / 2 + 1;
+        suu = new double[bins];
+        syy = new double[bins];
+        suyRe = new double[bins];
+        suyIm = new double[bins];
+    }
+
+    /**
+     * Add one sample of input and output.
+     */
+    public void add(double input, double output) {
+        int i = (int) (samples % segment);
+        inputs[i] = input;
+        outputs[i] = output;
+        samples++;
+        if (samples >= segment && (samples - segment) % hop == 0) {
+            accumulate();
+        }
+    }
+
+    /**
+     * Add the samples remaining in two buffers, as many as the shorter has.
+     * The buffers' positions are not moved.
+     */
+    public void add(DoubleBuffer input, DoubleBuffer output) {
+        int n = Math.min(input.remaining(), output.remaining());
+        int i0 = input.position();
+        int o0 = output.position();
+        for (int k = 0; k < n; k++) {
+            add(input.get(i0 + k), output.get(o0 + k));
+        }
+    }
+
+    /**
+     * Transform the segment just completed and add it to the sums.
+     */
+    private void accumulate() {
+        int start = (int) (samples % segment);
+        for (int k = 0; k < segment; k++) {
+            u[k] = inputs[(start + k) % segment];
+            y[k] = outputs[(start + k) % segment];
+        }
+        detrend(u);
+        detrend(y);
+        for (int k = 0; k < segment; k++) {
+            u[k] *= window[k];
+            y[k] *= window[k];
+        }
+        Complex[] uf = fft.transform(u, TransformType.FORWARD);
+        Complex[] yf = fft.transform(y, TransformType.FORWARD);
+        for (int b = 0; b < suu.length; b++) {
+            double ur = uf[b].getReal();
+            double ui = uf[b].getImaginary();
+            double yr = yf[b].getReal();
+            double yi = yf[b].getImaginary();
+            suu[b] += ur * ur + ui * ui;
+            syy[b] += yr * yr + yi * yi;
+            //conj(U) Y
+            suyRe[b] += ur * yr + ui * yi;
+            suyIm[b] += ur * yi - ui * yr;
+        }
+        segments++;
+    }
+
+    /**
+     * Remove the least squares line from a segment.
+     */
+    private static void detrend(double[] x) {
+        int n = x.length;
+        double mean = 0;
+        for (double v : x) {
+            mean += v;
+        }
+        mean /= n;
+        double c = (n - 1) / 2.0;
+        double sxy = 0;
+        double sxx = 0;
+        for (int k = 0; k < n; k++) {
+            sxy += (k - c) * (x[k] - mean);
+            sxx += (k - c) * (k - c);
+        }
+        double slope = sxy / sxx;
+        for (int k = 0; k < n; k++) {
+            x[k] -= mean + slope * (k - c);
+        }
+    }
+
+    /**
+     * Number of segments averaged so far.
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * Number of frequency bins, segment / 2 + 1.
+     */
+    public int size() {
+        return suu.length;
+    }
+
+    /**
+     * Frequency of a bin, Hz.
+     */
+    public double frequency(int bin) {
+        return bin * rateHz / segment;
+    }
+
+    /**
+     * H1 estimate of the response at a bin, zero where the input has no power.
+     */
+    public Complex response(int bin) {
+        if (suu[bin] == 0) {
+            return Complex.ZERO;
+        }
+        return new Complex(suyRe[bin] / suu[bin], suyIm[bin] / suu[bin]);
+    }
+
+    /**
+     * Coherence at a bin, from 0 (output unrelated to input) to 1.
+     */
+    public double coherence(int bin) {
+        double d = suu[bin] * syy[bin];
+        if (d == 0) {
+            return 0;
+        }
+        return (suyRe[bin] * suyRe[bin] + suyIm[bin] * suyIm[bin]) / d;
+    }
+
+    /**
+     * Average input power at a bin, relative between bins.
+     */
+    public double inputPower(int bin) {
+        return segments == 0 ? 0 : suu[bin] / segments;
+    }
+
+    /**
+     * Fit N(s) / D(s) with D monic of degree poles, so a pole at 0 such as a
+     * position output has can be fitted, to the bins from fLow to fHigh Hz.
+     * @param poles degree of the denominator, at least 1
+     * @param zeros degree of the numerator
+     * @throws IllegalStateException if the band has too few usable bins
+     */
+    public TransferFunction fit(int poles, int zeros, double fLow, double fHigh) {
+        if (poles < 1 || zeros < 0) {
+            throw new IllegalArgumentException(poles + " poles, " + zeros + " zeros");
+        }
+        int first = Math.max(1, (int) Math.ceil(fLow * segment / rateHz));
+        int last = Math.min(suu.length - 1, (int) Math.floor(fHigh * segment / rateHz));
+        int used = 0;
+        for (int b = first; b <= last; b++) {
+            if (suu[b] > 0 && coherence(b) > 0 && suyRe[b] * suyRe[b] + suyIm[b] * suyIm[b] > 0) {
+                used++;
+            }
+        }
+        int unknowns = zeros + 1 + poles;
+        if (2 * used < unknowns) {
+            throw new IllegalStateException(used + " usable bins between " + fLow + " and " + fHigh
+                                            + " Hz for " + unknowns + " coefficients");
+        }
+
+        //Fit in s / scale so the powers of s stay near 1
+        double scale = 2 * Math.PI * frequency(last);
+        double[] den = new double[poles + 1];
+        den[poles] = 1;
+        double[] num = new double[zeros + 1];
+        double[][] a = new double[2 * used][unknowns];
+        double[] rhs = new double[2 * used];
+        for (int iteration = 0; iteration <= iterations; iteration++) {
+            int row = 0;
+            for (int b = first; b <= last; b++) {
+                double gamma = coherence(b);
+                if (suu[b] == 0 || gamma == 0 || suyRe[b] * suyRe[b] + suyIm[b] * suyIm[b] == 0) {
+                    continue;
+                }
+                double x = 2 * Math.PI * frequency(b) / scale;
+                Complex h = response(b);
+                //Relative error, so the large low frequency gains do not swamp the rest,
+                //and the SK weight 1 / |D(jx)| from the last fit, none the first time
+                double weight = Math.sqrt(gamma) / h.abs();
+                if (iteration > 0) {
+                    weight /= TransferFunction.polynomial(den, x).abs();
+                }
+                //e = N(jx) - H (D(jx) - (jx)^n) - H (jx)^n
+                Complex power = Complex.ONE;
+                Complex jx = new Complex(0, x);
+                for (int k = 0; k <= Math.max(zeros, poles); k++) {
+                    if (k <= zeros) {
+                        a[row][k] = weight * power.getReal();
+                        a[row + 1][k] = weight * power.getImaginary();
+                    }
+                    if (k < poles) {
+                        Complex c = h.multiply(power).negate();
+                        a[row][zeros + 1 + k] = weight * c.getReal();
+                        a[row + 1][zeros + 1 + k] = weight * c.getImaginary();
+                    }
+                    if (k == poles) {
+                        Complex c = h.multiply(power);
+                        rhs[row] = weight * c.getReal();
+                        rhs[row + 1] = weight * c.getImaginary();
+                    }
+                    power = power.multiply(jx);
+                }
+                row += 2;
+            }
+            RealVector solution = new QRDecomposition(new Array2DRowRealMatrix(a, false)).getSolver()
+                .solve(new ArrayRealVector(rhs, false));
+            for (int k = 0; k <= zeros; k++) {
+                num[k] = solution.getEntry(k);
+            }
+            for (int k = 0; k < poles; k++) {
+                den[k] = solution.getEntry(zeros + 1 + k);
+            }
+        }
+
+        //Back to s: multiplying through by scale^poles gives a monic denominator
+        double[] numerator = new double[zeros + 1];
+        double[] denominator = new double[poles + 1];
+        for (int k = 0; k <= zeros; k++) {
+            numerator[k] = num[k] * Math.pow(scale, poles - k);
+        }
+        for (int k = 0; k <= poles; k++) {
+            denominator[k] = den[k] * Math.pow(scale, poles - k);
+        }
+        return new TransferFunction(numerator, denominator);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java FrequencyResponse log [motor] [encoder] [segment] [poles] [zeros]");
+            System.exit(1);
+        }
+        int motor = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int encoder = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int segment = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        int poles = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        int zeros = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+
+        ExperimentLogReader log = new ExperimentLogReader(args[0]);
+        LongBuffer times = log.times();
+        if (log.size() < segment) {
+            System.out.println(args[0] + " has " + log.size() + " records, fewer than one segment");
+            System.exit(1);
+        }
+        double rateHz = (log.size() - 1) * 1e9 / (times.get(log.size() - 1) - times.get(0));
+        FrequencyResponse response = new FrequencyResponse(segment, rateHz);
+        response.add(log.power(motor), log.velocity(encoder));
+
+        System.out.format("%d records at %.2f Hz, %d segments%n", log.size(), rateHz, response.getSegments());
+        System.out.println("     Hz       gain  phase deg  coherence");
+        for (int b = 1; b < response.size(); b++) {
+            Complex h = response.response(b);
+            System.out.format("%7.3f %10.4g %10.1f %10.3f%n", response.frequency(b), h.abs(),
+                              Math.toDegrees(h.getArgument()), response.coherence(b));
+        }
+        TransferFunction model = response.fit(poles, zeros, 0, rateHz / 2);
+        System.out.println("Fit: " + model);
+        System.out.println("DC gain " + model.getDcGain());
+        for (Complex pole : model.getPoles()) {
+            System.out.println("Pole " + pole);
+        }
+    }
+}
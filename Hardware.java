@@ -0,0 +1,49 @@
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.i2c.I2CDevice;
+import java.io.IOException;
+
+/**
+ * Everything the rig programs use outside the JVM: the clock, GPIO pins and
+ * the I2C devices of the HATs. PiHardware talks to the Raspberry Pi through
+ * Pi4J; SimHardware stands in for it on any machine. Programs get the
+ * hardware in use from Rig.get().
+ */
+public interface Hardware extends Clock {
+
+    /**
+     * Told about every level change of an input.
+     */
+    interface EdgeListener {
+        /**
+         * @param high the new level
+         * @param nanos clock time of the edge
+         */
+        void edge(boolean high, long nanos);
+    }
+
+    interface Input {
+        boolean isHigh();
+        void addListener(EdgeListener listener);
+        void removeListener(EdgeListener listener);
+    }
+
+    interface Output {
+        void high();
+        void low();
+    }
+
+    /**
+     * Provision a GPIO input. Each pin may only be provisioned once.
+     */
+    Input input(Pin pin);
+
+    /**
+     * Provision a GPIO output, initially low. Each pin may only be provisioned once.
+     */
+    Output output(Pin pin);
+
+    /**
+     * The device at an address on the HAT I2C bus, for the AdafruitHat constructors.
+     */
+    I2CDevice i2c(int address) throws IOException;
+}
@@ -3,7 +3,7 @@ import com.pi4j.component.adafruithat.AdafruitMotorHat;
 
 public class MotorPower {
     public static void main (String[] args) {
-	AdafruitMotorHat motorHat = new AdafruitMotorHat(0X60);
+	AdafruitMotorHat motorHat = new AdafruitMotorHat(Rig.bus(), 0X60);
 	AdafruitDcMotor motor = motorHat.getDcMotor("M3");
 	float motorMax = 100.0f;
 	motor.setPowerRange(motorMax);
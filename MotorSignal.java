@@ -1,25 +1,101 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Power command for a set of motors, published as whole frames.
+ *
+ * There are two frame buffers. A writer fills the one readers are not
+ * using and then bumps the generation, which flips them. A reader copies
+ * the current frame and checks the generation did not move meanwhile,
+ * retrying if it did, so it always gets one writer's complete vector
+ * without taking a lock. Frames equal to the current one are not
+ * published at all, so the generation only moves when the command really
+ * changes and readers can skip work with changedSince().
+ *
+ * Values are kept as float bits in an AtomicIntegerArray so every element
+ * access is ordered against the generation.
+ */
 public class MotorSignal {
 
-    private float[] motorPower;
+    private final int n;
+    //Frame g & 1 is current, the other one is filled by the next publish
+    private final AtomicIntegerArray frames;
+    private volatile long generation = 0;
 
     public MotorSignal(int n) {
-	motorPower = new float[n];
-	for(int i = 0; i < n; i++) {
-	    motorPower[i] = 0;
+	this.n = n;
+	frames = new AtomicIntegerArray(2 * n);
+	int zero = Float.floatToIntBits(0f);
+	for(int i = 0; i < 2 * n; i++) {
+	    frames.set(i, zero);
 	}
     }
 
+    public int size() {
+	return n;
+    }
+
+    /**
+     * Publish new powers, clamped to +/-99.9. Motors past the end of power
+     * keep their current command.
+     */
     public synchronized void setPower(float[] power) {
-	for(int i = 0; i < power.length && i < motorPower.length; i++) {
-	    float temp = power[i];
-	    temp = temp > 99.9f ? 99.9f : (temp < -99.9f ? -99.9f : temp);
-	    motorPower[i] = temp;
+	long g = generation;
+	int front = (int) (g & 1) * n;
+	int back = n - front;
+	boolean changed = false;
+	for(int i = 0; i < n; i++) {
+	    int bits = frames.get(front + i);
+	    if(i < power.length) {
+		float temp = power[i];
+		temp = temp > 99.9f ? 99.9f : (temp < -99.9f ? -99.9f : temp);
+		int next = Float.floatToIntBits(temp);
+		changed |= next != bits;
+		bits = next;
+	    }
+	    frames.set(back + i, bits);
+	}
+	if(changed) {
+	    generation = g + 1;
 	}
     }
 
-    public synchronized float[] getPower() {
-	return motorPower;
+    /**
+     * Copy the current powers.
+     * @param out receives one power per motor
+     * @return generation of the copied frame
+     */
+    public long getPower(float[] out) {
+	while(true) {
+	    long g = generation;
+	    int front = (int) (g & 1) * n;
+	    for(int i = 0; i < n; i++) {
+		out[i] = Float.intBitsToFloat(frames.get(front + i));
+	    }
+	    if(generation == g) return g;
+	}
+    }
+
+    /**
+     * A copy of the current powers.
+     */
+    public float[] getPower() {
+	float[] out = new float[n];
+	getPower(out);
+	return out;
+    }
+
+    /**
+     * Generation of the current frame, it moves every time the powers change.
+     */
+    public long getGeneration() {
+	return generation;
+    }
+
+    /**
+     * Whether the powers changed since the frame of the given generation.
+     */
+    public boolean changedSince(long seen) {
+	return generation != seen;
     }
 
 }
-	    
@@ -0,0 +1,97 @@
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioFactory;
+import com.pi4j.io.gpio.GpioPinDigitalInput;
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
+import com.pi4j.io.gpio.event.GpioPinListenerDigital;
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import com.pi4j.io.i2c.I2CFactory;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Raspberry Pi, through Pi4J. The GPIO controller and the I2C bus are
+ * only opened when a pin or device is first asked for, so the clock can be
+ * used anywhere.
+ */
+public class PiHardware implements Hardware {
+
+    private GpioController gpio;
+    private I2CBus bus;
+
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    public void sleepUntil(long deadline, long spinNanos) {
+        ControlLoop.sleepUntil(deadline, spinNanos);
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    private synchronized GpioController gpio() {
+        if (gpio == null) {
+            gpio = GpioFactory.getInstance();
+        }
+        return gpio;
+    }
+
+    public Input input(Pin pin) {
+        final GpioPinDigitalInput in = gpio().provisionDigitalInputPin(pin);
+        return new Input() {
+            //Pi4J listeners wrapping ours, so they can be removed again
+            private final Map<EdgeListener, GpioPinListenerDigital> wrappers =
+                new HashMap<EdgeListener, GpioPinListenerDigital>();
+
+            public boolean isHigh() {
+                return in.isHigh();
+            }
+
+            public synchronized void addListener(final EdgeListener listener) {
+                GpioPinListenerDigital wrapper = new GpioPinListenerDigital() {
+                        public void handleGpioPinDigitalStateChangeEvent(GpioPinDigitalStateChangeEvent event) {
+                            //Pi4J events carry no time, stamp them on arrival
+                            listener.edge(event.getState().isHigh(), System.nanoTime());
+                        }
+                    };
+                wrappers.put(listener, wrapper);
+                in.addListener(wrapper);
+            }
+
+            public synchronized void removeListener(EdgeListener listener) {
+                GpioPinListenerDigital wrapper = wrappers.remove(listener);
+                if (wrapper != null) in.removeListener(wrapper);
+            }
+        };
+    }
+
+    public Output output(Pin pin) {
+        final GpioPinDigitalOutput out = gpio().provisionDigitalOutputPin(pin, PinState.LOW);
+        return new Output() {
+            public void high() {
+                out.high();
+            }
+
+            public void low() {
+                out.low();
+            }
+        };
+    }
+
+    public synchronized I2CDevice i2c(int address) throws IOException {
+        if (bus == null) {
+            try {
+                bus = I2CFactory.getInstance(I2CBus.BUS_1);
+            } catch (I2CFactory.UnsupportedBusNumberException e) {
+                throw new IOException("I2C bus 1 is not available", e);
+            }
+        }
+        return bus.getDevice(address);
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table driven decoder for a quadrature encoder's A and B phases.
+ *
+ * The two phase levels form a 2-bit state (A is the high bit). Going
+ * 00 -> 10 -> 11 -> 01 -> 00 counts up, the reverse counts down. Jumping
+ * between opposite states (both phases changed at once) means an edge was
+ * missed; it is counted as an illegal transition and the position is left
+ * alone because the direction cannot be known.
+ *
+ * update() may be called from several threads at once, e.g. from the GPIO
+ * listeners of both phases.
+ */
+public class QuadratureDecoder {
+
+    //Marks a transition where both phases changed
+    private static final int ILLEGAL = 2;
+
+    //Position change indexed by (previous state << 2) | new state
+    private static final int[] TRANSITIONS = {
+        //to: 00       01       10       11
+        0,       -1,      +1,      ILLEGAL, //from 00
+        +1,      0,       ILLEGAL, -1,      //from 01
+        -1,      ILLEGAL, 0,       +1,      //from 10
+        ILLEGAL, +1,      -1,      0,       //from 11
+    };
+
+    private final AtomicInteger state = new AtomicInteger(0);
+    private final AtomicLong position = new AtomicLong(0);
+    private final AtomicLong illegal = new AtomicLong(0);
+
+    public static int state(boolean a, boolean b) {
+        return (a ? 2 : 0) | (b ? 1 : 0);
+    }
+
+    public void update(boolean a, boolean b) {
+        update(state(a, b));
+    }
+
+    /**
+     * Move to a new phase state.
+     * @param next (A << 1) | B
+     */
+    public void update(int next) {
+        while (true) {
+            int prev = state.get();
+            if (prev == next) return;
+            if (state.compareAndSet(prev, next)) {
+                int delta = TRANSITIONS[(prev << 2) | next];
+                if (delta == ILLEGAL) illegal.incrementAndGet();
+                else position.addAndGet(delta);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start decoding from the given phase levels without counting a move.
+     */
+    public void reset(boolean a, boolean b) {
+        state.set(state(a, b));
+        position.set(0);
+        illegal.set(0);
+    }
+
+    public long getPosition() {
+        return position.get();
+    }
+
+    public long getIllegalTransitions() {
+        return illegal.get();
+    }
+}
@@ -1,70 +1,61 @@
 public class Readout {
 
-    private double val;
-    private double[] valList;
-    private double[] timeList;
-    private int loopInd;
-    private long start;
-    private final double muPS = 1000000;
-    private double zero;
-    
-    public Readout(int history) {
-	val = 0;
-	loopInd = 0;
-	start = System.nanoTime() / 1000;
-	valList = new double[history];
-	timeList = new double[history];
-	for(int i = 0; i < history; i++) {
-	    timeList[i] = 0;
-	    valList[i] = 0;
+    private final SampleRing samples;
+    private final Clock clock = Rig.get();
+    private final double nanosPerSecond = 1000000000;
+    //Raw value read as zero and the time it was set, samples before it are ignored
+    private volatile double zero;
+    private volatile long start;
+    //Holders for getVal and getDeriv, one pair per reading thread so reads do not allocate
+    private final ThreadLocal<SampleRing.Sample[]> holders = new ThreadLocal<SampleRing.Sample[]>() {
+	@Override
+	protected SampleRing.Sample[] initialValue() {
+	    return new SampleRing.Sample[] { new SampleRing.Sample(), new SampleRing.Sample() };
 	}
+    };
+
+    public Readout(int history) {
+	samples = new SampleRing(history);
+	start = clock.nanoTime();
     }
 
-    public synchronized void reset() {
-	zero = val;
-	start = System.nanoTime() / 1000;
-	for(int i = 0; i < valList.length; i++) {
-	    timeList[i] = 0;
-	    valList[i] = 0;
-	}
-	val = 0;
+    public void reset() {
+	zero += getVal();
+	start = clock.nanoTime();
     }
 
-    public synchronized void setVal(double inVal) {
-	inVal = inVal - zero;
-	val = inVal;
-	loopInd = loopInd == valList.length - 1 ? 0 : loopInd + 1;
-	valList[loopInd] = inVal;
-	timeList[loopInd] = getSecTime();
+    /**
+     * Record a new reading. Must only be called from one thread.
+     */
+    public void setVal(double inVal) {
+	samples.add(clock.nanoTime(), inVal);
     }
 
-    public synchronized double getVal() {
-	return val;
+    public double getVal() {
+	SampleRing.Sample now = holders.get()[0];
+	if(!samples.getLatest(now) || now.time - start < 0) return 0;
+	return now.value - zero;
     }
 
-    public synchronized double getDeriv(double tStep){
-	boolean found = false;
-        double t = getSecTime();
-	double prevTime = 0;
-	double prevVal = 0;
-        for(int i = loopInd - 1; i != loopInd && !found; i--) {
-	    if(i == -1) i = valList.length - 1;
-	    if(timeList[i] < t - tStep) {
-		found = true;
-		prevTime = timeList[i];
-		prevVal = valList[i];
-	    }
+    /**
+     * Rate of change over roughly the last tStep seconds, in units per second.
+     */
+    public double getDeriv(double tStep){
+	long t = clock.nanoTime();
+	SampleRing.Sample[] held = holders.get();
+	SampleRing.Sample now = held[0];
+	SampleRing.Sample prev = held[1];
+	if(!samples.getLatest(now) || now.time - start < 0) return 0;
+	boolean found = samples.getAtOrBefore(t - (long) (tStep * nanosPerSecond), prev);
+	if(!found) {
+	    samples.getOldest(prev);
 	}
-	if(found) {
-	    return (val - prevVal) / (getSecTime() - prevTime);
-	} else {
-	    int quet = loopInd == valList.length - 1 ? 0 : loopInd + 1;
-	    return (val - valList[quet]) / (getSecTime() - timeList[quet]);
+	if(prev.time - start < 0) {
+	    //Everything that old predates the last reset
+	    prev.time = start;
+	    prev.value = now.value;
 	}
-    }            
-
-    private double getSecTime() {
-	long currTime = (System.nanoTime() / 1000) - start;
-	return (double) currTime / muPS;
+	if(t == prev.time) return 0;
+	return (now.value - prev.value) / ((t - prev.time) / nanosPerSecond);
     }
 }
@@ -0,0 +1,250 @@
+package com.pi4j.component.adafruithat;
+/*
+ * #%L
+ * **********************************************************************
+ * ORGANIZATION  :  Pi4J
+ * PROJECT       :  Pi4J :: Java Library (Core)
+ * FILENAME      :  RecordingI2CDevice.java
+ *
+ * This file is part of the Pi4J project. More information about
+ * this project can be found here:  http://www.pi4j.com/
+ * **********************************************************************
+ * %%
+ * Copyright (C) 2012 - 2016 Pi4J
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * A fake I2C device that stands in for the PCA9685 chip of an Adafruit HAT when
+ * no Raspberry Pi is available. Register writes are kept in a 256 byte register
+ * map and every I2C transaction is counted, so the bus traffic produced by the
+ * motor and servo classes can be checked off-device.
+ * <p>
+ * The register map follows the PCA9685 Product Data Sheet, Rev 4 - 16 April 2015:
+ * block writes advance the register address only when the MODE1 auto-increment
+ * bit is set, and writes to the ALL_LED registers are copied to all 16 LED PWMs.
+ * <p>
+ * Example:
+ * <pre>
+ * RecordingI2CDevice device = new RecordingI2CDevice(0X60);
+ * AdafruitMotorHat motorHat = new AdafruitMotorHat(device);
+ * AdafruitDcMotor motor = motorHat.getDcMotor("M3");
+ * device.reset();
+ * motor.speed(0.5f);
+ * System.out.println(device.getTransactions()); //1 transaction, 12 bytes
+ * </pre>
+ *
+ * @see com.pi4j.component.adafruithat.AdafruitHat
+ */
+public class RecordingI2CDevice implements I2CDevice {
+
+	//PCA9685 register addresses used by the fake device, see AdafruitHat
+	private static final int MODE1        = 0X00;
+	private static final int LED0_ON_L    = 0X06;
+	private static final int ALL_LED_ON_L = 0XFA;
+	private static final int AI           = 0X20; //MODE1 auto-increment bit
+
+	private final int address;
+
+	//PCA9685 register map
+	private final byte[] registers = new byte[256];
+
+	//Number of I2C read and write transactions
+	private long transactions = 0;
+	//Number of register bytes written
+	private long bytesWritten = 0;
+	//Number of register bytes read
+	private long bytesRead = 0;
+
+	//Register address for reads and writes that do not specify one
+	private int pointer = 0;
+
+	/**
+	 * Constructor
+	 * @param address I2C device address of the fake HAT, 0X40 to 0X7F
+	 */
+	public RecordingI2CDevice(int address) {
+		this.address = address;
+		//MODE1 power up state is sleep with all call enabled (table 5, page 14)
+		registers[MODE1] = 0X11;
+	}
+
+	/**
+	 * Clear the transaction and byte counters. The register map is kept.
+	 */
+	public synchronized void reset() {
+		transactions = 0;
+		bytesWritten = 0;
+		bytesRead = 0;
+	}
+
+	/**
+	 * Return the number of I2C transactions since construction or the last reset().
+	 * @return transactions
+	 */
+	public synchronized long getTransactions() {
+		return transactions;
+	}
+
+	/**
+	 * Return the number of register bytes written since construction or the last reset().
+	 * @return bytesWritten
+	 */
+	public synchronized long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Return the number of register bytes read since construction or the last reset().
+	 * @return bytesRead
+	 */
+	public synchronized long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Return the current value of a register.
+	 * @param addr Register address 0X00 to 0XFF
+	 * @return unsigned register value
+	 */
+	public synchronized int getRegister(int addr) {
+		return registers[addr & 0XFF] & 0XFF;
+	}
+
+	/**
+	 * Return the 12-bit OFF time of an LED PWM, the value commanding motor speed
+	 * or servo position.
+	 * @param channel LED PWM 0 to 15
+	 * @return 12-bit OFF value, 4096 when the full OFF bit is set
+	 */
+	public synchronized int getPwmOff(int channel) {
+		int base = LED0_ON_L + 4*channel;
+		return (registers[base + 2] & 0XFF) | ((registers[base + 3] & 0X1F) << 8);
+	}
+
+	/**
+	 * Store one register value and advance the register address.
+	 */
+	private void store(int addr, byte value) {
+		registers[addr] = value;
+		//ALL_LED registers load the corresponding register of every LED PWM
+		if (addr >= ALL_LED_ON_L && addr < ALL_LED_ON_L + 4) {
+			for (int channel = 0; channel < 16; channel++) {
+				registers[LED0_ON_L + 4*channel + addr - ALL_LED_ON_L] = value;
+			}
+		}
+		bytesWritten++;
+	}
+
+	/**
+	 * Advance a register address after a block access.
+	 */
+	private int next(int addr) {
+		if ((registers[MODE1] & AI) == 0) return addr;
+		return (addr + 1) & 0XFF;
+	}
+
+	@Override
+	public int getAddress() {
+		return address;
+	}
+
+	@Override
+	public synchronized void write(byte b) throws IOException {
+		transactions++;
+		pointer = b & 0XFF;
+	}
+
+	@Override
+	public synchronized void write(byte[] buffer, int offset, int size) throws IOException {
+		if (size < 1) return;
+		write(buffer[offset] & 0XFF, buffer, offset + 1, size - 1);
+	}
+
+	@Override
+	public void write(byte[] buffer) throws IOException {
+		write(buffer, 0, buffer.length);
+	}
+
+	@Override
+	public synchronized void write(int addr, byte b) throws IOException {
+		transactions++;
+		store(addr & 0XFF, b);
+		pointer = next(addr & 0XFF);
+	}
+
+	@Override
+	public synchronized void write(int addr, byte[] buffer, int offset, int size) throws IOException {
+		transactions++;
+		int reg = addr & 0XFF;
+		for (int i = 0; i < size; i++) {
+			store(reg, buffer[offset + i]);
+			reg = next(reg);
+		}
+		pointer = reg;
+	}
+
+	@Override
+	public void write(int addr, byte[] buffer) throws IOException {
+		write(addr, buffer, 0, buffer.length);
+	}
+
+	@Override
+	public synchronized int read() throws IOException {
+		transactions++;
+		bytesRead++;
+		int value = registers[pointer] & 0XFF;
+		pointer = next(pointer);
+		return value;
+	}
+
+	@Override
+	public synchronized int read(byte[] buffer, int offset, int size) throws IOException {
+		return read(pointer, buffer, offset, size);
+	}
+
+	@Override
+	public synchronized int read(int addr) throws IOException {
+		transactions++;
+		bytesRead++;
+		pointer = next(addr & 0XFF);
+		return registers[addr & 0XFF] & 0XFF;
+	}
+
+	@Override
+	public synchronized int read(int addr, byte[] buffer, int offset, int size) throws IOException {
+		transactions++;
+		int reg = addr & 0XFF;
+		for (int i = 0; i < size; i++) {
+			buffer[offset + i] = registers[reg];
+			reg = next(reg);
+		}
+		bytesRead += size;
+		pointer = reg;
+		return size;
+	}
+
+	@Override
+	public synchronized int read(byte[] writeBuffer, int writeOffset, int writeSize,
+			byte[] readBuffer, int readOffset, int readSize) throws IOException {
+		if (writeSize > 0) pointer = writeBuffer[writeOffset] & 0XFF;
+		return read(pointer, readBuffer, readOffset, readSize);
+	}
+}
@@ -0,0 +1,54 @@
+import com.pi4j.component.adafruithat.AdafruitBusManager;
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import java.io.IOException;
+
+/**
+ * Holds the hardware the rig programs run on. Unless something else is
+ * installed first, that is the Raspberry Pi through Pi4J.
+ *
+ * The HATs share one bus manager, so the motor, servo and sensor threads
+ * take turns on the I2C bus through its dispatch thread.
+ */
+public class Rig {
+
+    private static Hardware hardware;
+    private static AdafruitBusManager bus;
+
+    public static synchronized Hardware get() {
+        if (hardware == null) {
+            hardware = new PiHardware();
+        }
+        return hardware;
+    }
+
+    /**
+     * Install the hardware to use, before any program asks for it.
+     */
+    public static synchronized void use(Hardware replacement) {
+        hardware = replacement;
+        bus = null;
+    }
+
+    /**
+     * The bus manager for the HATs, for the AdafruitHat constructors. Its
+     * devices are opened through the installed hardware.
+     */
+    public static synchronized AdafruitBusManager bus() {
+        if (bus == null) {
+            bus = new AdafruitBusManager(new I2CBus() {
+                    public I2CDevice getDevice(int address) throws IOException {
+                        return get().i2c(address);
+                    }
+
+                    public int getBusNumber() {
+                        return I2CBus.BUS_1;
+                    }
+
+                    public void close() {
+                    }
+                }, AdafruitBusManager.DEFAULT_CAPACITY);
+        }
+        return bus;
+    }
+}
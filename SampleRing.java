@@ -0,0 +1,148 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size history of timestamped samples written by one thread and read
+ * by any number of others without locking.
+ *
+ * Each slot carries a sequence stamp, a System.nanoTime() timestamp and the
+ * value. The writer marks a slot as being written (negative stamp), fills it
+ * and then publishes the slot's sequence number. A reader copies a slot and
+ * re-reads the stamp; if the stamp changed the slot was overwritten while it
+ * was being read and the copy is thrown away. Readers never block the writer.
+ *
+ * Timestamps only grow, so the sample at or before a given time is found with
+ * a binary search over the history instead of a linear scan.
+ */
+public class SampleRing {
+
+    /**
+     * Holder for one sample, reused by callers so reads do not allocate.
+     */
+    public static class Sample {
+        public long time;
+        public double value;
+    }
+
+    //Per slot: stamp, time, value bits
+    private static final int STAMP = 0;
+    private static final int TIME = 1;
+    private static final int VALUE = 2;
+    private static final int WIDTH = 3;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    //Sequence number of the newest published sample, 0 when empty
+    private volatile long published = 0;
+
+    /**
+     * @param history number of samples kept, rounded up to a power of two
+     */
+    public SampleRing(int history) {
+        if (history < 1) {
+            throw new IllegalArgumentException("history must be positive: " + history);
+        }
+        int capacity = Integer.highestOneBit(history);
+        if (capacity < history) capacity <<= 1;
+        mask = capacity - 1;
+        slots = new AtomicLongArray(capacity * WIDTH);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Number of samples written since construction.
+     */
+    public long count() {
+        return published;
+    }
+
+    /**
+     * Append a sample. Must only be called from the writer thread.
+     */
+    public void add(long time, double value) {
+        long seq = published + 1;
+        int base = ((int) seq & mask) * WIDTH;
+        slots.set(base + STAMP, -seq);
+        slots.set(base + TIME, time);
+        slots.set(base + VALUE, Double.doubleToRawLongBits(value));
+        slots.set(base + STAMP, seq);
+        published = seq;
+    }
+
+    /**
+     * Copy sample number seq into out.
+     * @return false if the sample has been overwritten or is not written yet
+     */
+    private boolean read(long seq, Sample out) {
+        int base = ((int) seq & mask) * WIDTH;
+        if (slots.get(base + STAMP) != seq) return false;
+        long time = slots.get(base + TIME);
+        long bits = slots.get(base + VALUE);
+        if (slots.get(base + STAMP) != seq) return false;
+        out.time = time;
+        out.value = Double.longBitsToDouble(bits);
+        return true;
+    }
+
+    /**
+     * Copy the newest sample into out.
+     * @return false if nothing has been written
+     */
+    public boolean getLatest(Sample out) {
+        while (true) {
+            long seq = published;
+            if (seq == 0) return false;
+            if (read(seq, out)) return true;
+        }
+    }
+
+    /**
+     * Copy the oldest sample still held into out.
+     * @return false if nothing has been written
+     */
+    public boolean getOldest(Sample out) {
+        while (true) {
+            long seq = published;
+            if (seq == 0) return false;
+            long oldest = Math.max(1, seq - mask);
+            //The oldest slot is the next to be overwritten, step past it if it goes
+            for (long s = oldest; s <= seq; s++) {
+                if (read(s, out)) return true;
+            }
+        }
+    }
+
+    /**
+     * Copy the newest sample taken at or before time into out.
+     * @return false if every sample held is newer than time
+     */
+    public boolean getAtOrBefore(long time, Sample out) {
+        long newest = published;
+        if (newest == 0) return false;
+        long lo = Math.max(1, newest - mask);
+        long hi = newest;
+        long found = -1;
+        long foundTime = 0;
+        double foundValue = 0;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            if (!read(mid, out)) {
+                //Overwritten while searching, it was too old anyway
+                lo = mid + 1;
+            } else if (out.time - time <= 0) {
+                found = mid;
+                foundTime = out.time;
+                foundValue = out.value;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (found < 0) return false;
+        out.time = foundTime;
+        out.value = foundValue;
+        return true;
+    }
+}
@@ -1,79 +1,174 @@
-import com.pi4j.io.gpio.*;
-import com.pi4j.io.gpio.GpioController;
-import com.pi4j.io.gpio.GpioFactory;
-import com.pi4j.io.gpio.GpioPinDigitalOutput;
-import com.pi4j.io.gpio.PinState;
 import com.pi4j.io.gpio.RaspiPin;
-import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
-import com.pi4j.io.gpio.event.GpioPinListenerDigital;
-import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * HC-SR04 ultrasonic ranger.
+ *
+ * In edge capture mode (the default) the sensor thread only fires the
+ * trigger. The echo's rising and falling edges are timestamped by the echo
+ * pin's listener, which measures the pulse and publishes the reading as soon
+ * as the falling edge arrives, so nothing waits or spins. A ping that gets no
+ * falling edge before the next trigger counts as a timeout. The polling mode
+ * busy-waits on the echo pin like the original loop did.
+ *
+ * Distances go through a sliding median, and one that is further than
+ * outlierLimit from the median is thrown away, unless maxRejects in a row
+ * were, in which case the target really moved and the window starts over.
+ * Readers get the latest SonarReading from getReading() without locking.
+ */
 public class Sensors implements Runnable {
 
-    private volatile float senseVal = 0;
-    private volatile float[] senseFilter = new float[6];
-    private int loopNo = 0;
-    
+    private final Hardware hardware = Rig.get();
+    private final boolean edgeCapture;
+    private Hardware.Output trig;
+    private Hardware.Input echo;
+    //Pings per second, the HC-SR04 needs about 60 ms between pings to let echoes die out
+    private static final double rateHz = 16;
+    //Echo pulse nanoseconds per distance unit
+    private static final float nanosPerUnit = 29154.5f;
+    //Longest echo the HC-SR04 gives, it holds the echo this long when nothing is in range
+    private static final long echoTimeout = 38000000;
+    //Distances kept for the median
+    private static final int window = 5;
+    //Furthest a distance may be from the median before it is an outlier
+    private static final float outlierLimit = 20;
+    //Outliers in a row after which the window starts over
+    private static final int maxRejects = 3;
+
+    private final SlidingMedian median = new SlidingMedian(window);
+    private volatile SonarReading reading = SonarReading.NONE;
+    private long version = 0;
+    private long rejected = 0;
+    private long timeouts = 0;
+    private int rejectRun = 0;
+
+    //Edge capture: a ping is waiting for its echo
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+    //Edge capture: when the trigger fell and when the echo rose, for the pending ping
+    private volatile long triggerTime;
+    private volatile long echoStart;
+
+    public Sensors() {
+	this(true);
+    }
+
+    /**
+     * @param edgeCapture true to time the echo from pin edges, false to busy-poll it
+     */
+    public Sensors(boolean edgeCapture) {
+	this.edgeCapture = edgeCapture;
+    }
+
+    /**
+     * The latest reading, SonarReading.NONE until the first echo.
+     */
+    public SonarReading getReading() {
+	return reading;
+    }
+
     public void run() {
         System.out.println("Starting sonar...");
-        final GpioController gpio = GpioFactory.getInstance();
-        final GpioPinDigitalOutput trig = gpio.provisionDigitalOutputPin(RaspiPin.GPIO_04, "trig", PinState.LOW);
-        final GpioPinDigitalInput echo = gpio.provisionDigitalInputPin(RaspiPin.GPIO_05);
-	int loopCycle = 0;
-        while(!Thread.currentThread().isInterrupted()) {
-            try {
-		wait(5);
-		//System.out.println("p1");
-		boolean fail = false;
-            trig.high();
-	    //System.out.println("p2");
-            wait(1);
-	    //System.out.println("p3");
-            trig.low();
-	    //System.out.println("p4");
-            long start = System.nanoTime();
-	    long sysNan = start;
-            long end = 0;
-	    //System.out.println("p5");
-            while(echo.isLow() && !fail) {
-                start = System.nanoTime();
-		if(start - sysNan > 300000000) fail = true;
-            }
-	    //System.out.println("p6");
-            while(echo.isHigh() && !fail) {
-                end = System.nanoTime();
-            }
-	    //System.out.println("p7");
+        trig = hardware.output(RaspiPin.GPIO_04);
+        echo = hardware.input(RaspiPin.GPIO_05);
+	Hardware.EdgeListener listener = new Hardware.EdgeListener() {
+		public void edge(boolean high, long nanos) {
+		    echoEdge(high, nanos);
+		}
+	    };
+	if(edgeCapture) echo.addListener(listener);
+	ControlLoop loop = new ControlLoop(rateHz);
+	loop.add(new ControlLoop.Task() {
+		public void tick(long tickTime) {
+		    if(edgeCapture) {
+			trigger();
+		    } else {
+			ping();
+		    }
+		}
+	    });
+	loop.run();
+	if(edgeCapture) echo.removeListener(listener);
+    }
 
-	    if(!fail) {
-	        senseVal = (end - start) / 29154.5f;
-	        //System.out.println("p8");
-	        senseFilter[loopNo] = this.senseVal;
-	        //System.out.println("p9");
-	        Main.setSense(senseVal, getFilterDist());
-		//System.out.println("p10");
+    /**
+     * Edge capture: fire the trigger and leave the echo to the listener.
+     */
+    private void trigger() {
+	if(pending.getAndSet(false)) {
+	    synchronized(this) {
+		timeouts++;
 	    }
-	    //System.out.println(Thread.currentThread().isInterrupted() + " " + loopCycle++ + ": " + senseVal);
-	    
-	    loopNo = ++loopNo % senseFilter.length;
-	    } catch (Exception e) {
-		e.printStackTrace();
+	}
+	trig.high();
+	wait(1);
+	triggerTime = hardware.nanoTime();
+	echoStart = triggerTime;
+	pending.set(true);
+	trig.low();
+    }
+
+    private void echoEdge(boolean high, long nanos) {
+	if(nanos - triggerTime < 0) return; //left over from an earlier ping
+	if(high) {
+	    echoStart = nanos;
+	} else if(pending.compareAndSet(true, false)) {
+	    measured(echoStart, nanos);
+	}
+    }
+
+    /**
+     * Polling: trigger one measurement and wait for its echo.
+     */
+    private void ping() {
+	boolean fail = false;
+	trig.high();
+	wait(1);
+	trig.low();
+	long start = hardware.nanoTime();
+	long timeout = start + 2 * echoTimeout;
+	long end = 0;
+	while(!echo.isHigh() && !fail) {
+	    start = hardware.nanoTime();
+	    if(start - timeout > 0) fail = true;
+	}
+	while(echo.isHigh() && !fail) {
+	    end = hardware.nanoTime();
+	    if(end - timeout > 0) fail = true;
+	}
+
+	if(fail) {
+	    synchronized(this) {
+		timeouts++;
 	    }
-        }
+	} else {
+	    measured(start, end);
+	}
     }
+
+    /**
+     * Filter one echo and publish the result.
+     */
+    private synchronized void measured(long start, long end) {
+	if(end - start >= echoTimeout) {
+	    timeouts++;
+	    return;
+	}
+	float distance = (end - start) / nanosPerUnit;
+	if(median.size() > 0 && Math.abs(distance - median.median()) > outlierLimit) {
+	    rejected++;
+	    if(++rejectRun < maxRejects) return;
+	    median.clear();
+	}
+	rejectRun = 0;
+	median.add(distance);
+	reading = new SonarReading(++version, start, distance, (float) median.median(), rejected, timeouts);
+    }
+
     private void wait(int millis) {
         try {
-            Thread.sleep(millis);
-        } catch(InterruptedException ie) {}
-    }
-    /*public float getDist() {
-        return senseVal;
-	}*/
-    private float getFilterDist() {
-	float sum = 0;
-	for(float x : senseFilter) {
-	    sum += x;
+            hardware.sleep(millis);
+        } catch(InterruptedException ie) {
+	    Thread.currentThread().interrupt();
 	}
-	return sum / senseFilter.length;
     }
 }
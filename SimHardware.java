@@ -0,0 +1,293 @@
+import com.pi4j.component.adafruithat.RecordingI2CDevice;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.i2c.I2CDevice;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stand-in for the Raspberry Pi, so the rig programs run on any machine.
+ *
+ * Time is virtual: it starts at 0 and runs speedup times faster than real
+ * time, and every sleep through this clock is shortened to match. The
+ * programs keep their own threads, so with a speedup of 1 their timing,
+ * including control loop latency, is what the host really achieves.
+ *
+ * I2C devices are RecordingI2CDevice fakes of the PCA9685, so the HAT
+ * classes run unchanged and the simulated plants read the PWM registers
+ * they write. With setI2cClock() every transaction takes as long as it would
+ * on a real bus, so bus contention shows up in the timing. Inputs are driven by the models added with add(), which a
+ * physics thread steps through virtual time.
+ */
+public class SimHardware implements Hardware {
+
+    /**
+     * Part of the simulated rig, stepped through virtual time.
+     */
+    public interface Model {
+        /**
+         * Advance the model to the given time.
+         * @param now virtual time to advance to
+         * @param dt virtual nanoseconds since the last step
+         */
+        void step(long now, long dt);
+    }
+
+    /**
+     * An input driven by a model. Listeners are called on the thread that
+     * sets the level, with the time of the edge.
+     */
+    public static class SimInput implements Input {
+        private volatile boolean high;
+        private final CopyOnWriteArrayList<EdgeListener> listeners = new CopyOnWriteArrayList<EdgeListener>();
+
+        public boolean isHigh() {
+            return high;
+        }
+
+        public void set(boolean level, long nanos) {
+            if (level == high) return;
+            high = level;
+            for (EdgeListener listener : listeners) {
+                listener.edge(level, nanos);
+            }
+        }
+
+        public void addListener(EdgeListener listener) {
+            listeners.add(listener);
+        }
+
+        public void removeListener(EdgeListener listener) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * An output that models can watch.
+     */
+    public class SimOutput implements Output {
+        private volatile boolean high;
+        private final CopyOnWriteArrayList<EdgeListener> listeners = new CopyOnWriteArrayList<EdgeListener>();
+
+        public boolean isHigh() {
+            return high;
+        }
+
+        public void high() {
+            set(true);
+        }
+
+        public void low() {
+            set(false);
+        }
+
+        private void set(boolean level) {
+            if (level == high) return;
+            high = level;
+            long now = nanoTime();
+            for (EdgeListener listener : listeners) {
+                listener.edge(level, now);
+            }
+        }
+
+        public void addListener(EdgeListener listener) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * A PCA9685 that holds the caller for the time its transactions take on the bus.
+     */
+    private class TimedI2CDevice extends RecordingI2CDevice {
+        TimedI2CDevice(int address) {
+            super(address);
+        }
+
+        /**
+         * Wait for a transaction of so many data bytes: the address byte, the
+         * register byte and the data at 9 clocks each, plus start and stop.
+         */
+        private void transfer(int bytes) {
+            double hz = i2cClock;
+            if (hz > 0) {
+                long virtual = (long) (((bytes + 2) * 9 + 2) * 1e9 / hz);
+                sleepUntil(nanoTime() + virtual, virtual);
+            }
+        }
+
+        @Override
+        public void write(byte b) throws IOException {
+            transfer(0);
+            super.write(b);
+        }
+
+        @Override
+        public void write(int addr, byte b) throws IOException {
+            transfer(1);
+            super.write(addr, b);
+        }
+
+        @Override
+        public void write(int addr, byte[] buffer, int offset, int size) throws IOException {
+            transfer(size);
+            super.write(addr, buffer, offset, size);
+        }
+
+        @Override
+        public int read(int addr) throws IOException {
+            transfer(2);
+            return super.read(addr);
+        }
+
+        @Override
+        public int read(int addr, byte[] buffer, int offset, int size) throws IOException {
+            transfer(size + 1);
+            return super.read(addr, buffer, offset, size);
+        }
+    }
+
+    //Real time between physics steps
+    private static final long physicsNanos = 20000;
+
+    private final double speedup;
+    private final long origin = System.nanoTime();
+    private final Map<Pin, Input> inputs = new HashMap<Pin, Input>();
+    private final Map<Pin, SimOutput> outputs = new HashMap<Pin, SimOutput>();
+    private final Map<Integer, RecordingI2CDevice> devices = new HashMap<Integer, RecordingI2CDevice>();
+    private final CopyOnWriteArrayList<Model> models = new CopyOnWriteArrayList<Model>();
+    private Thread physics;
+    //I2C bus clock, 0 for transactions that take no time
+    private volatile double i2cClock = 0;
+
+    /**
+     * @param speedup how many times faster than real time the clock runs
+     */
+    public SimHardware(double speedup) {
+        if (!(speedup > 0)) {
+            throw new IllegalArgumentException("speedup must be positive: " + speedup);
+        }
+        this.speedup = speedup;
+    }
+
+    public double getSpeedup() {
+        return speedup;
+    }
+
+    /**
+     * Make I2C transactions take as long as on a real bus.
+     * @param hz bus clock, 100000 by default on the Pi, 0 for no delay
+     */
+    public void setI2cClock(double hz) {
+        if (hz < 0) {
+            throw new IllegalArgumentException("I2C clock must not be negative: " + hz);
+        }
+        i2cClock = hz;
+    }
+
+    public long nanoTime() {
+        return (long) ((System.nanoTime() - origin) * speedup);
+    }
+
+    private long realTime(long virtual) {
+        return origin + (long) (virtual / speedup);
+    }
+
+    public void sleepUntil(long deadline, long spinNanos) {
+        ControlLoop.sleepUntil(realTime(deadline), (long) (spinNanos / speedup));
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep((long) (millis * 1000000 / speedup));
+    }
+
+    /**
+     * Inputs not driven by a model read low.
+     */
+    public synchronized Input input(Pin pin) {
+        Input in = inputs.get(pin);
+        if (in == null) {
+            in = new SimInput();
+            inputs.put(pin, in);
+        }
+        return in;
+    }
+
+    public synchronized SimOutput output(Pin pin) {
+        SimOutput out = outputs.get(pin);
+        if (out == null) {
+            out = new SimOutput();
+            outputs.put(pin, out);
+        }
+        return out;
+    }
+
+    /**
+     * Drive an input with a model's own implementation instead of a SimInput.
+     */
+    public synchronized void attach(Pin pin, Input in) {
+        inputs.put(pin, in);
+    }
+
+    /**
+     * The SimInput of a pin, for models to drive.
+     */
+    public SimInput simInput(Pin pin) {
+        return (SimInput) input(pin);
+    }
+
+    public I2CDevice i2c(int address) {
+        return pca9685(address);
+    }
+
+    /**
+     * The fake PCA9685 at an address, for models to read.
+     */
+    public synchronized RecordingI2CDevice pca9685(int address) {
+        RecordingI2CDevice device = devices.get(address);
+        if (device == null) {
+            device = new TimedI2CDevice(address);
+            devices.put(address, device);
+        }
+        return device;
+    }
+
+    /**
+     * Add a model; models are stepped in the order they were added.
+     */
+    public void add(Model model) {
+        models.add(model);
+    }
+
+    /**
+     * Step the models through virtual time on a daemon thread.
+     */
+    public synchronized void start() {
+        if (physics != null) return;
+        physics = new Thread("physics") {
+                public void run() {
+                    long last = nanoTime();
+                    while (!isInterrupted()) {
+                        LockSupport.parkNanos(physicsNanos);
+                        long now = nanoTime();
+                        if (now == last) continue;
+                        for (Model model : models) {
+                            model.step(now, now - last);
+                        }
+                        last = now;
+                    }
+                }
+            };
+        physics.setDaemon(true);
+        physics.start();
+    }
+
+    public synchronized void stop() {
+        if (physics != null) {
+            physics.interrupt();
+            physics = null;
+        }
+    }
+}
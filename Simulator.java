@@ -0,0 +1,109 @@
+import com.pi4j.component.adafruithat.AdafruitBusManager;
+import com.pi4j.component.adafruithat.RecordingI2CDevice;
+import com.pi4j.io.gpio.RaspiPin;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+/**
+ * Runs one of the rig programs against SimHardware instead of the Pi.
+ *
+ * Usage: java Simulator [-speedup N] Main|BigMain|UltraMain [program args]
+ *
+ * The simulated rig mirrors the real one:
+ * - the cart on Motor HAT (0X60) motor M3, watched by the HC-SR04 on GPIO 4
+ *   (trigger) and 5 (echo), for Main and UltraMain
+ * - three motors on the Servo HAT (0X40) speed controllers BigMotor drives,
+ *   the first two with encoders on GPIO 28/29 and 24/25, for BigMain
+ *
+ * With a speedup of 1 the loops run in real time, for measuring control loop
+ * latency on the host; larger speedups shorten identification runs. When the
+ * program returns, the I2C write latency of each HAT is printed.
+ */
+public class Simulator {
+
+    //Cart: centimetres per second at full power, and time constant
+    private static final double cartGain = 60;
+    private static final double cartTau = 0.15;
+    //Sonar distance at cart position 0, centimetres
+    private static final double sonarOffset = 20;
+    //BigMain motors: encoder units per second at full power, and time constant
+    private static final double motorGain = 2;
+    private static final double motorTau = 0.1;
+    //Pulse widths and PWM frequency BigMotor uses, see BigMotor and AdafruitServoHat
+    private static final double minPulse = 0.001;
+    private static final double maxPulse = 1.999;
+    private static final double servoFrequency = 500;
+
+    private final SimHardware sim;
+    private final DcMotorPlant cart;
+    private final DcMotorPlant[] motors = new DcMotorPlant[3];
+
+    public Simulator(double speedup) {
+        sim = new SimHardware(speedup);
+
+        RecordingI2CDevice motorHat = sim.pca9685(0X60);
+        cart = new DcMotorPlant(DcMotorPlant.dcMotor(motorHat, "M3"), cartGain, cartTau);
+        sim.add(cart);
+        sim.add(new SonarModel(sim, RaspiPin.GPIO_04, RaspiPin.GPIO_05, cart, sonarOffset, 1));
+
+        //BigMain's S01-S03 power and S05-S07 direction channels
+        RecordingI2CDevice servoHat = sim.pca9685(0X40);
+        for (int i = 0; i < motors.length; i++) {
+            motors[i] = new DcMotorPlant(DcMotorPlant.servo(servoHat, i, 4 + i, minPulse, maxPulse, servoFrequency),
+                                         motorGain, motorTau);
+            sim.add(motors[i]);
+        }
+        sim.add(new EncoderEmitter(sim, motors[0], RaspiPin.GPIO_28, RaspiPin.GPIO_29, Encoder.countsPerUnit));
+        sim.add(new EncoderEmitter(sim, motors[1], RaspiPin.GPIO_24, RaspiPin.GPIO_25, Encoder.countsPerUnit));
+    }
+
+    public SimHardware getHardware() {
+        return sim;
+    }
+
+    public DcMotorPlant getCart() {
+        return cart;
+    }
+
+    public DcMotorPlant getMotor(int i) {
+        return motors[i];
+    }
+
+    /**
+     * Install the simulated hardware for the rig programs and start its physics.
+     */
+    public void install() {
+        Rig.use(sim);
+        sim.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        double speedup = 1;
+        int arg = 0;
+        if (args.length > 1 && args[0].equals("-speedup")) {
+            speedup = Double.parseDouble(args[1]);
+            arg = 2;
+        }
+        if (args.length <= arg) {
+            System.out.println("Usage: java Simulator [-speedup N] Main|BigMain|UltraMain [program args]");
+            System.exit(1);
+        }
+        String program = args[arg];
+        String[] rest = Arrays.copyOfRange(args, arg + 1, args.length);
+
+        new Simulator(speedup).install();
+        try {
+            Class.forName(program).getMethod("main", String[].class).invoke(null, (Object) rest);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            throw (Exception) cause;
+        }
+        for (AdafruitBusManager.Device device : Rig.bus().getDevices()) {
+            System.out.format("I2C 0X%02X: %s, queue depth up to %d%n",
+                              device.getAddress(), device.getWriteLatency(), device.getMaxQueueDepth());
+        }
+        //The programs leave their sensor and motor threads running
+        System.exit(0);
+    }
+}
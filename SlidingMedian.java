@@ -0,0 +1,87 @@
+import java.util.TreeSet;
+
+/**
+ * Median of the last n values, updated in O(log n) per value.
+ *
+ * The window is kept as two ordered sets, the lower half and the upper
+ * half, so the median is at their boundary. Each value is stored in a slot
+ * object owned by the window's ring, which breaks ties between equal values
+ * by age; the slot of the value leaving the window is removed from
+ * whichever half holds it and reused for the value coming in.
+ */
+public class SlidingMedian {
+
+    private static class Slot implements Comparable<Slot> {
+        double value;
+        long seq;
+
+        public int compareTo(Slot other) {
+            if (value < other.value) return -1;
+            if (value > other.value) return 1;
+            return seq < other.seq ? -1 : (seq > other.seq ? 1 : 0);
+        }
+    }
+
+    private final Slot[] ring;
+    //Lower half, holds the extra value when the count is odd
+    private final TreeSet<Slot> low = new TreeSet<Slot>();
+    private final TreeSet<Slot> high = new TreeSet<Slot>();
+    private long seq = 0;
+
+    /**
+     * @param window number of values the median is taken over
+     */
+    public SlidingMedian(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        ring = new Slot[window];
+        for (int i = 0; i < window; i++) ring[i] = new Slot();
+    }
+
+    /**
+     * Number of values in the window, up to its size.
+     */
+    public int size() {
+        return low.size() + high.size();
+    }
+
+    public int window() {
+        return ring.length;
+    }
+
+    public void add(double value) {
+        Slot slot = ring[(int) (seq % ring.length)];
+        if (seq >= ring.length) {
+            if (!low.remove(slot)) high.remove(slot);
+        }
+        slot.value = value;
+        slot.seq = seq++;
+        if (low.isEmpty() || slot.compareTo(low.last()) <= 0) {
+            low.add(slot);
+        } else {
+            high.add(slot);
+        }
+        //Rebalance so low has as many values as high, or one more
+        if (low.size() > high.size() + 1) {
+            high.add(low.pollLast());
+        } else if (high.size() > low.size()) {
+            low.add(high.pollFirst());
+        }
+    }
+
+    /**
+     * Median of the values in the window, NaN when empty.
+     */
+    public double median() {
+        if (low.isEmpty()) return Double.NaN;
+        if (low.size() > high.size()) return low.last().value;
+        return (low.last().value + high.first().value) / 2;
+    }
+
+    public void clear() {
+        low.clear();
+        high.clear();
+        seq = 0;
+    }
+}
@@ -0,0 +1,99 @@
+import com.pi4j.io.gpio.Pin;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * HC-SR04 ultrasonic ranger looking at a simulated plant. The falling edge
+ * of the trigger starts a ping; after the burst the echo pin goes high for
+ * the round trip time of sound to the target, offset + scale * position
+ * centimetres away. Targets out of range hold the echo high for the
+ * sensor's 38 ms timeout.
+ *
+ * The echo level is worked out from the clock whenever it is read, so
+ * polling it is exact at any speedup; edge listeners get the exact edge
+ * times even though they are called from the physics thread.
+ */
+public class SonarModel implements SimHardware.Model, Hardware.Input {
+
+    //Speed of sound, centimetres per nanosecond
+    private static final double soundCmPerNano = 34300 / 1e9;
+    //From the trigger to the start of the echo, the 8 cycle 40 kHz burst
+    private static final long burstNanos = 200000;
+    private static final long timeoutNanos = 38000000;
+    private static final double minRange = 2;
+    private static final double maxRange = 400;
+
+    private final SimHardware sim;
+    private final DcMotorPlant plant;
+    private final double offset;
+    private final double scale;
+    private final CopyOnWriteArrayList<Hardware.EdgeListener> listeners =
+        new CopyOnWriteArrayList<Hardware.EdgeListener>();
+    //Echo start and end of the current ping, published as a pair by replacing the array
+    private volatile long[] ping = {0, 0};
+    //Edges of the current ping already told to listeners, physics thread only
+    private long[] told = ping;
+    private int toldEdges = 2;
+
+    /**
+     * @param sim simulated hardware the sensor is wired to
+     * @param trig trigger output pin
+     * @param echo echo input pin
+     * @param plant what the sensor is looking at
+     * @param offset distance at plant position 0, centimetres
+     * @param scale centimetres per unit of plant position
+     */
+    public SonarModel(SimHardware sim, Pin trig, Pin echo, DcMotorPlant plant, double offset, double scale) {
+        this.sim = sim;
+        this.plant = plant;
+        this.offset = offset;
+        this.scale = scale;
+        sim.attach(echo, this);
+        sim.output(trig).addListener(new Hardware.EdgeListener() {
+                public void edge(boolean high, long nanos) {
+                    if (!high) trigger(nanos);
+                }
+            });
+    }
+
+    public double getDistance() {
+        return offset + scale * plant.getPosition();
+    }
+
+    private void trigger(long nanos) {
+        long[] current = ping;
+        if (nanos - current[1] < 0) return; //still busy with the last ping
+        double distance = getDistance();
+        long width = distance < minRange || distance > maxRange
+            ? timeoutNanos : (long) (2 * distance / soundCmPerNano);
+        long start = nanos + burstNanos;
+        ping = new long[] {start, start + width};
+    }
+
+    public boolean isHigh() {
+        long[] current = ping;
+        long now = sim.nanoTime();
+        return now - current[0] >= 0 && now - current[1] < 0;
+    }
+
+    public void step(long now, long dt) {
+        long[] current = ping;
+        if (current != told) {
+            told = current;
+            toldEdges = 0;
+        }
+        while (toldEdges < 2 && now - current[toldEdges] >= 0) {
+            for (Hardware.EdgeListener listener : listeners) {
+                listener.edge(toldEdges == 0, current[toldEdges]);
+            }
+            toldEdges++;
+        }
+    }
+
+    public void addListener(Hardware.EdgeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Hardware.EdgeListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * One published state of the ultrasonic ranger. Readings are immutable and
+ * replaced as a whole, so the raw and filtered distances always belong
+ * together; the version tells a reader whether anything new came in since
+ * the reading it saw last.
+ */
+public final class SonarReading {
+
+    //Published before the first echo
+    public static final SonarReading NONE = new SonarReading(0, 0, 0, 0, 0, 0);
+
+    //Number of accepted echoes so far
+    public final long version;
+    //Clock time of the echo's rising edge
+    public final long time;
+    //Latest accepted distance
+    public final float distance;
+    //Median of the recent accepted distances
+    public final float filtered;
+    //Echoes thrown away as outliers so far
+    public final long rejected;
+    //Pings that got no echo so far
+    public final long timeouts;
+
+    public SonarReading(long version, long time, float distance, float filtered, long rejected, long timeouts) {
+        this.version = version;
+        this.time = time;
+        this.distance = distance;
+        this.filtered = filtered;
+        this.rejected = rejected;
+        this.timeouts = timeouts;
+    }
+}
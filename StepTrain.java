@@ -0,0 +1,168 @@
+package com.pi4j.component.adafruithat;
+/*
+ * #%L
+ * **********************************************************************
+ * ORGANIZATION  :  Pi4J
+ * PROJECT       :  Pi4J :: Java Library (Core)
+ * FILENAME      :  StepTrain.java
+ *
+ * This file is part of the Pi4J project. More information about
+ * this project can be found here:  http://www.pi4j.com/
+ * **********************************************************************
+ * %%
+ * Copyright (C) 2012 - 2016 Pi4J
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timing of a run of stepper motor steps with a trapezoidal speed profile.
+ * The step rate ramps from startRate up to maxRate with constant acceleration,
+ * cruises, and ramps back down symmetrically. When the run is too short to
+ * reach maxRate the profile is a triangle peaking half way.
+ * <p>
+ * Step k of the run (1 to steps) is due at timeOf(k) nanoseconds after the
+ * start. The times are worked out in closed form for each step, so a train
+ * is created once per move and stepping through it does not allocate. With
+ * an infinite acceleration the steps are evenly spaced at maxRate.
+ *
+ * @see com.pi4j.component.adafruithat.AdafruitStepperMotor
+ */
+public class StepTrain {
+
+	//Park until this close to a step's time, then spin
+	private static final long SPIN_NANOS = 50000;
+
+	private final long steps;
+	private final double startRate;
+	private final double acceleration;
+	//Steps spent ramping up, and again ramping down
+	private final double rampSteps;
+	//Highest rate reached
+	private final double peakRate;
+	//Seconds spent ramping up
+	private final double rampTime;
+	//Seconds for the whole run
+	private final double duration;
+
+	/**
+	 * Constructor
+	 * @param steps number of steps in the run
+	 * @param maxRate cruising step rate, steps per second
+	 * @param acceleration steps per second per second, Double.POSITIVE_INFINITY for no ramp
+	 * @param startRate rate the ramps start and end at, steps per second
+	 */
+	public StepTrain(long steps, double maxRate, double acceleration, double startRate) {
+		if (steps < 0 || !(maxRate > 0) || !(acceleration > 0) || startRate < 0 || startRate > maxRate) {
+			System.out.println("*** Error *** Invalid step train");
+			throw new IllegalArgumentException(steps + " steps, " + maxRate + " steps/s, "
+					+ acceleration + " steps/s^2, start " + startRate + " steps/s");
+		}
+		this.steps = steps;
+		this.startRate = startRate;
+		this.acceleration = acceleration;
+		if (Double.isInfinite(acceleration) || startRate == maxRate) {
+			rampSteps = 0;
+			peakRate = maxRate;
+			rampTime = 0;
+		}
+		else {
+			double ramp = (maxRate*maxRate - startRate*startRate) / (2*acceleration);
+			rampSteps = Math.min(ramp, steps / 2.0);
+			peakRate = Math.sqrt(startRate*startRate + 2*acceleration*rampSteps);
+			rampTime = (peakRate - startRate) / acceleration;
+		}
+		duration = 2*rampTime + (steps - 2*rampSteps) / peakRate;
+	}
+
+	/**
+	 * Constructor for ramps starting from standstill
+	 * @param steps number of steps in the run
+	 * @param maxRate cruising step rate, steps per second
+	 * @param acceleration steps per second per second
+	 */
+	public StepTrain(long steps, double maxRate, double acceleration) {
+		this(steps, maxRate, acceleration, 0);
+	}
+
+	/**
+	 * Return the number of steps in the run
+	 * @return steps
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Return the highest step rate of the run
+	 * @return steps per second
+	 */
+	public double getPeakRate() {
+		return peakRate;
+	}
+
+	/**
+	 * Return the length of the run
+	 * @return nanoseconds from the start to the last step
+	 */
+	public long getDuration() {
+		return Math.round(duration * 1e9);
+	}
+
+	/**
+	 * Seconds to cover the first s steps of a ramp.
+	 */
+	private double rampTime(double s) {
+		return (Math.sqrt(startRate*startRate + 2*acceleration*s) - startRate) / acceleration;
+	}
+
+	/**
+	 * Return when a step is due
+	 * @param k step number, 1 to steps
+	 * @return nanoseconds after the start of the run
+	 */
+	public long timeOf(long k) {
+		double t;
+		if (k <= rampSteps) {
+			t = rampTime(k);
+		}
+		else if (k < steps - rampSteps) {
+			t = rampTime + (k - rampSteps) / peakRate;
+		}
+		else {
+			t = duration - rampTime(steps - k);
+		}
+		return Math.round(t * 1e9);
+	}
+
+	/**
+	 * Wait until System.nanoTime() reaches the deadline, parking until it is
+	 * close and spinning for the rest, for sub-millisecond step timing.
+	 * @param deadline System.nanoTime() to wait for
+	 */
+	public static void waitUntil(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		while (remaining > SPIN_NANOS) {
+			LockSupport.parkNanos(remaining - SPIN_NANOS);
+			if (Thread.currentThread().isInterrupted()) return;
+			remaining = deadline - System.nanoTime();
+		}
+		while (deadline - System.nanoTime() > 0) {
+			//spin
+		}
+	}
+}
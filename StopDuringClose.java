@@ -0,0 +1,102 @@
+import com.pi4j.component.adafruithat.AdafruitBusManager;
+import com.pi4j.component.adafruithat.AdafruitServo;
+import com.pi4j.component.adafruithat.AdafruitServoHat;
+import com.pi4j.component.adafruithat.StopReport;
+import java.util.Random;
+
+/**
+ * Checks that an emergency stop fired while the bus manager is closing is sent
+ * exactly once to each HAT, on simulated hardware with a real-time I2C bus.
+ *
+ * Usage: java StopDuringClose [trials] [I2C clock Hz]
+ *
+ * In each trial one thread per HAT moves a servo of four Servo HATs until the
+ * bus manager's queue is full, then one thread closes the manager, which
+ * drains the queue, and the main thread fires an emergency stop at a random
+ * time during the drain. Each HAT must have received the ALL_LED_OFF block
+ * once and the report must be done. Moving a servo is a single write, so the
+ * threads do not run into the closed manager halfway through a command.
+ */
+public class StopDuringClose {
+
+    //A HAT has at most one command waiting, so one fewer than the HATs fills the queue
+    private static final int[] hats = new int[] {0X40, 0X41, 0X42, 0X43};
+    private static final int capacity = hats.length - 1;
+
+    private static volatile boolean running;
+
+    public static void main(String[] args) throws Exception {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        double clock = args.length > 1 ? Double.parseDouble(args[1]) : 100000;
+
+        SimHardware sim = new SimHardware(1);
+        sim.setI2cClock(clock);
+        Rig.use(sim);
+        Random random = new Random();
+        int failed = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            final AdafruitBusManager bus = new AdafruitBusManager(null, capacity);
+            AdafruitServo[] servos = new AdafruitServo[hats.length];
+            for (int i = 0; i < servos.length; i++) {
+                bus.getDevice(sim.pca9685(hats[i]), AdafruitBusManager.Priority.SERVO);
+                //The HAT classes compare servo names by identity, so they must be literals
+                servos[i] = new AdafruitServoHat(bus, hats[i]).getServo("S01");
+                servos[i].setOperatingLimits(0.001f, 1.00f, 1.999f);
+                servos[i].setPositionRange(0.0f, 100.0f);
+            }
+
+            running = true;
+            Thread[] load = new Thread[servos.length];
+            for (int t = 0; t < load.length; t++) {
+                final AdafruitServo servo = servos[t];
+                final int id = t;
+                load[t] = new Thread("load " + t) {
+                        public void run() {
+                            Random random = new Random(id);
+                            while (running) {
+                                servo.setPosition(random.nextFloat() * 100);
+                            }
+                        }
+                    };
+                load[t].setDaemon(true);
+                load[t].start();
+            }
+            while (bus.getQueueDepth() < capacity) Thread.sleep(1);
+
+            //Stop the load first, the commands already queued stay for close() to drain
+            running = false;
+            Thread closer = new Thread("close") {
+                    public void run() {
+                        try {
+                            bus.close();
+                        } catch (java.io.IOException e) {
+                            System.out.println("*** Error *** Bus manager failed to close");
+                        }
+                    }
+                };
+            closer.start();
+            //A full queue drains in about capacity transactions of some 130 clocks each
+            long drain = (long) (capacity * 130 * 1e9 / clock);
+            long wait = (long) (random.nextDouble() * drain);
+            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            StopReport report = bus.emergencyStop();
+            closer.join();
+            for (Thread thread : load) thread.join();
+
+            boolean ok = report.await(1000000000L) && report.isDone();
+            for (AdafruitBusManager.Device device : bus.getDevices()) {
+                if (device.getStops() != 1) {
+                    System.out.format("Trial %d: I2C 0X%02X got %d stops%n", trial, device.getAddress(), device.getStops());
+                    ok = false;
+                }
+            }
+            if (!ok) {
+                failed++;
+                System.out.println(report);
+            }
+        }
+
+        System.out.format("%d trials at I2C clock %.0f Hz, %d failed%n", trials, clock, failed);
+        System.exit(failed > 0 ? 1 : 0);
+    }
+}
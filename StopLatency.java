@@ -0,0 +1,102 @@
+import com.pi4j.component.adafruithat.AdafruitBusManager;
+import com.pi4j.component.adafruithat.AdafruitDcMotor;
+import com.pi4j.component.adafruithat.AdafruitMotorHat;
+import com.pi4j.component.adafruithat.AdafruitServo;
+import com.pi4j.component.adafruithat.AdafruitServoHat;
+import com.pi4j.component.adafruithat.StopReport;
+import java.util.Random;
+
+/**
+ * Measures how long an emergency stop takes to reach the HATs while the bus
+ * is busy, on simulated hardware with a real-time I2C bus.
+ *
+ * Usage: java StopLatency [stops] [I2C clock Hz]
+ *
+ * Two threads command all four DC motors of the Motor HAT and two command
+ * servo channels of the Servo HAT, as fast as the bus lets them, so the bus
+ * manager's queue is always full. Meanwhile the main thread fires emergency
+ * stops at random intervals and records when each reached both chips. The
+ * worst case should be about one transaction already on the bus plus the two
+ * stop writes, however deep the queue.
+ */
+public class StopLatency {
+
+    //Time between stops, milliseconds
+    private static final int minGap = 5;
+    private static final int maxGap = 20;
+
+    private static volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        int stops = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        double clock = args.length > 1 ? Double.parseDouble(args[1]) : 100000;
+
+        SimHardware sim = new SimHardware(1);
+        sim.setI2cClock(clock);
+        Rig.use(sim);
+        AdafruitBusManager bus = Rig.bus();
+        AdafruitMotorHat motorHat = new AdafruitMotorHat(bus, 0X60);
+        AdafruitServoHat servoHat = new AdafruitServoHat(bus, 0X40);
+
+        //The HAT classes compare motor names by identity, so they must be literals
+        String[] names = new String[] {"M1", "M2", "M3", "M4"};
+        final AdafruitDcMotor[] motors = new AdafruitDcMotor[names.length];
+        for (int i = 0; i < motors.length; i++) {
+            motors[i] = motorHat.getDcMotor(names[i]);
+            motors[i].setPowerRange(100.0f);
+        }
+        final AdafruitServo[] servos = new AdafruitServo[] {servoHat.getServo("S01"), servoHat.getServo("S02")};
+        for (AdafruitServo servo : servos) {
+            servo.setOperatingLimits(0.001f, 1.00f, 1.999f);
+            servo.setPositionRange(0.0f, 100.0f);
+        }
+
+        Thread[] load = new Thread[4];
+        for (int t = 0; t < load.length; t++) {
+            final int id = t;
+            load[t] = new Thread("load " + t) {
+                    public void run() {
+                        Random random = new Random(id);
+                        while (running) {
+                            if (id < 2) {
+                                motors[random.nextInt(motors.length)].speed(random.nextFloat() * 199 - 99.5f);
+                            } else {
+                                servos[id - 2].setPosition(random.nextFloat() * 100);
+                            }
+                        }
+                    }
+                };
+            load[t].setDaemon(true);
+            load[t].start();
+        }
+
+        //Let the queue fill before the first stop
+        Thread.sleep(100);
+        AdafruitBusManager.Histogram latency = new AdafruitBusManager.Histogram();
+        Random random = new Random();
+        int depth = 0;
+        int failed = 0;
+        for (int i = 0; i < stops; i++) {
+            Thread.sleep(minGap + random.nextInt(maxGap - minGap + 1));
+            depth = Math.max(depth, bus.getQueueDepth());
+            StopReport report = bus.emergencyStop();
+            if (report.await(1000000000L) && report.isStopped()) {
+                latency.add(report.getLatency());
+            } else {
+                failed++;
+                System.out.println(report);
+            }
+        }
+        running = false;
+
+        System.out.format("I2C clock %.0f Hz, queue depth up to %d at the stops%n", clock, depth);
+        System.out.println("Stop latency: " + latency);
+        for (AdafruitBusManager.Device device : bus.getDevices()) {
+            System.out.format("I2C 0X%02X writes: %s%n", device.getAddress(), device.getWriteLatency());
+        }
+        if (failed > 0) {
+            System.out.println(failed + " stops did not reach both HATs");
+        }
+        System.exit(failed > 0 ? 1 : 0);
+    }
+}
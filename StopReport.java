@@ -0,0 +1,186 @@
+package com.pi4j.component.adafruithat;
+/*
+ * #%L
+ * **********************************************************************
+ * ORGANIZATION  :  Pi4J
+ * PROJECT       :  Pi4J :: Java Library (Core)
+ * FILENAME      :  StopReport.java
+ *
+ * This file is part of the Pi4J project. More information about
+ * this project can be found here:  http://www.pi4j.com/
+ * **********************************************************************
+ * %%
+ * Copyright (C) 2012 - 2016 Pi4J
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+import java.io.IOException;
+
+/**
+ * When an emergency stop reached each HAT it was sent to. The stop is requested
+ * at getRequested() and the report fills in as the ALL_LED_OFF write to each
+ * chip is acknowledged, or fails. All times are System.nanoTime().
+ * <p>
+ * Example:
+ * <pre>
+ * StopReport report = motorHat.emergencyStop();
+ * ...
+ * if (report.await(1000000)) System.out.println(report);
+ * </pre>
+ *
+ * @see com.pi4j.component.adafruithat.AdafruitHat#emergencyStop()
+ * @see com.pi4j.component.adafruithat.AdafruitBusManager#emergencyStop()
+ */
+public class StopReport {
+
+	private final long requested;
+	private final int[] addresses;
+	//When the stop reached each chip, 0 while it has not
+	private final long[] reached;
+	private final IOException[] errors;
+	private int remaining;
+
+	/**
+	 * Constructor
+	 * @param requested when the stop was requested
+	 * @param addresses I2C device addresses of the HATs being stopped
+	 */
+	StopReport(long requested, int[] addresses) {
+		this.requested = requested;
+		this.addresses = addresses;
+		this.reached = new long[addresses.length];
+		this.errors = new IOException[addresses.length];
+		this.remaining = addresses.length;
+	}
+
+	/**
+	 * Record that the stop reached a HAT.
+	 */
+	synchronized void reached(int index, long nanos) {
+		reached[index] = nanos;
+		if (--remaining == 0) notifyAll();
+	}
+
+	/**
+	 * Record that the stop could not be written to a HAT.
+	 */
+	synchronized void failed(int index, IOException error) {
+		errors[index] = error;
+		if (--remaining == 0) notifyAll();
+	}
+
+	/**
+	 * Return when the stop was requested.
+	 * @return System.nanoTime() of the request
+	 */
+	public long getRequested() {
+		return requested;
+	}
+
+	/**
+	 * Return the number of HATs the stop was sent to.
+	 * @return HATs
+	 */
+	public int getDevices() {
+		return addresses.length;
+	}
+
+	/**
+	 * Return the I2C device address of a HAT.
+	 * @param index 0 to getDevices()-1
+	 * @return device address
+	 */
+	public int getAddress(int index) {
+		return addresses[index];
+	}
+
+	/**
+	 * Return when the stop reached a HAT.
+	 * @param index 0 to getDevices()-1
+	 * @return System.nanoTime() the chip acknowledged the stop, 0 if it has not (yet)
+	 */
+	public synchronized long getReached(int index) {
+		return reached[index];
+	}
+
+	/**
+	 * Return the error writing the stop to a HAT.
+	 * @param index 0 to getDevices()-1
+	 * @return the error, null if there was none (yet)
+	 */
+	public synchronized IOException getError(int index) {
+		return errors[index];
+	}
+
+	/**
+	 * Has the stop reached, or failed to reach, every HAT?
+	 * @return true when the report is complete
+	 */
+	public synchronized boolean isDone() {
+		return remaining == 0;
+	}
+
+	/**
+	 * Did the stop reach every HAT?
+	 * @return true when complete without errors
+	 */
+	public synchronized boolean isStopped() {
+		if (remaining > 0) return false;
+		for (IOException error : errors) {
+			if (error != null) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the time from the request until the last HAT was stopped.
+	 * @return nanoseconds, -1 while the stop has not reached every HAT
+	 */
+	public synchronized long getLatency() {
+		if (!isStopped()) return -1;
+		long last = requested;
+		for (long nanos : reached) last = Math.max(last, nanos);
+		return last - requested;
+	}
+
+	/**
+	 * Wait for the report to be complete.
+	 * @param timeoutNanos longest time to wait
+	 * @return true if complete, false if the time ran out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized boolean await(long timeoutNanos) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutNanos;
+		while (remaining > 0) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0) return false;
+			wait(left / 1000000, (int) (left % 1000000));
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder text = new StringBuilder(String.format("Emergency stop requested at %d ns:", requested));
+		for (int i = 0; i < addresses.length; i++) {
+			text.append(String.format(" 0X%02X ", addresses[i]));
+			if (errors[i] != null) text.append("failed (").append(errors[i].getMessage()).append(")");
+			else if (reached[i] == 0) text.append("pending");
+			else text.append(String.format("stopped +%.1f us", (reached[i] - requested) / 1000.0));
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,105 @@
+import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
+
+/**
+ * System identification over uniformly sampled position profiles.
+ *
+ * Profiles are plain double[] arrays with one sample every step nanoseconds,
+ * so there is no boxing or hashing per sample. Velocity and acceleration
+ * come out of a single finite-difference pass, and the regression rows are
+ * written straight into a design matrix that is reused between runs.
+ *
+ * The differences keep the conventions Main's profiles were built with:
+ * velocity is taken as (p[i-1] - p[i+1]) / 2dt, i.e. positive when the
+ * position decreases, and of n samples only 1..n-4 get central differences.
+ * Samples 0 and n-3 are extrapolated linearly; the last two samples only
+ * anchor the differences.
+ */
+public class SysId {
+
+    private static final double nanosPerSecond = 1000000000;
+
+    private final double dt;
+    private final double[] diff;
+    private final double[] vel;
+    private final double[] acc;
+    private final double[] scratch;
+    private final OLSMultipleLinearRegression reg = new OLSMultipleLinearRegression();
+    private double[][] xData = new double[0][];
+    private double[] yData = new double[0];
+
+    /**
+     * @param step time between samples, nanoseconds
+     * @param maxSamples longest profile that will be passed in
+     */
+    public SysId(long step, int maxSamples) {
+	dt = step / nanosPerSecond;
+	diff = new double[maxSamples];
+	vel = new double[maxSamples];
+	acc = new double[maxSamples];
+	scratch = new double[maxSamples];
+    }
+
+    /**
+     * Velocity and acceleration of a position profile in one pass.
+     * @param pos positions, n samples
+     * @param n number of samples, at least 6
+     * @param vel receives n - 2 velocities
+     * @param acc receives n - 2 accelerations
+     * @param velLimit interior velocities are clamped to +/- this before the ends are extrapolated
+     * @return n - 2, the number of values written
+     */
+    public int differentiate(double[] pos, int n, double[] vel, double[] acc, double velLimit) {
+	if (n < 6) {
+	    throw new IllegalArgumentException("need at least 6 samples: " + n);
+	}
+	final double twoDt = 2 * dt;
+	final double dt2 = dt * dt;
+	double prev = pos[0];
+	double curr = pos[1];
+	for (int i = 1; i <= n - 4; i++) {
+	    double next = pos[i + 1];
+	    double v = (prev - next) / twoDt;
+	    vel[i] = v > velLimit ? velLimit : (v < -velLimit ? -velLimit : v);
+	    acc[i] = (prev - 2 * curr + next) / dt2;
+	    prev = curr;
+	    curr = next;
+	}
+	int last = n - 3;
+	vel[0] = 2 * vel[1] - vel[2];
+	acc[0] = 2 * acc[1] - acc[2];
+	vel[last] = 2 * vel[last - 1] - vel[last - 2];
+	acc[last] = 2 * acc[last - 1] - acc[last - 2];
+	return n - 2;
+    }
+
+    /**
+     * Fit accelDiff = a + b * -power + c * velocity over one run.
+     * The acceleration error is that of planned minus actual position.
+     * @param power commanded power profile
+     * @param planned planned position profile
+     * @param actual measured position profile
+     * @param n number of measured samples
+     * @return regression parameters a, b, c
+     */
+    public double[] identify(double[] power, double[] planned, double[] actual, int n) {
+	for (int i = 0; i < n; i++) {
+	    diff[i] = planned[i] - actual[i];
+	}
+	differentiate(actual, n, vel, scratch, Double.POSITIVE_INFINITY);
+	differentiate(diff, n, scratch, acc, Double.POSITIVE_INFINITY);
+
+	int rows = n - 5;
+	if (yData.length != rows) {
+	    xData = new double[rows][2];
+	    yData = new double[rows];
+	}
+	for (int r = 0; r < rows; r++) {
+	    int i = r + 1;
+	    xData[r][0] = -power[i];
+	    xData[r][1] = vel[i];
+	    yData[r] = acc[i];
+	}
+	reg.newSampleData(yData, xData);
+	return reg.estimateRegressionParameters();
+    }
+}
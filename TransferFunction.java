@@ -0,0 +1,129 @@
+import org.apache.commons.math3.analysis.solvers.LaguerreSolver;
+import org.apache.commons.math3.complex.Complex;
+
+/**
+ * Continuous-time transfer function N(s) / D(s), with the coefficients of
+ * both polynomials in ascending powers of s.
+ */
+public class TransferFunction {
+
+    private final double[] numerator;
+    private final double[] denominator;
+
+    /**
+     * @param numerator b0, b1, ... of b0 + b1 s + ...
+     * @param denominator a0, a1, ... of a0 + a1 s + ..., not all zero
+     */
+    public TransferFunction(double[] numerator, double[] denominator) {
+        boolean zero = true;
+        for (double a : denominator) {
+            zero &= a == 0;
+        }
+        if (zero) {
+            throw new IllegalArgumentException("denominator is zero");
+        }
+        this.numerator = numerator.clone();
+        this.denominator = denominator.clone();
+    }
+
+    public double[] getNumerator() {
+        return numerator.clone();
+    }
+
+    public double[] getDenominator() {
+        return denominator.clone();
+    }
+
+    /**
+     * The response at an angular frequency, N(j omega) / D(j omega).
+     */
+    public Complex evaluate(double omega) {
+        return polynomial(numerator, omega).divide(polynomial(denominator, omega));
+    }
+
+    /**
+     * Magnitude of the response at a frequency in Hz.
+     */
+    public double gain(double hz) {
+        return evaluate(2 * Math.PI * hz).abs();
+    }
+
+    /**
+     * Phase of the response at a frequency in Hz, radians.
+     */
+    public double phase(double hz) {
+        return evaluate(2 * Math.PI * hz).getArgument();
+    }
+
+    /**
+     * N(0) / D(0), infinite when D has a pole at 0.
+     */
+    public double getDcGain() {
+        return numerator[0] / denominator[0];
+    }
+
+    /**
+     * Roots of the denominator.
+     */
+    public Complex[] getPoles() {
+        return roots(denominator);
+    }
+
+    /**
+     * Roots of the numerator.
+     */
+    public Complex[] getZeros() {
+        return roots(numerator);
+    }
+
+    /**
+     * p(j omega) for coefficients in ascending powers.
+     */
+    static Complex polynomial(double[] p, double omega) {
+        double re = 0;
+        double im = 0;
+        //Horner in j omega: (re + j im) * j omega = -im omega + j re omega
+        for (int k = p.length - 1; k >= 0; k--) {
+            double r = -im * omega + p[k];
+            im = re * omega;
+            re = r;
+        }
+        return new Complex(re, im);
+    }
+
+    private static Complex[] roots(double[] p) {
+        int degree = p.length - 1;
+        while (degree > 0 && p[degree] == 0) {
+            degree--;
+        }
+        if (degree < 1) {
+            return new Complex[0];
+        }
+        double[] trimmed = new double[degree + 1];
+        System.arraycopy(p, 0, trimmed, 0, degree + 1);
+        return new LaguerreSolver().solveAllComplex(trimmed, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + format(numerator) + ") / (" + format(denominator) + ")";
+    }
+
+    private static String format(double[] p) {
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; k < p.length; k++) {
+            if (k > 0) {
+                text.append(p[k] < 0 ? " - " : " + ");
+            } else if (p[k] < 0) {
+                text.append("-");
+            }
+            text.append(String.format("%.6g", Math.abs(p[k])));
+            if (k == 1) {
+                text.append(" s");
+            } else if (k > 1) {
+                text.append(" s^").append(k);
+            }
+        }
+        return text.toString();
+    }
+}
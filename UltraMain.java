@@ -3,31 +3,32 @@ public class UltraMain {
     public static Thread sense;
     public static Thread drive;
 
-    public static volatile float senseVal = 0f;
-    public static volatile float senseFilter = 0f;
+    public static final Sensors sensors = new Sensors();
     public static volatile float power = 0f;
+
+    //Controller updates per second
+    private static final double rateHz = 200;
        
     public static void main(String[] args) throws InterruptedException {	
-        sense = new Thread(new Sensors());
+        sense = new Thread(sensors);
         drive = new Thread(new Actuators());
 	sense.start();
 	drive.start();
-	Thread.sleep(1000);
+	Rig.get().sleep(1000);
 	//int loopCycle = 0;
-	while(!false != false && !false) {
-	    float tempPower = -100 + senseFilter;
-	    power = tempPower > 100 ? 100 : tempPower;
-	    //System.out.println(senseFilter);
-	    //System.out.println(loopCycle++);
-	}
+	ControlLoop loop = new ControlLoop(rateHz);
+	loop.add(new ControlLoop.Task() {
+		public void tick(long tickTime) {
+		    float tempPower = -100 + sensors.getReading().filtered;
+		    power = tempPower > 100 ? 100 : tempPower;
+		    //System.out.println(sensors.getReading().filtered);
+		    //System.out.println(loopCycle++);
+		}
+	    });
+	loop.run();
     }
 
     public static float getPower() {
 	return power;
     }
-
-    public static void setSense(float sense, float filter) {
-	senseVal = sense;
-	senseFilter = filter;
-    }
 }
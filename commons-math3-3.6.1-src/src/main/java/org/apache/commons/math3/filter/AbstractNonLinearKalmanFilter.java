@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NullArgumentException;
+import org.apache.commons.math3.exception.NumberIsTooLargeException;
+import org.apache.commons.math3.linear.MatrixDimensionMismatchException;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.util.MathUtils;
+
+/**
+ * Base class for Kalman filters of non-linear models.
+ *
+ * <p>It holds the state estimation and the error covariance as flat arrays
+ * and checks the models, while subclasses implement the prediction and
+ * correction steps on a {@link KalmanWorkspace}, so that filtering does not
+ * allocate unless the models do. It also provides {@link #filter(double[][],
+ * double[][], double[][], double[][]) batch filtering} of a recorded run.</p>
+ *
+ * @since 3.7
+ */
+public abstract class AbstractNonLinearKalmanFilter {
+
+    /** The process model used by this filter instance. */
+    protected final NonLinearProcessModel processModel;
+
+    /** The measurement model used by this filter instance. */
+    protected final NonLinearMeasurementModel measurementModel;
+
+    /** Scratch storage. */
+    protected final KalmanWorkspace workspace;
+
+    /** State dimension n. */
+    protected final int n;
+
+    /** Measurement dimension m. */
+    protected final int m;
+
+    /** The state estimation, of length n. */
+    protected final double[] x;
+
+    /** The error covariance, n &times; n, row-major and symmetric. */
+    protected final double[] p;
+
+    /** The process noise, n &times; n, refreshed by {@link #loadProcessNoise()}. */
+    protected final double[] q;
+
+    /** The measurement noise, m &times; m, refreshed by {@link #loadMeasurementNoise()}. */
+    protected final double[] r;
+
+    /**
+     * Creates a new filter.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @param workspace scratch storage, possibly shared with other filters;
+     * if null, a workspace of the right size is allocated
+     * @throws NullArgumentException if a model or a noise matrix is null
+     * @throws DimensionMismatchException if the initial state does not match the state dimension
+     * @throws MatrixDimensionMismatchException if a matrix does not match the dimensions
+     * @throws NumberIsTooLargeException if the workspace is too small for the filter
+     */
+    protected AbstractNonLinearKalmanFilter(final NonLinearProcessModel process,
+                                            final NonLinearMeasurementModel measurement,
+                                            final KalmanWorkspace workspace)
+        throws NullArgumentException, DimensionMismatchException,
+               MatrixDimensionMismatchException, NumberIsTooLargeException {
+        MathUtils.checkNotNull(process);
+        MathUtils.checkNotNull(measurement);
+        this.processModel = process;
+        this.measurementModel = measurement;
+        n = process.getStateDimension();
+        m = measurement.getMeasurementDimension();
+
+        final RealMatrix processNoise = process.getProcessNoise();
+        MathUtils.checkNotNull(processNoise);
+        checkSquare(processNoise, n);
+        final RealMatrix measNoise = measurement.getMeasurementNoise();
+        MathUtils.checkNotNull(measNoise);
+        checkSquare(measNoise, m);
+
+        if (workspace == null) {
+            this.workspace = new KalmanWorkspace(n, m);
+        } else {
+            workspace.checkCapacity(n, m);
+            this.workspace = workspace;
+        }
+
+        x = new double[n];
+        final RealVector initialState = process.getInitialStateEstimate();
+        if (initialState != null) {
+            if (initialState.getDimension() != n) {
+                throw new DimensionMismatchException(initialState.getDimension(), n);
+            }
+            for (int i = 0; i < n; ++i) {
+                x[i] = initialState.getEntry(i);
+            }
+        }
+
+        p = new double[n * n];
+        final RealMatrix initialCovariance = process.getInitialErrorCovariance();
+        if (initialCovariance == null) {
+            KalmanWorkspace.copy(processNoise, n, n, p);
+        } else {
+            checkSquare(initialCovariance, n);
+            KalmanWorkspace.copy(initialCovariance, n, n, p);
+        }
+
+        q = new double[n * n];
+        r = new double[m * m];
+    }
+
+    /**
+     * Check the dimensions of a square matrix.
+     *
+     * @param matrix matrix to check
+     * @param dimension expected row and column dimension
+     * @throws MatrixDimensionMismatchException if the dimensions do not match
+     */
+    private static void checkSquare(final RealMatrix matrix, final int dimension)
+        throws MatrixDimensionMismatchException {
+        if (matrix.getRowDimension() != dimension || matrix.getColumnDimension() != dimension) {
+            throw new MatrixDimensionMismatchException(matrix.getRowDimension(),
+                                                       matrix.getColumnDimension(),
+                                                       dimension, dimension);
+        }
+    }
+
+    /**
+     * Copy the current process noise from the model.
+     */
+    protected void loadProcessNoise() {
+        KalmanWorkspace.copy(processModel.getProcessNoise(), n, n, q);
+    }
+
+    /**
+     * Copy the current measurement noise from the model.
+     */
+    protected void loadMeasurementNoise() {
+        KalmanWorkspace.copy(measurementModel.getMeasurementNoise(), m, m, r);
+    }
+
+    /**
+     * Returns the dimension of the state estimation vector.
+     *
+     * @return the state dimension
+     */
+    public int getStateDimension() {
+        return n;
+    }
+
+    /**
+     * Returns the dimension of the measurement vector.
+     *
+     * @return the measurement vector dimension
+     */
+    public int getMeasurementDimension() {
+        return m;
+    }
+
+    /**
+     * Returns a copy of the current state estimation vector.
+     *
+     * @return the state estimation vector
+     */
+    public double[] getStateEstimation() {
+        return x.clone();
+    }
+
+    /**
+     * Copies the current state estimation vector into an array, without allocating.
+     *
+     * @param destination array receiving the state, of length at least the state dimension
+     * @return destination
+     * @throws NumberIsTooLargeException if destination is too short
+     */
+    public double[] getStateEstimation(final double[] destination) throws NumberIsTooLargeException {
+        if (destination.length < n) {
+            throw new NumberIsTooLargeException(n, destination.length, true);
+        }
+        System.arraycopy(x, 0, destination, 0, n);
+        return destination;
+    }
+
+    /**
+     * Returns a copy of the current error covariance matrix.
+     *
+     * @return the error covariance matrix
+     */
+    public double[][] getErrorCovariance() {
+        final double[][] out = new double[n][n];
+        for (int i = 0; i < n; ++i) {
+            System.arraycopy(p, i * n, out[i], 0, n);
+        }
+        return out;
+    }
+
+    /**
+     * Returns a copy of the current error covariance matrix.
+     *
+     * @return the error covariance matrix
+     */
+    public RealMatrix getErrorCovarianceMatrix() {
+        return MatrixUtils.createRealMatrix(getErrorCovariance());
+    }
+
+    /**
+     * Predict the internal state estimation one time step ahead, without control input.
+     */
+    public void predict() {
+        predict(null);
+    }
+
+    /**
+     * Predict the internal state estimation one time step ahead.
+     *
+     * @param u the control vector, null if there is no control input
+     */
+    public abstract void predict(double[] u);
+
+    /**
+     * Correct the current state estimate with an actual measurement.
+     *
+     * @param z the measurement vector
+     * @throws NullArgumentException if the measurement vector is {@code null}
+     * @throws DimensionMismatchException if the dimension of the measurement vector does not fit
+     */
+    public void correct(final double[] z) throws NullArgumentException, DimensionMismatchException {
+        MathUtils.checkNotNull(z);
+        if (z.length != m) {
+            throw new DimensionMismatchException(z.length, m);
+        }
+        update(z);
+    }
+
+    /**
+     * Apply the measurement update, once the measurement has been checked.
+     *
+     * @param z the measurement vector, of length m
+     */
+    protected abstract void update(double[] z);
+
+    /**
+     * Filter a whole recorded run in one call.
+     *
+     * <p>For each step k, the filter predicts with controls[k] and then, if
+     * measurements[k] is not null, corrects with it; a null measurement
+     * marks a step where the sensor gave nothing. The filtered state and
+     * covariance after each step are copied out, so that a run can be
+     * filtered offline and then smoothed. The filter keeps the state of the
+     * last step, so consecutive calls filter consecutive parts of a run.</p>
+     *
+     * @param controls control vectors of each step; null if there is no
+     * control input, and individual entries may be null
+     * @param measurements measurement vectors of each step, entries may be null
+     * @param states if not null, receives the state after each step; rows
+     * that are null are allocated
+     * @param covariances if not null, receives the error covariance after
+     * each step, row-major in n<sup>2</sup> arrays; rows that are null are allocated
+     * @return the number of steps filtered, the length of measurements
+     * @throws NullArgumentException if measurements is null
+     * @throws DimensionMismatchException if an array is shorter than the run
+     */
+    public int filter(final double[][] controls, final double[][] measurements,
+                      final double[][] states, final double[][] covariances)
+        throws NullArgumentException, DimensionMismatchException {
+        MathUtils.checkNotNull(measurements);
+        final int steps = measurements.length;
+        if (controls != null && controls.length < steps) {
+            throw new DimensionMismatchException(controls.length, steps);
+        }
+        if (states != null && states.length < steps) {
+            throw new DimensionMismatchException(states.length, steps);
+        }
+        if (covariances != null && covariances.length < steps) {
+            throw new DimensionMismatchException(covariances.length, steps);
+        }
+        for (int k = 0; k < steps; ++k) {
+            predict(controls == null ? null : controls[k]);
+            if (measurements[k] != null) {
+                correct(measurements[k]);
+            }
+            if (states != null) {
+                if (states[k] == null) {
+                    states[k] = new double[n];
+                }
+                System.arraycopy(x, 0, states[k], 0, n);
+            }
+            if (covariances != null) {
+                if (covariances[k] == null) {
+                    covariances[k] = new double[n * n];
+                }
+                System.arraycopy(p, 0, covariances[k], 0, n * n);
+            }
+        }
+        return steps;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.analysis.differentiation.DerivativeStructure;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Non-linear measurement model whose Jacobian is computed by automatic
+ * differentiation.
+ *
+ * <p>Subclasses only write the measurement function, in terms of
+ * {@link DerivativeStructure} instances, as for
+ * {@link DifferentiableProcessModel}.</p>
+ *
+ * @since 3.7
+ */
+public abstract class DifferentiableMeasurementModel implements NonLinearMeasurementModel {
+
+    /** State dimension. */
+    private final int n;
+
+    /** Measurement dimension. */
+    private final int m;
+
+    /** Measurement noise. */
+    private final RealMatrix measurementNoise;
+
+    /**
+     * Create a model.
+     *
+     * @param stateDimension dimension n of the state
+     * @param measurementDimension dimension m of the measurement
+     * @param measurementNoise the measurement noise matrix
+     * @throws NotStrictlyPositiveException if a dimension is not positive
+     */
+    protected DifferentiableMeasurementModel(final int stateDimension, final int measurementDimension,
+                                             final RealMatrix measurementNoise)
+        throws NotStrictlyPositiveException {
+        if (stateDimension <= 0) {
+            throw new NotStrictlyPositiveException(stateDimension);
+        }
+        if (measurementDimension <= 0) {
+            throw new NotStrictlyPositiveException(measurementDimension);
+        }
+        this.n = stateDimension;
+        this.m = measurementDimension;
+        this.measurementNoise = measurementNoise;
+    }
+
+    /**
+     * Evaluates the measurement function.
+     *
+     * @param x the state, as n free parameters
+     * @return h(x), of length m
+     */
+    public abstract DerivativeStructure[] measurement(DerivativeStructure[] x);
+
+    /** {@inheritDoc} */
+    public int getMeasurementDimension() {
+        return m;
+    }
+
+    /** {@inheritDoc} */
+    public void measurement(final double[] x, final double[] z, final double[] jacobian)
+        throws DimensionMismatchException {
+        final DerivativeStructure[] h =
+            measurement(DifferentiableProcessModel.parameters(x, n, jacobian != null));
+        if (h.length != m) {
+            throw new DimensionMismatchException(h.length, m);
+        }
+        DifferentiableProcessModel.unpack(h, n, z, jacobian);
+    }
+
+    /** {@inheritDoc} */
+    public RealMatrix getMeasurementNoise() {
+        return measurementNoise;
+    }
+}
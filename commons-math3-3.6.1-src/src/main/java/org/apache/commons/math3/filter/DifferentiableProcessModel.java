@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.analysis.differentiation.DerivativeStructure;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Non-linear process model whose Jacobian is computed by automatic
+ * differentiation.
+ *
+ * <p>Subclasses only write the transition function, in terms of
+ * {@link DerivativeStructure} instances; the Jacobian needed by the
+ * {@link ExtendedKalmanFilter} is obtained from the first order partial
+ * derivatives. Constants must be combined with the state through the
+ * {@link DerivativeStructure} arithmetic, for example
+ * {@code x[1].multiply(dt).add(x[0])}. This is convenient but allocates
+ * a few objects per state component at each step; implement
+ * {@link NonLinearProcessModel} directly where that matters.</p>
+ *
+ * @since 3.7
+ */
+public abstract class DifferentiableProcessModel implements NonLinearProcessModel {
+
+    /** State dimension. */
+    private final int n;
+
+    /** Process noise. */
+    private final RealMatrix processNoise;
+
+    /** Initial state estimate, may be null. */
+    private final RealVector initialState;
+
+    /** Initial error covariance, may be null. */
+    private final RealMatrix initialErrorCovariance;
+
+    /**
+     * Create a model.
+     *
+     * @param stateDimension dimension n of the state
+     * @param processNoise the process noise matrix
+     * @param initialState the initial state estimate, null for a zero vector
+     * @param initialErrorCovariance the initial error covariance, null for the process noise
+     * @throws NotStrictlyPositiveException if the state dimension is not positive
+     */
+    protected DifferentiableProcessModel(final int stateDimension, final RealMatrix processNoise,
+                                         final RealVector initialState,
+                                         final RealMatrix initialErrorCovariance)
+        throws NotStrictlyPositiveException {
+        if (stateDimension <= 0) {
+            throw new NotStrictlyPositiveException(stateDimension);
+        }
+        this.n = stateDimension;
+        this.processNoise = processNoise;
+        this.initialState = initialState;
+        this.initialErrorCovariance = initialErrorCovariance;
+    }
+
+    /**
+     * Evaluates the transition function.
+     *
+     * @param x the current state, as n free parameters
+     * @param u the control vector, null if there is no control input
+     * @return f(x, u), of length n
+     */
+    public abstract DerivativeStructure[] transition(DerivativeStructure[] x, double[] u);
+
+    /** {@inheritDoc} */
+    public int getStateDimension() {
+        return n;
+    }
+
+    /** {@inheritDoc} */
+    public void transition(final double[] x, final double[] u, final double[] next, final double[] jacobian)
+        throws DimensionMismatchException {
+        final DerivativeStructure[] f = transition(parameters(x, n, jacobian != null), u);
+        if (f.length != n) {
+            throw new DimensionMismatchException(f.length, n);
+        }
+        unpack(f, n, next, jacobian);
+    }
+
+    /** {@inheritDoc} */
+    public RealMatrix getProcessNoise() {
+        return processNoise;
+    }
+
+    /** {@inheritDoc} */
+    public RealVector getInitialStateEstimate() {
+        return initialState;
+    }
+
+    /** {@inheritDoc} */
+    public RealMatrix getInitialErrorCovariance() {
+        return initialErrorCovariance;
+    }
+
+    /**
+     * Wrap a point as free parameters.
+     *
+     * @param x the point
+     * @param n number of parameters
+     * @param derivatives if true, first order derivatives are tracked
+     * @return one parameter per component of x
+     */
+    static DerivativeStructure[] parameters(final double[] x, final int n, final boolean derivatives) {
+        final DerivativeStructure[] ds = new DerivativeStructure[n];
+        for (int i = 0; i < n; ++i) {
+            ds[i] = derivatives ?
+                    new DerivativeStructure(n, 1, i, x[i]) :
+                    new DerivativeStructure(n, 0, x[i]);
+        }
+        return ds;
+    }
+
+    /**
+     * Extract values and first order partial derivatives.
+     *
+     * @param f function values, as computed from {@link #parameters(double[], int, boolean)}
+     * @param n number of parameters
+     * @param values array receiving the values
+     * @param jacobian array receiving the derivatives, row-major, or null
+     */
+    static void unpack(final DerivativeStructure[] f, final int n,
+                       final double[] values, final double[] jacobian) {
+        final int[] orders = new int[n];
+        for (int i = 0; i < f.length; ++i) {
+            values[i] = f[i].getValue();
+            if (jacobian != null) {
+                for (int j = 0; j < n; ++j) {
+                    orders[j] = 1;
+                    jacobian[i * n + j] = f[i].getPartialDerivative(orders);
+                    orders[j] = 0;
+                }
+            }
+        }
+    }
+}
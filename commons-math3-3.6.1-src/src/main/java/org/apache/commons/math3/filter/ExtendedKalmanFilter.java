@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NullArgumentException;
+import org.apache.commons.math3.exception.NumberIsTooLargeException;
+import org.apache.commons.math3.linear.MatrixDimensionMismatchException;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+
+/**
+ * Extended Kalman filter.
+ *
+ * <p>The state is propagated through the non-linear transition
+ * <i>x<sub>k</sub></i> = f(<i>x<sub>k-1</sub></i>, <i>u<sub>k-1</sub></i>)
+ * and the covariance through its Jacobian F, as P = F P F<sup>T</sup> + Q.
+ * The measurement update linearizes h around the predicted state, with the
+ * innovation taken from h itself. Both steps run on the same in-place
+ * kernels as {@link InPlaceKalmanFilter}, including the optional Joseph form
+ * covariance update.</p>
+ *
+ * <p>The Jacobians are supplied by the models, either written by hand or
+ * obtained by automatic differentiation through
+ * {@link DifferentiableProcessModel} and {@link DifferentiableMeasurementModel}.
+ * For strongly non-linear models, the {@link UnscentedKalmanFilter} avoids
+ * the linearization altogether.</p>
+ *
+ * @since 3.7
+ */
+public class ExtendedKalmanFilter extends AbstractNonLinearKalmanFilter {
+
+    /** Use the Joseph form of the covariance update. */
+    private final boolean joseph;
+
+    /**
+     * Creates a new filter using the standard covariance update and a
+     * workspace of its own.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @throws NullArgumentException if a model or a noise matrix is null
+     * @throws DimensionMismatchException if the initial state does not match the state dimension
+     * @throws MatrixDimensionMismatchException if a matrix does not match the dimensions
+     */
+    public ExtendedKalmanFilter(final NonLinearProcessModel process,
+                                final NonLinearMeasurementModel measurement)
+        throws NullArgumentException, DimensionMismatchException, MatrixDimensionMismatchException {
+        this(process, measurement, false, null);
+    }
+
+    /**
+     * Creates a new filter.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @param joseph if true, use the Joseph form of the covariance update
+     * @param workspace scratch storage, possibly shared with other filters;
+     * if null, a workspace of the right size is allocated
+     * @throws NullArgumentException if a model or a noise matrix is null
+     * @throws DimensionMismatchException if the initial state does not match the state dimension
+     * @throws MatrixDimensionMismatchException if a matrix does not match the dimensions
+     * @throws NumberIsTooLargeException if the workspace is too small for the filter
+     */
+    public ExtendedKalmanFilter(final NonLinearProcessModel process,
+                                final NonLinearMeasurementModel measurement,
+                                final boolean joseph, final KalmanWorkspace workspace)
+        throws NullArgumentException, DimensionMismatchException,
+               MatrixDimensionMismatchException, NumberIsTooLargeException {
+        super(process, measurement, workspace);
+        this.joseph = joseph;
+    }
+
+    /**
+     * Returns whether the Joseph form of the covariance update is used.
+     *
+     * @return true if the Joseph form is used
+     */
+    public boolean isJosephForm() {
+        return joseph;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void predict(final double[] u) {
+        // xHat(k)- = f(xHat(k-1), u(k-1)), F = df/dx at xHat(k-1)
+        final double[] next = workspace.n1;
+        final double[] f = workspace.nn2;
+        processModel.transition(x, u, next, f);
+        System.arraycopy(next, 0, x, 0, n);
+
+        // P(k)- = F * P(k-1) * F' + Q
+        loadProcessNoise();
+        workspace.propagate(f, p, q, n);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NonPositiveDefiniteMatrixException if the innovation covariance is not positive definite
+     */
+    @Override
+    protected void update(final double[] z) throws NonPositiveDefiniteMatrixException {
+        // Inn = z(k) - h(xHat(k)-), H = dh/dx at xHat(k)-
+        final double[] innovation = workspace.m1;
+        final double[] h = workspace.mn3;
+        measurementModel.measurement(x, innovation, h);
+        for (int i = 0; i < m; ++i) {
+            innovation[i] = z[i] - innovation[i];
+        }
+
+        loadMeasurementNoise();
+        workspace.update(x, p, h, r, innovation, n, m, joseph);
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NullArgumentException;
+import org.apache.commons.math3.exception.NumberIsTooLargeException;
+import org.apache.commons.math3.linear.MatrixDimensionMismatchException;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.NonSquareMatrixException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.util.MathUtils;
+
+/**
+ * Kalman filter that updates its state and covariance in place.
+ *
+ * <p>This filter implements the same linear model as {@link KalmanFilter}
+ * and takes the same {@link ProcessModel} and {@link MeasurementModel}, but
+ * {@link #predict(double[])} and {@link #correct(double[])} allocate no
+ * objects: the transition, control and measurement matrices are copied into
+ * flat arrays once, the process and measurement noise are copied into
+ * preallocated arrays at each step (they may change over time), and all
+ * intermediate results live in a {@link KalmanWorkspace}. This makes the
+ * filter suitable for high rate loops on small machines, where the garbage
+ * produced by the {@link RealMatrix} based implementation matters.</p>
+ *
+ * <p>The error covariance P is kept exactly symmetric, and only its upper
+ * triangle is computed. The measurement update can use either the standard
+ * form P = P - K S K<sup>T</sup> or the Joseph form
+ * P = (I - K H) P (I - K H)<sup>T</sup> + K R K<sup>T</sup>, which costs
+ * about twice as much but keeps P positive semi-definite in the face of
+ * rounding errors, for example when some measurements are much more
+ * accurate than the prior.</p>
+ *
+ * <p>Instances are not thread safe. A workspace may be shared by several
+ * filters used from the same thread.</p>
+ *
+ * @see KalmanFilter
+ * @since 3.7
+ */
+public class InPlaceKalmanFilter {
+
+    /** The process model used by this filter instance. */
+    private final ProcessModel processModel;
+
+    /** The measurement model used by this filter instance. */
+    private final MeasurementModel measurementModel;
+
+    /** Scratch storage. */
+    private final KalmanWorkspace workspace;
+
+    /** Use the Joseph form of the covariance update. */
+    private final boolean joseph;
+
+    /** State dimension n. */
+    private final int n;
+
+    /** Measurement dimension m. */
+    private final int m;
+
+    /** Control dimension, 0 if there is no control matrix. */
+    private final int c;
+
+    /** The transition matrix A, n &times; n. */
+    private final double[] a;
+
+    /** The control matrix B, n &times; c. */
+    private final double[] b;
+
+    /** The measurement matrix H, m &times; n. */
+    private final double[] h;
+
+    /** The process noise Q, n &times; n, refreshed at each prediction. */
+    private final double[] q;
+
+    /** The measurement noise R, m &times; m, refreshed at each correction. */
+    private final double[] r;
+
+    /** The state estimation x. */
+    private final double[] x;
+
+    /** The error covariance P, n &times; n. */
+    private final double[] p;
+
+    /**
+     * Creates a new filter using the standard covariance update and a
+     * workspace of its own.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @throws NullArgumentException if any of the given inputs is null (except for the control matrix)
+     * @throws NonSquareMatrixException if the transition matrix is non square
+     * @throws DimensionMismatchException if the column dimension of the transition
+     * matrix does not match the dimension of the initial state estimation vector
+     * @throws MatrixDimensionMismatchException if the matrix dimensions do not fit together
+     */
+    public InPlaceKalmanFilter(final ProcessModel process, final MeasurementModel measurement)
+        throws NullArgumentException, NonSquareMatrixException, DimensionMismatchException,
+               MatrixDimensionMismatchException {
+        this(process, measurement, false, null);
+    }
+
+    /**
+     * Creates a new filter.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @param joseph if true, use the Joseph form of the covariance update
+     * @param workspace scratch storage, possibly shared with other filters;
+     * if null, a workspace of the right size is allocated
+     * @throws NullArgumentException if any of the given inputs is null (except for the control
+     * matrix and the workspace)
+     * @throws NonSquareMatrixException if the transition matrix is non square
+     * @throws DimensionMismatchException if the column dimension of the transition
+     * matrix does not match the dimension of the initial state estimation vector
+     * @throws MatrixDimensionMismatchException if the matrix dimensions do not fit together
+     * @throws NumberIsTooLargeException if the workspace is too small for the filter
+     */
+    public InPlaceKalmanFilter(final ProcessModel process, final MeasurementModel measurement,
+                               final boolean joseph, final KalmanWorkspace workspace)
+        throws NullArgumentException, NonSquareMatrixException, DimensionMismatchException,
+               MatrixDimensionMismatchException, NumberIsTooLargeException {
+
+        MathUtils.checkNotNull(process);
+        MathUtils.checkNotNull(measurement);
+        this.processModel = process;
+        this.measurementModel = measurement;
+        this.joseph = joseph;
+
+        final RealMatrix transitionMatrix = process.getStateTransitionMatrix();
+        MathUtils.checkNotNull(transitionMatrix);
+        final RealMatrix measurementMatrix = measurement.getMeasurementMatrix();
+        MathUtils.checkNotNull(measurementMatrix);
+        final RealMatrix processNoise = process.getProcessNoise();
+        MathUtils.checkNotNull(processNoise);
+        final RealMatrix measNoise = measurement.getMeasurementNoise();
+        MathUtils.checkNotNull(measNoise);
+        final RealMatrix controlMatrix = process.getControlMatrix();
+
+        // A must be a square matrix
+        if (!transitionMatrix.isSquare()) {
+            throw new NonSquareMatrixException(transitionMatrix.getRowDimension(),
+                                               transitionMatrix.getColumnDimension());
+        }
+        n = transitionMatrix.getRowDimension();
+
+        final RealVector initialState = process.getInitialStateEstimate();
+        if (initialState != null && initialState.getDimension() != n) {
+            throw new DimensionMismatchException(n, initialState.getDimension());
+        }
+
+        // row dimension of B must be equal to A
+        if (controlMatrix != null &&
+            controlMatrix.getRowDimension() > 0 &&
+            controlMatrix.getColumnDimension() > 0) {
+            if (controlMatrix.getRowDimension() != n) {
+                throw new MatrixDimensionMismatchException(controlMatrix.getRowDimension(),
+                                                           controlMatrix.getColumnDimension(),
+                                                           n, controlMatrix.getColumnDimension());
+            }
+            c = controlMatrix.getColumnDimension();
+        } else {
+            c = 0;
+        }
+
+        // Q must be equal to A
+        MatrixUtils.checkAdditionCompatible(transitionMatrix, processNoise);
+
+        // column dimension of H must be equal to row dimension of A
+        if (measurementMatrix.getColumnDimension() != n) {
+            throw new MatrixDimensionMismatchException(measurementMatrix.getRowDimension(),
+                                                       measurementMatrix.getColumnDimension(),
+                                                       measurementMatrix.getRowDimension(), n);
+        }
+        m = measurementMatrix.getRowDimension();
+
+        // R must be m x m
+        if (measNoise.getRowDimension() != m || measNoise.getColumnDimension() != m) {
+            throw new MatrixDimensionMismatchException(measNoise.getRowDimension(),
+                                                       measNoise.getColumnDimension(), m, m);
+        }
+
+        if (workspace == null) {
+            this.workspace = new KalmanWorkspace(n, m);
+        } else {
+            workspace.checkCapacity(n, m);
+            this.workspace = workspace;
+        }
+
+        a = new double[n * n];
+        KalmanWorkspace.copy(transitionMatrix, n, n, a);
+        b = new double[n * c];
+        if (c > 0) {
+            KalmanWorkspace.copy(controlMatrix, n, c, b);
+        }
+        h = new double[m * n];
+        KalmanWorkspace.copy(measurementMatrix, m, n, h);
+        q = new double[n * n];
+        r = new double[m * m];
+
+        x = new double[n];
+        if (initialState != null) {
+            for (int i = 0; i < n; ++i) {
+                x[i] = initialState.getEntry(i);
+            }
+        }
+
+        // initialize the error covariance to the process noise if it is not
+        // available from the process model
+        final RealMatrix initialCovariance = process.getInitialErrorCovariance();
+        p = new double[n * n];
+        if (initialCovariance == null) {
+            KalmanWorkspace.copy(processNoise, n, n, p);
+        } else {
+            MatrixUtils.checkAdditionCompatible(transitionMatrix, initialCovariance);
+            KalmanWorkspace.copy(initialCovariance, n, n, p);
+        }
+    }
+
+    /**
+     * Returns the dimension of the state estimation vector.
+     *
+     * @return the state dimension
+     */
+    public int getStateDimension() {
+        return n;
+    }
+
+    /**
+     * Returns the dimension of the measurement vector.
+     *
+     * @return the measurement vector dimension
+     */
+    public int getMeasurementDimension() {
+        return m;
+    }
+
+    /**
+     * Returns whether the Joseph form of the covariance update is used.
+     *
+     * @return true if the Joseph form is used
+     */
+    public boolean isJosephForm() {
+        return joseph;
+    }
+
+    /**
+     * Returns a copy of the current state estimation vector.
+     *
+     * @return the state estimation vector
+     */
+    public double[] getStateEstimation() {
+        return x.clone();
+    }
+
+    /**
+     * Copies the current state estimation vector into an array, without allocating.
+     *
+     * @param destination array receiving the state, of length at least the state dimension
+     * @return destination
+     * @throws NumberIsTooLargeException if destination is too short
+     */
+    public double[] getStateEstimation(final double[] destination) throws NumberIsTooLargeException {
+        if (destination.length < n) {
+            throw new NumberIsTooLargeException(n, destination.length, true);
+        }
+        System.arraycopy(x, 0, destination, 0, n);
+        return destination;
+    }
+
+    /**
+     * Returns a copy of the current error covariance matrix.
+     *
+     * @return the error covariance matrix
+     */
+    public double[][] getErrorCovariance() {
+        final double[][] out = new double[n][n];
+        for (int i = 0; i < n; ++i) {
+            System.arraycopy(p, i * n, out[i], 0, n);
+        }
+        return out;
+    }
+
+    /**
+     * Copies the current error covariance matrix into an array, row by row, without allocating.
+     *
+     * @param destination array receiving the covariance, of length at least n<sup>2</sup>
+     * @return destination
+     * @throws NumberIsTooLargeException if destination is too short
+     */
+    public double[] getErrorCovariance(final double[] destination) throws NumberIsTooLargeException {
+        if (destination.length < n * n) {
+            throw new NumberIsTooLargeException(n * n, destination.length, true);
+        }
+        System.arraycopy(p, 0, destination, 0, n * n);
+        return destination;
+    }
+
+    /**
+     * Returns a copy of the current error covariance matrix.
+     *
+     * @return the error covariance matrix
+     */
+    public RealMatrix getErrorCovarianceMatrix() {
+        return MatrixUtils.createRealMatrix(getErrorCovariance());
+    }
+
+    /**
+     * Predict the internal state estimation one time step ahead, without control input.
+     */
+    public void predict() {
+        predict((double[]) null);
+    }
+
+    /**
+     * Predict the internal state estimation one time step ahead.
+     *
+     * @param u the control vector, may be null if there is no control input
+     * @throws DimensionMismatchException if the dimension of the control vector does not fit
+     */
+    public void predict(final double[] u) throws DimensionMismatchException {
+        if (u != null && u.length != c) {
+            throw new DimensionMismatchException(u.length, c);
+        }
+
+        // xHat(k)- = A * xHat(k-1) + B * u(k-1)
+        final double[] tmp = workspace.n1;
+        for (int i = 0; i < n; ++i) {
+            double v = KalmanWorkspace.dot(a, i * n, x, 0, n);
+            if (u != null) {
+                v += KalmanWorkspace.dot(b, i * c, u, 0, c);
+            }
+            tmp[i] = v;
+        }
+        System.arraycopy(tmp, 0, x, 0, n);
+        propagateCovariance();
+    }
+
+    /**
+     * Predict the internal state estimation one time step ahead.
+     *
+     * @param u the control vector, may be null if there is no control input
+     * @throws DimensionMismatchException if the dimension of the control vector does not fit
+     */
+    public void predict(final RealVector u) throws DimensionMismatchException {
+        if (u == null) {
+            predict((double[]) null);
+            return;
+        }
+        if (u.getDimension() != c) {
+            throw new DimensionMismatchException(u.getDimension(), c);
+        }
+        final double[] tmp = workspace.n1;
+        for (int i = 0; i < n; ++i) {
+            double v = KalmanWorkspace.dot(a, i * n, x, 0, n);
+            for (int j = 0; j < c; ++j) {
+                v += b[i * c + j] * u.getEntry(j);
+            }
+            tmp[i] = v;
+        }
+        System.arraycopy(tmp, 0, x, 0, n);
+        propagateCovariance();
+    }
+
+    /**
+     * Project the error covariance ahead.
+     */
+    private void propagateCovariance() {
+        KalmanWorkspace.copy(processModel.getProcessNoise(), n, n, q);
+        workspace.propagate(a, p, q, n);
+    }
+
+    /**
+     * Correct the current state estimate with an actual measurement.
+     *
+     * @param z the measurement vector
+     * @throws NullArgumentException if the measurement vector is {@code null}
+     * @throws DimensionMismatchException if the dimension of the measurement vector does not fit
+     * @throws NonPositiveDefiniteMatrixException if the innovation covariance is not positive definite
+     */
+    public void correct(final double[] z)
+        throws NullArgumentException, DimensionMismatchException, NonPositiveDefiniteMatrixException {
+        MathUtils.checkNotNull(z);
+        if (z.length != m) {
+            throw new DimensionMismatchException(z.length, m);
+        }
+        final double[] innovation = workspace.m1;
+        for (int i = 0; i < m; ++i) {
+            innovation[i] = z[i] - KalmanWorkspace.dot(h, i * n, x, 0, n);
+        }
+        update(innovation);
+    }
+
+    /**
+     * Correct the current state estimate with an actual measurement.
+     *
+     * @param z the measurement vector
+     * @throws NullArgumentException if the measurement vector is {@code null}
+     * @throws DimensionMismatchException if the dimension of the measurement vector does not fit
+     * @throws NonPositiveDefiniteMatrixException if the innovation covariance is not positive definite
+     */
+    public void correct(final RealVector z)
+        throws NullArgumentException, DimensionMismatchException, NonPositiveDefiniteMatrixException {
+        MathUtils.checkNotNull(z);
+        if (z.getDimension() != m) {
+            throw new DimensionMismatchException(z.getDimension(), m);
+        }
+        final double[] innovation = workspace.m1;
+        for (int i = 0; i < m; ++i) {
+            innovation[i] = z.getEntry(i) - KalmanWorkspace.dot(h, i * n, x, 0, n);
+        }
+        update(innovation);
+    }
+
+    /**
+     * Apply the measurement update for a given innovation.
+     *
+     * @param innovation z - H xHat, of length m
+     * @throws NonPositiveDefiniteMatrixException if the innovation covariance is not positive definite
+     */
+    private void update(final double[] innovation) throws NonPositiveDefiniteMatrixException {
+        KalmanWorkspace.copy(measurementModel.getMeasurementNoise(), m, m, r);
+        workspace.update(x, p, h, r, innovation, n, m, joseph);
+    }
+
+}
@@ -0,0 +1,536 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.NumberIsTooLargeException;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Preallocated scratch storage and dense kernels for Kalman filters that
+ * must not allocate while filtering.
+ *
+ * <p>All matrices are stored row-major in flat {@code double[]} arrays.
+ * The kernels work on the leading rows and columns of these arrays, so a
+ * workspace sized for the largest filter can be shared by several smaller
+ * filters, as long as they are only used from one thread at a time. Inner
+ * products of up to six terms are fully unrolled, which covers the small
+ * state dimensions typical of motion and sensor fusion models.</p>
+ *
+ * <p>Covariance matrices are symmetric: the kernels producing them compute
+ * the upper triangle only and mirror it, which halves the work and keeps
+ * the result exactly symmetric.</p>
+ *
+ * @see InPlaceKalmanFilter
+ * @see ExtendedKalmanFilter
+ * @see UnscentedKalmanFilter
+ * @since 3.7
+ */
+public class KalmanWorkspace {
+
+    /** Absolute positivity threshold for the innovation covariance, as in {@link KalmanFilter}. */
+    private static final double POSITIVITY_THRESHOLD = 1.0e-10;
+
+    /** Largest state dimension supported. */
+    private final int maxState;
+
+    /** Largest measurement dimension supported. */
+    private final int maxMeasurement;
+
+    /** Scratch n &times; n: A P, or (I - K H) P. */
+    final double[] nn1;
+
+    /** Scratch n &times; n: I - K H. */
+    final double[] nn2;
+
+    /** Scratch m &times; n: H P. */
+    final double[] mn1;
+
+    /** Scratch m &times; n: K<sup>T</sup>. */
+    final double[] mn2;
+
+    /** Scratch m &times; n: measurement Jacobian. */
+    final double[] mn3;
+
+    /** Scratch n &times; m: K. */
+    final double[] nm1;
+
+    /** Scratch n &times; m: K R. */
+    final double[] nm2;
+
+    /** Scratch m &times; m: innovation covariance S and its Cholesky factor. */
+    final double[] mm;
+
+    /** Scratch vector of length n. */
+    final double[] n1;
+
+    /** Scratch vector of length n. */
+    final double[] n2;
+
+    /** Scratch vector of length m. */
+    final double[] m1;
+
+    /** Scratch vector of length m. */
+    final double[] m2;
+
+    /** Sigma points, (2n + 1) &times; n. */
+    final double[] sigmaX;
+
+    /** Sigma points mapped through the measurement model, (2n + 1) &times; m. */
+    final double[] sigmaZ;
+
+    /**
+     * Create a workspace.
+     *
+     * @param maxState largest state dimension of the filters using it
+     * @param maxMeasurement largest measurement dimension of the filters using it
+     * @throws NotStrictlyPositiveException if a dimension is not positive
+     */
+    public KalmanWorkspace(final int maxState, final int maxMeasurement)
+        throws NotStrictlyPositiveException {
+        if (maxState <= 0) {
+            throw new NotStrictlyPositiveException(maxState);
+        }
+        if (maxMeasurement <= 0) {
+            throw new NotStrictlyPositiveException(maxMeasurement);
+        }
+        this.maxState = maxState;
+        this.maxMeasurement = maxMeasurement;
+        nn1 = new double[maxState * maxState];
+        nn2 = new double[maxState * maxState];
+        mn1 = new double[maxMeasurement * maxState];
+        mn2 = new double[maxMeasurement * maxState];
+        mn3 = new double[maxMeasurement * maxState];
+        nm1 = new double[maxState * maxMeasurement];
+        nm2 = new double[maxState * maxMeasurement];
+        mm = new double[maxMeasurement * maxMeasurement];
+        n1 = new double[maxState];
+        n2 = new double[maxState];
+        m1 = new double[maxMeasurement];
+        m2 = new double[maxMeasurement];
+        sigmaX = new double[(2 * maxState + 1) * maxState];
+        sigmaZ = new double[(2 * maxState + 1) * maxMeasurement];
+    }
+
+    /**
+     * Get the largest state dimension supported.
+     *
+     * @return largest state dimension
+     */
+    public int getMaxStateDimension() {
+        return maxState;
+    }
+
+    /**
+     * Get the largest measurement dimension supported.
+     *
+     * @return largest measurement dimension
+     */
+    public int getMaxMeasurementDimension() {
+        return maxMeasurement;
+    }
+
+    /**
+     * Check that a filter fits in this workspace.
+     *
+     * @param n state dimension
+     * @param m measurement dimension
+     * @throws NumberIsTooLargeException if a dimension exceeds the workspace
+     */
+    void checkCapacity(final int n, final int m) throws NumberIsTooLargeException {
+        if (n > maxState) {
+            throw new NumberIsTooLargeException(n, maxState, true);
+        }
+        if (m > maxMeasurement) {
+            throw new NumberIsTooLargeException(m, maxMeasurement, true);
+        }
+    }
+
+    /**
+     * Project an error covariance ahead: P = A P A<sup>T</sup> + Q.
+     *
+     * @param a n &times; n transition matrix, or its Jacobian
+     * @param p n &times; n symmetric covariance, updated in place
+     * @param q n &times; n symmetric process noise
+     * @param n state dimension
+     */
+    void propagate(final double[] a, final double[] p, final double[] q, final int n) {
+        // P is symmetric, so A * P = A * P'
+        final double[] ap = nn1;
+        multiplyTransposed(a, p, n, n, n, ap);
+        multiplyTransposedSymmetric(ap, a, n, n, q, p);
+    }
+
+    /**
+     * Apply a measurement update to a state and its covariance.
+     *
+     * @param x state, of length n, updated in place
+     * @param p n &times; n symmetric covariance, updated in place
+     * @param h m &times; n measurement matrix, or its Jacobian
+     * @param r m &times; m symmetric measurement noise
+     * @param innovation difference between the measurement and its prediction, of length m
+     * @param n state dimension
+     * @param m measurement dimension
+     * @param joseph if true, use the Joseph form of the covariance update
+     * @throws NonPositiveDefiniteMatrixException if the innovation covariance is not positive definite
+     */
+    void update(final double[] x, final double[] p, final double[] h, final double[] r,
+                final double[] innovation, final int n, final int m, final boolean joseph)
+        throws NonPositiveDefiniteMatrixException {
+
+        // H * P, which is also (P * H')' as P is symmetric
+        final double[] hp = mn1;
+        multiplyTransposed(h, p, m, n, n, hp);
+
+        // S = H * P * H' + R, factored in place
+        final double[] s = mm;
+        multiplyTransposedSymmetric(hp, h, m, n, r, s);
+        cholesky(s, m);
+
+        // S * K' = H * P
+        final double[] kt = mn2;
+        System.arraycopy(hp, 0, kt, 0, m * n);
+        choleskySolve(s, m, kt, n);
+
+        // xHat(k) = xHat(k)- + K * Inn
+        addGain(x, kt, innovation, n, m);
+
+        if (joseph) {
+            josephUpdate(p, h, r, kt, n, m);
+        } else {
+            // P(k) = P(k)- - K * H * P(k)-, symmetric since K * H * P = K * S * K'
+            subtractGainProduct(p, kt, hp, n, m);
+        }
+    }
+
+    /**
+     * Compute x = x + K &nu;.
+     *
+     * @param x state, of length n, updated in place
+     * @param kt transposed gain K<sup>T</sup>, m &times; n
+     * @param innovation innovation &nu;, of length m
+     * @param n state dimension
+     * @param m measurement dimension
+     */
+    static void addGain(final double[] x, final double[] kt, final double[] innovation,
+                        final int n, final int m) {
+        for (int r = 0; r < m; ++r) {
+            final double v = innovation[r];
+            final int ki = r * n;
+            for (int i = 0; i < n; ++i) {
+                x[i] += kt[ki + i] * v;
+            }
+        }
+    }
+
+    /**
+     * Compute P = P - K C for a product K C known to be symmetric.
+     *
+     * @param p n &times; n symmetric covariance, updated in place
+     * @param kt transposed gain K<sup>T</sup>, m &times; n
+     * @param c m &times; n matrix
+     * @param n state dimension
+     * @param m measurement dimension
+     */
+    static void subtractGainProduct(final double[] p, final double[] kt, final double[] c,
+                                    final int n, final int m) {
+        for (int i = 0; i < n; ++i) {
+            for (int j = i; j < n; ++j) {
+                double v = p[i * n + j];
+                for (int k = 0; k < m; ++k) {
+                    v -= kt[k * n + i] * c[k * n + j];
+                }
+                p[i * n + j] = v;
+                p[j * n + i] = v;
+            }
+        }
+    }
+
+    /**
+     * Joseph form covariance update P = (I - K H) P (I - K H)' + K R K'.
+     *
+     * @param p n &times; n symmetric covariance, updated in place
+     * @param h m &times; n measurement matrix
+     * @param r m &times; m symmetric measurement noise
+     * @param kt the transposed gain K', m &times; n
+     * @param n state dimension
+     * @param m measurement dimension
+     */
+    private void josephUpdate(final double[] p, final double[] h, final double[] r, final double[] kt,
+                              final int n, final int m) {
+        // K, n x m
+        final double[] k = nm1;
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < m; ++j) {
+                k[i * m + j] = kt[j * n + i];
+            }
+        }
+
+        // I - K * H
+        final double[] ikh = nn2;
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < n; ++j) {
+                double v = (i == j) ? 1.0 : 0.0;
+                for (int l = 0; l < m; ++l) {
+                    v -= k[i * m + l] * h[l * n + j];
+                }
+                ikh[i * n + j] = v;
+            }
+        }
+
+        // (I - K * H) * P
+        final double[] t = nn1;
+        multiplyTransposed(ikh, p, n, n, n, t);
+
+        // K * R, then P = K * R * K' (the old P is no longer needed)
+        final double[] kr = nm2;
+        multiplyTransposed(k, r, n, m, m, kr);
+        multiplyTransposedSymmetric(kr, k, n, m, null, p);
+
+        // P = (I - K * H) * P * (I - K * H)' + K * R * K'
+        multiplyTransposedSymmetric(t, ikh, n, n, p, p);
+    }
+
+    /**
+     * Inner product of two slices, unrolled for up to six terms.
+     *
+     * @param a first array
+     * @param ao offset of the first slice
+     * @param b second array
+     * @param bo offset of the second slice
+     * @param len number of terms
+     * @return a[ao] b[bo] + ... + a[ao + len - 1] b[bo + len - 1]
+     */
+    static double dot(final double[] a, final int ao, final double[] b, final int bo, final int len) {
+        switch (len) {
+        case 1:
+            return a[ao] * b[bo];
+        case 2:
+            return a[ao] * b[bo] + a[ao + 1] * b[bo + 1];
+        case 3:
+            return a[ao] * b[bo] + a[ao + 1] * b[bo + 1] + a[ao + 2] * b[bo + 2];
+        case 4:
+            return a[ao]     * b[bo]     + a[ao + 1] * b[bo + 1] +
+                   a[ao + 2] * b[bo + 2] + a[ao + 3] * b[bo + 3];
+        case 5:
+            return a[ao]     * b[bo]     + a[ao + 1] * b[bo + 1] +
+                   a[ao + 2] * b[bo + 2] + a[ao + 3] * b[bo + 3] +
+                   a[ao + 4] * b[bo + 4];
+        case 6:
+            return a[ao]     * b[bo]     + a[ao + 1] * b[bo + 1] +
+                   a[ao + 2] * b[bo + 2] + a[ao + 3] * b[bo + 3] +
+                   a[ao + 4] * b[bo + 4] + a[ao + 5] * b[bo + 5];
+        default:
+            double s0 = 0;
+            double s1 = 0;
+            double s2 = 0;
+            double s3 = 0;
+            int k = 0;
+            for (; k + 3 < len; k += 4) {
+                s0 += a[ao + k]     * b[bo + k];
+                s1 += a[ao + k + 1] * b[bo + k + 1];
+                s2 += a[ao + k + 2] * b[bo + k + 2];
+                s3 += a[ao + k + 3] * b[bo + k + 3];
+            }
+            for (; k < len; ++k) {
+                s0 += a[ao + k] * b[bo + k];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+    }
+
+    /**
+     * Compute out = a b<sup>T</sup>.
+     *
+     * @param a rows &times; len matrix
+     * @param b cols &times; len matrix
+     * @param rows number of rows of a
+     * @param cols number of rows of b
+     * @param len number of columns of a and b
+     * @param out rows &times; cols result, distinct from a and b
+     */
+    static void multiplyTransposed(final double[] a, final double[] b,
+                                   final int rows, final int cols, final int len,
+                                   final double[] out) {
+        for (int i = 0; i < rows; ++i) {
+            final int ai = i * len;
+            final int oi = i * cols;
+            for (int j = 0; j < cols; ++j) {
+                out[oi + j] = dot(a, ai, b, j * len, len);
+            }
+        }
+    }
+
+    /**
+     * Compute out = a b<sup>T</sup> + c for a product known to be symmetric.
+     * Only the upper triangle is computed, then mirrored.
+     *
+     * @param a n &times; len matrix
+     * @param b n &times; len matrix
+     * @param n number of rows of a and b
+     * @param len number of columns of a and b
+     * @param c symmetric n &times; n matrix to add, may be null; only its
+     * upper triangle is read, so it may be the same array as out
+     * @param out n &times; n result, distinct from a and b
+     */
+    static void multiplyTransposedSymmetric(final double[] a, final double[] b,
+                                            final int n, final int len,
+                                            final double[] c, final double[] out) {
+        for (int i = 0; i < n; ++i) {
+            final int ai = i * len;
+            for (int j = i; j < n; ++j) {
+                double v = dot(a, ai, b, j * len, len);
+                if (c != null) {
+                    v += c[i * n + j];
+                }
+                out[i * n + j] = v;
+                out[j * n + i] = v;
+            }
+        }
+    }
+
+    /**
+     * Copy the leading rows and columns of a matrix into a flat array.
+     *
+     * @param matrix matrix to copy
+     * @param rows number of rows to copy
+     * @param cols number of columns to copy
+     * @param out row-major destination
+     */
+    static void copy(final RealMatrix matrix, final int rows, final int cols, final double[] out) {
+        for (int i = 0; i < rows; ++i) {
+            for (int j = 0; j < cols; ++j) {
+                out[i * cols + j] = matrix.getEntry(i, j);
+            }
+        }
+    }
+
+    /**
+     * Replace a symmetric positive definite matrix by its lower Cholesky
+     * factor L, with S = L L<sup>T</sup>. Only the lower triangle of the
+     * input is read.
+     *
+     * @param s m &times; m matrix, overwritten by L (the upper triangle is left untouched)
+     * @param m dimension
+     * @throws NonPositiveDefiniteMatrixException if s is not positive definite
+     */
+    static void cholesky(final double[] s, final int m) throws NonPositiveDefiniteMatrixException {
+        for (int j = 0; j < m; ++j) {
+            final int jj = j * m;
+            final double d = s[jj + j] - dot(s, jj, s, jj, j);
+            if (d <= POSITIVITY_THRESHOLD) {
+                throw new NonPositiveDefiniteMatrixException(d, j, POSITIVITY_THRESHOLD);
+            }
+            final double l = FastMath.sqrt(d);
+            s[jj + j] = l;
+            final double inv = 1.0 / l;
+            for (int i = j + 1; i < m; ++i) {
+                final int ii = i * m;
+                s[ii + j] = (s[ii + j] - dot(s, ii, s, jj, j)) * inv;
+            }
+        }
+    }
+
+    /**
+     * Lower triangular square root L of a symmetric positive semi-definite
+     * matrix, with P = L L<sup>T</sup>. Pivots that are zero up to rounding
+     * give zero columns, so a covariance that is exact in some directions
+     * (such as a state without process noise) is accepted.
+     *
+     * @param p n &times; n symmetric matrix, only its lower triangle is read
+     * @param n dimension
+     * @param l n &times; n result, distinct from p; its upper triangle is zeroed
+     * @throws NonPositiveDefiniteMatrixException if p has a clearly negative pivot
+     */
+    static void squareRoot(final double[] p, final int n, final double[] l)
+        throws NonPositiveDefiniteMatrixException {
+        double scale = 0;
+        for (int i = 0; i < n; ++i) {
+            scale = FastMath.max(scale, FastMath.abs(p[i * n + i]));
+        }
+        final double tolerance = 1.0e-14 * scale;
+        for (int j = 0; j < n; ++j) {
+            final int jj = j * n;
+            for (int i = 0; i < j; ++i) {
+                l[i * n + j] = 0;
+            }
+            final double d = p[jj + j] - dot(l, jj, l, jj, j);
+            if (d < -tolerance) {
+                throw new NonPositiveDefiniteMatrixException(d, j, -tolerance);
+            }
+            if (d <= tolerance) {
+                for (int i = j; i < n; ++i) {
+                    l[i * n + j] = 0;
+                }
+                continue;
+            }
+            final double diag = FastMath.sqrt(d);
+            l[jj + j] = diag;
+            final double inv = 1.0 / diag;
+            for (int i = j + 1; i < n; ++i) {
+                final int ii = i * n;
+                l[ii + j] = (p[ii + j] - dot(l, ii, l, jj, j)) * inv;
+            }
+        }
+    }
+
+    /**
+     * Solve L L<sup>T</sup> X = B in place, for the factor computed by
+     * {@link #cholesky(double[], int)}.
+     *
+     * @param l m &times; m lower Cholesky factor
+     * @param m dimension
+     * @param x m &times; cols right hand sides, overwritten by the solution
+     * @param cols number of right hand sides
+     */
+    static void choleskySolve(final double[] l, final int m, final double[] x, final int cols) {
+        // forward substitution, L Y = B, one row of all right hand sides at a time
+        for (int i = 0; i < m; ++i) {
+            final int ii = i * m;
+            final int xi = i * cols;
+            for (int k = 0; k < i; ++k) {
+                final double lik = l[ii + k];
+                final int xk = k * cols;
+                for (int c = 0; c < cols; ++c) {
+                    x[xi + c] -= lik * x[xk + c];
+                }
+            }
+            final double inv = 1.0 / l[ii + i];
+            for (int c = 0; c < cols; ++c) {
+                x[xi + c] *= inv;
+            }
+        }
+        // back substitution, L^T X = Y
+        for (int i = m - 1; i >= 0; --i) {
+            final int xi = i * cols;
+            for (int k = i + 1; k < m; ++k) {
+                final double lki = l[k * m + i];
+                final int xk = k * cols;
+                for (int c = 0; c < cols; ++c) {
+                    x[xi + c] -= lki * x[xk + c];
+                }
+            }
+            final double inv = 1.0 / l[i * m + i];
+            for (int c = 0; c < cols; ++c) {
+                x[xi + c] *= inv;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Defines a non-linear measurement
+ * <i>z<sub>k</sub></i> = h(<i>x<sub>k</sub></i>) + <i>v<sub>k</sub></i>
+ * for the use with an {@link ExtendedKalmanFilter} or an {@link UnscentedKalmanFilter}.
+ *
+ * @see DifferentiableMeasurementModel
+ * @since 3.7
+ */
+public interface NonLinearMeasurementModel {
+    /**
+     * Returns the dimension m of the measurement.
+     *
+     * @return the measurement dimension
+     */
+    int getMeasurementDimension();
+
+    /**
+     * Evaluates the measurement function and, if requested, its Jacobian.
+     *
+     * @param x the state, in its first n components; must not be modified
+     * @param z array receiving h(x) in its first m components
+     * @param jacobian if not null, array of length m n receiving the partial
+     * derivatives of h with respect to x, row-major:
+     * jacobian[i * n + j] = &part;h<sub>i</sub>/&part;x<sub>j</sub>
+     */
+    void measurement(double[] x, double[] z, double[] jacobian);
+
+    /**
+     * Returns the measurement noise matrix. This method is called at every
+     * correction step, so implementations may return a modified measurement
+     * noise depending on the current iteration step.
+     *
+     * @return the measurement noise matrix
+     */
+    RealMatrix getMeasurementNoise();
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Defines non-linear process dynamics
+ * <i>x<sub>k</sub></i> = f(<i>x<sub>k-1</sub></i>, <i>u<sub>k-1</sub></i>) + <i>w<sub>k-1</sub></i>
+ * for the use with an {@link ExtendedKalmanFilter} or an {@link UnscentedKalmanFilter}.
+ *
+ * <p>The transition writes into arrays provided by the filter, so a model
+ * that does not allocate keeps the whole filter allocation-free. These
+ * arrays come from a {@link KalmanWorkspace} and may be longer than the
+ * state.</p>
+ *
+ * @see DifferentiableProcessModel
+ * @since 3.7
+ */
+public interface NonLinearProcessModel {
+    /**
+     * Returns the dimension n of the state.
+     *
+     * @return the state dimension
+     */
+    int getStateDimension();
+
+    /**
+     * Evaluates the transition function and, if requested, its Jacobian.
+     *
+     * @param x the current state, in its first n components; must not be modified
+     * @param u the control vector, null if there is no control input
+     * @param next array receiving f(x, u) in its first n components, distinct from x
+     * @param jacobian if not null, array of length n<sup>2</sup> receiving the
+     * partial derivatives of f with respect to x, row-major:
+     * jacobian[i * n + j] = &part;f<sub>i</sub>/&part;x<sub>j</sub>
+     */
+    void transition(double[] x, double[] u, double[] next, double[] jacobian);
+
+    /**
+     * Returns the process noise matrix. This method is called at every
+     * prediction step, so implementations may return a modified process
+     * noise depending on the current iteration step.
+     *
+     * @return the process noise matrix
+     */
+    RealMatrix getProcessNoise();
+
+    /**
+     * Returns the initial state estimation vector.
+     * <p>
+     * <b>Note:</b> if the return value is null, the filter will initialize the
+     * state estimation with a zero vector.
+     *
+     * @return the initial state estimation vector
+     */
+    RealVector getInitialStateEstimate();
+
+    /**
+     * Returns the initial error covariance matrix.
+     * <p>
+     * <b>Note:</b> if the return value is null, the filter will initialize the
+     * error covariance with the process noise matrix.
+     *
+     * @return the initial error covariance matrix
+     */
+    RealMatrix getInitialErrorCovariance();
+}
@@ -0,0 +1,512 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.exception.NullArgumentException;
+import org.apache.commons.math3.exception.NumberIsTooLargeException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
+import org.apache.commons.math3.linear.MatrixDimensionMismatchException;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.NonSquareMatrixException;
+import org.apache.commons.math3.util.MathUtils;
+
+/**
+ * Fixed-interval Rauch-Tung-Striebel smoother for the linear model of
+ * {@link KalmanFilter}.
+ *
+ * <p>The smoother runs a forward Kalman pass over a whole recorded run, one
+ * {@link #step(double[], double[]) step} at a time, and then a backward pass
+ * that revises each estimate with the measurements that came after it:</p>
+ * <pre>
+ *   C(k)    = P(k|k) A<sup>T</sup> P(k+1|k)<sup>-1</sup>
+ *   x(k|N)  = x(k|k) + C(k) (x(k+1|N) - x(k+1|k))
+ *   P(k|N)  = P(k|k) + C(k) (P(k+1|N) - P(k+1|k)) C(k)<sup>T</sup>
+ * </pre>
+ * <p>The smoothed estimates use the measurements on both sides of each step,
+ * which is what offline identification wants before a regression.</p>
+ *
+ * <p>The forward pass runs on an {@link InPlaceKalmanFilter} and stores, for
+ * each step, only the predicted and filtered state and the upper triangles
+ * of their covariances, 2n + n(n+1) numbers, in blocks of
+ * {@link DoubleBuffer}s. By default the blocks are on the heap; given a
+ * {@link FileChannel}, they are mapped from that file instead, so that runs
+ * of millions of steps stay out of the heap. The backward pass overwrites
+ * the filtered estimates with the smoothed ones, in place.</p>
+ *
+ * <p>As in {@link KalmanFilter}, the transition matrix is read once, while
+ * the process and measurement noise are read at each step. Instances are
+ * not thread safe.</p>
+ *
+ * @since 3.7
+ */
+public class RauchTungStriebelSmoother {
+
+    /** Doubles in a block of storage, 8 MB. */
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    /** The forward filter. */
+    private final InPlaceKalmanFilter filter;
+
+    /** File the storage is mapped from, null for heap storage. */
+    private final FileChannel channel;
+
+    /** State dimension n. */
+    private final int n;
+
+    /** Size n(n+1)/2 of a packed covariance. */
+    private final int packed;
+
+    /** Size of the record of one step. */
+    private final int recordSize;
+
+    /** Records in a block of storage. */
+    private final int recordsPerBlock;
+
+    /** The storage blocks. */
+    private final List<DoubleBuffer> blocks;
+
+    /** The transition matrix A, n &times; n. */
+    private final double[] a;
+
+    /** Scratch for the state, n. */
+    private final double[] state;
+
+    /** Scratch for the filtered covariance, n &times; n. */
+    private final double[] s1;
+
+    /** Scratch for the predicted covariance, n &times; n. */
+    private final double[] s2;
+
+    /** Scratch for the transposed smoother gain, n &times; n. */
+    private final double[] s3;
+
+    /** Scratch for the smoothed covariance, n &times; n. */
+    private final double[] s4;
+
+    /** Number of steps recorded. */
+    private long steps;
+
+    /** Whether the backward pass has been run. */
+    private boolean smoothed;
+
+    /**
+     * Creates a smoother that keeps its records on the heap.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @throws NullArgumentException if any of the given inputs is null (except for the control matrix)
+     * @throws NonSquareMatrixException if the transition matrix is non square
+     * @throws DimensionMismatchException if the column dimension of the transition
+     * matrix does not match the dimension of the initial state estimation vector
+     * @throws MatrixDimensionMismatchException if the matrix dimensions do not fit together
+     */
+    public RauchTungStriebelSmoother(final ProcessModel process, final MeasurementModel measurement)
+        throws NullArgumentException, NonSquareMatrixException, DimensionMismatchException,
+               MatrixDimensionMismatchException {
+        this(process, measurement, null);
+    }
+
+    /**
+     * Creates a smoother.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @param spill file channel, opened for reading and writing, that the
+     * records are mapped from, starting at position 0; null to keep the
+     * records on the heap. The file grows as steps are recorded, and its
+     * content is overwritten.
+     * @throws NullArgumentException if any of the given models or matrices is null (except for the control matrix)
+     * @throws NonSquareMatrixException if the transition matrix is non square
+     * @throws DimensionMismatchException if the column dimension of the transition
+     * matrix does not match the dimension of the initial state estimation vector
+     * @throws MatrixDimensionMismatchException if the matrix dimensions do not fit together
+     */
+    public RauchTungStriebelSmoother(final ProcessModel process, final MeasurementModel measurement,
+                                     final FileChannel spill)
+        throws NullArgumentException, NonSquareMatrixException, DimensionMismatchException,
+               MatrixDimensionMismatchException {
+        this(process, measurement, spill, 0);
+    }
+
+    /**
+     * Creates a smoother with a given block size, for tests.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @param spill file channel the records are mapped from, null for the heap
+     * @param recordsPerBlock records in a block of storage, 0 for the default
+     */
+    RauchTungStriebelSmoother(final ProcessModel process, final MeasurementModel measurement,
+                              final FileChannel spill, final int recordsPerBlock) {
+        filter = new InPlaceKalmanFilter(process, measurement);
+        channel = spill;
+        n = filter.getStateDimension();
+        packed = n * (n + 1) / 2;
+        recordSize = 2 * (n + packed);
+        this.recordsPerBlock = recordsPerBlock > 0 ?
+                               recordsPerBlock : Math.max(1, BLOCK_SIZE / recordSize);
+        blocks = new ArrayList<DoubleBuffer>();
+
+        a = new double[n * n];
+        KalmanWorkspace.copy(process.getStateTransitionMatrix(), n, n, a);
+        state = new double[n];
+        s1 = new double[n * n];
+        s2 = new double[n * n];
+        s3 = new double[n * n];
+        s4 = new double[n * n];
+    }
+
+    /**
+     * Returns the dimension of the state estimation vector.
+     *
+     * @return the state dimension
+     */
+    public int getStateDimension() {
+        return n;
+    }
+
+    /**
+     * Returns the number of steps recorded.
+     *
+     * @return the number of steps
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns whether the backward pass has been run.
+     *
+     * @return true if the estimates are smoothed
+     */
+    public boolean isSmoothed() {
+        return smoothed;
+    }
+
+    /**
+     * Run one step of the forward pass: predict, then correct if there is a
+     * measurement, and record the predicted and filtered estimates.
+     *
+     * @param u the control vector, null if there is no control input
+     * @param z the measurement vector, null if there is no measurement at this step
+     * @throws DimensionMismatchException if the dimension of a vector does not fit
+     * @throws MathIllegalStateException if the estimates have already been smoothed,
+     * or the storage cannot be mapped from the file
+     * @throws NonPositiveDefiniteMatrixException if the innovation covariance is not positive definite
+     */
+    public void step(final double[] u, final double[] z)
+        throws DimensionMismatchException, MathIllegalStateException, NonPositiveDefiniteMatrixException {
+        if (smoothed) {
+            throw new MathIllegalStateException(LocalizedFormats.ILLEGAL_STATE);
+        }
+        final DoubleBuffer block = block(steps);
+        final int offset = offset(steps);
+
+        filter.predict(u);
+        put(block, offset);
+        if (z != null) {
+            filter.correct(z);
+        }
+        put(block, offset + n + packed);
+        ++steps;
+    }
+
+    /**
+     * Run the forward pass over a whole recorded run.
+     *
+     * @param controls control vectors of each step; null if there is no
+     * control input, and individual entries may be null
+     * @param measurements measurement vectors of each step; entries are null
+     * at steps without a measurement
+     * @throws NullArgumentException if measurements is null
+     * @throws DimensionMismatchException if there are fewer controls than
+     * measurements, or the dimension of a vector does not fit
+     * @throws MathIllegalStateException if the estimates have already been smoothed,
+     * or the storage cannot be mapped from the file
+     * @throws NonPositiveDefiniteMatrixException if the innovation covariance is not positive definite
+     */
+    public void filter(final double[][] controls, final double[][] measurements)
+        throws NullArgumentException, DimensionMismatchException,
+               MathIllegalStateException, NonPositiveDefiniteMatrixException {
+        MathUtils.checkNotNull(measurements);
+        if (controls != null && controls.length < measurements.length) {
+            throw new DimensionMismatchException(controls.length, measurements.length);
+        }
+        for (int k = 0; k < measurements.length; ++k) {
+            step(controls == null ? null : controls[k], measurements[k]);
+        }
+    }
+
+    /**
+     * Run the backward pass, replacing each filtered estimate by the smoothed one.
+     * Once smoothed, no more steps can be added.
+     *
+     * @throws NonPositiveDefiniteMatrixException if a predicted covariance is not positive definite
+     */
+    public void smooth() throws NonPositiveDefiniteMatrixException {
+        if (smoothed) {
+            return;
+        }
+
+        // the last estimate is already smoothed; keep the smoothed state in
+        // the state array and its covariance in s4 as we go back
+        if (steps > 0) {
+            final long last = steps - 1;
+            get(block(last), offset(last) + n + packed, state, s4);
+        }
+
+        final double[] f = s1;
+        final double[] pp = s2;
+        final double[] ct = s3;
+        final double[] ps = s4;
+        for (long k = steps - 2; k >= 0; --k) {
+            final DoubleBuffer next = block(k + 1);
+            final int nextOffset = offset(k + 1);
+            final DoubleBuffer current = block(k);
+            final int filtered = offset(k) + n + packed;
+
+            // x(k+1|N) - x(k+1|k) and P(k+1|N) - P(k+1|k), in place
+            for (int i = 0; i < n; ++i) {
+                state[i] -= next.get(nextOffset + i);
+            }
+            get(next, nextOffset, null, pp);
+            for (int i = 0; i < n * n; ++i) {
+                ps[i] -= pp[i];
+            }
+
+            // C' = P(k+1|k)^-1 A P(k|k)
+            get(current, filtered, null, f);
+            for (int i = 0; i < n; ++i) {
+                for (int j = 0; j < n; ++j) {
+                    ct[i * n + j] = KalmanWorkspace.dot(a, i * n, f, j * n, n);
+                }
+            }
+            KalmanWorkspace.cholesky(pp, n);
+            KalmanWorkspace.choleskySolve(pp, n, ct, n);
+
+            // x(k|N) = x(k|k) + C (x(k+1|N) - x(k+1|k))
+            for (int i = 0; i < n; ++i) {
+                double v = current.get(filtered + i);
+                for (int j = 0; j < n; ++j) {
+                    v += ct[j * n + i] * state[j];
+                }
+                pp[i] = v;
+            }
+            System.arraycopy(pp, 0, state, 0, n);
+
+            // P(k|N) = P(k|k) + C (P(k+1|N) - P(k+1|k)) C', through D C' in pp
+            for (int i = 0; i < n; ++i) {
+                for (int j = 0; j < n; ++j) {
+                    double v = 0;
+                    for (int l = 0; l < n; ++l) {
+                        v += ps[i * n + l] * ct[l * n + j];
+                    }
+                    pp[i * n + j] = v;
+                }
+            }
+            for (int i = 0; i < n; ++i) {
+                for (int j = i; j < n; ++j) {
+                    double v = f[i * n + j];
+                    for (int l = 0; l < n; ++l) {
+                        v += ct[l * n + i] * pp[l * n + j];
+                    }
+                    ps[i * n + j] = v;
+                    ps[j * n + i] = v;
+                }
+            }
+
+            for (int i = 0; i < n; ++i) {
+                current.put(filtered + i, state[i]);
+            }
+            pack(ps, current, filtered + n);
+        }
+        smoothed = true;
+    }
+
+    /**
+     * Copies the estimated state at a step: filtered before {@link #smooth()},
+     * smoothed after it.
+     *
+     * @param k the step, from 0 to {@link #getSteps()} - 1
+     * @param destination array receiving the state, of length at least n
+     * @return destination
+     * @throws OutOfRangeException if k is not a recorded step
+     * @throws NumberIsTooLargeException if destination is too short
+     */
+    public double[] getStateEstimation(final long k, final double[] destination)
+        throws OutOfRangeException, NumberIsTooLargeException {
+        checkStep(k);
+        if (destination.length < n) {
+            throw new NumberIsTooLargeException(n, destination.length, true);
+        }
+        final DoubleBuffer block = block(k);
+        final int offset = offset(k) + n + packed;
+        for (int i = 0; i < n; ++i) {
+            destination[i] = block.get(offset + i);
+        }
+        return destination;
+    }
+
+    /**
+     * Copies the estimated error covariance at a step, row by row: filtered
+     * before {@link #smooth()}, smoothed after it.
+     *
+     * @param k the step, from 0 to {@link #getSteps()} - 1
+     * @param destination array receiving the covariance, of length at least n<sup>2</sup>
+     * @return destination
+     * @throws OutOfRangeException if k is not a recorded step
+     * @throws NumberIsTooLargeException if destination is too short
+     */
+    public double[] getErrorCovariance(final long k, final double[] destination)
+        throws OutOfRangeException, NumberIsTooLargeException {
+        checkStep(k);
+        if (destination.length < n * n) {
+            throw new NumberIsTooLargeException(n * n, destination.length, true);
+        }
+        get(block(k), offset(k) + n + packed, null, destination);
+        return destination;
+    }
+
+    /**
+     * Returns the estimated error covariance at a step: filtered before
+     * {@link #smooth()}, smoothed after it.
+     *
+     * @param k the step, from 0 to {@link #getSteps()} - 1
+     * @return the error covariance matrix
+     * @throws OutOfRangeException if k is not a recorded step
+     */
+    public double[][] getErrorCovariance(final long k) throws OutOfRangeException {
+        final double[] flat = getErrorCovariance(k, new double[n * n]);
+        final double[][] out = new double[n][n];
+        for (int i = 0; i < n; ++i) {
+            System.arraycopy(flat, i * n, out[i], 0, n);
+        }
+        return out;
+    }
+
+    /**
+     * Check a step index.
+     *
+     * @param k the step
+     * @throws OutOfRangeException if k is not a recorded step
+     */
+    private void checkStep(final long k) throws OutOfRangeException {
+        if (k < 0 || k >= steps) {
+            throw new OutOfRangeException(LocalizedFormats.INDEX, k, 0, steps - 1);
+        }
+    }
+
+    /**
+     * Record the current estimate of the filter.
+     *
+     * @param block block of the record
+     * @param offset position of the estimate in the block
+     */
+    private void put(final DoubleBuffer block, final int offset) {
+        filter.getStateEstimation(state);
+        for (int i = 0; i < n; ++i) {
+            block.put(offset + i, state[i]);
+        }
+        pack(filter.getErrorCovariance(s1), block, offset + n);
+    }
+
+    /**
+     * Store the upper triangle of a symmetric matrix, row by row.
+     *
+     * @param p the matrix, n &times; n
+     * @param block block to store into
+     * @param offset position in the block
+     */
+    private void pack(final double[] p, final DoubleBuffer block, final int offset) {
+        int index = offset;
+        for (int i = 0; i < n; ++i) {
+            for (int j = i; j < n; ++j) {
+                block.put(index++, p[i * n + j]);
+            }
+        }
+    }
+
+    /**
+     * Read a recorded estimate.
+     *
+     * @param block block of the record
+     * @param offset position of the estimate in the block
+     * @param x array receiving the state, null to skip it
+     * @param p array receiving the full covariance, n &times; n
+     */
+    private void get(final DoubleBuffer block, final int offset, final double[] x, final double[] p) {
+        if (x != null) {
+            for (int i = 0; i < n; ++i) {
+                x[i] = block.get(offset + i);
+            }
+        }
+        int index = offset + n;
+        for (int i = 0; i < n; ++i) {
+            for (int j = i; j < n; ++j) {
+                final double v = block.get(index++);
+                p[i * n + j] = v;
+                p[j * n + i] = v;
+            }
+        }
+    }
+
+    /**
+     * Position of a record in its block.
+     *
+     * @param k the step
+     * @return the offset of its record
+     */
+    private int offset(final long k) {
+        return (int) (k % recordsPerBlock) * recordSize;
+    }
+
+    /**
+     * Returns the block holding a record, allocating or mapping it if needed.
+     *
+     * @param k the step
+     * @return the block of its record
+     * @throws MathIllegalStateException if the block cannot be mapped from the file
+     */
+    private DoubleBuffer block(final long k) throws MathIllegalStateException {
+        final int index = (int) (k / recordsPerBlock);
+        while (blocks.size() <= index) {
+            final int size = recordsPerBlock * recordSize;
+            if (channel == null) {
+                blocks.add(DoubleBuffer.allocate(size));
+            } else {
+                try {
+                    final long position = (long) blocks.size() * size * 8;
+                    blocks.add(channel.map(FileChannel.MapMode.READ_WRITE, position, size * 8L).
+                               order(ByteOrder.nativeOrder()).asDoubleBuffer());
+                } catch (IOException e) {
+                    throw new MathIllegalStateException(e, LocalizedFormats.SIMPLE_MESSAGE, e.getMessage());
+                }
+            }
+        }
+        return blocks.get(index);
+    }
+}
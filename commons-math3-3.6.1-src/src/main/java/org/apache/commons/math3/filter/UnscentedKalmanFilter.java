@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.NullArgumentException;
+import org.apache.commons.math3.exception.NumberIsTooLargeException;
+import org.apache.commons.math3.linear.MatrixDimensionMismatchException;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Unscented Kalman filter, for additive process and measurement noise.
+ *
+ * <p>Instead of linearizing the models, the filter propagates 2n + 1 sigma
+ * points, the state estimate and the estimate plus and minus the scaled
+ * columns of a square root of P, through the transition and measurement
+ * functions, and takes the means and covariances of the results. This is
+ * exact up to second order for any smooth model and needs no Jacobians.</p>
+ *
+ * <p>The spread of the sigma points is set by the usual parameters
+ * &alpha;, &beta; and &kappa;, with &lambda; = &alpha;<sup>2</sup>(n + &kappa;) - n:
+ * the points lie at &plusmn;&radic;(n + &lambda;) standard deviations, the
+ * mean weights are &lambda; / (n + &lambda;) for the central point and
+ * 1 / (2(n + &lambda;)) for the others, and the central covariance weight
+ * is increased by 1 - &alpha;<sup>2</sup> + &beta;. The defaults
+ * &alpha; = 1, &beta; = 2, &kappa; = 0 keep all weights of moderate size.</p>
+ *
+ * <p>The sigma points and all other intermediate results live in the
+ * {@link KalmanWorkspace}, so filtering does not allocate unless the models
+ * do.</p>
+ *
+ * @since 3.7
+ */
+public class UnscentedKalmanFilter extends AbstractNonLinearKalmanFilter {
+
+    /** Default spread parameter &alpha;. */
+    public static final double DEFAULT_ALPHA = 1.0;
+
+    /** Default prior distribution parameter &beta;, optimal for Gaussian distributions. */
+    public static final double DEFAULT_BETA = 2.0;
+
+    /** Default secondary scaling parameter &kappa;. */
+    public static final double DEFAULT_KAPPA = 0.0;
+
+    /** Scale &radic;(n + &lambda;) of the square root columns. */
+    private final double gamma;
+
+    /** Mean weight of the central point. */
+    private final double meanWeight0;
+
+    /** Covariance weight of the central point. */
+    private final double covarianceWeight0;
+
+    /** Mean and covariance weight of the other points. */
+    private final double weight;
+
+    /**
+     * Creates a new filter with the default parameters and a workspace of its own.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @throws NullArgumentException if a model or a noise matrix is null
+     * @throws DimensionMismatchException if the initial state does not match the state dimension
+     * @throws MatrixDimensionMismatchException if a matrix does not match the dimensions
+     */
+    public UnscentedKalmanFilter(final NonLinearProcessModel process,
+                                 final NonLinearMeasurementModel measurement)
+        throws NullArgumentException, DimensionMismatchException, MatrixDimensionMismatchException {
+        this(process, measurement, DEFAULT_ALPHA, DEFAULT_BETA, DEFAULT_KAPPA, null);
+    }
+
+    /**
+     * Creates a new filter.
+     *
+     * @param process the model defining the underlying process dynamics
+     * @param measurement the model defining the given measurement characteristics
+     * @param alpha spread &alpha; of the sigma points, in (0, 1]
+     * @param beta prior distribution parameter &beta;, 2 for Gaussian distributions
+     * @param kappa secondary scaling parameter &kappa;
+     * @param workspace scratch storage, possibly shared with other filters;
+     * if null, a workspace of the right size is allocated
+     * @throws NullArgumentException if a model or a noise matrix is null
+     * @throws DimensionMismatchException if the initial state does not match the state dimension
+     * @throws MatrixDimensionMismatchException if a matrix does not match the dimensions
+     * @throws NumberIsTooLargeException if the workspace is too small for the filter
+     * @throws NotStrictlyPositiveException if n + &lambda; is not positive
+     */
+    public UnscentedKalmanFilter(final NonLinearProcessModel process,
+                                 final NonLinearMeasurementModel measurement,
+                                 final double alpha, final double beta, final double kappa,
+                                 final KalmanWorkspace workspace)
+        throws NullArgumentException, DimensionMismatchException, MatrixDimensionMismatchException,
+               NumberIsTooLargeException, NotStrictlyPositiveException {
+        super(process, measurement, workspace);
+        final double lambda = alpha * alpha * (n + kappa) - n;
+        final double spread = n + lambda;
+        if (!(spread > 0)) {
+            throw new NotStrictlyPositiveException(spread);
+        }
+        gamma = FastMath.sqrt(spread);
+        meanWeight0 = lambda / spread;
+        covarianceWeight0 = meanWeight0 + 1 - alpha * alpha + beta;
+        weight = 0.5 / spread;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NonPositiveDefiniteMatrixException if the error covariance is not positive semi-definite
+     */
+    @Override
+    public void predict(final double[] u) throws NonPositiveDefiniteMatrixException {
+        final double[] sigma = workspace.sigmaX;
+        final double[] point = workspace.n1;
+        final double[] next = workspace.n2;
+        final int points = 2 * n + 1;
+
+        // map the sigma points through the transition
+        sigmaPoints();
+        for (int k = 0; k < points; ++k) {
+            System.arraycopy(sigma, k * n, point, 0, n);
+            processModel.transition(point, u, next, null);
+            System.arraycopy(next, 0, sigma, k * n, n);
+        }
+
+        // xHat(k)- is their weighted mean
+        mean(sigma, n, x);
+
+        // P(k)- is their weighted covariance, plus Q
+        deviations(sigma, n, x);
+        loadProcessNoise();
+        for (int i = 0; i < n; ++i) {
+            for (int j = i; j < n; ++j) {
+                final double v = weightedProduct(sigma, n, i, sigma, n, j) + q[i * n + j];
+                p[i * n + j] = v;
+                p[j * n + i] = v;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NonPositiveDefiniteMatrixException if the error or innovation covariance
+     * is not positive definite
+     */
+    @Override
+    protected void update(final double[] z) throws NonPositiveDefiniteMatrixException {
+        final double[] sigma = workspace.sigmaX;
+        final double[] sigmaZ = workspace.sigmaZ;
+        final double[] point = workspace.n1;
+        final double[] zPoint = workspace.m2;
+        final double[] zHat = workspace.m1;
+        final int points = 2 * n + 1;
+
+        // map sigma points of the predicted state through the measurement
+        sigmaPoints();
+        for (int k = 0; k < points; ++k) {
+            System.arraycopy(sigma, k * n, point, 0, n);
+            measurementModel.measurement(point, zPoint, null);
+            System.arraycopy(zPoint, 0, sigmaZ, k * m, m);
+        }
+        mean(sigmaZ, m, zHat);
+        deviations(sigmaZ, m, zHat);
+        deviations(sigma, n, x);
+
+        // S = covariance of the mapped points + R
+        final double[] s = workspace.mm;
+        loadMeasurementNoise();
+        for (int i = 0; i < m; ++i) {
+            for (int j = i; j < m; ++j) {
+                final double v = weightedProduct(sigmaZ, m, i, sigmaZ, m, j) + r[i * m + j];
+                s[i * m + j] = v;
+                s[j * m + i] = v;
+            }
+        }
+
+        // Pxz', the cross covariance of measurement and state, m x n
+        final double[] pzx = workspace.mn1;
+        for (int i = 0; i < m; ++i) {
+            for (int j = 0; j < n; ++j) {
+                pzx[i * n + j] = weightedProduct(sigmaZ, m, i, sigma, n, j);
+            }
+        }
+
+        // S * K' = Pxz'
+        KalmanWorkspace.cholesky(s, m);
+        final double[] kt = workspace.mn2;
+        System.arraycopy(pzx, 0, kt, 0, m * n);
+        KalmanWorkspace.choleskySolve(s, m, kt, n);
+
+        // xHat(k) = xHat(k)- + K * (z(k) - zHat)
+        for (int i = 0; i < m; ++i) {
+            zHat[i] = z[i] - zHat[i];
+        }
+        KalmanWorkspace.addGain(x, kt, zHat, n, m);
+
+        // P(k) = P(k)- - K * S * K' = P(k)- - K * Pxz'
+        KalmanWorkspace.subtractGainProduct(p, kt, pzx, n, m);
+    }
+
+    /**
+     * Fill the workspace with the sigma points of the current estimate, one per row.
+     *
+     * @throws NonPositiveDefiniteMatrixException if the error covariance is not positive semi-definite
+     */
+    private void sigmaPoints() throws NonPositiveDefiniteMatrixException {
+        final double[] l = workspace.nn1;
+        final double[] sigma = workspace.sigmaX;
+        KalmanWorkspace.squareRoot(p, n, l);
+        System.arraycopy(x, 0, sigma, 0, n);
+        for (int j = 0; j < n; ++j) {
+            final int plus = (1 + j) * n;
+            final int minus = (1 + n + j) * n;
+            for (int i = 0; i < n; ++i) {
+                final double d = gamma * l[i * n + j];
+                sigma[plus + i] = x[i] + d;
+                sigma[minus + i] = x[i] - d;
+            }
+        }
+    }
+
+    /**
+     * Weighted mean of the 2n + 1 rows of a matrix.
+     *
+     * @param rows the rows
+     * @param len row length
+     * @param mean array receiving the mean
+     */
+    private void mean(final double[] rows, final int len, final double[] mean) {
+        final int points = 2 * n + 1;
+        for (int i = 0; i < len; ++i) {
+            double sum = 0;
+            for (int k = 1; k < points; ++k) {
+                sum += rows[k * len + i];
+            }
+            mean[i] = meanWeight0 * rows[i] + weight * sum;
+        }
+    }
+
+    /**
+     * Subtract a vector from the 2n + 1 rows of a matrix.
+     *
+     * @param rows the rows, updated in place
+     * @param len row length
+     * @param center vector to subtract
+     */
+    private void deviations(final double[] rows, final int len, final double[] center) {
+        final int points = 2 * n + 1;
+        for (int k = 0; k < points; ++k) {
+            final int row = k * len;
+            for (int i = 0; i < len; ++i) {
+                rows[row + i] -= center[i];
+            }
+        }
+    }
+
+    /**
+     * Weighted sum over the sigma points of the product of two deviation components.
+     *
+     * @param a first deviations, one row per point
+     * @param aLen row length of a
+     * @param i component of a
+     * @param b second deviations, one row per point
+     * @param bLen row length of b
+     * @param j component of b
+     * @return &Sigma; w<sub>k</sub> a<sub>k,i</sub> b<sub>k,j</sub>
+     */
+    private double weightedProduct(final double[] a, final int aLen, final int i,
+                                   final double[] b, final int bLen, final int j) {
+        final int points = 2 * n + 1;
+        double sum = 0;
+        for (int k = 1; k < points; ++k) {
+            sum += a[k * aLen + i] * b[k * bLen + j];
+        }
+        return covarianceWeight0 * a[i] * b[j] + weight * sum;
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.commons.math3.linear;
 
 import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.exception.MathIllegalStateException;
@@ -355,13 +356,45 @@ public class Array2DRowRealMatrix extends AbstractRealMatrix implements Serializ
         }
         final double[] out = new double[nRows];
         for (int row = 0; row < nRows; row++) {
-            final double[] dataRow = data[row];
-            double sum = 0;
-            for (int i = 0; i < nCols; i++) {
-                sum += dataRow[i] * v[i];
-            }
-            out[row] = sum;
+            out[row] = VectorKernels.dotProduct(data[row], 0, v, 0, nCols);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the result of multiplying this by the vector {@code v}, with
+     * the rows in pieces on an executor if the product is large enough.
+     * <p>Each row is an independent dot product, so the result is the same
+     * as {@link #operate(double[])}. Products of less than
+     * {@link BlockRealMatrix#PARALLEL_THRESHOLD} multiply-adds are computed
+     * in the calling thread, which otherwise waits for all pieces.</p>
+     *
+     * @param v the vector to operate on
+     * @param executor executor running the pieces, may be null
+     * @return {@code this * v}
+     * @throws DimensionMismatchException if the length of {@code v} does not
+     * match the column dimension of {@code this}.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the pieces
+     * @since 3.7
+     */
+    public double[] operate(final double[] v, final ExecutorService executor)
+        throws DimensionMismatchException, MathIllegalStateException {
+        final int nRows = this.getRowDimension();
+        final int nCols = this.getColumnDimension();
+        if (v.length != nCols) {
+            throw new DimensionMismatchException(v.length, nCols);
         }
+        final double[] out = new double[nRows];
+        ParallelTasks.forRange(executor, 0, nRows, (double) nRows * nCols,
+                               new ParallelTasks.RangeTask() {
+            /** {@inheritDoc} */
+            public void run(final int from, final int to) {
+                for (int row = from; row < to; row++) {
+                    out[row] = VectorKernels.dotProduct(data[row], 0, v, 0, nCols);
+                }
+            }
+        });
         return out;
     }
 
@@ -19,8 +19,10 @@ package org.apache.commons.math3.linear;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.math3.analysis.UnivariateFunction;
+import org.apache.commons.math3.exception.MathIllegalStateException;
 import org.apache.commons.math3.exception.NotPositiveException;
 import org.apache.commons.math3.exception.NullArgumentException;
 import org.apache.commons.math3.exception.DimensionMismatchException;
@@ -297,10 +299,7 @@ public class ArrayRealVector extends RealVector implements Serializable {
             final int dim = vData.length;
             checkVectorDimensions(dim);
             ArrayRealVector result = new ArrayRealVector(dim);
-            double[] resultData = result.data;
-            for (int i = 0; i < dim; i++) {
-                resultData[i] = data[i] + vData[i];
-            }
+            VectorKernels.add(data, vData, result.data);
             return result;
         } else {
             checkVectorDimensions(v);
@@ -323,10 +322,7 @@ public class ArrayRealVector extends RealVector implements Serializable {
             final int dim = vData.length;
             checkVectorDimensions(dim);
             ArrayRealVector result = new ArrayRealVector(dim);
-            double[] resultData = result.data;
-            for (int i = 0; i < dim; i++) {
-                resultData[i] = data[i] - vData[i];
-            }
+            VectorKernels.subtract(data, vData, result.data);
             return result;
         } else {
             checkVectorDimensions(v);
@@ -376,9 +372,7 @@ public class ArrayRealVector extends RealVector implements Serializable {
     /** {@inheritDoc} */
     @Override
     public RealVector mapMultiplyToSelf(double d) {
-        for (int i = 0; i < data.length; i++) {
-            data[i] *= d;
-        }
+        VectorKernels.scale(data, d);
         return this;
     }
 
@@ -455,11 +449,33 @@ public class ArrayRealVector extends RealVector implements Serializable {
         if (v instanceof ArrayRealVector) {
             final double[] vData = ((ArrayRealVector) v).data;
             checkVectorDimensions(vData.length);
-            double dot = 0;
-            for (int i = 0; i < data.length; i++) {
-                dot += data[i] * vData[i];
-            }
-            return dot;
+            return VectorKernels.dotProduct(data, vData, null);
+        }
+        return super.dotProduct(v);
+    }
+
+    /**
+     * Compute the dot product of this vector with {@code v}, by chunks on an
+     * executor if the vectors are long enough.
+     * <p>The result is the same as {@link #dotProduct(RealVector)}, whether
+     * or not the executor is used. The calling thread waits for all chunks.
+     * </p>
+     *
+     * @param v Vector with which dot product should be computed
+     * @param executor Executor running the chunks, null to compute in the calling thread.
+     * @return the scalar dot product between this instance and {@code v}.
+     * @throws DimensionMismatchException if {@code v} is not the same size as
+     * {@code this} vector.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the chunks.
+     * @since 3.7
+     */
+    public double dotProduct(RealVector v, ExecutorService executor)
+        throws DimensionMismatchException, MathIllegalStateException {
+        if (v instanceof ArrayRealVector) {
+            final double[] vData = ((ArrayRealVector) v).data;
+            checkVectorDimensions(vData.length);
+            return VectorKernels.dotProduct(data, vData, executor);
         }
         return super.dotProduct(v);
     }
@@ -467,11 +483,7 @@ public class ArrayRealVector extends RealVector implements Serializable {
     /** {@inheritDoc} */
     @Override
     public double getNorm() {
-        double sum = 0;
-        for (double a : data) {
-            sum += a * a;
-        }
-        return FastMath.sqrt(sum);
+        return FastMath.sqrt(VectorKernels.sumOfSquares(data));
     }
 
     /** {@inheritDoc} */
@@ -500,12 +512,7 @@ public class ArrayRealVector extends RealVector implements Serializable {
         if (v instanceof ArrayRealVector) {
             final double[] vData = ((ArrayRealVector) v).data;
             checkVectorDimensions(vData.length);
-            double sum = 0;
-            for (int i = 0; i < data.length; ++i) {
-                final double delta = data[i] - vData[i];
-                sum += delta * delta;
-            }
-            return FastMath.sqrt(sum);
+            return FastMath.sqrt(VectorKernels.distanceSquared(data, vData));
         } else {
             checkVectorDimensions(v);
             double sum = 0;
@@ -850,9 +857,7 @@ public class ArrayRealVector extends RealVector implements Serializable {
         if (y instanceof ArrayRealVector) {
             final double[] yData = ((ArrayRealVector) y).data;
             checkVectorDimensions(yData.length);
-            for (int i = 0; i < this.data.length; i++) {
-                data[i] = a * data[i] + b * yData[i];
-            }
+            VectorKernels.combine(a, data, b, yData);
         } else {
             checkVectorDimensions(y);
             for (int i = 0; i < this.data.length; i++) {
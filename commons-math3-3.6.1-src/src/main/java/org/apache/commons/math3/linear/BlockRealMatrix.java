@@ -18,9 +18,14 @@
 package org.apache.commons.math3.linear;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.MathIllegalStateException;
 import org.apache.commons.math3.exception.NoDataException;
 import org.apache.commons.math3.exception.NotStrictlyPositiveException;
 import org.apache.commons.math3.exception.NullArgumentException;
@@ -71,6 +76,18 @@ import org.apache.commons.math3.util.MathUtils;
 public class BlockRealMatrix extends AbstractRealMatrix implements Serializable {
     /** Block size. */
     public static final int BLOCK_SIZE = 52;
+    /**
+     * Number of multiply-adds below which {@link #multiply(BlockRealMatrix, ExecutorService)}
+     * stays in the calling thread.
+     * @since 3.7
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 21;
+    /**
+     * Approximate number of multiply-adds in a parallel piece of
+     * {@link #multiply(BlockRealMatrix, ExecutorService)}.
+     * @since 3.7
+     */
+    public static final int PARALLEL_GRAIN = 1 << 22;
     /** Serializable version identifier */
     private static final long serialVersionUID = 4991895511313664478L;
     /** Blocks of matrix entries. */
@@ -536,59 +553,265 @@ public class BlockRealMatrix extends AbstractRealMatrix implements Serializable
         MatrixUtils.checkMultiplicationCompatible(this, m);
 
         final BlockRealMatrix out = new BlockRealMatrix(rows, m.columns);
+        multiplyTiles(m, out, 0, out.blockRows, 0, out.blockColumns);
+        return out;
+    }
 
-        // perform multiplication block-wise, to ensure good cache behavior
-        int blockIndex = 0;
-        for (int iBlock = 0; iBlock < out.blockRows; ++iBlock) {
+    /**
+     * Returns the result of postmultiplying this by {@code m}, computing
+     * the output tiles in parallel.
+     * <p>
+     * The grid of output tiles is split recursively in halves along its
+     * longer side, down to pieces of about {@link #PARALLEL_GRAIN}
+     * multiply-adds, and the pieces are submitted to the executor; nearby
+     * tiles thus stay in the same task, which keeps the tiles of this and
+     * {@code m} they read in cache. Products of less than
+     * {@link #PARALLEL_THRESHOLD} multiply-adds are computed in the calling
+     * thread. The calling thread waits for all pieces, so it must not be
+     * one of the executor's threads if the executor may run out of them.
+     * </p>
+     *
+     * @param m Matrix to postmultiply by.
+     * @param executor Executor running the pieces, null to compute in the calling thread.
+     * @return {@code this} * m.
+     * @throws DimensionMismatchException if the matrices are not compatible.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the pieces.
+     * @since 3.7
+     */
+    public BlockRealMatrix multiply(final BlockRealMatrix m, final ExecutorService executor)
+        throws DimensionMismatchException, MathIllegalStateException {
+        // safety check
+        MatrixUtils.checkMultiplicationCompatible(this, m);
 
-            final int pStart = iBlock * BLOCK_SIZE;
-            final int pEnd = FastMath.min(pStart + BLOCK_SIZE, rows);
+        final BlockRealMatrix out = new BlockRealMatrix(rows, m.columns);
+        if (executor == null || (double) rows * columns * m.columns < PARALLEL_THRESHOLD) {
+            multiplyTiles(m, out, 0, out.blockRows, 0, out.blockColumns);
+            return out;
+        }
 
-            for (int jBlock = 0; jBlock < out.blockColumns; ++jBlock) {
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        split(m, out, 0, out.blockRows, 0, out.blockColumns, tasks);
+        ParallelTasks.invokeAll(executor, tasks);
+        return out;
+    }
+
+    /**
+     * Split a range of output tiles into parallel tasks.
+     *
+     * @param m Matrix to postmultiply by.
+     * @param out Output matrix.
+     * @param iStart First block row of the range.
+     * @param iEnd Block row after the range.
+     * @param jStart First block column of the range.
+     * @param jEnd Block column after the range.
+     * @param tasks List receiving the tasks.
+     */
+    private void split(final BlockRealMatrix m, final BlockRealMatrix out,
+                       final int iStart, final int iEnd, final int jStart, final int jEnd,
+                       final List<Callable<Void>> tasks) {
+        final int iCount = iEnd - iStart;
+        final int jCount = jEnd - jStart;
+        final double work = (double) iCount * jCount * BLOCK_SIZE * BLOCK_SIZE * columns;
+        if (work <= PARALLEL_GRAIN || iCount * jCount == 1) {
+            tasks.add(new Callable<Void>() {
+                /** {@inheritDoc} */
+                public Void call() {
+                    multiplyTiles(m, out, iStart, iEnd, jStart, jEnd);
+                    return null;
+                }
+            });
+        } else if (iCount >= jCount) {
+            final int iMid = iStart + iCount / 2;
+            split(m, out, iStart, iMid, jStart, jEnd, tasks);
+            split(m, out, iMid, iEnd, jStart, jEnd, tasks);
+        } else {
+            final int jMid = jStart + jCount / 2;
+            split(m, out, iStart, iEnd, jStart, jMid, tasks);
+            split(m, out, iStart, iEnd, jMid, jEnd, tasks);
+        }
+    }
+
+    /**
+     * Compute a range of output tiles of the product of this by {@code m}.
+     *
+     * @param m Matrix to postmultiply by.
+     * @param out Output matrix, whose tiles in the range are zero.
+     * @param iStart First block row of the range.
+     * @param iEnd Block row after the range.
+     * @param jStart First block column of the range.
+     * @param jEnd Block column after the range.
+     */
+    private void multiplyTiles(final BlockRealMatrix m, final BlockRealMatrix out,
+                               final int iStart, final int iEnd, final int jStart, final int jEnd) {
+        // perform multiplication block-wise, to ensure good cache behavior
+        for (int iBlock = iStart; iBlock < iEnd; ++iBlock) {
+            final int iHeight = blockHeight(iBlock);
+            for (int jBlock = jStart; jBlock < jEnd; ++jBlock) {
                 final int jWidth = out.blockWidth(jBlock);
-                final int jWidth2 = jWidth  + jWidth;
-                final int jWidth3 = jWidth2 + jWidth;
-                final int jWidth4 = jWidth3 + jWidth;
 
                 // select current block
-                final double[] outBlock = out.blocks[blockIndex];
+                final double[] outBlock = out.blocks[iBlock * out.blockColumns + jBlock];
 
                 // perform multiplication on current block
                 for (int kBlock = 0; kBlock < blockColumns; ++kBlock) {
-                    final int kWidth = blockWidth(kBlock);
-                    final double[] tBlock = blocks[iBlock * blockColumns + kBlock];
-                    final double[] mBlock = m.blocks[kBlock * m.blockColumns + jBlock];
-                    int k = 0;
-                    for (int p = pStart; p < pEnd; ++p) {
-                        final int lStart = (p - pStart) * kWidth;
-                        final int lEnd = lStart + kWidth;
-                        for (int nStart = 0; nStart < jWidth; ++nStart) {
-                            double sum = 0;
-                            int l = lStart;
-                            int n = nStart;
-                            while (l < lEnd - 3) {
-                                sum += tBlock[l] * mBlock[n] +
-                                       tBlock[l + 1] * mBlock[n + jWidth] +
-                                       tBlock[l + 2] * mBlock[n + jWidth2] +
-                                       tBlock[l + 3] * mBlock[n + jWidth3];
-                                l += 4;
-                                n += jWidth4;
-                            }
-                            while (l < lEnd) {
-                                sum += tBlock[l++] * mBlock[n];
-                                n += jWidth;
-                            }
-                            outBlock[k] += sum;
-                            ++k;
-                        }
-                    }
+                    multiplyAddBlock(blocks[iBlock * blockColumns + kBlock],
+                                     m.blocks[kBlock * m.blockColumns + jBlock],
+                                     outBlock, iHeight, blockWidth(kBlock), jWidth);
                 }
-                // go to next block
-                ++blockIndex;
             }
         }
+    }
 
-        return out;
+    /**
+     * Add the product of two blocks to a third one.
+     * <p>
+     * The product is computed by pieces of two rows and four columns, whose
+     * eight sums stay in registers across the whole inner dimension, so each
+     * element loaded from {@code a} is used four times and each element
+     * loaded from {@code b} twice, and the eight independent sums keep the
+     * floating point units busy. Each sum adds its terms in the same order as
+     * a plain dot product unrolled by four, as in {@link #operate(double[])},
+     * so the result does not depend on the piece an entry falls in.
+     * </p>
+     *
+     * @param a Left block, {@code aRows} x {@code kWidth}, row major.
+     * @param b Right block, {@code kWidth} x {@code jWidth}, row major.
+     * @param c Block receiving the sum, {@code aRows} x {@code jWidth}, row major.
+     * @param aRows Number of rows of {@code a}.
+     * @param kWidth Number of columns of {@code a} and rows of {@code b}.
+     * @param jWidth Number of columns of {@code b}.
+     */
+    private static void multiplyAddBlock(final double[] a, final double[] b, final double[] c,
+                                         final int aRows, final int kWidth, final int jWidth) {
+        final int jWidth2 = jWidth  + jWidth;
+        final int jWidth3 = jWidth2 + jWidth;
+        final int jWidth4 = jWidth3 + jWidth;
+        int p = 0;
+        for (; p < aRows - 1; p += 2) {
+            final int a0 = p * kWidth;
+            final int a1 = a0 + kWidth;
+            final int c0 = p * jWidth;
+            final int c1 = c0 + jWidth;
+            int j = 0;
+            for (; j < jWidth - 3; j += 4) {
+                double c00 = 0;
+                double c01 = 0;
+                double c02 = 0;
+                double c03 = 0;
+                double c10 = 0;
+                double c11 = 0;
+                double c12 = 0;
+                double c13 = 0;
+                int l = 0;
+                int n = j;
+                while (l < kWidth - 3) {
+                    final double x00 = a[a0 + l];
+                    final double x01 = a[a0 + l + 1];
+                    final double x02 = a[a0 + l + 2];
+                    final double x03 = a[a0 + l + 3];
+                    final double x10 = a[a1 + l];
+                    final double x11 = a[a1 + l + 1];
+                    final double x12 = a[a1 + l + 2];
+                    final double x13 = a[a1 + l + 3];
+                    final double b00 = b[n];
+                    final double b01 = b[n + jWidth];
+                    final double b02 = b[n + jWidth2];
+                    final double b03 = b[n + jWidth3];
+                    final double b10 = b[n + 1];
+                    final double b11 = b[n + 1 + jWidth];
+                    final double b12 = b[n + 1 + jWidth2];
+                    final double b13 = b[n + 1 + jWidth3];
+                    final double b20 = b[n + 2];
+                    final double b21 = b[n + 2 + jWidth];
+                    final double b22 = b[n + 2 + jWidth2];
+                    final double b23 = b[n + 2 + jWidth3];
+                    final double b30 = b[n + 3];
+                    final double b31 = b[n + 3 + jWidth];
+                    final double b32 = b[n + 3 + jWidth2];
+                    final double b33 = b[n + 3 + jWidth3];
+                    c00 += x00 * b00 + x01 * b01 + x02 * b02 + x03 * b03;
+                    c01 += x00 * b10 + x01 * b11 + x02 * b12 + x03 * b13;
+                    c02 += x00 * b20 + x01 * b21 + x02 * b22 + x03 * b23;
+                    c03 += x00 * b30 + x01 * b31 + x02 * b32 + x03 * b33;
+                    c10 += x10 * b00 + x11 * b01 + x12 * b02 + x13 * b03;
+                    c11 += x10 * b10 + x11 * b11 + x12 * b12 + x13 * b13;
+                    c12 += x10 * b20 + x11 * b21 + x12 * b22 + x13 * b23;
+                    c13 += x10 * b30 + x11 * b31 + x12 * b32 + x13 * b33;
+                    l += 4;
+                    n += jWidth4;
+                }
+                while (l < kWidth) {
+                    final double x0 = a[a0 + l];
+                    final double x1 = a[a1 + l];
+                    c00 += x0 * b[n];
+                    c01 += x0 * b[n + 1];
+                    c02 += x0 * b[n + 2];
+                    c03 += x0 * b[n + 3];
+                    c10 += x1 * b[n];
+                    c11 += x1 * b[n + 1];
+                    c12 += x1 * b[n + 2];
+                    c13 += x1 * b[n + 3];
+                    ++l;
+                    n += jWidth;
+                }
+                c[c0 + j]     += c00;
+                c[c0 + j + 1] += c01;
+                c[c0 + j + 2] += c02;
+                c[c0 + j + 3] += c03;
+                c[c1 + j]     += c10;
+                c[c1 + j + 1] += c11;
+                c[c1 + j + 2] += c12;
+                c[c1 + j + 3] += c13;
+            }
+            for (; j < jWidth; ++j) {
+                c[c0 + j] += dotColumn(a, a0, b, j, kWidth, jWidth);
+                c[c1 + j] += dotColumn(a, a1, b, j, kWidth, jWidth);
+            }
+        }
+        if (p < aRows) {
+            // last odd row
+            final int a0 = p * kWidth;
+            final int c0 = p * jWidth;
+            for (int j = 0; j < jWidth; ++j) {
+                c[c0 + j] += dotColumn(a, a0, b, j, kWidth, jWidth);
+            }
+        }
+    }
+
+    /**
+     * Dot product of a row of a block with a column of another one, unrolled by four.
+     *
+     * @param a Left block.
+     * @param aStart Start of the row in {@code a}.
+     * @param b Right block.
+     * @param j Column in {@code b}.
+     * @param kWidth Length of the row and column.
+     * @param jWidth Number of columns of {@code b}.
+     * @return the dot product.
+     */
+    private static double dotColumn(final double[] a, final int aStart, final double[] b, final int j,
+                                    final int kWidth, final int jWidth) {
+        final int jWidth2 = jWidth  + jWidth;
+        final int jWidth3 = jWidth2 + jWidth;
+        final int jWidth4 = jWidth3 + jWidth;
+        final int lEnd = aStart + kWidth;
+        double sum = 0;
+        int l = aStart;
+        int n = j;
+        while (l < lEnd - 3) {
+            sum += a[l] * b[n] +
+                   a[l + 1] * b[n + jWidth] +
+                   a[l + 2] * b[n + jWidth2] +
+                   a[l + 3] * b[n + jWidth3];
+            l += 4;
+            n += jWidth4;
+        }
+        while (l < lEnd) {
+            sum += a[l++] * b[n];
+            n += jWidth;
+        }
+        return sum;
     }
 
     /** {@inheritDoc} */
@@ -1260,38 +1483,55 @@ public class BlockRealMatrix extends AbstractRealMatrix implements Serializable
     @Override
     public double[] operate(final double[] v)
         throws DimensionMismatchException {
+        return operate(v, null);
+    }
+
+    /**
+     * Returns the result of multiplying this by the vector {@code v}, with
+     * the block rows in pieces on an executor if the product is large enough.
+     * <p>Each block row accumulates into its own part of the result, in the
+     * same order as {@link #operate(double[])}, so the result is the same.
+     * Products of less than {@link #PARALLEL_THRESHOLD} multiply-adds are
+     * computed in the calling thread, which otherwise waits for all
+     * pieces.</p>
+     *
+     * @param v the vector to operate on
+     * @param executor executor running the pieces, may be null
+     * @return {@code this * v}
+     * @throws DimensionMismatchException if the length of {@code v} does not
+     * match the column dimension of {@code this}.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the pieces
+     * @since 3.7
+     */
+    public double[] operate(final double[] v, final ExecutorService executor)
+        throws DimensionMismatchException, MathIllegalStateException {
         if (v.length != columns) {
             throw new DimensionMismatchException(v.length, columns);
         }
         final double[] out = new double[rows];
 
         // perform multiplication block-wise, to ensure good cache behavior
-        for (int iBlock = 0; iBlock < blockRows; ++iBlock) {
-            final int pStart = iBlock * BLOCK_SIZE;
-            final int pEnd = FastMath.min(pStart + BLOCK_SIZE, rows);
-            for (int jBlock = 0; jBlock < blockColumns; ++jBlock) {
-                final double[] block  = blocks[iBlock * blockColumns + jBlock];
-                final int qStart = jBlock * BLOCK_SIZE;
-                final int qEnd = FastMath.min(qStart + BLOCK_SIZE, columns);
-                int k = 0;
-                for (int p = pStart; p < pEnd; ++p) {
-                    double sum = 0;
-                    int q = qStart;
-                    while (q < qEnd - 3) {
-                        sum += block[k]     * v[q]     +
-                               block[k + 1] * v[q + 1] +
-                               block[k + 2] * v[q + 2] +
-                               block[k + 3] * v[q + 3];
-                        k += 4;
-                        q += 4;
-                    }
-                    while (q < qEnd) {
-                        sum += block[k++] * v[q++];
+        ParallelTasks.forRange(executor, 0, blockRows, (double) rows * columns,
+                               new ParallelTasks.RangeTask() {
+            /** {@inheritDoc} */
+            public void run(final int from, final int to) {
+                for (int iBlock = from; iBlock < to; ++iBlock) {
+                    final int pStart = iBlock * BLOCK_SIZE;
+                    final int pEnd = FastMath.min(pStart + BLOCK_SIZE, rows);
+                    for (int jBlock = 0; jBlock < blockColumns; ++jBlock) {
+                        final double[] block  = blocks[iBlock * blockColumns + jBlock];
+                        final int qStart = jBlock * BLOCK_SIZE;
+                        final int width = FastMath.min(qStart + BLOCK_SIZE, columns) - qStart;
+                        int k = 0;
+                        for (int p = pStart; p < pEnd; ++p) {
+                            out[p] += VectorKernels.dotProduct(block, k, v, qStart, width);
+                            k += width;
+                        }
                     }
-                    out[p] += sum;
                 }
             }
-        }
+        });
 
         return out;
     }
@@ -17,6 +17,8 @@
 
 package org.apache.commons.math3.linear;
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.util.FastMath;
 
@@ -39,6 +41,11 @@ import org.apache.commons.math3.util.FastMath;
  *   getSolver} method and the equivalent method provided by the returned
  *   {@link DecompositionSolver}.</li>
  * </ul>
+ * <p>The decomposition proceeds by panels of rows of L<sup>T</sup>: each
+ * panel is factored, then the rows below it are updated with the whole
+ * panel, one row at a time along contiguous arrays. Every element sees the
+ * same operations in the same order as in a row by row elimination. The row
+ * updates are independent, and may run on an {@link ExecutorService}.</p>
  *
  * @see <a href="http://mathworld.wolfram.com/CholeskyDecomposition.html">MathWorld</a>
  * @see <a href="http://en.wikipedia.org/wiki/Cholesky_decomposition">Wikipedia</a>
@@ -55,6 +62,8 @@ public class CholeskyDecomposition {
      * and matrix not positive definite.
      */
     public static final double DEFAULT_ABSOLUTE_POSITIVITY_THRESHOLD = 1.0e-10;
+    /** Number of rows in a panel. */
+    private static final int PANEL_WIDTH = 32;
     /** Row-oriented storage for L<sup>T</sup> matrix data. */
     private double[][] lTData;
     /** Cached value of L. */
@@ -103,6 +112,31 @@ public class CholeskyDecomposition {
     public CholeskyDecomposition(final RealMatrix matrix,
                                      final double relativeSymmetryThreshold,
                                      final double absolutePositivityThreshold) {
+        this(matrix, relativeSymmetryThreshold, absolutePositivityThreshold, null);
+    }
+
+    /**
+     * Calculates the Cholesky decomposition of the given matrix, updating
+     * the rows below each panel in parallel.
+     * @param matrix the matrix to decompose
+     * @param relativeSymmetryThreshold threshold above which off-diagonal
+     * elements are considered too different and matrix not symmetric
+     * @param absolutePositivityThreshold threshold below which diagonal
+     * elements are considered null and matrix not positive definite
+     * @param executor executor for the row updates, null to decompose in
+     * the calling thread
+     * @throws NonSquareMatrixException if the matrix is not square.
+     * @throws NonSymmetricMatrixException if the matrix is not symmetric.
+     * @throws NonPositiveDefiniteMatrixException if the matrix is not
+     * strictly positive definite.
+     * @throws org.apache.commons.math3.exception.MathIllegalStateException
+     * if the calling thread is interrupted while waiting for the executor.
+     * @since 3.7
+     */
+    public CholeskyDecomposition(final RealMatrix matrix,
+                                 final double relativeSymmetryThreshold,
+                                 final double absolutePositivityThreshold,
+                                 final ExecutorService executor) {
         if (!matrix.isSquare()) {
             throw new NonSquareMatrixException(matrix.getRowDimension(),
                                                matrix.getColumnDimension());
@@ -131,26 +165,55 @@ public class CholeskyDecomposition {
            }
         }
 
-        // transform the matrix
-        for (int i = 0; i < order; ++i) {
+        // transform the matrix, by panels of rows
+        for (int panelStart = 0; panelStart < order; panelStart += PANEL_WIDTH) {
+            final int panelEnd = FastMath.min(panelStart + PANEL_WIDTH, order);
 
-            final double[] ltI = lTData[i];
+            for (int i = panelStart; i < panelEnd; ++i) {
 
-            // check diagonal element
-            if (ltI[i] <= absolutePositivityThreshold) {
-                throw new NonPositiveDefiniteMatrixException(ltI[i], i, absolutePositivityThreshold);
-            }
+                final double[] ltI = lTData[i];
+
+                // check diagonal element
+                if (ltI[i] <= absolutePositivityThreshold) {
+                    throw new NonPositiveDefiniteMatrixException(ltI[i], i, absolutePositivityThreshold);
+                }
 
-            ltI[i] = FastMath.sqrt(ltI[i]);
-            final double inverse = 1.0 / ltI[i];
+                ltI[i] = FastMath.sqrt(ltI[i]);
+                final double inverse = 1.0 / ltI[i];
 
-            for (int q = order - 1; q > i; --q) {
-                ltI[q] *= inverse;
-                final double[] ltQ = lTData[q];
-                for (int p = q; p < order; ++p) {
-                    ltQ[p] -= ltI[q] * ltI[p];
+                for (int q = order - 1; q > i; --q) {
+                    ltI[q] *= inverse;
+                }
+
+                // update the rest of the panel
+                for (int q = i + 1; q < panelEnd; ++q) {
+                    final double[] ltQ = lTData[q];
+                    for (int p = q; p < order; ++p) {
+                        ltQ[p] -= ltI[q] * ltI[p];
+                    }
                 }
             }
+
+            // update the rows below the panel
+            final int first = panelStart;
+            final int last  = panelEnd;
+            ParallelTasks.forRange(executor, panelEnd, order,
+                                   0.5 * (order - panelEnd) * (order - panelEnd) * (panelEnd - panelStart),
+                                   new ParallelTasks.RangeTask() {
+                /** {@inheritDoc} */
+                public void run(final int start, final int end) {
+                    for (int q = start; q < end; ++q) {
+                        final double[] ltQ = lTData[q];
+                        for (int i = first; i < last; ++i) {
+                            final double[] ltI = lTData[i];
+                            final double ltIQ = ltI[q];
+                            for (int p = q; p < order; ++p) {
+                                ltQ[p] -= ltIQ * ltI[p];
+                            }
+                        }
+                    }
+                }
+            });
         }
     }
 
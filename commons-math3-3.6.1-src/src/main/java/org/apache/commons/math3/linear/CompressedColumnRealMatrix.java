@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.linear;
+
+import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+
+/**
+ * Sparse matrix implementation in compressed sparse column (CSC) format.
+ *
+ * <p>The non-zero entries are stored column after column in two arrays,
+ * their row indices in increasing order within each column and their
+ * values, with a third array holding where each column starts. This is
+ * the layout of {@link CompressedRowRealMatrix} for the transpose: here
+ * each column of {@link #preMultiply(double[])} is an independent dot
+ * product, so that {@link #preMultiply(double[], ExecutorService)} can
+ * spread the columns over threads, while {@link #operate(double[])}
+ * accumulates scaled columns in the calling thread.</p>
+ *
+ * <p>Matrices are best built with a {@link SparseRealMatrixBuilder}.
+ * Setting an entry which is already stored is a binary search, but
+ * inserting a new one shifts all the entries after it. {@link #transpose()}
+ * gives a {@link CompressedRowRealMatrix} with the same arrays.</p>
+ *
+ * <p>
+ *  Caveat: This implementation assumes that, for any {@code x},
+ *  the equality {@code x * 0d == 0d} holds. But it is is not true for
+ *  {@code NaN}. Moreover, zero entries will lose their sign.
+ *  Some operations (that involve {@code NaN} and/or infinities) may
+ *  thus give incorrect results.
+ * </p>
+ * @since 3.7
+ */
+public class CompressedColumnRealMatrix extends AbstractRealMatrix
+    implements SparseRealMatrix, Serializable {
+
+    /** Serializable version identifier. */
+    private static final long serialVersionUID = 20261018L;
+
+    /** Entries, column after column. */
+    private final CompressedStorage storage;
+
+    /**
+     * Build a sparse matrix with the supplied row and column dimensions,
+     * and no entries.
+     *
+     * @param rowDimension Number of rows of the matrix.
+     * @param columnDimension Number of columns of the matrix.
+     * @throws NotStrictlyPositiveException if row or column dimension is not
+     * positive.
+     */
+    public CompressedColumnRealMatrix(int rowDimension, int columnDimension)
+        throws NotStrictlyPositiveException {
+        super(rowDimension, columnDimension);
+        this.storage = new CompressedStorage(columnDimension, rowDimension);
+    }
+
+    /**
+     * Build a matrix by copying another one.
+     *
+     * @param matrix matrix to copy.
+     */
+    public CompressedColumnRealMatrix(CompressedColumnRealMatrix matrix) {
+        this.storage = matrix.storage.copy();
+    }
+
+    /**
+     * Build a matrix on existing storage, which is referenced, not copied.
+     *
+     * @param storage entries, column after column.
+     */
+    CompressedColumnRealMatrix(CompressedStorage storage) {
+        this.storage = storage;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompressedColumnRealMatrix copy() {
+        return new CompressedColumnRealMatrix(this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompressedColumnRealMatrix createMatrix(int rowDimension, int columnDimension)
+        throws NotStrictlyPositiveException {
+        return new CompressedColumnRealMatrix(rowDimension, columnDimension);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getRowDimension() {
+        return storage.getMinorDimension();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getColumnDimension() {
+        return storage.getMajorDimension();
+    }
+
+    /**
+     * Get the number of stored entries.
+     *
+     * @return the number of stored entries, including any stored entry
+     * that was set to zero.
+     */
+    public int getNonZeroCount() {
+        return storage.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getEntry(int row, int column) throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        return storage.get(column, row);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setEntry(int row, int column, double value)
+        throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        storage.set(column, row, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addToEntry(int row, int column, double increment)
+        throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        storage.add(column, row, increment);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void multiplyEntry(int row, int column, double factor)
+        throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        storage.multiply(column, row, factor);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompressedColumnRealMatrix scalarMultiply(double d) {
+        return new CompressedColumnRealMatrix(storage.scale(d));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the transpose, in compressed sparse row format.
+     */
+    @Override
+    public CompressedRowRealMatrix transpose() {
+        return new CompressedRowRealMatrix(storage.copy());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The product by another {@code CompressedColumnRealMatrix} is
+     * sparse; by any other matrix it is dense.</p>
+     */
+    @Override
+    public RealMatrix multiply(final RealMatrix m)
+        throws DimensionMismatchException {
+        if (m instanceof CompressedColumnRealMatrix) {
+            return multiply((CompressedColumnRealMatrix) m);
+        }
+        return new CompressedRowRealMatrix(storage.transpose()).multiply(m);
+    }
+
+    /**
+     * Postmultiply this matrix by another one, keeping the result sparse.
+     *
+     * @param m Matrix to postmultiply by.
+     * @return {@code this} * {@code m}.
+     * @throws DimensionMismatchException if the number of rows of {@code m}
+     * differ from the number of columns of {@code this} matrix.
+     */
+    public CompressedColumnRealMatrix multiply(CompressedColumnRealMatrix m)
+        throws DimensionMismatchException {
+        MatrixUtils.checkMultiplicationCompatible(this, m);
+        // the columns of the product are the rows of m^T this^T
+        return new CompressedColumnRealMatrix(m.storage.multiply(storage));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] operate(final double[] v)
+        throws DimensionMismatchException {
+        if (v.length != getColumnDimension()) {
+            throw new DimensionMismatchException(v.length, getColumnDimension());
+        }
+        final double[] out = new double[getRowDimension()];
+        storage.scatter(v, out);
+        return out;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealVector operate(final RealVector v)
+        throws DimensionMismatchException {
+        final double[] data = (v instanceof ArrayRealVector) ?
+                              ((ArrayRealVector) v).getDataRef() : v.toArray();
+        return new ArrayRealVector(operate(data), false);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] preMultiply(final double[] v)
+        throws DimensionMismatchException {
+        return preMultiply(v, null);
+    }
+
+    /**
+     * Returns the (row) vector result of premultiplying this by the vector
+     * {@code v}, with the columns in pieces on an executor if the product
+     * is large enough.
+     *
+     * @param v the row vector to premultiply by
+     * @param executor executor running the pieces, may be null
+     * @return {@code v * this}
+     * @throws DimensionMismatchException if the length of {@code v} does not
+     * match the row dimension of {@code this}.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the pieces
+     */
+    public double[] preMultiply(final double[] v, final ExecutorService executor)
+        throws DimensionMismatchException, MathIllegalStateException {
+        if (v.length != getRowDimension()) {
+            throw new DimensionMismatchException(v.length, getRowDimension());
+        }
+        return storage.gather(v, executor);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealVector preMultiply(final RealVector v)
+        throws DimensionMismatchException {
+        return preMultiply(v, null);
+    }
+
+    /**
+     * Returns the (row) vector result of premultiplying this by the vector
+     * {@code v}, with the columns in pieces on an executor if the product
+     * is large enough.
+     *
+     * @param v the row vector to premultiply by
+     * @param executor executor running the pieces, may be null
+     * @return {@code v * this}
+     * @throws DimensionMismatchException if the dimension of {@code v} does
+     * not match the row dimension of {@code this}.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the pieces
+     */
+    public RealVector preMultiply(final RealVector v, final ExecutorService executor)
+        throws DimensionMismatchException, MathIllegalStateException {
+        final double[] data = (v instanceof ArrayRealVector) ?
+                              ((ArrayRealVector) v).getDataRef() : v.toArray();
+        return new ArrayRealVector(preMultiply(data, executor), false);
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.linear;
+
+import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+
+/**
+ * Sparse matrix implementation in compressed sparse row (CSR) format.
+ *
+ * <p>The non-zero entries are stored row after row in two arrays, their
+ * column indices in increasing order within each row and their values,
+ * with a third array holding where each row starts. Products by a vector
+ * walk these arrays sequentially, with no hashing, and each row of
+ * {@link #operate(double[])} is an independent dot product, so that
+ * {@link #operate(double[], ExecutorService)} can spread the rows over
+ * threads. This makes this format the one to use as the operator of the
+ * iterative solvers, such as {@link ConjugateGradient} or {@link SymmLQ}.
+ * Unlike {@link OpenMapRealMatrix}, the number of rows and the number of
+ * columns are each only bounded by {@code Integer.MAX_VALUE}, not their
+ * product.</p>
+ *
+ * <p>Matrices are best built with a {@link SparseRealMatrixBuilder}.
+ * Setting an entry which is already stored is a binary search, but
+ * inserting a new one shifts all the entries after it. {@link #transpose()}
+ * gives a {@link CompressedColumnRealMatrix} with the same arrays.</p>
+ *
+ * <p>
+ *  Caveat: This implementation assumes that, for any {@code x},
+ *  the equality {@code x * 0d == 0d} holds. But it is is not true for
+ *  {@code NaN}. Moreover, zero entries will lose their sign.
+ *  Some operations (that involve {@code NaN} and/or infinities) may
+ *  thus give incorrect results.
+ * </p>
+ * @since 3.7
+ */
+public class CompressedRowRealMatrix extends AbstractRealMatrix
+    implements SparseRealMatrix, Serializable {
+
+    /** Serializable version identifier. */
+    private static final long serialVersionUID = 20261018L;
+
+    /** Entries, row after row. */
+    private final CompressedStorage storage;
+
+    /**
+     * Build a sparse matrix with the supplied row and column dimensions,
+     * and no entries.
+     *
+     * @param rowDimension Number of rows of the matrix.
+     * @param columnDimension Number of columns of the matrix.
+     * @throws NotStrictlyPositiveException if row or column dimension is not
+     * positive.
+     */
+    public CompressedRowRealMatrix(int rowDimension, int columnDimension)
+        throws NotStrictlyPositiveException {
+        super(rowDimension, columnDimension);
+        this.storage = new CompressedStorage(rowDimension, columnDimension);
+    }
+
+    /**
+     * Build a matrix by copying another one.
+     *
+     * @param matrix matrix to copy.
+     */
+    public CompressedRowRealMatrix(CompressedRowRealMatrix matrix) {
+        this.storage = matrix.storage.copy();
+    }
+
+    /**
+     * Build a matrix on existing storage, which is referenced, not copied.
+     *
+     * @param storage entries, row after row.
+     */
+    CompressedRowRealMatrix(CompressedStorage storage) {
+        this.storage = storage;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompressedRowRealMatrix copy() {
+        return new CompressedRowRealMatrix(this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompressedRowRealMatrix createMatrix(int rowDimension, int columnDimension)
+        throws NotStrictlyPositiveException {
+        return new CompressedRowRealMatrix(rowDimension, columnDimension);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getRowDimension() {
+        return storage.getMajorDimension();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getColumnDimension() {
+        return storage.getMinorDimension();
+    }
+
+    /**
+     * Get the number of stored entries.
+     *
+     * @return the number of stored entries, including any stored entry
+     * that was set to zero.
+     */
+    public int getNonZeroCount() {
+        return storage.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getEntry(int row, int column) throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        return storage.get(row, column);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setEntry(int row, int column, double value)
+        throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        storage.set(row, column, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addToEntry(int row, int column, double increment)
+        throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        storage.add(row, column, increment);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void multiplyEntry(int row, int column, double factor)
+        throws OutOfRangeException {
+        MatrixUtils.checkRowIndex(this, row);
+        MatrixUtils.checkColumnIndex(this, column);
+        storage.multiply(row, column, factor);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompressedRowRealMatrix scalarMultiply(double d) {
+        return new CompressedRowRealMatrix(storage.scale(d));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the transpose, in compressed sparse column format.
+     */
+    @Override
+    public CompressedColumnRealMatrix transpose() {
+        return new CompressedColumnRealMatrix(storage.copy());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The product by another {@code CompressedRowRealMatrix} is sparse;
+     * by any other matrix it is dense.</p>
+     */
+    @Override
+    public RealMatrix multiply(final RealMatrix m)
+        throws DimensionMismatchException {
+        if (m instanceof CompressedRowRealMatrix) {
+            return multiply((CompressedRowRealMatrix) m);
+        }
+        MatrixUtils.checkMultiplicationCompatible(this, m);
+        final double[][] out = new double[getRowDimension()][m.getColumnDimension()];
+        storage.multiply(m, out);
+        return new Array2DRowRealMatrix(out, false);
+    }
+
+    /**
+     * Postmultiply this matrix by another one, keeping the result sparse.
+     *
+     * @param m Matrix to postmultiply by.
+     * @return {@code this} * {@code m}.
+     * @throws DimensionMismatchException if the number of rows of {@code m}
+     * differ from the number of columns of {@code this} matrix.
+     */
+    public CompressedRowRealMatrix multiply(CompressedRowRealMatrix m)
+        throws DimensionMismatchException {
+        MatrixUtils.checkMultiplicationCompatible(this, m);
+        return new CompressedRowRealMatrix(storage.multiply(m.storage));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] operate(final double[] v)
+        throws DimensionMismatchException {
+        return operate(v, null);
+    }
+
+    /**
+     * Returns the result of multiplying this by the vector {@code v}, with
+     * the rows in pieces on an executor if the product is large enough.
+     *
+     * @param v the vector to operate on
+     * @param executor executor running the pieces, may be null
+     * @return {@code this * v}
+     * @throws DimensionMismatchException if the length of {@code v} does not
+     * match the column dimension of {@code this}.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the pieces
+     */
+    public double[] operate(final double[] v, final ExecutorService executor)
+        throws DimensionMismatchException, MathIllegalStateException {
+        if (v.length != getColumnDimension()) {
+            throw new DimensionMismatchException(v.length, getColumnDimension());
+        }
+        return storage.gather(v, executor);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealVector operate(final RealVector v)
+        throws DimensionMismatchException {
+        return operate(v, null);
+    }
+
+    /**
+     * Returns the result of multiplying this by the vector {@code v}, with
+     * the rows in pieces on an executor if the product is large enough.
+     *
+     * @param v the vector to operate on
+     * @param executor executor running the pieces, may be null
+     * @return {@code this * v}
+     * @throws DimensionMismatchException if the dimension of {@code v} does
+     * not match the column dimension of {@code this}.
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the pieces
+     */
+    public RealVector operate(final RealVector v, final ExecutorService executor)
+        throws DimensionMismatchException, MathIllegalStateException {
+        final double[] data = (v instanceof ArrayRealVector) ?
+                              ((ArrayRealVector) v).getDataRef() : v.toArray();
+        return new ArrayRealVector(operate(data, executor), false);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] preMultiply(final double[] v)
+        throws DimensionMismatchException {
+        if (v.length != getRowDimension()) {
+            throw new DimensionMismatchException(v.length, getRowDimension());
+        }
+        final double[] out = new double[getColumnDimension()];
+        storage.scatter(v, out);
+        return out;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RealVector preMultiply(final RealVector v)
+        throws DimensionMismatchException {
+        final double[] data = (v instanceof ArrayRealVector) ?
+                              ((ArrayRealVector) v).getDataRef() : v.toArray();
+        return new ArrayRealVector(preMultiply(data), false);
+    }
+
+}
@@ -0,0 +1,466 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.linear;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.math3.util.MathArrays;
+
+/**
+ * Compressed sparse storage shared by {@link CompressedRowRealMatrix} and
+ * {@link CompressedColumnRealMatrix}.
+ * <p>The non-zero entries are stored major line after major line, rows
+ * for the row compressed format and columns for the column compressed one.
+ * The entries of major line i are at positions start[i] to start[i+1] - 1,
+ * with their minor indices in increasing order. The same arrays therefore
+ * describe a matrix in one format and its transpose in the other.</p>
+ * <p>This class is intended for internal use by the library and is not
+ * public.</p>
+ * @since 3.7
+ */
+final class CompressedStorage implements Serializable {
+
+    /** Cost of a multiply-add through an index array, in dense multiply-adds. */
+    static final int INDEXED_COST = 4;
+
+    /** Serializable version identifier. */
+    private static final long serialVersionUID = 20261018L;
+
+    /** Number of major lines. */
+    private final int majorDimension;
+
+    /** Length of the major lines. */
+    private final int minorDimension;
+
+    /** Position of the first entry of each major line, and the number of entries. */
+    private final int[] start;
+
+    /** Minor indices of the entries, possibly with spare capacity. */
+    private int[] index;
+
+    /** Values of the entries, possibly with spare capacity. */
+    private double[] values;
+
+    /**
+     * Build storage without entries.
+     * @param majorDimension number of major lines
+     * @param minorDimension length of the major lines
+     */
+    CompressedStorage(final int majorDimension, final int minorDimension) {
+        this(majorDimension, minorDimension, new int[majorDimension + 1], new int[0], new double[0]);
+    }
+
+    /**
+     * Build storage from its arrays, which are referenced, not copied.
+     * @param majorDimension number of major lines
+     * @param minorDimension length of the major lines
+     * @param start position of the first entry of each major line, and the
+     * number of entries
+     * @param index minor indices of the entries
+     * @param values values of the entries
+     */
+    private CompressedStorage(final int majorDimension, final int minorDimension,
+                              final int[] start, final int[] index, final double[] values) {
+        this.majorDimension = majorDimension;
+        this.minorDimension = minorDimension;
+        this.start          = start;
+        this.index          = index;
+        this.values         = values;
+    }
+
+    /**
+     * Build storage from entries in any order, summing duplicates and
+     * dropping the entries that sum to zero.
+     * @param majorDimension number of major lines
+     * @param minorDimension length of the major lines
+     * @param major major indices of the entries
+     * @param minor minor indices of the entries
+     * @param entries values of the entries
+     * @param count number of entries
+     * @return storage of the entries
+     */
+    static CompressedStorage fromEntries(final int majorDimension, final int minorDimension,
+                                         final int[] major, final int[] minor,
+                                         final double[] entries, final int count) {
+
+        // radix sort: by minor index, then stably by major index
+        final int[] byMinor = new int[count];
+        final int[] minorStart = new int[minorDimension + 1];
+        for (int k = 0; k < count; ++k) {
+            ++minorStart[minor[k] + 1];
+        }
+        for (int j = 0; j < minorDimension; ++j) {
+            minorStart[j + 1] += minorStart[j];
+        }
+        for (int k = 0; k < count; ++k) {
+            byMinor[minorStart[minor[k]]++] = k;
+        }
+
+        final int[] start = new int[majorDimension + 1];
+        for (int k = 0; k < count; ++k) {
+            ++start[major[k] + 1];
+        }
+        for (int i = 0; i < majorDimension; ++i) {
+            start[i + 1] += start[i];
+        }
+        final int[] next = MathArrays.copyOf(start, majorDimension);
+        final int[] index = new int[count];
+        final double[] values = new double[count];
+        for (int n = 0; n < count; ++n) {
+            final int k = byMinor[n];
+            final int p = next[major[k]]++;
+            index[p]  = minor[k];
+            values[p] = entries[k];
+        }
+
+        // sum the duplicates and drop the zeros, compacting in place
+        int size = 0;
+        for (int i = 0; i < majorDimension; ++i) {
+            final int lineStart = size;
+            for (int p = start[i]; p < start[i + 1]; ++p) {
+                if (size > lineStart && index[size - 1] == index[p]) {
+                    values[size - 1] += values[p];
+                } else {
+                    index[size]  = index[p];
+                    values[size] = values[p];
+                    ++size;
+                }
+            }
+            int kept = lineStart;
+            for (int p = lineStart; p < size; ++p) {
+                if (values[p] != 0.0) {
+                    index[kept]  = index[p];
+                    values[kept] = values[p];
+                    ++kept;
+                }
+            }
+            size = kept;
+            start[i] = lineStart;
+        }
+        start[majorDimension] = size;
+
+        return new CompressedStorage(majorDimension, minorDimension, start,
+                                     MathArrays.copyOf(index, size), MathArrays.copyOf(values, size));
+    }
+
+    /**
+     * Get the number of major lines.
+     * @return number of major lines
+     */
+    int getMajorDimension() {
+        return majorDimension;
+    }
+
+    /**
+     * Get the length of the major lines.
+     * @return length of the major lines
+     */
+    int getMinorDimension() {
+        return minorDimension;
+    }
+
+    /**
+     * Get the number of stored entries.
+     * @return number of stored entries
+     */
+    int size() {
+        return start[majorDimension];
+    }
+
+    /**
+     * Get an entry.
+     * @param i major index
+     * @param j minor index
+     * @return entry, 0 if not stored
+     */
+    double get(final int i, final int j) {
+        final int p = find(i, j);
+        return p < 0 ? 0.0 : values[p];
+    }
+
+    /**
+     * Set an entry, inserting it if it is not stored and not zero.
+     * <p>A stored entry set to zero remains stored.</p>
+     * @param i major index
+     * @param j minor index
+     * @param value new value
+     */
+    void set(final int i, final int j, final double value) {
+        final int p = find(i, j);
+        if (p >= 0) {
+            values[p] = value;
+        } else if (value != 0.0) {
+            insert(i, -p - 1, j, value);
+        }
+    }
+
+    /**
+     * Add to an entry, inserting it if it is not stored.
+     * @param i major index
+     * @param j minor index
+     * @param increment value to add
+     */
+    void add(final int i, final int j, final double increment) {
+        final int p = find(i, j);
+        if (p >= 0) {
+            values[p] += increment;
+        } else if (increment != 0.0) {
+            insert(i, -p - 1, j, increment);
+        }
+    }
+
+    /**
+     * Multiply an entry.
+     * @param i major index
+     * @param j minor index
+     * @param factor multiplication factor
+     */
+    void multiply(final int i, final int j, final double factor) {
+        final int p = find(i, j);
+        if (p >= 0) {
+            values[p] *= factor;
+        }
+    }
+
+    /**
+     * Multiply all entries.
+     * @param factor multiplication factor
+     * @return scaled copy of the storage
+     */
+    CompressedStorage scale(final double factor) {
+        final CompressedStorage copy = copy();
+        for (int p = 0; p < copy.values.length; ++p) {
+            copy.values[p] *= factor;
+        }
+        return copy;
+    }
+
+    /**
+     * Get a copy without spare capacity.
+     * @return copy of the storage
+     */
+    CompressedStorage copy() {
+        final int size = size();
+        return new CompressedStorage(majorDimension, minorDimension, start.clone(),
+                                     MathArrays.copyOf(index, size), MathArrays.copyOf(values, size));
+    }
+
+    /**
+     * Get the storage with the roles of the major and minor indices swapped,
+     * which is the other compressed format of the same matrix.
+     * @return transposed storage
+     */
+    CompressedStorage transpose() {
+        final int size = size();
+        final int[] tStart = new int[minorDimension + 1];
+        for (int p = 0; p < size; ++p) {
+            ++tStart[index[p] + 1];
+        }
+        for (int j = 0; j < minorDimension; ++j) {
+            tStart[j + 1] += tStart[j];
+        }
+        final int[] next = MathArrays.copyOf(tStart, minorDimension);
+        final int[] tIndex = new int[size];
+        final double[] tValues = new double[size];
+        for (int i = 0; i < majorDimension; ++i) {
+            for (int p = start[i]; p < start[i + 1]; ++p) {
+                final int q = next[index[p]]++;
+                tIndex[q]  = i;
+                tValues[q] = values[p];
+            }
+        }
+        return new CompressedStorage(minorDimension, majorDimension, tStart, tIndex, tValues);
+    }
+
+    /**
+     * Multiply major lines by a vector: out[i] = &sum;<sub>j</sub> a<sub>ij</sub> v[j]
+     * for i in [from, to).
+     * @param v vector, of the minor dimension
+     * @param out result, of the major dimension
+     * @param from first major line
+     * @param to major line after the last one
+     */
+    void gather(final double[] v, final double[] out, final int from, final int to) {
+        for (int i = from; i < to; ++i) {
+            final int end = start[i + 1];
+            int p = start[i];
+            double sum = 0;
+            for (; p + 3 < end; p += 4) {
+                sum += values[p]     * v[index[p]] +
+                       values[p + 1] * v[index[p + 1]] +
+                       values[p + 2] * v[index[p + 2]] +
+                       values[p + 3] * v[index[p + 3]];
+            }
+            for (; p < end; ++p) {
+                sum += values[p] * v[index[p]];
+            }
+            out[i] = sum;
+        }
+    }
+
+    /**
+     * Multiply all major lines by a vector, in pieces on an executor if the
+     * product is large enough.
+     * @param v vector, of the minor dimension
+     * @param executor executor running the pieces, may be null
+     * @return product, of the major dimension
+     */
+    double[] gather(final double[] v, final ExecutorService executor) {
+        final double[] out = new double[majorDimension];
+        ParallelTasks.forRange(executor, 0, majorDimension, INDEXED_COST * (double) size(),
+                               new ParallelTasks.RangeTask() {
+            /** {@inheritDoc} */
+            public void run(final int from, final int to) {
+                gather(v, out, from, to);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Accumulate major lines scaled by a vector: out[j] += &sum;<sub>i</sub> a<sub>ij</sub> v[i].
+     * @param v vector, of the major dimension
+     * @param out result, of the minor dimension
+     */
+    void scatter(final double[] v, final double[] out) {
+        for (int i = 0; i < majorDimension; ++i) {
+            final double vi = v[i];
+            if (vi != 0.0) {
+                for (int p = start[i]; p < start[i + 1]; ++p) {
+                    out[index[p]] += values[p] * vi;
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiply by a dense matrix: out[i][j] += &sum;<sub>k</sub> a<sub>ik</sub> m<sub>kj</sub>.
+     * @param m right operand, whose row dimension is the minor dimension
+     * @param out result, of the major dimension times the column dimension of m
+     */
+    void multiply(final RealMatrix m, final double[][] out) {
+        final double[][] data = m.getData();
+        final int columns = m.getColumnDimension();
+        for (int i = 0; i < majorDimension; ++i) {
+            final double[] outI = out[i];
+            for (int p = start[i]; p < start[i + 1]; ++p) {
+                final double[] dataK = data[index[p]];
+                final double aik = values[p];
+                for (int j = 0; j < columns; ++j) {
+                    outI[j] += aik * dataK[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiply two matrices stored major line after major line, by
+     * accumulating for each major line of the left operand the major lines
+     * of the right operand it selects (Gustavson's algorithm).
+     * @param right right operand, whose major dimension is the minor
+     * dimension of this storage
+     * @return storage of the product
+     */
+    CompressedStorage multiply(final CompressedStorage right) {
+        final int outMinor = right.minorDimension;
+        final double[] accumulator = new double[outMinor];
+        final int[] marker = new int[outMinor];
+        Arrays.fill(marker, -1);
+        final int[] outStart = new int[majorDimension + 1];
+        int[] outIndex = new int[size() + right.size()];
+        double[] outValues = new double[outIndex.length];
+        int size = 0;
+        for (int i = 0; i < majorDimension; ++i) {
+            final int lineStart = size;
+            for (int p = start[i]; p < start[i + 1]; ++p) {
+                final int k = index[p];
+                final double aik = values[p];
+                for (int q = right.start[k]; q < right.start[k + 1]; ++q) {
+                    final int j = right.index[q];
+                    if (marker[j] != i) {
+                        marker[j] = i;
+                        accumulator[j] = 0;
+                        if (size == outIndex.length) {
+                            outIndex  = MathArrays.copyOf(outIndex, 2 * size);
+                            outValues = MathArrays.copyOf(outValues, 2 * size);
+                        }
+                        outIndex[size++] = j;
+                    }
+                    accumulator[j] += aik * right.values[q];
+                }
+            }
+            Arrays.sort(outIndex, lineStart, size);
+            for (int p = lineStart; p < size; ++p) {
+                outValues[p] = accumulator[outIndex[p]];
+            }
+            outStart[i + 1] = size;
+        }
+        return new CompressedStorage(majorDimension, outMinor, outStart,
+                                     MathArrays.copyOf(outIndex, size), MathArrays.copyOf(outValues, size));
+    }
+
+    /**
+     * Find an entry.
+     * @param i major index
+     * @param j minor index
+     * @return position of the entry, or (-(insertion point) - 1) if it is
+     * not stored
+     */
+    private int find(final int i, final int j) {
+        int low  = start[i];
+        int high = start[i + 1] - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int m = index[mid];
+            if (m < j) {
+                low = mid + 1;
+            } else if (m > j) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Insert an entry, shifting the entries after it.
+     * @param i major index
+     * @param p insertion position
+     * @param j minor index
+     * @param value value of the entry
+     */
+    private void insert(final int i, final int p, final int j, final double value) {
+        final int size = size();
+        if (size == index.length) {
+            final int capacity = FastMath.max(16, 2 * size);
+            index  = MathArrays.copyOf(index, capacity);
+            values = MathArrays.copyOf(values, capacity);
+        }
+        System.arraycopy(index,  p, index,  p + 1, size - p);
+        System.arraycopy(values, p, values, p + 1, size - p);
+        index[p]  = j;
+        values[p] = value;
+        for (int k = i + 1; k <= majorDimension; ++k) {
+            ++start[k];
+        }
+    }
+
+}
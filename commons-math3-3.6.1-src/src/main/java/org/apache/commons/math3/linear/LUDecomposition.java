@@ -17,6 +17,8 @@
 
 package org.apache.commons.math3.linear;
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.util.FastMath;
 
@@ -28,6 +30,12 @@ import org.apache.commons.math3.util.FastMath;
  * matrices are m&times;m.</p>
  * <p>As shown by the presence of the P matrix, this decomposition is
  * implemented using partial pivoting.</p>
+ * <p>The decomposition proceeds by panels of columns: each panel is
+ * factored, then its rows of U are completed and the rows below it updated
+ * with the product of the panel's L and U parts, one row at a time along
+ * contiguous arrays. Every element sees the same operations in the same
+ * order as in a column by column elimination. The row updates are
+ * independent, and may run on an {@link ExecutorService}.</p>
  * <p>This class is based on the class with similar name from the
  * <a href="http://math.nist.gov/javanumerics/jama/">JAMA</a> library.</p>
  * <ul>
@@ -48,6 +56,8 @@ import org.apache.commons.math3.util.FastMath;
 public class LUDecomposition {
     /** Default bound to determine effective singularity in LU decomposition. */
     private static final double DEFAULT_TOO_SMALL = 1e-11;
+    /** Number of columns in a panel. */
+    private static final int PANEL_WIDTH = 32;
     /** Entries of LU decomposition. */
     private final double[][] lu;
     /** Pivot permutation associated with LU decomposition. */
@@ -83,6 +93,24 @@ public class LUDecomposition {
      * @throws NonSquareMatrixException if matrix is not square
      */
     public LUDecomposition(RealMatrix matrix, double singularityThreshold) {
+        this(matrix, singularityThreshold, null);
+    }
+
+    /**
+     * Calculates the LU-decomposition of the given matrix, updating the rows
+     * below each panel in parallel.
+     * @param matrix The matrix to decompose.
+     * @param singularityThreshold threshold (based on partial row norm)
+     * under which a matrix is considered singular
+     * @param executor executor for the row updates, null to decompose in
+     * the calling thread
+     * @throws NonSquareMatrixException if matrix is not square
+     * @throws org.apache.commons.math3.exception.MathIllegalStateException
+     * if the calling thread is interrupted while waiting for the executor
+     * @since 3.7
+     */
+    public LUDecomposition(RealMatrix matrix, double singularityThreshold,
+                           ExecutorService executor) {
         if (!matrix.isSquare()) {
             throw new NonSquareMatrixException(matrix.getRowDimension(),
                                                matrix.getColumnDimension());
@@ -102,63 +130,99 @@ public class LUDecomposition {
         even     = true;
         singular = false;
 
-        // Loop over columns
-        for (int col = 0; col < m; col++) {
-
-            // upper
-            for (int row = 0; row < col; row++) {
-                final double[] luRow = lu[row];
-                double sum = luRow[col];
-                for (int i = 0; i < row; i++) {
-                    sum -= luRow[i] * lu[i][col];
+        // Loop over panels
+        for (int panelStart = 0; panelStart < m; panelStart += PANEL_WIDTH) {
+            final int panelEnd = FastMath.min(panelStart + PANEL_WIDTH, m);
+
+            // factor the panel, column by column
+            for (int col = panelStart; col < panelEnd; col++) {
+
+                // find the best permutation choice
+                int max = col; // permutation row
+                double largest = Double.NEGATIVE_INFINITY;
+                for (int row = col; row < m; row++) {
+                    final double abs = FastMath.abs(lu[row][col]);
+                    if (abs > largest) {
+                        largest = abs;
+                        max = row;
+                    }
                 }
-                luRow[col] = sum;
-            }
 
-            // lower
-            int max = col; // permutation row
-            double largest = Double.NEGATIVE_INFINITY;
-            for (int row = col; row < m; row++) {
-                final double[] luRow = lu[row];
-                double sum = luRow[col];
-                for (int i = 0; i < col; i++) {
-                    sum -= luRow[i] * lu[i][col];
+                // Singularity check
+                if (FastMath.abs(lu[max][col]) < singularityThreshold) {
+                    singular = true;
+                    return;
                 }
-                luRow[col] = sum;
 
-                // maintain best permutation choice
-                if (FastMath.abs(sum) > largest) {
-                    largest = FastMath.abs(sum);
-                    max = row;
+                // Pivot if necessary
+                if (max != col) {
+                    final double[] tmp = lu[max];
+                    lu[max] = lu[col];
+                    lu[col] = tmp;
+                    int temp = pivot[max];
+                    pivot[max] = pivot[col];
+                    pivot[col] = temp;
+                    even = !even;
                 }
-            }
 
-            // Singularity check
-            if (FastMath.abs(lu[max][col]) < singularityThreshold) {
-                singular = true;
-                return;
+                // Divide the lower elements by the "winning" diagonal elt.
+                // and update the rest of the panel below the diagonal
+                final int c = col;
+                final double[] luCol = lu[col];
+                ParallelTasks.forRange(executor, col + 1, m, (double) (m - col - 1) * (panelEnd - col),
+                                       new ParallelTasks.RangeTask() {
+                    /** {@inheritDoc} */
+                    public void run(final int start, final int end) {
+                        final double luDiag = luCol[c];
+                        for (int row = start; row < end; row++) {
+                            final double[] luRow = lu[row];
+                            luRow[c] /= luDiag;
+                            final double l = luRow[c];
+                            for (int j = c + 1; j < panelEnd; j++) {
+                                luRow[j] -= l * luCol[j];
+                            }
+                        }
+                    }
+                });
             }
 
-            // Pivot if necessary
-            if (max != col) {
-                double tmp = 0;
-                final double[] luMax = lu[max];
-                final double[] luCol = lu[col];
-                for (int i = 0; i < m; i++) {
-                    tmp = luMax[i];
-                    luMax[i] = luCol[i];
-                    luCol[i] = tmp;
+            if (panelEnd < m) {
+                // upper: the rows of U in the panel
+                for (int row = panelStart + 1; row < panelEnd; row++) {
+                    updateRow(lu[row], panelStart, row, panelEnd, m);
                 }
-                int temp = pivot[max];
-                pivot[max] = pivot[col];
-                pivot[col] = temp;
-                even = !even;
+
+                // lower: the trailing rows, with the panel's L and U parts
+                final int first = panelStart;
+                ParallelTasks.forRange(executor, panelEnd, m,
+                                       (double) (m - panelEnd) * (m - panelEnd) * (panelEnd - panelStart),
+                                       new ParallelTasks.RangeTask() {
+                    /** {@inheritDoc} */
+                    public void run(final int start, final int end) {
+                        for (int row = start; row < end; row++) {
+                            updateRow(lu[row], first, panelEnd, panelEnd, m);
+                        }
+                    }
+                });
             }
+        }
+    }
 
-            // Divide the lower elements by the "winning" diagonal elt.
-            final double luDiag = lu[col][col];
-            for (int row = col + 1; row < m; row++) {
-                lu[row][col] /= luDiag;
+    /**
+     * Subtract from the end of a row its products with rows of U.
+     * @param luRow row to update
+     * @param kStart first row of U, and first L column of the row, to use
+     * @param kEnd row of U after the last one to use
+     * @param jStart first column to update
+     * @param m number of columns
+     */
+    private void updateRow(final double[] luRow, final int kStart, final int kEnd,
+                           final int jStart, final int m) {
+        for (int k = kStart; k < kEnd; k++) {
+            final double l = luRow[k];
+            final double[] luK = lu[k];
+            for (int j = jStart; j < m; j++) {
+                luRow[j] -= l * luK[j];
             }
         }
     }
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.math3.linear;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Helpers running the independent parts of a matrix computation on an
+ * {@link ExecutorService}.
+ * <p>The callers split their work into tasks writing to disjoint parts of
+ * the result, so that the outcome does not depend on how many threads run
+ * them or in which order. This class is intended for internal use by the
+ * library and is not public.</p>
+ * @since 3.7
+ */
+final class ParallelTasks {
+
+    /** Largest number of pieces a loop is split into, per processor. */
+    private static final int PIECES_PER_PROCESSOR = 4;
+
+    /** Body of a loop over a range of indices. */
+    interface RangeTask {
+        /**
+         * Run the loop body over a range of indices.
+         * @param start first index of the range
+         * @param end index after the range
+         */
+        void run(int start, int end);
+    }
+
+    /** Private constructor for a utility class. */
+    private ParallelTasks() {
+    }
+
+    /**
+     * Run a loop over a range of indices, in pieces on an executor if it is
+     * worth it.
+     * <p>The loop runs in the calling thread if there is no executor or if
+     * it does less than {@link BlockRealMatrix#PARALLEL_THRESHOLD}
+     * multiply-adds. Otherwise the range is split into contiguous pieces of
+     * about {@link BlockRealMatrix#PARALLEL_GRAIN} multiply-adds, at most a
+     * few per processor, and the calling thread waits for all of them.</p>
+     * @param executor executor running the pieces, may be null
+     * @param start first index of the range
+     * @param end index after the range
+     * @param work approximate number of multiply-adds of the whole loop
+     * @param task loop body, called with disjoint ranges
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the pieces
+     */
+    static void forRange(final ExecutorService executor, final int start, final int end,
+                         final double work, final RangeTask task)
+        throws MathIllegalStateException {
+        final int count = end - start;
+        if (executor == null || count < 2 || work < BlockRealMatrix.PARALLEL_THRESHOLD) {
+            if (count > 0) {
+                task.run(start, end);
+            }
+            return;
+        }
+
+        final int maxPieces = PIECES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+        final int pieces = (int) FastMath.max(2, FastMath.min(FastMath.min(count, maxPieces),
+                                                              FastMath.ceil(work / BlockRealMatrix.PARALLEL_GRAIN)));
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(pieces);
+        for (int i = 0; i < pieces; ++i) {
+            final int pieceStart = start + (int) ((long) count * i / pieces);
+            final int pieceEnd   = start + (int) ((long) count * (i + 1) / pieces);
+            tasks.add(new Callable<Void>() {
+                /** {@inheritDoc} */
+                public Void call() {
+                    task.run(pieceStart, pieceEnd);
+                    return null;
+                }
+            });
+        }
+        invokeAll(executor, tasks);
+    }
+
+    /**
+     * Run tasks on an executor and wait for all of them.
+     * @param executor executor running the tasks
+     * @param tasks tasks to run
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the tasks
+     */
+    static void invokeAll(final ExecutorService executor, final List<Callable<Void>> tasks)
+        throws MathIllegalStateException {
+        try {
+            for (final Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MathIllegalStateException(e, LocalizedFormats.SIMPLE_MESSAGE, e.getMessage());
+        } catch (ExecutionException e) {
+            // rethrow what the task threw, as if it had run in this thread
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MathIllegalStateException(cause, LocalizedFormats.SIMPLE_MESSAGE, cause.getMessage());
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.commons.math3.linear;
 
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.util.FastMath;
@@ -32,6 +33,13 @@ import org.apache.commons.math3.util.FastMath;
  * <p>For efficiency purposes, the decomposition in packed form is transposed.
  * This allows inner loop to iterate inside rows, which is much more cache-efficient
  * in Java.</p>
+ * <p>The {@link #QRDecomposition(RealMatrix, double, ExecutorService) blocked}
+ * variant factors panels of columns, then applies each panel to the
+ * trailing columns at once through the compact WY form of its reflectors,
+ * which reads the panel once for several columns instead of once per
+ * reflector and column. The trailing columns, and the columns within a
+ * panel, can be transformed in parallel. The result agrees with the other
+ * constructors up to rounding, and does not depend on the executor.</p>
  * <p>This class is based on the class with similar name from the
  * <a href="http://math.nist.gov/javanumerics/jama/">JAMA</a> library, with the
  * following changes:</p>
@@ -67,6 +75,14 @@ public class QRDecomposition {
     private RealMatrix cachedH;
     /** Singularity threshold. */
     private final double threshold;
+    /** Executor for the blocked decomposition, may be null. */
+    private final ExecutorService executor;
+
+    /** Number of columns in a panel of the blocked decomposition. */
+    private static final int PANEL_WIDTH = 32;
+
+    /** Number of trailing columns updated together by a panel. */
+    private static final int WY_COLUMNS = 4;
 
     /**
      * Calculates the QR-decomposition of the given matrix.
@@ -88,7 +104,47 @@ public class QRDecomposition {
      */
     public QRDecomposition(RealMatrix matrix,
                            double threshold) {
+        this(matrix, threshold, false, null);
+    }
+
+    /**
+     * Calculates the QR-decomposition of the given matrix, by panels of
+     * columns, possibly in parallel.
+     * <p>The result agrees with the one of the other constructors up to
+     * rounding, and is the same with or without an executor. The
+     * decomposition does not go through {@link #decompose(double[][])
+     * decompose} or {@link #performHouseholderReflection(int, double[][])
+     * performHouseholderReflection}, so subclasses overriding them should
+     * not use this constructor.</p>
+     *
+     * @param matrix The matrix to decompose.
+     * @param threshold Singularity threshold.
+     * @param executor Executor for the updates of the columns, null to
+     * decompose in the calling thread.
+     * @throws org.apache.commons.math3.exception.MathIllegalStateException
+     * if the calling thread is interrupted while waiting for the executor.
+     * @since 3.7
+     */
+    public QRDecomposition(RealMatrix matrix,
+                           double threshold,
+                           ExecutorService executor) {
+        this(matrix, threshold, true, executor);
+    }
+
+    /**
+     * Calculates the QR-decomposition of the given matrix.
+     *
+     * @param matrix The matrix to decompose.
+     * @param threshold Singularity threshold.
+     * @param blocked Whether to use the blocked decomposition.
+     * @param executor Executor for the blocked decomposition, may be null.
+     */
+    private QRDecomposition(RealMatrix matrix,
+                            double threshold,
+                            boolean blocked,
+                            ExecutorService executor) {
         this.threshold = threshold;
+        this.executor  = executor;
 
         final int m = matrix.getRowDimension();
         final int n = matrix.getColumnDimension();
@@ -99,7 +155,11 @@ public class QRDecomposition {
         cachedR  = null;
         cachedH  = null;
 
-        decompose(qrt);
+        if (blocked) {
+            decomposeBlocked(qrt);
+        } else {
+            decompose(qrt);
+        }
 
     }
 
@@ -119,8 +179,22 @@ public class QRDecomposition {
      * @since 3.2
      */
     protected void performHouseholderReflection(int minor, double[][] matrix) {
+        if (computeReflector(minor, matrix[minor])) {
+            final double[] qrtMinor = matrix[minor];
+            for (int col = minor+1; col < matrix.length; col++) {
+                reflect(minor, qrtMinor, matrix[col]);
+            }
+        }
+    }
 
-        final double[] qrtMinor = matrix[minor];
+    /** Compute the Householder reflector of a minor A(minor, minor) of A.
+     * <p>The diagonal element of R is stored, and the reflector vector
+     * replaces the first column of the minor.</p>
+     * @param minor minor index
+     * @param qrtMinor first column of the minor, row {@code minor} of the transposed matrix
+     * @return false if the column is zero and the minor needs no transformation
+     */
+    private boolean computeReflector(final int minor, final double[] qrtMinor) {
 
         /*
          * Let x be the first column of the minor, and a^2 = |x|^2.
@@ -137,46 +211,250 @@ public class QRDecomposition {
         final double a = (qrtMinor[minor] > 0) ? -FastMath.sqrt(xNormSqr) : FastMath.sqrt(xNormSqr);
         rDiag[minor] = a;
 
-        if (a != 0.0) {
+        if (a == 0.0) {
+            return false;
+        }
 
-            /*
-             * Calculate the normalized reflection vector v and transform
-             * the first column. We know the norm of v beforehand: v = x-ae
-             * so |v|^2 = <x-ae,x-ae> = <x,x>-2a<x,e>+a^2<e,e> =
-             * a^2+a^2-2a<x,e> = 2a*(a - <x,e>).
-             * Here <x, e> is now qr[minor][minor].
-             * v = x-ae is stored in the column at qr:
-             */
-            qrtMinor[minor] -= a; // now |v|^2 = -2a*(qr[minor][minor])
+        /*
+         * Calculate the normalized reflection vector v and transform
+         * the first column. We know the norm of v beforehand: v = x-ae
+         * so |v|^2 = <x-ae,x-ae> = <x,x>-2a<x,e>+a^2<e,e> =
+         * a^2+a^2-2a<x,e> = 2a*(a - <x,e>).
+         * Here <x, e> is now qr[minor][minor].
+         * v = x-ae is stored in the column at qr:
+         */
+        qrtMinor[minor] -= a; // now |v|^2 = -2a*(qr[minor][minor])
+        return true;
+    }
 
-            /*
-             * Transform the rest of the columns of the minor:
-             * They will be transformed by the matrix H = I-2vv'/|v|^2.
-             * If x is a column vector of the minor, then
-             * Hx = (I-2vv'/|v|^2)x = x-2vv'x/|v|^2 = x - 2<x,v>/|v|^2 v.
-             * Therefore the transformation is easily calculated by
-             * subtracting the column vector (2<x,v>/|v|^2)v from x.
-             *
-             * Let 2<x,v>/|v|^2 = alpha. From above we have
-             * |v|^2 = -2a*(qr[minor][minor]), so
-             * alpha = -<x,v>/(a*qr[minor][minor])
-             */
-            for (int col = minor+1; col < matrix.length; col++) {
-                final double[] qrtCol = matrix[col];
-                double alpha = 0;
-                for (int row = minor; row < qrtCol.length; row++) {
-                    alpha -= qrtCol[row] * qrtMinor[row];
+    /** Apply the Householder reflector of a minor to another column of the minor.
+     * @param minor minor index
+     * @param qrtMinor reflector vector, row {@code minor} of the transposed matrix
+     * @param qrtCol column to transform, a later row of the transposed matrix
+     */
+    private void reflect(final int minor, final double[] qrtMinor, final double[] qrtCol) {
+        /*
+         * Transform the rest of the columns of the minor:
+         * They will be transformed by the matrix H = I-2vv'/|v|^2.
+         * If x is a column vector of the minor, then
+         * Hx = (I-2vv'/|v|^2)x = x-2vv'x/|v|^2 = x - 2<x,v>/|v|^2 v.
+         * Therefore the transformation is easily calculated by
+         * subtracting the column vector (2<x,v>/|v|^2)v from x.
+         *
+         * Let 2<x,v>/|v|^2 = alpha. From above we have
+         * |v|^2 = -2a*(qr[minor][minor]), so
+         * alpha = -<x,v>/(a*qr[minor][minor])
+         */
+        double alpha = 0;
+        for (int row = minor; row < qrtCol.length; row++) {
+            alpha -= qrtCol[row] * qrtMinor[row];
+        }
+        alpha /= rDiag[minor] * qrtMinor[minor];
+
+        // Subtract the column vector alpha*v from x.
+        for (int row = minor; row < qrtCol.length; row++) {
+            qrtCol[row] -= alpha * qrtMinor[row];
+        }
+    }
+
+    /** Decompose matrix by panels of columns.
+     * <p>Each panel is factored one reflector at a time. Its reflectors
+     * H<sub>1</sub>&hellip;H<sub>k</sub> are then accumulated in the compact
+     * WY form I - V T V<sup>T</sup>, with T upper triangular, and the
+     * trailing columns C are updated at once as C - V T<sup>T</sup>
+     * (V<sup>T</sup> C), a few columns at a time so that each element of V
+     * read serves all of them.</p>
+     * @param matrix transposed matrix
+     */
+    private void decomposeBlocked(final double[][] matrix) {
+        final int n = matrix.length;
+        final int m = matrix[0].length;
+        final int steps = FastMath.min(n, m);
+        for (int panelStart = 0; panelStart < steps; panelStart += PANEL_WIDTH) {
+            final int panelEnd = FastMath.min(panelStart + PANEL_WIDTH, steps);
+
+            // factor the panel, transforming its later columns after each reflector
+            for (int minor = panelStart; minor < panelEnd; minor++) {
+                final double[] qrtMinor = matrix[minor];
+                if (computeReflector(minor, qrtMinor)) {
+                    final int reflected = minor;
+                    ParallelTasks.forRange(executor, minor + 1, panelEnd,
+                                           (double) (panelEnd - minor - 1) * (m - minor),
+                                           new ParallelTasks.RangeTask() {
+                        /** {@inheritDoc} */
+                        public void run(final int start, final int end) {
+                            for (int col = start; col < end; col++) {
+                                reflect(reflected, qrtMinor, matrix[col]);
+                            }
+                        }
+                    });
+                }
+            }
+
+            if (panelEnd < n) {
+                // apply the whole panel to the trailing columns
+                final int first = panelStart;
+                final double[][] t = triangularFactor(matrix, panelStart, panelEnd);
+                ParallelTasks.forRange(executor, panelEnd, n,
+                                       2.0 * (n - panelEnd) * (panelEnd - panelStart) * (m - panelStart),
+                                       new ParallelTasks.RangeTask() {
+                    /** {@inheritDoc} */
+                    public void run(final int start, final int end) {
+                        final double[][] w = new double[t.length][WY_COLUMNS];
+                        for (int col = start; col < end; col += WY_COLUMNS) {
+                            applyPanel(matrix, first, t, w, col, FastMath.min(col + WY_COLUMNS, end));
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /** Compute the triangular factor of the compact WY form of a panel.
+     * <p>With H<sub>j</sub> = I - &tau;<sub>j</sub> v<sub>j</sub>
+     * v<sub>j</sub><sup>T</sup>, the product H<sub>1</sub>&hellip;H<sub>k</sub>
+     * is I - V T V<sup>T</sup> where T has &tau;<sub>j</sub> on its diagonal
+     * and column j above it is -&tau;<sub>j</sub> T V<sup>T</sup> v<sub>j</sub>.
+     * A skipped reflector has &tau;<sub>j</sub> = 0.</p>
+     * @param matrix transposed matrix, holding the reflectors of the panel
+     * @param panelStart first reflector of the panel
+     * @param panelEnd index after the last reflector of the panel
+     * @return T, indexed from 0 for reflector {@code panelStart}
+     */
+    private double[][] triangularFactor(final double[][] matrix, final int panelStart, final int panelEnd) {
+        final int k = panelEnd - panelStart;
+        final double[][] t = new double[k][k];
+        final double[] z = new double[k];
+        for (int j = 0; j < k; j++) {
+            final int minor = panelStart + j;
+            final double[] vj = matrix[minor];
+            if (rDiag[minor] == 0.0) {
+                continue;
+            }
+            // |v|^2 = -2a*v[minor], so 2/|v|^2 = -1/(a*v[minor])
+            final double tau = -1.0 / (rDiag[minor] * vj[minor]);
+            t[j][j] = tau;
+
+            // z = V^T v_j, v_i being zero above row panelStart + i
+            for (int i = 0; i < j; i++) {
+                final double[] vi = matrix[panelStart + i];
+                double dot = 0;
+                for (int row = minor; row < vj.length; row++) {
+                    dot += vi[row] * vj[row];
                 }
-                alpha /= a * qrtMinor[minor];
+                z[i] = dot;
+            }
 
-                // Subtract the column vector alpha*v from x.
-                for (int row = minor; row < qrtCol.length; row++) {
-                    qrtCol[row] -= alpha * qrtMinor[row];
+            // column j of T = -tau T z
+            for (int i = 0; i < j; i++) {
+                double sum = 0;
+                for (int l = i; l < j; l++) {
+                    sum += t[i][l] * z[l];
                 }
+                t[i][j] = -tau * sum;
             }
         }
+        return t;
     }
 
+    /** Apply the reflectors of a panel to a few trailing columns.
+     * <p>The columns are transformed by H<sub>k</sub>&hellip;H<sub>1</sub> =
+     * I - V T<sup>T</sup> V<sup>T</sup>.</p>
+     * @param matrix transposed matrix
+     * @param panelStart first reflector of the panel
+     * @param t triangular factor of the panel
+     * @param w workspace, panel width &times; {@link #WY_COLUMNS}
+     * @param start first column to transform
+     * @param end index after the last column to transform, at most
+     * {@link #WY_COLUMNS} after {@code start}
+     */
+    private void applyPanel(final double[][] matrix, final int panelStart, final double[][] t,
+                            final double[][] w, final int start, final int end) {
+        final int k = t.length;
+        final int count = end - start;
+        final int m = matrix[start].length;
+
+        // W = V^T C
+        for (int j = 0; j < k; j++) {
+            final double[] vj = matrix[panelStart + j];
+            final double[] wj = w[j];
+            final int first = panelStart + j;
+            if (count == WY_COLUMNS) {
+                final double[] c0 = matrix[start];
+                final double[] c1 = matrix[start + 1];
+                final double[] c2 = matrix[start + 2];
+                final double[] c3 = matrix[start + 3];
+                double s0 = 0;
+                double s1 = 0;
+                double s2 = 0;
+                double s3 = 0;
+                for (int row = first; row < m; row++) {
+                    final double v = vj[row];
+                    s0 += v * c0[row];
+                    s1 += v * c1[row];
+                    s2 += v * c2[row];
+                    s3 += v * c3[row];
+                }
+                wj[0] = s0;
+                wj[1] = s1;
+                wj[2] = s2;
+                wj[3] = s3;
+            } else {
+                for (int c = 0; c < count; c++) {
+                    final double[] col = matrix[start + c];
+                    double s = 0;
+                    for (int row = first; row < m; row++) {
+                        s += vj[row] * col[row];
+                    }
+                    wj[c] = s;
+                }
+            }
+        }
+
+        // W = T^T W, from the last row up as row i only needs rows up to i
+        for (int i = k - 1; i >= 0; i--) {
+            final double[] wi = w[i];
+            for (int c = 0; c < count; c++) {
+                double sum = 0;
+                for (int j = 0; j <= i; j++) {
+                    sum += t[j][i] * w[j][c];
+                }
+                wi[c] = sum;
+            }
+        }
+
+        // C = C - V W
+        for (int j = 0; j < k; j++) {
+            final double[] vj = matrix[panelStart + j];
+            final double[] wj = w[j];
+            final int first = panelStart + j;
+            if (count == WY_COLUMNS) {
+                final double[] c0 = matrix[start];
+                final double[] c1 = matrix[start + 1];
+                final double[] c2 = matrix[start + 2];
+                final double[] c3 = matrix[start + 3];
+                final double w0 = wj[0];
+                final double w1 = wj[1];
+                final double w2 = wj[2];
+                final double w3 = wj[3];
+                for (int row = first; row < m; row++) {
+                    final double v = vj[row];
+                    c0[row] -= v * w0;
+                    c1[row] -= v * w1;
+                    c2[row] -= v * w2;
+                    c3[row] -= v * w3;
+                }
+            } else {
+                for (int c = 0; c < count; c++) {
+                    final double[] col = matrix[start + c];
+                    final double wc = wj[c];
+                    for (int row = first; row < m; row++) {
+                        col[row] -= vj[row] * wc;
+                    }
+                }
+            }
+        }
+    }
 
     /**
      * Returns the matrix R of the decomposition.
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.linear;
+
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
+import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.math3.util.MathArrays;
+
+/**
+ * Builder of {@link CompressedRowRealMatrix} and
+ * {@link CompressedColumnRealMatrix} instances.
+ *
+ * <p>Entries are collected in any order, as in a coordinate list, and
+ * entries added more than once are summed, as when assembling a finite
+ * element matrix. Building sorts them in time linear in the number of
+ * entries and drops the ones that sum to zero. The builder can be reused:
+ * it keeps its entries after building, and more can be added before
+ * building again.</p>
+ *
+ * @since 3.7
+ */
+public class SparseRealMatrixBuilder {
+
+    /** Number of rows. */
+    private final int rows;
+
+    /** Number of columns. */
+    private final int columns;
+
+    /** Row indices of the entries. */
+    private int[] rowIndices;
+
+    /** Column indices of the entries. */
+    private int[] columnIndices;
+
+    /** Values of the entries. */
+    private double[] values;
+
+    /** Number of entries added. */
+    private int count;
+
+    /**
+     * Create a builder of matrices with the supplied row and column
+     * dimensions.
+     *
+     * @param rowDimension Number of rows of the matrix.
+     * @param columnDimension Number of columns of the matrix.
+     * @throws NotStrictlyPositiveException if row or column dimension is not
+     * positive.
+     */
+    public SparseRealMatrixBuilder(int rowDimension, int columnDimension)
+        throws NotStrictlyPositiveException {
+        if (rowDimension < 1) {
+            throw new NotStrictlyPositiveException(rowDimension);
+        }
+        if (columnDimension < 1) {
+            throw new NotStrictlyPositiveException(columnDimension);
+        }
+        this.rows          = rowDimension;
+        this.columns       = columnDimension;
+        this.rowIndices    = new int[16];
+        this.columnIndices = new int[16];
+        this.values        = new double[16];
+        this.count         = 0;
+    }
+
+    /**
+     * Add a value to an entry.
+     *
+     * @param row Row index of the entry.
+     * @param column Column index of the entry.
+     * @param increment Value to add to the entry.
+     * @return this builder, for chaining.
+     * @throws OutOfRangeException if the row or column index is not valid.
+     */
+    public SparseRealMatrixBuilder addToEntry(int row, int column, double increment)
+        throws OutOfRangeException {
+        if (row < 0 || row >= rows) {
+            throw new OutOfRangeException(LocalizedFormats.ROW_INDEX, row, 0, rows - 1);
+        }
+        if (column < 0 || column >= columns) {
+            throw new OutOfRangeException(LocalizedFormats.COLUMN_INDEX, column, 0, columns - 1);
+        }
+        if (count == values.length) {
+            final int capacity = (int) FastMath.min(Integer.MAX_VALUE, 2L * count);
+            rowIndices    = MathArrays.copyOf(rowIndices, capacity);
+            columnIndices = MathArrays.copyOf(columnIndices, capacity);
+            values        = MathArrays.copyOf(values, capacity);
+        }
+        rowIndices[count]    = row;
+        columnIndices[count] = column;
+        values[count]        = increment;
+        ++count;
+        return this;
+    }
+
+    /**
+     * Get the number of entries added, counting duplicates.
+     *
+     * @return the number of entries added.
+     */
+    public int getEntryCount() {
+        return count;
+    }
+
+    /**
+     * Build a matrix in compressed sparse row format.
+     *
+     * @return a new matrix holding the entries added so far.
+     */
+    public CompressedRowRealMatrix buildRowCompressed() {
+        return new CompressedRowRealMatrix(CompressedStorage.fromEntries(rows, columns,
+                                                                         rowIndices, columnIndices,
+                                                                         values, count));
+    }
+
+    /**
+     * Build a matrix in compressed sparse column format.
+     *
+     * @return a new matrix holding the entries added so far.
+     */
+    public CompressedColumnRealMatrix buildColumnCompressed() {
+        return new CompressedColumnRealMatrix(CompressedStorage.fromEntries(columns, rows,
+                                                                            columnIndices, rowIndices,
+                                                                            values, count));
+    }
+
+}
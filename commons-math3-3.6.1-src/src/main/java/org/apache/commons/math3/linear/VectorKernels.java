@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.math3.linear;
+
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Loops over primitive arrays shared by the dense vectors and matrices.
+ * <p>Reductions (dot products, sums of squares) are written as sums of
+ * groups of four independent products, as {@link BlockRealMatrix} has
+ * always done: the JIT may not reorder floating-point additions, so a plain
+ * running sum waits for each addition before the next one, whereas the
+ * products of a group are computed in parallel by the processor. Element by
+ * element loops are left as simple counted loops, which the JIT unrolls and
+ * vectorizes by itself.</p>
+ * <p>Long dot products may be split into pieces on an {@link
+ * ExecutorService}. They are always summed by chunks of fixed length, in
+ * order, so that the result is the same whether or not an executor is used
+ * and whatever the number of threads. This class is intended for internal
+ * use by the library and is not public.</p>
+ * @since 3.7
+ */
+final class VectorKernels {
+
+    /** Number of elements summed separately in long dot products. */
+    static final int DOT_CHUNK = 1 << 16;
+
+    /** Private constructor for a utility class. */
+    private VectorKernels() {
+    }
+
+    /**
+     * Compute the dot product of two array slices.
+     * @param a first array
+     * @param aStart index of the first element in {@code a}
+     * @param b second array
+     * @param bStart index of the first element in {@code b}
+     * @param length number of elements
+     * @return &sum;<sub>i</sub> a[aStart + i] b[bStart + i]
+     */
+    static double dotProduct(final double[] a, final int aStart,
+                             final double[] b, final int bStart,
+                             final int length) {
+        double sum = 0;
+        int i = aStart;
+        int j = bStart;
+        final int end = aStart + length;
+        while (i < end - 3) {
+            sum += a[i]     * b[j]     +
+                   a[i + 1] * b[j + 1] +
+                   a[i + 2] * b[j + 2] +
+                   a[i + 3] * b[j + 3];
+            i += 4;
+            j += 4;
+        }
+        while (i < end) {
+            sum += a[i++] * b[j++];
+        }
+        return sum;
+    }
+
+    /**
+     * Compute the dot product of two arrays, by chunks of {@link #DOT_CHUNK}
+     * elements on an executor if it is long enough.
+     * @param a first array
+     * @param b second array, at least as long as {@code a}
+     * @param executor executor running the chunks, may be null
+     * @return &sum;<sub>i</sub> a[i] b[i]
+     * @throws MathIllegalStateException if the calling thread is interrupted
+     * while waiting for the chunks
+     */
+    static double dotProduct(final double[] a, final double[] b,
+                             final ExecutorService executor)
+        throws MathIllegalStateException {
+        final int n = a.length;
+        if (n <= DOT_CHUNK) {
+            return dotProduct(a, 0, b, 0, n);
+        }
+
+        final double[] partial = new double[(n - 1) / DOT_CHUNK + 1];
+        ParallelTasks.forRange(executor, 0, partial.length, n, new ParallelTasks.RangeTask() {
+            /** {@inheritDoc} */
+            public void run(final int from, final int to) {
+                for (int c = from; c < to; ++c) {
+                    final int start = c * DOT_CHUNK;
+                    partial[c] = dotProduct(a, start, b, start, FastMath.min(DOT_CHUNK, n - start));
+                }
+            }
+        });
+
+        double sum = 0;
+        for (final double p : partial) {
+            sum += p;
+        }
+        return sum;
+    }
+
+    /**
+     * Compute the sum of the squares of the elements of an array.
+     * @param a array
+     * @return &sum;<sub>i</sub> a[i]<sup>2</sup>
+     */
+    static double sumOfSquares(final double[] a) {
+        return dotProduct(a, 0, a, 0, a.length);
+    }
+
+    /**
+     * Compute the squared Euclidean distance between two arrays.
+     * @param a first array
+     * @param b second array, at least as long as {@code a}
+     * @return &sum;<sub>i</sub> (a[i] - b[i])<sup>2</sup>
+     */
+    static double distanceSquared(final double[] a, final double[] b) {
+        final int n = a.length;
+        double sum = 0;
+        int i = 0;
+        while (i < n - 3) {
+            final double d0 = a[i]     - b[i];
+            final double d1 = a[i + 1] - b[i + 1];
+            final double d2 = a[i + 2] - b[i + 2];
+            final double d3 = a[i + 3] - b[i + 3];
+            sum += d0 * d0 + d1 * d1 + d2 * d2 + d3 * d3;
+            i += 4;
+        }
+        while (i < n) {
+            final double d = a[i] - b[i];
+            sum += d * d;
+            ++i;
+        }
+        return sum;
+    }
+
+    /**
+     * Add two arrays element by element.
+     * @param a first array
+     * @param b second array, at least as long as {@code a}
+     * @param out result, at least as long as {@code a}, may be {@code a}
+     */
+    static void add(final double[] a, final double[] b, final double[] out) {
+        for (int i = 0; i < a.length; ++i) {
+            out[i] = a[i] + b[i];
+        }
+    }
+
+    /**
+     * Subtract two arrays element by element.
+     * @param a first array
+     * @param b second array, at least as long as {@code a}
+     * @param out result, at least as long as {@code a}, may be {@code a}
+     */
+    static void subtract(final double[] a, final double[] b, final double[] out) {
+        for (int i = 0; i < a.length; ++i) {
+            out[i] = a[i] - b[i];
+        }
+    }
+
+    /**
+     * Multiply an array by a scalar, in place.
+     * @param a array
+     * @param factor multiplier
+     */
+    static void scale(final double[] a, final double factor) {
+        for (int i = 0; i < a.length; ++i) {
+            a[i] *= factor;
+        }
+    }
+
+    /**
+     * Replace an array by a linear combination of itself and another one.
+     * @param alpha coefficient of {@code a}
+     * @param a array, replaced by alpha a + beta b
+     * @param beta coefficient of {@code b}
+     * @param b second array, at least as long as {@code a}
+     */
+    static void combine(final double alpha, final double[] a,
+                        final double beta, final double[] b) {
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = alpha * a[i] + beta * b[i];
+        }
+    }
+}
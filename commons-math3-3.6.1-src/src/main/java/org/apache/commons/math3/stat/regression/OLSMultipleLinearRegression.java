@@ -16,6 +16,8 @@
  */
 package org.apache.commons.math3.stat.regression;
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.commons.math3.exception.MathIllegalArgumentException;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.LUDecomposition;
@@ -49,6 +51,11 @@ import org.apache.commons.math3.stat.descriptive.moment.SecondMoment;
  *
  * <p>Given <code>Q</code> and <code>R</code>, the last equation is solved by back-substitution.</p>
  *
+ * <p>Given an {@link ExecutorService}, the QR decomposition is computed by
+ * panels of columns whose updates run on the executor, which pays off for
+ * design matrices with many observations. The estimates then agree with the
+ * ones computed without an executor up to rounding.</p>
+ *
  * @since 2.0
  */
 public class OLSMultipleLinearRegression extends AbstractMultipleLinearRegression {
@@ -59,6 +66,9 @@ public class OLSMultipleLinearRegression extends AbstractMultipleLinearRegressio
     /** Singularity threshold for QR decomposition */
     private final double threshold;
 
+    /** Executor for the QR decomposition, may be null */
+    private final ExecutorService executor;
+
     /**
      * Create an empty OLSMultipleLinearRegression instance.
      */
@@ -74,7 +84,21 @@ public class OLSMultipleLinearRegression extends AbstractMultipleLinearRegressio
      * @since 3.3
      */
     public OLSMultipleLinearRegression(final double threshold) {
+        this(threshold, null);
+    }
+
+    /**
+     * Create an empty OLSMultipleLinearRegression instance, using the given
+     * singularity threshold and executor for the QR decomposition.
+     *
+     * @param threshold the singularity threshold
+     * @param executor executor for the column updates of the blocked QR
+     * decomposition, null for the plain decomposition in the calling thread
+     * @since 3.7
+     */
+    public OLSMultipleLinearRegression(final double threshold, final ExecutorService executor) {
         this.threshold = threshold;
+        this.executor = executor;
     }
 
     /**
@@ -99,7 +123,7 @@ public class OLSMultipleLinearRegression extends AbstractMultipleLinearRegressio
     @Override
     public void newSampleData(double[] data, int nobs, int nvars) {
         super.newSampleData(data, nobs, nvars);
-        qr = new QRDecomposition(getX(), threshold);
+        qr = decompose(getX());
     }
 
     /**
@@ -238,7 +262,19 @@ public class OLSMultipleLinearRegression extends AbstractMultipleLinearRegressio
     @Override
     protected void newXSampleData(double[][] x) {
         super.newXSampleData(x);
-        qr = new QRDecomposition(getX(), threshold);
+        qr = decompose(getX());
+    }
+
+    /**
+     * Decompose the X matrix, by panels on the executor if there is one.
+     *
+     * @param x the X matrix
+     * @return the QR decomposition of x
+     */
+    private QRDecomposition decompose(RealMatrix x) {
+        return executor == null ?
+               new QRDecomposition(x, threshold) :
+               new QRDecomposition(x, threshold, executor);
     }
 
     /**
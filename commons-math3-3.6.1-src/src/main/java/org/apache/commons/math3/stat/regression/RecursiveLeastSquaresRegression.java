@@ -0,0 +1,489 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.stat.regression;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.DecompositionSolver;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Recursive least squares (RLS) implementation of the
+ * {@link UpdatingMultipleLinearRegression} interface.
+ *
+ * <p>The estimator keeps the current parameter vector &theta; and the
+ * matrix P = (X<sup>T</sup>&Lambda;X + &mu;I)<sup>-1</sup>, where &Lambda;
+ * holds the exponential weights &lambda;<sup>n-i</sup> of the observations
+ * and &mu; = &lambda;<sup>n</sup>/&delta; is the decaying weight of the
+ * initial guess &theta; = 0 with covariance &delta;I. Each observation
+ * updates both with the matrix inversion lemma, so adding an observation
+ * costs O(p<sup>2</sup>) operations, allocates nothing and never factors a
+ * matrix. The estimate is therefore available after every sample, which
+ * makes this class suitable for tracking slowly varying models online.</p>
+ *
+ * <p>With a forgetting factor &lambda; = 1 all observations are weighted
+ * equally and, once &delta; is large compared to the data, the estimates
+ * agree with ordinary least squares. With &lambda; &lt; 1 old observations
+ * are discounted geometrically, giving an effective memory of about
+ * 1 / (1 - &lambda;) observations. The statistics reported by
+ * {@link #regress()} then use that effective number of observations and
+ * the exponentially weighted sums of squares. Note that with &lambda; &lt; 1
+ * and regressors that stop varying, P grows without bound; callers should
+ * keep the input exciting or use &lambda; = 1 in that case.</p>
+ *
+ * <p>The exponentially weighted cross products are also maintained, at the
+ * same O(p<sup>2</sup>) cost, so that {@link #regress(int[])} can solve for
+ * a subset of the regressors. Only subset regressions factor a matrix.</p>
+ *
+ * @since 3.7
+ */
+public class RecursiveLeastSquaresRegression implements UpdatingMultipleLinearRegression {
+
+    /** Number of variables in regression, including the constant if any. */
+    private final int nvars;
+
+    /** Include constant. */
+    private final boolean hasIntercept;
+
+    /** Forgetting factor. */
+    private final double lambda;
+
+    /** Initial covariance scale &delta;. */
+    private final double initialCovariance;
+
+    /** Current parameter estimates. */
+    private final double[] theta;
+
+    /** Inverse of the weighted normal matrix, kept symmetric. */
+    private final double[][] p;
+
+    /** Weighted cross products X<sup>T</sup>&Lambda;X, upper triangle only. */
+    private final double[][] xtx;
+
+    /** Weighted cross products X<sup>T</sup>&Lambda;y. */
+    private final double[] xty;
+
+    /** Scratch: the current regressor vector, with the leading 1 if any. */
+    private final double[] z;
+
+    /** Scratch: P z. */
+    private final double[] pz;
+
+    /** Number of observations added. */
+    private long nobs;
+
+    /** Sum of the observation weights. */
+    private double sumw;
+
+    /** Weighted sum of the dependent variable. */
+    private double sumy;
+
+    /** Weighted sum of squares of the dependent variable. */
+    private double sumsqy;
+
+    /** Weight &mu; of the initial guess. */
+    private double mu;
+
+    /** Minimum of the weighted cost, including the prior term. */
+    private double cost;
+
+    /**
+     * Create an estimator with a given forgetting factor.
+     *
+     * @param numberOfVariables number of regressors, not counting the constant
+     * @param includeConstant include a constant automatically
+     * @param forgettingFactor weight &lambda; applied to past observations at
+     * each new observation, in (0, 1]
+     * @param initialCovariance scale &delta; of the initial covariance
+     * &delta;I; larger values trust the first observations more
+     * @throws ModelSpecificationException if {@code numberOfVariables} is less than 1
+     * @throws OutOfRangeException if {@code forgettingFactor} is not in (0, 1]
+     * @throws NotStrictlyPositiveException if {@code initialCovariance} is not positive
+     */
+    public RecursiveLeastSquaresRegression(int numberOfVariables, boolean includeConstant,
+                                           double forgettingFactor, double initialCovariance)
+        throws ModelSpecificationException, OutOfRangeException, NotStrictlyPositiveException {
+        if (numberOfVariables < 1) {
+            throw new ModelSpecificationException(LocalizedFormats.NO_REGRESSORS);
+        }
+        if (!(forgettingFactor > 0 && forgettingFactor <= 1)) {
+            throw new OutOfRangeException(LocalizedFormats.OUT_OF_RANGE_LEFT,
+                                          forgettingFactor, 0, 1);
+        }
+        if (!(initialCovariance > 0)) {
+            throw new NotStrictlyPositiveException(initialCovariance);
+        }
+        this.nvars = includeConstant ? numberOfVariables + 1 : numberOfVariables;
+        this.hasIntercept = includeConstant;
+        this.lambda = forgettingFactor;
+        this.initialCovariance = initialCovariance;
+        this.theta = new double[nvars];
+        this.p = new double[nvars][nvars];
+        this.xtx = new double[nvars][nvars];
+        this.xty = new double[nvars];
+        this.z = new double[nvars];
+        this.pz = new double[nvars];
+        clear();
+    }
+
+    /**
+     * Create an estimator with a given forgetting factor and an initial
+     * covariance of 10<sup>6</sup>I.
+     *
+     * @param numberOfVariables number of regressors, not counting the constant
+     * @param includeConstant include a constant automatically
+     * @param forgettingFactor weight &lambda; applied to past observations at
+     * each new observation, in (0, 1]
+     * @throws ModelSpecificationException if {@code numberOfVariables} is less than 1
+     * @throws OutOfRangeException if {@code forgettingFactor} is not in (0, 1]
+     */
+    public RecursiveLeastSquaresRegression(int numberOfVariables, boolean includeConstant,
+                                           double forgettingFactor)
+        throws ModelSpecificationException, OutOfRangeException {
+        this(numberOfVariables, includeConstant, forgettingFactor, 1e6);
+    }
+
+    /**
+     * A getter method which determines whether a constant is included.
+     * @return true regression has an intercept, false no intercept
+     */
+    public boolean hasIntercept() {
+        return hasIntercept;
+    }
+
+    /**
+     * Gets the number of observations added to the regression model.
+     * @return number of observations
+     */
+    public long getN() {
+        return nobs;
+    }
+
+    /**
+     * Gets the effective number of observations, the sum of the weights
+     * of all observations added. Equal to {@link #getN()} when the
+     * forgetting factor is 1.
+     * @return effective number of observations
+     */
+    public double getEffectiveN() {
+        return sumw;
+    }
+
+    /**
+     * Gets the forgetting factor.
+     * @return forgetting factor &lambda;
+     */
+    public double getForgettingFactor() {
+        return lambda;
+    }
+
+    /**
+     * Gets a copy of the current parameter estimates, with the constant
+     * first if one is included. Unlike {@link #regress()} this can be
+     * called before there are more observations than parameters.
+     * @return current parameter estimates
+     */
+    public double[] getParameterEstimates() {
+        return theta.clone();
+    }
+
+    /**
+     * Gets one of the current parameter estimates.
+     * @param index index of the parameter, 0 is the constant if one is included
+     * @return current estimate of the parameter
+     * @throws OutOfRangeException if {@code index} is not a parameter index
+     */
+    public double getParameterEstimate(int index) throws OutOfRangeException {
+        if (index < 0 || index >= nvars) {
+            throw new OutOfRangeException(index, 0, nvars - 1);
+        }
+        return theta[index];
+    }
+
+    /**
+     * Predicts the dependent variable from the current parameter estimates.
+     * @param x the array with regressor values
+     * @return predicted value
+     * @exception ModelSpecificationException if the length of {@code x} does not equal
+     * the number of independent variables in the model
+     */
+    public double predict(double[] x) throws ModelSpecificationException {
+        load(x);
+        double yhat = 0;
+        for (int i = 0; i < nvars; i++) {
+            yhat += z[i] * theta[i];
+        }
+        return yhat;
+    }
+
+    /**
+     * Adds an observation to the regression model.
+     * @param x the array with regressor values
+     * @param y  the value of dependent variable given these regressors
+     * @exception ModelSpecificationException if the length of {@code x} does not equal
+     * the number of independent variables in the model
+     */
+    public void addObservation(final double[] x, final double y)
+        throws ModelSpecificationException {
+        load(x);
+
+        // gain denominator lambda + z' P z, and prediction error
+        double denom = lambda;
+        double err = y;
+        for (int i = 0; i < nvars; i++) {
+            final double[] pi = p[i];
+            double s = 0;
+            for (int j = 0; j < nvars; j++) {
+                s += pi[j] * z[j];
+            }
+            pz[i] = s;
+            denom += z[i] * s;
+            err -= z[i] * theta[i];
+        }
+
+        // theta += P z e / denom, and the error after the update
+        final double scale = err / denom;
+        double post = y;
+        for (int i = 0; i < nvars; i++) {
+            theta[i] += pz[i] * scale;
+            post -= z[i] * theta[i];
+        }
+
+        // P = (P - P z z' P / denom) / lambda, computed on the upper
+        // triangle and mirrored so that rounding cannot make it asymmetric
+        final double invLambda = 1.0 / lambda;
+        for (int i = 0; i < nvars; i++) {
+            final double[] pi = p[i];
+            final double ki = pz[i] / denom;
+            for (int j = i; j < nvars; j++) {
+                final double v = (pi[j] - ki * pz[j]) * invLambda;
+                pi[j] = v;
+                p[j][i] = v;
+            }
+        }
+
+        // exponentially weighted sums
+        for (int i = 0; i < nvars; i++) {
+            final double[] ai = xtx[i];
+            final double zi = z[i];
+            for (int j = i; j < nvars; j++) {
+                ai[j] = lambda * ai[j] + zi * z[j];
+            }
+            xty[i] = lambda * xty[i] + zi * y;
+        }
+        sumw = lambda * sumw + 1;
+        sumy = lambda * sumy + y;
+        sumsqy = lambda * sumsqy + y * y;
+        mu *= lambda;
+        cost = lambda * cost + err * post;
+        ++nobs;
+    }
+
+    /**
+     * Adds multiple observations to the model.
+     * @param x observations on the regressors
+     * @param y observations on the regressand
+     * @throws ModelSpecificationException if {@code x} is not rectangular, does not match
+     * the length of {@code y} or does not contain sufficient data to estimate the model
+     */
+    public void addObservations(double[][] x, double[] y) throws ModelSpecificationException {
+        if ((x == null) || (y == null) || (x.length != y.length)) {
+            throw new ModelSpecificationException(
+                  LocalizedFormats.DIMENSIONS_MISMATCH_SIMPLE,
+                  (x == null) ? 0 : x.length,
+                  (y == null) ? 0 : y.length);
+        }
+        if (x.length == 0) {  // Must be no y data either
+            throw new ModelSpecificationException(
+                    LocalizedFormats.NO_DATA);
+        }
+        if (x[0].length + 1 > x.length) {
+            throw new ModelSpecificationException(
+                  LocalizedFormats.NOT_ENOUGH_DATA_FOR_NUMBER_OF_PREDICTORS,
+                  x.length, x[0].length);
+        }
+        for (int i = 0; i < x.length; i++) {
+            addObservation(x[i], y[i]);
+        }
+    }
+
+    /**
+     * Clears all data from the model and resets the parameter estimates
+     * to zero with covariance &delta;I.
+     */
+    public void clear() {
+        Arrays.fill(theta, 0.0);
+        Arrays.fill(xty, 0.0);
+        for (int i = 0; i < nvars; i++) {
+            Arrays.fill(p[i], 0.0);
+            Arrays.fill(xtx[i], 0.0);
+            p[i][i] = initialCovariance;
+        }
+        nobs = 0;
+        sumw = 0;
+        sumy = 0;
+        sumsqy = 0;
+        mu = 1.0 / initialCovariance;
+        cost = 0;
+    }
+
+    /**
+     * Performs a regression on data present in buffers, using the current
+     * parameter estimates. No matrix is factored.
+     *
+     * @return RegressionResults acts as a container of regression output
+     * @throws ModelSpecificationException if the effective number of
+     * observations is not larger than the number of variables
+     */
+    public RegressionResults regress() throws ModelSpecificationException {
+        final long n = checkEnoughData(nvars);
+        double penalty = 0;
+        for (int i = 0; i < nvars; i++) {
+            penalty += theta[i] * theta[i];
+        }
+        final double sse = FastMath.max(0, cost - mu * penalty);
+        final double sigma2 = sse / (n - nvars);
+
+        final double[] vcv = new double[nvars * (nvars + 1) / 2];
+        int k = 0;
+        for (int i = 0; i < nvars; i++) {
+            for (int j = 0; j <= i; j++) {
+                vcv[k++] = sigma2 * p[i][j];
+            }
+        }
+        return new RegressionResults(theta.clone(), new double[][] { vcv }, true, n, nvars,
+                                     sumy, sumsqy, sse, hasIntercept, false);
+    }
+
+    /**
+     * Performs a regression on data present in buffers including only regressors
+     * indexed in variablesToInclude. The regression is solved from the weighted
+     * cross products, which needs one Cholesky decomposition of the subset.
+     *
+     * @param variablesToInclude an array of indices of regressors to include
+     * @return RegressionResults acts as a container of regression output
+     * @throws ModelSpecificationException if the model is not correctly specified
+     * @throws OutOfRangeException if a requested variable is not present in model
+     */
+    public RegressionResults regress(int[] variablesToInclude) throws ModelSpecificationException {
+        if (variablesToInclude.length == 0) {
+            throw new ModelSpecificationException(LocalizedFormats.NO_REGRESSORS);
+        }
+        if (variablesToInclude.length > nvars) {
+            throw new ModelSpecificationException(
+                    LocalizedFormats.TOO_MANY_REGRESSORS, variablesToInclude.length, nvars);
+        }
+        final int[] series = variablesToInclude.clone();
+        Arrays.sort(series);
+        int m = 0;
+        for (int i = 0; i < series.length; i++) {
+            if (series[i] < 0 || series[i] >= nvars) {
+                throw new OutOfRangeException(series[i], 0, nvars - 1);
+            }
+            if (m == 0 || series[i] != series[m - 1]) {
+                series[m++] = series[i];
+            }
+        }
+        final long n = checkEnoughData(m);
+
+        final RealMatrix g = new Array2DRowRealMatrix(m, m);
+        final double[] b = new double[m];
+        for (int i = 0; i < m; i++) {
+            final int si = series[i];
+            for (int j = i; j < m; j++) {
+                final int sj = series[j];
+                final double v = xtx[si][sj];
+                g.setEntry(i, j, v);
+                g.setEntry(j, i, v);
+            }
+            g.addToEntry(i, i, mu);
+            b[i] = xty[si];
+        }
+
+        final DecompositionSolver solver;
+        try {
+            solver = new CholeskyDecomposition(g).getSolver();
+        } catch (NonPositiveDefiniteMatrixException e) {
+            throw new ModelSpecificationException(LocalizedFormats.NOT_POSITIVE_DEFINITE_MATRIX);
+        }
+        final double[] beta = solver.solve(new ArrayRealVector(b, false)).toArray();
+
+        // residual of the regularized solution: y'y - beta'b - mu beta'beta
+        double sse = sumsqy;
+        for (int i = 0; i < m; i++) {
+            sse -= beta[i] * (b[i] + mu * beta[i]);
+        }
+        sse = FastMath.max(0, sse);
+        final double sigma2 = sse / (n - m);
+
+        final RealMatrix inv = solver.getInverse();
+        final double[] vcv = new double[m * (m + 1) / 2];
+        int k = 0;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j <= i; j++) {
+                vcv[k++] = sigma2 * inv.getEntry(i, j);
+            }
+        }
+        final boolean constant = hasIntercept && series[0] == 0;
+        return new RegressionResults(beta, new double[][] { vcv }, true, n, m,
+                                     sumy, sumsqy, sse, constant, false);
+    }
+
+    /**
+     * Copies an observation into the scratch regressor vector.
+     * @param x the array with regressor values
+     * @exception ModelSpecificationException if the length of {@code x} does not equal
+     * the number of independent variables in the model
+     */
+    private void load(double[] x) throws ModelSpecificationException {
+        if ((!hasIntercept && x.length != nvars) ||
+               (hasIntercept && x.length + 1 != nvars)) {
+            throw new ModelSpecificationException(LocalizedFormats.INVALID_REGRESSION_OBSERVATION,
+                    x.length, nvars);
+        }
+        if (hasIntercept) {
+            z[0] = 1.0;
+            System.arraycopy(x, 0, z, 1, x.length);
+        } else {
+            System.arraycopy(x, 0, z, 0, x.length);
+        }
+    }
+
+    /**
+     * Checks that there are more effective observations than parameters.
+     * @param parameters number of parameters to estimate
+     * @return effective number of observations, rounded
+     * @throws ModelSpecificationException if there are not
+     */
+    private long checkEnoughData(int parameters) throws ModelSpecificationException {
+        final long n = FastMath.round(sumw);
+        if (n <= parameters) {
+            throw new ModelSpecificationException(
+                    LocalizedFormats.NOT_ENOUGH_DATA_FOR_NUMBER_OF_PREDICTORS,
+                    n, parameters);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,736 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.stat.regression;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.exception.util.LocalizedFormats;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Tall-skinny QR (TSQR) implementation of the
+ * {@link UpdatingMultipleLinearRegression} interface, for ordinary least
+ * squares over more observations than fit in memory.
+ *
+ * <p>The observations are taken in chunks of rows. Each chunk is reduced
+ * independently to the triangular factor R of its design matrix augmented
+ * with the dependent variable, by Givens rotations applied one row at a
+ * time, so a chunk only ever needs its (p+1)<sup>2</sup> factor besides
+ * the rows themselves. The factors of consecutive chunks are then merged
+ * pairwise in a binary reduction tree, a merge rotating the rows of one
+ * factor into the other: since R<sup>T</sup>R = X<sup>T</sup>X whatever
+ * the rows R came from, the final factor is that of the whole design
+ * matrix, and the solution has the accuracy of a QR decomposition rather
+ * than that of the normal equations. At most one factor per tree level
+ * is kept, so memory grows with the logarithm of the number of chunks.</p>
+ *
+ * <p>With an {@link ExecutorService}, chunks are factored in parallel,
+ * a few per processor in flight at a time. The tree is merged in the
+ * order the chunks were given, so the results do not depend on the
+ * executor, or on whether there is one. Chunks can come from arrays,
+ * from an {@link Iterator} over packed rows or from a {@link DoubleBuffer},
+ * for example one mapped from a file with
+ * {@link java.nio.channels.FileChannel#map FileChannel.map} and viewed
+ * with {@link java.nio.ByteBuffer#asDoubleBuffer() asDoubleBuffer()}.
+ * Packed rows hold the dependent variable first and then the regressors,
+ * as in {@link AbstractMultipleLinearRegression#newSampleData(double[], int, int)}.</p>
+ *
+ * <p>{@link #regress()} gives the same results as
+ * {@link OLSMultipleLinearRegression} up to rounding, and
+ * {@link #regress(int[])} solves for any subset of the regressors from
+ * the same factor, without another pass over the data.</p>
+ *
+ * @since 3.7
+ */
+public class TSQRRegression implements UpdatingMultipleLinearRegression {
+
+    /** Default number of rows per chunk. */
+    public static final int DEFAULT_CHUNK_ROWS = 1 << 14;
+
+    /** Default relative threshold below which a diagonal of R is taken as zero. */
+    public static final double DEFAULT_SINGULARITY_THRESHOLD = 1e-12;
+
+    /** Chunks in flight on the executor, per processor. */
+    private static final int CHUNKS_PER_PROCESSOR = 2;
+
+    /** Number of variables in regression, including the constant if any. */
+    private final int nvars;
+
+    /** Include constant. */
+    private final boolean hasIntercept;
+
+    /** Length of a packed row, the dependent variable and the regressors. */
+    private final int rowLength;
+
+    /** Relative threshold below which a diagonal of R is taken as zero. */
+    private final double threshold;
+
+    /** Number of rows per chunk. */
+    private final int chunkRows;
+
+    /** Executor factoring the chunks, null to factor them in the calling thread. */
+    private final ExecutorService executor;
+
+    /** Factors of the merged chunks, one per level of the tree, deepest first. */
+    private final List<Factor> tree;
+
+    /** Factor of the observations added one at a time since the last chunk. */
+    private Factor current;
+
+    /** Scratch row for the observations added one at a time. */
+    private final double[] row;
+
+    /**
+     * Create a regression factoring its chunks in the calling thread.
+     *
+     * @param numberOfVariables number of regressors, not counting the constant
+     * @param includeConstant include a constant automatically
+     * @throws ModelSpecificationException if {@code numberOfVariables} is less than 1
+     */
+    public TSQRRegression(int numberOfVariables, boolean includeConstant)
+        throws ModelSpecificationException {
+        this(numberOfVariables, includeConstant, null);
+    }
+
+    /**
+     * Create a regression factoring its chunks on an executor.
+     *
+     * @param numberOfVariables number of regressors, not counting the constant
+     * @param includeConstant include a constant automatically
+     * @param executor executor factoring the chunks, null to factor them
+     * in the calling thread
+     * @throws ModelSpecificationException if {@code numberOfVariables} is less than 1
+     */
+    public TSQRRegression(int numberOfVariables, boolean includeConstant,
+                          ExecutorService executor)
+        throws ModelSpecificationException {
+        this(numberOfVariables, includeConstant, DEFAULT_SINGULARITY_THRESHOLD,
+             DEFAULT_CHUNK_ROWS, executor);
+    }
+
+    /**
+     * Create a regression.
+     *
+     * @param numberOfVariables number of regressors, not counting the constant
+     * @param includeConstant include a constant automatically
+     * @param singularityThreshold a regressor whose diagonal of R is at most
+     * this fraction of its norm is taken as linearly dependent on the
+     * previous ones
+     * @param chunkRows number of rows per chunk; each chunk is one task
+     * @param executor executor factoring the chunks, null to factor them
+     * in the calling thread
+     * @throws ModelSpecificationException if {@code numberOfVariables} is less than 1
+     * @throws NotStrictlyPositiveException if {@code chunkRows} is not positive
+     */
+    public TSQRRegression(int numberOfVariables, boolean includeConstant,
+                          double singularityThreshold, int chunkRows,
+                          ExecutorService executor)
+        throws ModelSpecificationException, NotStrictlyPositiveException {
+        if (numberOfVariables < 1) {
+            throw new ModelSpecificationException(LocalizedFormats.NO_REGRESSORS);
+        }
+        if (chunkRows <= 0) {
+            throw new NotStrictlyPositiveException(chunkRows);
+        }
+        this.nvars = includeConstant ? numberOfVariables + 1 : numberOfVariables;
+        this.hasIntercept = includeConstant;
+        this.rowLength = numberOfVariables + 1;
+        this.threshold = singularityThreshold;
+        this.chunkRows = chunkRows;
+        this.executor = executor;
+        this.tree = new ArrayList<Factor>();
+        this.current = new Factor(nvars + 1);
+        this.row = new double[nvars + 1];
+    }
+
+    /**
+     * A getter method which determines whether a constant is included.
+     * @return true regression has an intercept, false no intercept
+     */
+    public boolean hasIntercept() {
+        return hasIntercept;
+    }
+
+    /**
+     * Gets the number of observations added to the regression model.
+     * @return number of observations
+     */
+    public long getN() {
+        long n = current.n;
+        for (final Factor factor : tree) {
+            n += factor.n;
+        }
+        return n;
+    }
+
+    /**
+     * Adds an observation to the regression model. The row is rotated
+     * into the factor of the rows added one at a time, which joins the
+     * tree as a chunk every {@code chunkRows} observations.
+     * @param x the array with regressor values
+     * @param y  the value of dependent variable given these regressors
+     * @exception ModelSpecificationException if the length of {@code x} does not equal
+     * the number of independent variables in the model
+     */
+    public void addObservation(final double[] x, final double y)
+        throws ModelSpecificationException {
+        if (x.length != rowLength - 1) {
+            throw new ModelSpecificationException(LocalizedFormats.INVALID_REGRESSION_OBSERVATION,
+                    x.length, nvars);
+        }
+        current.add(load(x, y, row));
+        if (current.n == chunkRows) {
+            push(current);
+            current = new Factor(nvars + 1);
+        }
+    }
+
+    /**
+     * Adds multiple observations to the model, in chunks of
+     * {@code chunkRows} rows.
+     * <p>The arrays must not be modified before this method returns.</p>
+     * @param x observations on the regressors
+     * @param y observations on the regressand
+     * @throws ModelSpecificationException if {@code x} is not rectangular, does not match
+     * the length of {@code y} or does not contain sufficient data to estimate the model
+     */
+    public void addObservations(final double[][] x, final double[] y)
+        throws ModelSpecificationException {
+        if ((x == null) || (y == null) || (x.length != y.length)) {
+            throw new ModelSpecificationException(
+                  LocalizedFormats.DIMENSIONS_MISMATCH_SIMPLE,
+                  (x == null) ? 0 : x.length,
+                  (y == null) ? 0 : y.length);
+        }
+        if (x.length == 0) {  // Must be no y data either
+            throw new ModelSpecificationException(
+                    LocalizedFormats.NO_DATA);
+        }
+        for (int i = 0; i < x.length; i++) {
+            if (x[i].length != rowLength - 1) {
+                throw new ModelSpecificationException(LocalizedFormats.INVALID_REGRESSION_OBSERVATION,
+                        x[i].length, nvars);
+            }
+        }
+
+        final Pipeline pipeline = new Pipeline();
+        try {
+            for (int start = 0; start < x.length; start += chunkRows) {
+                final int end = (int) FastMath.min(x.length, (long) start + chunkRows);
+                final int chunkStart = start;
+                pipeline.submit(new Callable<Factor>() {
+                    /** {@inheritDoc} */
+                    public Factor call() {
+                        final Factor factor = new Factor(nvars + 1);
+                        final double[] scratch = new double[nvars + 1];
+                        for (int i = chunkStart; i < end; i++) {
+                            factor.add(load(x[i], y[i], scratch));
+                        }
+                        return factor;
+                    }
+                });
+            }
+            pipeline.drain();
+        } finally {
+            pipeline.cancel();
+        }
+    }
+
+    /**
+     * Adds the observations from a sequence of chunks of packed rows,
+     * each row holding the dependent variable followed by the regressors.
+     * <p>Every chunk is one task, whatever its length. A chunk returned
+     * by the iterator must not be modified before this method returns, so
+     * chunks read from a file should each be read into a new array.</p>
+     * @param chunks chunks of packed rows
+     * @throws ModelSpecificationException if the length of a chunk is not a
+     * multiple of the row length
+     */
+    public void addObservations(final Iterator<double[]> chunks)
+        throws ModelSpecificationException {
+        final Pipeline pipeline = new Pipeline();
+        try {
+            while (chunks.hasNext()) {
+                final double[] chunk = chunks.next();
+                checkPacked(chunk.length);
+                pipeline.submit(new PackedChunk(DoubleBuffer.wrap(chunk), 0, chunk.length / rowLength));
+            }
+            pipeline.drain();
+        } finally {
+            pipeline.cancel();
+        }
+    }
+
+    /**
+     * Adds the observations packed in the remaining part of a buffer, each
+     * row holding the dependent variable followed by the regressors, in
+     * chunks of {@code chunkRows} rows. The buffer position is moved to its
+     * limit.
+     * <p>The buffer is only read, so it may be a read-only view of a file
+     * mapped in memory; only the pages of the chunks being factored need to
+     * be resident.</p>
+     * @param data packed rows
+     * @throws ModelSpecificationException if the number of remaining values
+     * is not a multiple of the row length
+     */
+    public void addObservations(final DoubleBuffer data)
+        throws ModelSpecificationException {
+        checkPacked(data.remaining());
+        final int rows = data.remaining() / rowLength;
+        final Pipeline pipeline = new Pipeline();
+        try {
+            for (int start = 0; start < rows; start += chunkRows) {
+                final int count = FastMath.min(rows - start, chunkRows);
+                pipeline.submit(new PackedChunk(data, data.position() + start * rowLength, count));
+            }
+            pipeline.drain();
+        } finally {
+            pipeline.cancel();
+        }
+        data.position(data.limit());
+    }
+
+    /**
+     * Clears all data from the model.
+     */
+    public void clear() {
+        tree.clear();
+        current = new Factor(nvars + 1);
+    }
+
+    /**
+     * Performs a regression on all the observations added, using all the
+     * regressors.
+     *
+     * @return RegressionResults acts as a container of regression output
+     * @throws ModelSpecificationException if there are not more observations
+     * than variables, or if the regressors are linearly dependent
+     */
+    public RegressionResults regress() throws ModelSpecificationException {
+        final int[] all = new int[nvars];
+        for (int i = 0; i < nvars; i++) {
+            all[i] = i;
+        }
+        return regress(all);
+    }
+
+    /**
+     * Performs a regression on all the observations added, including only
+     * the regressors indexed in variablesToInclude, 0 being the constant if
+     * one is included. The factor of the whole design matrix is reduced to
+     * the columns of these regressors, which costs O(p<sup>3</sup>)
+     * operations and does not look at the observations again.
+     *
+     * @param variablesToInclude an array of indices of regressors to include
+     * @return RegressionResults acts as a container of regression output
+     * @throws ModelSpecificationException if there are not more observations
+     * than variables, or if the included regressors are linearly dependent
+     * @throws OutOfRangeException if an index is not a regressor index
+     */
+    public RegressionResults regress(int[] variablesToInclude)
+        throws ModelSpecificationException, OutOfRangeException {
+        if (variablesToInclude.length == 0) {
+            throw new ModelSpecificationException(LocalizedFormats.NO_REGRESSORS);
+        }
+        if (variablesToInclude.length > nvars) {
+            throw new ModelSpecificationException(
+                    LocalizedFormats.TOO_MANY_REGRESSORS, variablesToInclude.length, nvars);
+        }
+        final int[] series = variablesToInclude.clone();
+        Arrays.sort(series);
+        int m = 0;
+        for (int i = 0; i < series.length; i++) {
+            if (series[i] < 0 || series[i] >= nvars) {
+                throw new OutOfRangeException(series[i], 0, nvars - 1);
+            }
+            if (m == 0 || series[i] != series[m - 1]) {
+                series[m++] = series[i];
+            }
+        }
+
+        // merge the whole tree into a copy, so that more rows can be added
+        final Factor total = current.copy();
+        for (int i = tree.size() - 1; i >= 0; i--) {
+            total.merge(tree.get(i));
+        }
+        final long n = total.n;
+        if (n <= m) {
+            throw new ModelSpecificationException(
+                    LocalizedFormats.NOT_ENOUGH_DATA_FOR_NUMBER_OF_PREDICTORS,
+                    n, m);
+        }
+
+        // factor of the included columns followed by the dependent variable
+        final Factor reduced;
+        if (m == nvars) {
+            reduced = total;
+        } else {
+            reduced = new Factor(m + 1);
+            final double[] scratch = new double[m + 1];
+            for (int i = 0; i < nvars + 1; i++) {
+                final double[] ri = total.r[i];
+                for (int j = 0; j < m; j++) {
+                    scratch[j] = ri[series[j]];
+                }
+                scratch[m] = ri[nvars];
+                reduced.add(scratch);
+            }
+        }
+        final double[][] r = reduced.r;
+
+        // rank check: a diagonal of R is the norm of its column
+        // orthogonalized against the previous ones
+        for (int j = 0; j < m; j++) {
+            double norm2 = 0;
+            for (int i = 0; i <= j; i++) {
+                norm2 += r[i][j] * r[i][j];
+            }
+            if (FastMath.abs(r[j][j]) <= threshold * FastMath.sqrt(norm2)) {
+                throw new ModelSpecificationException(LocalizedFormats.SINGULAR_MATRIX);
+            }
+        }
+
+        // R beta = Q'y, and R^-1 for the covariance
+        final double[] beta = new double[m];
+        final double[][] rInv = new double[m][m];
+        for (int i = m - 1; i >= 0; i--) {
+            final double[] ri = r[i];
+            double s = ri[m];
+            for (int j = i + 1; j < m; j++) {
+                s -= ri[j] * beta[j];
+            }
+            beta[i] = s / ri[i];
+            rInv[i][i] = 1.0 / ri[i];
+            for (int j = i + 1; j < m; j++) {
+                double t = 0;
+                for (int k = i + 1; k <= j; k++) {
+                    t -= ri[k] * rInv[k][j];
+                }
+                rInv[i][j] = t / ri[i];
+            }
+        }
+
+        // the last diagonal is the norm of the residual
+        final double sse = r[m][m] * r[m][m];
+        final double sigma2 = sse / (n - m);
+        final double[] vcv = new double[m * (m + 1) / 2];
+        int k = 0;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j <= i; j++) {
+                double s = 0;
+                for (int l = i; l < m; l++) {
+                    s += rInv[i][l] * rInv[j][l];
+                }
+                vcv[k++] = sigma2 * s;
+            }
+        }
+        final boolean constant = hasIntercept && series[0] == 0;
+        return new RegressionResults(beta, new double[][] { vcv }, true, n, m,
+                                     total.sumy, total.sumsqy, sse, constant, false);
+    }
+
+    /**
+     * Checks that a number of packed values makes whole rows.
+     * @param length number of packed values
+     * @throws ModelSpecificationException if it does not
+     */
+    private void checkPacked(final int length) throws ModelSpecificationException {
+        if (length % rowLength != 0) {
+            throw new ModelSpecificationException(LocalizedFormats.INVALID_REGRESSION_ARRAY,
+                    length, length / rowLength, rowLength - 1);
+        }
+    }
+
+    /**
+     * Copies an observation into an augmented row: the constant if any,
+     * the regressors and the dependent variable.
+     * @param x the array with regressor values
+     * @param y dependent variable
+     * @param dest augmented row to fill
+     * @return {@code dest}
+     */
+    private double[] load(final double[] x, final double y, final double[] dest) {
+        if (hasIntercept) {
+            dest[0] = 1.0;
+            System.arraycopy(x, 0, dest, 1, nvars - 1);
+        } else {
+            System.arraycopy(x, 0, dest, 0, nvars);
+        }
+        dest[nvars] = y;
+        return dest;
+    }
+
+    /**
+     * Adds a chunk factor to the tree, merging it with the factors of
+     * the same level like a carry in a binary counter.
+     * @param factor factor of a chunk
+     */
+    private void push(final Factor factor) {
+        Factor carry = factor;
+        while (!tree.isEmpty() && tree.get(tree.size() - 1).level == carry.level) {
+            final Factor left = tree.remove(tree.size() - 1);
+            left.merge(carry);
+            left.level = carry.level + 1;
+            carry = left;
+        }
+        tree.add(carry);
+    }
+
+    /** Task factoring a chunk of packed rows from a buffer. */
+    private class PackedChunk implements Callable<Factor> {
+
+        /** Buffer holding the rows. */
+        private final DoubleBuffer data;
+
+        /** Index of the first value of the chunk in the buffer. */
+        private final int start;
+
+        /** Number of rows in the chunk. */
+        private final int rows;
+
+        /**
+         * Simple constructor.
+         * @param data buffer holding the rows, only read with absolute gets
+         * @param start index of the first value of the chunk in the buffer
+         * @param rows number of rows in the chunk
+         */
+        PackedChunk(final DoubleBuffer data, final int start, final int rows) {
+            this.data  = data;
+            this.start = start;
+            this.rows  = rows;
+        }
+
+        /** {@inheritDoc} */
+        public Factor call() {
+            final Factor factor = new Factor(nvars + 1);
+            final double[] scratch = new double[nvars + 1];
+            final int first = hasIntercept ? 1 : 0;
+            int index = start;
+            for (int i = 0; i < rows; i++) {
+                // the previous row was overwritten by the rotations
+                if (hasIntercept) {
+                    scratch[0] = 1.0;
+                }
+                scratch[nvars] = data.get(index++);
+                for (int j = first; j < nvars; j++) {
+                    scratch[j] = data.get(index++);
+                }
+                factor.add(scratch);
+            }
+            return factor;
+        }
+
+    }
+
+    /**
+     * Chunk tasks in flight, factored on the executor if there is one and
+     * pushed to the tree in submission order.
+     */
+    private class Pipeline {
+
+        /** Factors being computed, oldest first. */
+        private final LinkedList<Future<Factor>> pending = new LinkedList<Future<Factor>>();
+
+        /** Largest number of chunks in flight. */
+        private final int window =
+            CHUNKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Factor a chunk, or queue it and push the oldest ones if the
+         * window is full.
+         * @param task task factoring the chunk
+         * @throws MathIllegalStateException if the calling thread is
+         * interrupted while waiting for a chunk
+         */
+        void submit(final Callable<Factor> task) throws MathIllegalStateException {
+            if (executor == null) {
+                try {
+                    push(task.call());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    // the chunk tasks throw no checked exception
+                    throw new MathIllegalStateException(e, LocalizedFormats.SIMPLE_MESSAGE, e.getMessage());
+                }
+                return;
+            }
+            while (pending.size() >= window) {
+                pushOldest();
+            }
+            pending.add(executor.submit(task));
+        }
+
+        /**
+         * Push all the chunks still in flight.
+         * @throws MathIllegalStateException if the calling thread is
+         * interrupted while waiting for a chunk
+         */
+        void drain() throws MathIllegalStateException {
+            while (!pending.isEmpty()) {
+                pushOldest();
+            }
+        }
+
+        /** Cancel the chunks still in flight, after a failure. */
+        void cancel() {
+            for (final Future<Factor> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+        }
+
+        /**
+         * Wait for the oldest chunk and push its factor.
+         * @throws MathIllegalStateException if the calling thread is
+         * interrupted while waiting for the chunk
+         */
+        private void pushOldest() throws MathIllegalStateException {
+            final Future<Factor> future = pending.removeFirst();
+            try {
+                push(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MathIllegalStateException(e, LocalizedFormats.SIMPLE_MESSAGE, e.getMessage());
+            } catch (ExecutionException e) {
+                // rethrow what the task threw, as if it had run in this thread
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new MathIllegalStateException(cause, LocalizedFormats.SIMPLE_MESSAGE, cause.getMessage());
+            }
+        }
+
+    }
+
+    /**
+     * Upper triangular factor R of an augmented design matrix [X y], with
+     * the sums of the dependent variable over its rows.
+     */
+    private static class Factor {
+
+        /** Upper triangle of R, the last column being Q<sup>T</sup>y. */
+        private final double[][] r;
+
+        /** Number of rows rotated in. */
+        private long n;
+
+        /** Sum of the dependent variable. */
+        private double sumy;
+
+        /** Sum of squares of the dependent variable. */
+        private double sumsqy;
+
+        /** Level in the reduction tree, 0 for a single chunk. */
+        private int level;
+
+        /**
+         * Create the factor of an empty matrix.
+         * @param columns number of columns, the dependent variable included
+         */
+        Factor(final int columns) {
+            r = new double[columns][columns];
+        }
+
+        /**
+         * Create a copy.
+         * @return copy of the factor
+         */
+        Factor copy() {
+            final Factor copy = new Factor(r.length);
+            for (int i = 0; i < r.length; i++) {
+                System.arraycopy(r[i], 0, copy.r[i], 0, r.length);
+            }
+            copy.n      = n;
+            copy.sumy   = sumy;
+            copy.sumsqy = sumsqy;
+            copy.level  = level;
+            return copy;
+        }
+
+        /**
+         * Add an observation.
+         * @param row augmented row, overwritten
+         */
+        void add(final double[] row) {
+            final double y = row[r.length - 1];
+            rotate(row, 0);
+            ++n;
+            sumy   += y;
+            sumsqy += y * y;
+        }
+
+        /**
+         * Add the observations of another factor, by rotating its rows in.
+         * @param other factor to merge, unchanged
+         */
+        void merge(final Factor other) {
+            final double[] scratch = new double[r.length];
+            for (int i = 0; i < r.length; i++) {
+                System.arraycopy(other.r[i], i, scratch, i, r.length - i);
+                rotate(scratch, i);
+            }
+            n      += other.n;
+            sumy   += other.sumy;
+            sumsqy += other.sumsqy;
+        }
+
+        /**
+         * Rotate a row into R, annihilating it with Givens rotations.
+         * @param row row to rotate in, overwritten
+         * @param first index of the first non-zero entry of the row
+         */
+        private void rotate(final double[] row, final int first) {
+            final int columns = r.length;
+            for (int i = first; i < columns; i++) {
+                final double xi = row[i];
+                if (xi == 0) {
+                    continue;
+                }
+                final double[] ri = r[i];
+                final double rii = ri[i];
+                final double h = FastMath.sqrt(rii * rii + xi * xi);
+                final double c = rii / h;
+                final double s = xi / h;
+                ri[i] = h;
+                for (int j = i + 1; j < columns; j++) {
+                    final double t = ri[j];
+                    final double v = row[j];
+                    ri[j]  = c * t + s * v;
+                    row[j] = c * v - s * t;
+                }
+            }
+        }
+
+    }
+
+}
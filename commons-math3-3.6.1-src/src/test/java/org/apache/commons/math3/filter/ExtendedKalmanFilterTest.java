@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.analysis.differentiation.DerivativeStructure;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ExtendedKalmanFilter}.
+ *
+ */
+public class ExtendedKalmanFilterTest {
+
+    /** Sample period of the range tracking problem. */
+    static final double DT = 0.1;
+
+    /** Height of the range sensor above the track. */
+    static final double HEIGHT = 5.0;
+
+    @Test(expected=DimensionMismatchException.class)
+    public void testMeasurementDimensionMismatch() {
+        ExtendedKalmanFilter filter =
+            new ExtendedKalmanFilter(new ConstantVelocity(), new AnalyticRange());
+        filter.predict();
+        filter.correct(new double[] { 1, 2 });
+    }
+
+    @Test
+    public void testLinearMatchesInPlace() {
+        // on a linear model, the extended filter is the linear filter
+        RealMatrix a = MatrixUtils.createRealMatrix(new double[][] { { 1, DT }, { 0, 1 } });
+        RealMatrix q = MatrixUtils.createRealMatrix(new double[][] { { 1e-4, 0 }, { 0, 1e-3 } });
+        RealMatrix h = MatrixUtils.createRealMatrix(new double[][] { { 1, 0 } });
+        RealMatrix r = MatrixUtils.createRealMatrix(new double[][] { { 0.01 } });
+        RealVector x0 = new ArrayRealVector(new double[] { 1, -1 });
+        RealMatrix p0 = MatrixUtils.createRealDiagonalMatrix(new double[] { 4, 1 });
+
+        for (boolean joseph : new boolean[] { false, true }) {
+            InPlaceKalmanFilter linear =
+                new InPlaceKalmanFilter(new DefaultProcessModel(a, null, q, x0, p0),
+                                        new DefaultMeasurementModel(h, r), joseph, null);
+            ExtendedKalmanFilter extended =
+                new ExtendedKalmanFilter(new LinearProcess(a, q, x0, p0),
+                                         new LinearMeasurement(h, r), joseph, null);
+            RandomGenerator rng = new Well19937c(joseph ? 1 : 0);
+            for (int k = 0; k < 100; ++k) {
+                double[] z = { rng.nextGaussian() };
+                linear.predict();
+                linear.correct(z);
+                extended.predict();
+                extended.correct(z);
+                assertClose(linear.getStateEstimation(), extended.getStateEstimation(), 1e-12);
+                assertClose(linear.getErrorCovariance(), extended.getErrorCovariance(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testAutodiffMatchesAnalytic() {
+        ExtendedKalmanFilter analytic =
+            new ExtendedKalmanFilter(new ConstantVelocity(), new AnalyticRange());
+        ExtendedKalmanFilter autodiff =
+            new ExtendedKalmanFilter(new DifferentiableConstantVelocity(), new DifferentiableRange());
+        double[][] z = ranges(new Well19937c(2), 100);
+        for (int k = 0; k < z.length; ++k) {
+            analytic.predict();
+            analytic.correct(z[k]);
+            autodiff.predict();
+            autodiff.correct(z[k]);
+            assertClose(analytic.getStateEstimation(), autodiff.getStateEstimation(), 1e-12);
+            assertClose(analytic.getErrorCovariance(), autodiff.getErrorCovariance(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testTracksRange() {
+        ExtendedKalmanFilter filter =
+            new ExtendedKalmanFilter(new ConstantVelocity(), new AnalyticRange());
+        double[][] z = ranges(new Well19937c(3), 150);
+        for (int k = 0; k < z.length; ++k) {
+            filter.predict();
+            filter.correct(z[k]);
+        }
+        double[] x = filter.getStateEstimation();
+        Assert.assertEquals(truePosition(z.length), x[0], 0.2);
+        Assert.assertEquals(1.0, x[1], 0.1);
+        Assert.assertTrue(filter.getErrorCovariance()[0][0] < 0.05);
+    }
+
+    @Test
+    public void testBatchMatchesSteps() {
+        double[][] z = ranges(new Well19937c(4), 80);
+        // the sensor drops out for a while
+        for (int k = 30; k < 40; ++k) {
+            z[k] = null;
+        }
+
+        ExtendedKalmanFilter stepwise =
+            new ExtendedKalmanFilter(new ConstantVelocity(), new AnalyticRange());
+        ExtendedKalmanFilter batch =
+            new ExtendedKalmanFilter(new ConstantVelocity(), new AnalyticRange());
+        double[][] states = new double[z.length][];
+        double[][] covariances = new double[z.length][];
+        Assert.assertEquals(z.length, batch.filter(null, z, states, covariances));
+
+        for (int k = 0; k < z.length; ++k) {
+            stepwise.predict();
+            if (z[k] != null) {
+                stepwise.correct(z[k]);
+            }
+            assertClose(stepwise.getStateEstimation(), states[k], 0);
+            double[][] p = stepwise.getErrorCovariance();
+            for (int i = 0; i < 2; ++i) {
+                for (int j = 0; j < 2; ++j) {
+                    Assert.assertEquals(p[i][j], covariances[k][i * 2 + j], 0);
+                }
+            }
+        }
+        assertClose(stepwise.getStateEstimation(), batch.getStateEstimation(), 0);
+        // without measurements the position uncertainty grew
+        Assert.assertTrue(covariances[39][0] > covariances[29][0]);
+    }
+
+    /** Position of the target at step k. */
+    static double truePosition(int k) {
+        return -10 + k * DT;
+    }
+
+    /** Noisy ranges to a target moving at unit speed past the sensor. */
+    static double[][] ranges(RandomGenerator rng, int steps) {
+        double[][] z = new double[steps][];
+        for (int k = 0; k < steps; ++k) {
+            double s = truePosition(k + 1);
+            z[k] = new double[] { FastMath.sqrt(s * s + HEIGHT * HEIGHT) + 0.05 * rng.nextGaussian() };
+        }
+        return z;
+    }
+
+    static void assertClose(double[] expected, double[] actual, double tolerance) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i) {
+            Assert.assertEquals(expected[i], actual[i], tolerance * FastMath.max(1, FastMath.abs(expected[i])));
+        }
+    }
+
+    static void assertClose(double[][] expected, double[][] actual, double tolerance) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i) {
+            assertClose(expected[i], actual[i], tolerance);
+        }
+    }
+
+    /** Linear transition x(k) = A x(k-1). */
+    static class LinearProcess implements NonLinearProcessModel {
+        private final double[][] a;
+        private final RealMatrix q;
+        private final RealVector x0;
+        private final RealMatrix p0;
+
+        LinearProcess(RealMatrix a, RealMatrix q, RealVector x0, RealMatrix p0) {
+            this.a = a.getData();
+            this.q = q;
+            this.x0 = x0;
+            this.p0 = p0;
+        }
+
+        public int getStateDimension() {
+            return a.length;
+        }
+
+        public void transition(double[] x, double[] u, double[] next, double[] jacobian) {
+            int n = a.length;
+            for (int i = 0; i < n; ++i) {
+                double sum = 0;
+                for (int j = 0; j < n; ++j) {
+                    sum += a[i][j] * x[j];
+                    if (jacobian != null) {
+                        jacobian[i * n + j] = a[i][j];
+                    }
+                }
+                next[i] = sum;
+            }
+        }
+
+        public RealMatrix getProcessNoise() {
+            return q;
+        }
+
+        public RealVector getInitialStateEstimate() {
+            return x0;
+        }
+
+        public RealMatrix getInitialErrorCovariance() {
+            return p0;
+        }
+    }
+
+    /** Linear measurement z(k) = H x(k). */
+    static class LinearMeasurement implements NonLinearMeasurementModel {
+        private final double[][] h;
+        private final RealMatrix r;
+
+        LinearMeasurement(RealMatrix h, RealMatrix r) {
+            this.h = h.getData();
+            this.r = r;
+        }
+
+        public int getMeasurementDimension() {
+            return h.length;
+        }
+
+        public void measurement(double[] x, double[] z, double[] jacobian) {
+            int n = h[0].length;
+            for (int i = 0; i < h.length; ++i) {
+                double sum = 0;
+                for (int j = 0; j < n; ++j) {
+                    sum += h[i][j] * x[j];
+                    if (jacobian != null) {
+                        jacobian[i * n + j] = h[i][j];
+                    }
+                }
+                z[i] = sum;
+            }
+        }
+
+        public RealMatrix getMeasurementNoise() {
+            return r;
+        }
+    }
+
+    /** Position and velocity, with a poor initial guess. */
+    static class ConstantVelocity extends LinearProcess {
+        ConstantVelocity() {
+            super(MatrixUtils.createRealMatrix(new double[][] { { 1, DT }, { 0, 1 } }),
+                  MatrixUtils.createRealDiagonalMatrix(new double[] { 1e-6, 1e-6 }),
+                  new ArrayRealVector(new double[] { -8, 0.5 }),
+                  MatrixUtils.createRealDiagonalMatrix(new double[] { 4, 1 }));
+        }
+    }
+
+    /** The same model, differentiated automatically. */
+    static class DifferentiableConstantVelocity extends DifferentiableProcessModel {
+        DifferentiableConstantVelocity() {
+            super(2, MatrixUtils.createRealDiagonalMatrix(new double[] { 1e-6, 1e-6 }),
+                  new ArrayRealVector(new double[] { -8, 0.5 }),
+                  MatrixUtils.createRealDiagonalMatrix(new double[] { 4, 1 }));
+        }
+
+        @Override
+        public DerivativeStructure[] transition(DerivativeStructure[] x, double[] u) {
+            return new DerivativeStructure[] { x[0].add(x[1].multiply(DT)), x[1] };
+        }
+    }
+
+    /** Range from a sensor at HEIGHT above the origin, with the Jacobian written out. */
+    static class AnalyticRange implements NonLinearMeasurementModel {
+        private final RealMatrix r = new Array2DRowRealMatrix(new double[][] { { 0.0025 } });
+
+        public int getMeasurementDimension() {
+            return 1;
+        }
+
+        public void measurement(double[] x, double[] z, double[] jacobian) {
+            double range = FastMath.sqrt(x[0] * x[0] + HEIGHT * HEIGHT);
+            z[0] = range;
+            if (jacobian != null) {
+                jacobian[0] = x[0] / range;
+                jacobian[1] = 0;
+            }
+        }
+
+        public RealMatrix getMeasurementNoise() {
+            return r;
+        }
+    }
+
+    /** The same range, differentiated automatically. */
+    static class DifferentiableRange extends DifferentiableMeasurementModel {
+        DifferentiableRange() {
+            super(2, 1, new Array2DRowRealMatrix(new double[][] { { 0.0025 } }));
+        }
+
+        @Override
+        public DerivativeStructure[] measurement(DerivativeStructure[] x) {
+            return new DerivativeStructure[] { x[0].multiply(x[0]).add(HEIGHT * HEIGHT).sqrt() };
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.exception.NumberIsTooLargeException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.MatrixDimensionMismatchException;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link InPlaceKalmanFilter}.
+ *
+ */
+public class InPlaceKalmanFilterTest {
+
+    @Test(expected=MatrixDimensionMismatchException.class)
+    public void testTransitionMeasurementMatrixMismatch() {
+        RealMatrix A = new Array2DRowRealMatrix(new double[] { 1d });
+        RealMatrix H = new Array2DRowRealMatrix(new double[] { 1d, 1d });
+        RealMatrix Q = new Array2DRowRealMatrix(new double[] { 0 });
+        RealMatrix R = new Array2DRowRealMatrix(new double[] { 0 });
+
+        ProcessModel pm
+            = new DefaultProcessModel(A, null, Q,
+                                      new ArrayRealVector(new double[] { 0 }), null);
+        MeasurementModel mm = new DefaultMeasurementModel(H, R);
+        new InPlaceKalmanFilter(pm, mm);
+    }
+
+    @Test(expected=NumberIsTooLargeException.class)
+    public void testWorkspaceTooSmall() {
+        RandomGenerator rng = new Well19937c(3);
+        new InPlaceKalmanFilter(processModel(rng, 4, 1), measurementModel(rng, 4, 2),
+                                false, new KalmanWorkspace(3, 2));
+    }
+
+    @Test(expected=NonPositiveDefiniteMatrixException.class)
+    public void testNonPositiveInnovationCovariance() {
+        RealMatrix A = new Array2DRowRealMatrix(new double[] { 1d });
+        RealMatrix H = new Array2DRowRealMatrix(new double[] { 0d });
+        RealMatrix Q = new Array2DRowRealMatrix(new double[] { 1d });
+        RealMatrix R = new Array2DRowRealMatrix(new double[] { 0d });
+        InPlaceKalmanFilter filter =
+            new InPlaceKalmanFilter(new DefaultProcessModel(A, null, Q, null, null),
+                                    new DefaultMeasurementModel(H, R));
+        filter.predict();
+        filter.correct(new double[] { 1 });
+    }
+
+    @Test
+    public void testDot() {
+        RandomGenerator rng = new Well19937c(7);
+        double[] a = new double[20];
+        double[] b = new double[20];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = rng.nextDouble() - 0.5;
+            b[i] = rng.nextDouble() - 0.5;
+        }
+        for (int len = 0; len <= 13; len++) {
+            double expected = 0;
+            for (int k = 0; k < len; k++) {
+                expected += a[3 + k] * b[5 + k];
+            }
+            Assert.assertEquals(expected, KalmanWorkspace.dot(a, 3, b, 5, len), 1.0e-15);
+        }
+    }
+
+    @Test
+    public void testMatchesTextbookEquations() {
+        for (int n = 1; n <= 8; n++) {
+            for (int m = 1; m <= n; m++) {
+                checkMatchesTextbookEquations(n, m, false);
+                checkMatchesTextbookEquations(n, m, true);
+            }
+        }
+    }
+
+    @Test
+    public void testConstantAcceleration() {
+        // the model of KalmanFilterTest.testConstantAcceleration, where
+        // KalmanFilter stays symmetric enough to compare against
+        double dt = 0.1d;
+        double measurementNoise = 10d;
+        double accelNoise = 0.2d;
+        RealMatrix A = new Array2DRowRealMatrix(new double[][] { { 1, dt }, { 0, 1 } });
+        RealMatrix B = new Array2DRowRealMatrix(new double[][] { { FastMath.pow(dt, 2d) / 2d }, { dt } });
+        RealMatrix H = new Array2DRowRealMatrix(new double[][] { { 1d, 0d } });
+        RealMatrix tmp = new Array2DRowRealMatrix(new double[][] {
+            { FastMath.pow(dt, 4d) / 4d, FastMath.pow(dt, 3d) / 2d },
+            { FastMath.pow(dt, 3d) / 2d, FastMath.pow(dt, 2d) } });
+        RealMatrix Q = tmp.scalarMultiply(FastMath.pow(accelNoise, 2));
+        RealMatrix P0 = new Array2DRowRealMatrix(new double[][] { { 1, 1 }, { 1, 1 } });
+        RealMatrix R = new Array2DRowRealMatrix(new double[] { FastMath.pow(measurementNoise, 2) });
+
+        ProcessModel pm = new DefaultProcessModel(A, B, Q, new ArrayRealVector(new double[] { 0, 0 }), P0);
+        MeasurementModel mm = new DefaultMeasurementModel(H, R);
+        KalmanFilter reference = new KalmanFilter(pm, mm);
+        InPlaceKalmanFilter filter = new InPlaceKalmanFilter(pm, mm);
+
+        RandomGenerator rand = new Well19937c(1000);
+        RealVector u = new ArrayRealVector(new double[] { 0.1d });
+        for (int i = 0; i < 60; i++) {
+            reference.predict(u);
+            filter.predict(u);
+            double[] z = new double[] { 0.5 * 0.1 * i * i * dt * dt + measurementNoise * rand.nextGaussian() };
+            reference.correct(z);
+            filter.correct(z);
+            assertClose(reference.getStateEstimation(), filter.getStateEstimation());
+            assertClose(reference.getErrorCovariance(), filter.getErrorCovariance());
+        }
+    }
+
+    @Test
+    public void testConstant() {
+        // simulates a simple process with a constant state and no control input
+        double constantValue = 10d;
+        double measurementNoise = 0.1d;
+        double processNoise = 1e-5d;
+
+        RealMatrix A = new Array2DRowRealMatrix(new double[] { 1d });
+        RealMatrix H = new Array2DRowRealMatrix(new double[] { 1d });
+        RealMatrix Q = new Array2DRowRealMatrix(new double[] { processNoise });
+        RealMatrix R = new Array2DRowRealMatrix(new double[] { measurementNoise });
+
+        ProcessModel pm
+            = new DefaultProcessModel(A, null, Q,
+                                      new ArrayRealVector(new double[] { constantValue }), null);
+        MeasurementModel mm = new DefaultMeasurementModel(H, R);
+        InPlaceKalmanFilter filter = new InPlaceKalmanFilter(pm, mm, true, null);
+
+        Assert.assertEquals(1, filter.getMeasurementDimension());
+        Assert.assertEquals(1, filter.getStateDimension());
+        Assert.assertTrue(filter.isJosephForm());
+        Assert.assertEquals(processNoise, filter.getErrorCovariance()[0][0], 0);
+
+        RandomGenerator rand = new Well19937c(1000);
+        double[] state = new double[1];
+        for (int i = 0; i < 60; i++) {
+            filter.predict();
+            double z = constantValue + measurementNoise * rand.nextGaussian();
+            filter.correct(new double[] { z });
+            double diff = FastMath.abs(constantValue - filter.getStateEstimation(state)[0]);
+            Assert.assertTrue(diff < measurementNoise);
+        }
+        Assert.assertTrue(filter.getErrorCovariance()[0][0] < 0.02);
+    }
+
+    @Test
+    public void testSharedWorkspace() {
+        RandomGenerator rng = new Well19937c(11);
+        ProcessModel pm1 = processModel(rng, 5, 2);
+        MeasurementModel mm1 = measurementModel(rng, 5, 3);
+        ProcessModel pm2 = processModel(rng, 3, 0);
+        MeasurementModel mm2 = measurementModel(rng, 3, 1);
+
+        KalmanWorkspace shared = new KalmanWorkspace(5, 3);
+        InPlaceKalmanFilter a1 = new InPlaceKalmanFilter(pm1, mm1, false, shared);
+        InPlaceKalmanFilter a2 = new InPlaceKalmanFilter(pm2, mm2, true, shared);
+        InPlaceKalmanFilter b1 = new InPlaceKalmanFilter(pm1, mm1, false, null);
+        InPlaceKalmanFilter b2 = new InPlaceKalmanFilter(pm2, mm2, true, null);
+
+        for (int i = 0; i < 50; i++) {
+            double[] u = new double[] { rng.nextGaussian(), rng.nextGaussian() };
+            double[] z1 = new double[] { rng.nextGaussian(), rng.nextGaussian(), rng.nextGaussian() };
+            double[] z2 = new double[] { rng.nextGaussian() };
+            a1.predict(u);
+            a2.predict();
+            a1.correct(z1);
+            a2.correct(z2);
+            b1.predict(u);
+            b2.predict();
+            b1.correct(z1);
+            b2.correct(z2);
+        }
+        Assert.assertArrayEquals(b1.getStateEstimation(), a1.getStateEstimation(), 0);
+        Assert.assertArrayEquals(b2.getStateEstimation(), a2.getStateEstimation(), 0);
+    }
+
+    @Test
+    public void testJosephFormStaysPositive() {
+        // a very accurate measurement of one state out of two strongly
+        // correlated ones is the textbook case where the standard update
+        // loses the positivity of P to rounding
+        RealMatrix A = MatrixUtils.createRealIdentityMatrix(2);
+        RealMatrix Q = MatrixUtils.createRealMatrix(2, 2);
+        RealMatrix P0 = MatrixUtils.createRealMatrix(new double[][] {
+            { 1e8, 1e8 - 1 }, { 1e8 - 1, 1e8 }
+        });
+        RealMatrix H = MatrixUtils.createRealMatrix(new double[][] { { 1, 0 } });
+        RealMatrix R = MatrixUtils.createRealMatrix(new double[][] { { 1e-8 } });
+        InPlaceKalmanFilter filter =
+            new InPlaceKalmanFilter(new DefaultProcessModel(A, null, Q, null, P0),
+                                    new DefaultMeasurementModel(H, R), true, null);
+        for (int i = 0; i < 20; i++) {
+            filter.predict();
+            filter.correct(new double[] { 0 });
+            double[][] p = filter.getErrorCovariance();
+            Assert.assertTrue(p[0][0] >= 0);
+            Assert.assertTrue(p[1][1] >= 0);
+            Assert.assertTrue(p[0][0] * p[1][1] - p[0][1] * p[1][0] >= -1e-12 * p[1][1]);
+        }
+    }
+
+    private void checkMatchesTextbookEquations(int n, int m, boolean joseph) {
+        RandomGenerator rng = new Well19937c(1000 + 17 * n + m);
+        int c = n > 1 ? n - 1 : 0;
+        ProcessModel pm = processModel(rng, n, c);
+        MeasurementModel mm = measurementModel(rng, n, m);
+        InPlaceKalmanFilter filter = new InPlaceKalmanFilter(pm, mm, joseph, null);
+
+        // the textbook equations, as KalmanFilter evaluates them; KalmanFilter
+        // itself cannot serve as reference here, as with a few states its P
+        // drifts from symmetry until CholeskyDecomposition rejects it
+        RealMatrix a = pm.getStateTransitionMatrix();
+        RealMatrix h = mm.getMeasurementMatrix();
+        RealVector x = new ArrayRealVector(n);
+        RealMatrix p = pm.getInitialErrorCovariance();
+
+        for (int step = 0; step < 100; step++) {
+            RealVector u = null;
+            if (c > 0) {
+                u = new ArrayRealVector(c);
+                for (int i = 0; i < c; i++) {
+                    u.setEntry(i, rng.nextGaussian());
+                }
+                if (step % 2 == 0) {
+                    filter.predict(u.toArray());
+                } else {
+                    filter.predict(u);
+                }
+            } else {
+                filter.predict();
+            }
+            double[] z = new double[m];
+            for (int i = 0; i < m; i++) {
+                z[i] = rng.nextGaussian();
+            }
+            filter.correct(z);
+
+            x = a.operate(x);
+            if (u != null) {
+                x = x.add(pm.getControlMatrix().operate(u));
+            }
+            p = a.multiply(p).multiply(a.transpose()).add(pm.getProcessNoise());
+            RealMatrix s = h.multiply(p).multiply(h.transpose()).add(mm.getMeasurementNoise());
+            RealMatrix k = p.multiply(h.transpose()).multiply(new LUDecomposition(s).getSolver().getInverse());
+            x = x.add(k.operate(new ArrayRealVector(z).subtract(h.operate(x))));
+            p = MatrixUtils.createRealIdentityMatrix(n).subtract(k.multiply(h)).multiply(p);
+
+            double[][] pf = filter.getErrorCovariance();
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < i; j++) {
+                    Assert.assertEquals(pf[i][j], pf[j][i], 0);
+                }
+            }
+        }
+
+        assertClose(x.toArray(), filter.getStateEstimation());
+        assertClose(p.getData(), filter.getErrorCovariance());
+    }
+
+    private void assertClose(double[] expected, double[] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], actual[i], 1.0e-9 * (1 + FastMath.abs(expected[i])));
+        }
+    }
+
+    private void assertClose(double[][] expected, double[][] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertClose(expected[i], actual[i]);
+        }
+    }
+
+    /** A stable random process model with n states and c controls. */
+    private ProcessModel processModel(RandomGenerator rng, int n, int c) {
+        double[][] a = new double[n][n];
+        double[][] q = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                a[i][j] = (i == j ? 0.9 : 0) + 0.1 * (rng.nextDouble() - 0.5) / n;
+            }
+            q[i][i] = 0.01 * (1 + rng.nextDouble());
+        }
+        RealMatrix b = null;
+        if (c > 0) {
+            double[][] bData = new double[n][c];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < c; j++) {
+                    bData[i][j] = rng.nextDouble() - 0.5;
+                }
+            }
+            b = MatrixUtils.createRealMatrix(bData);
+        }
+        return new DefaultProcessModel(MatrixUtils.createRealMatrix(a), b,
+                                       MatrixUtils.createRealMatrix(q),
+                                       null, MatrixUtils.createRealIdentityMatrix(n));
+    }
+
+    /** A random measurement model of m measurements of n states. */
+    private MeasurementModel measurementModel(RandomGenerator rng, int n, int m) {
+        double[][] h = new double[m][n];
+        double[][] r = new double[m][m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                h[i][j] = rng.nextDouble() - 0.5;
+            }
+            h[i][i] += 1;
+            r[i][i] = 0.1 * (1 + rng.nextDouble());
+        }
+        for (int i = 1; i < m; i++) {
+            r[i][i - 1] = r[i - 1][i] = 0.01;
+        }
+        return new DefaultMeasurementModel(MatrixUtils.createRealMatrix(h),
+                                           MatrixUtils.createRealMatrix(r));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+
+package org.apache.commons.math3.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RauchTungStriebelSmoother}.
+ *
+ */
+public class RauchTungStriebelSmootherTest {
+
+    private static final double DT = 0.1;
+
+    @Test(expected=MathIllegalStateException.class)
+    public void testStepAfterSmooth() {
+        RauchTungStriebelSmoother smoother = new RauchTungStriebelSmoother(processModel(), measurementModel());
+        smoother.step(new double[] { 1 }, new double[] { 0, 0 });
+        smoother.smooth();
+        smoother.step(new double[] { 1 }, new double[] { 0, 0 });
+    }
+
+    @Test(expected=OutOfRangeException.class)
+    public void testStepOutOfRange() {
+        RauchTungStriebelSmoother smoother = new RauchTungStriebelSmoother(processModel(), measurementModel());
+        smoother.step(null, null);
+        smoother.getStateEstimation(1, new double[3]);
+    }
+
+    @Test
+    public void testMatchesTextbookEquations() {
+        double[][] u = controls(new Well19937c(1), 60);
+        double[][] z = measurements(new Well19937c(2), 60);
+
+        // small blocks, so that records straddle several of them
+        RauchTungStriebelSmoother smoother =
+            new RauchTungStriebelSmoother(processModel(), measurementModel(), null, 7);
+        smoother.filter(u, z);
+        Assert.assertEquals(60, smoother.getSteps());
+
+        // forward pass with the textbook equations
+        RealMatrix a = processModel().getStateTransitionMatrix();
+        RealMatrix b = processModel().getControlMatrix();
+        RealMatrix q = processModel().getProcessNoise();
+        RealMatrix h = measurementModel().getMeasurementMatrix();
+        RealMatrix r = measurementModel().getMeasurementNoise();
+        RealVector[] xp = new RealVector[z.length];
+        RealMatrix[] pp = new RealMatrix[z.length];
+        RealVector[] xf = new RealVector[z.length];
+        RealMatrix[] pf = new RealMatrix[z.length];
+        RealVector x = processModel().getInitialStateEstimate();
+        RealMatrix p = processModel().getInitialErrorCovariance();
+        for (int k = 0; k < z.length; ++k) {
+            x = a.operate(x).add(b.operate(new ArrayRealVector(u[k])));
+            p = a.multiply(p).multiply(a.transpose()).add(q);
+            xp[k] = x;
+            pp[k] = p;
+            if (z[k] != null) {
+                RealMatrix s = h.multiply(p).multiply(h.transpose()).add(r);
+                RealMatrix gain = p.multiply(h.transpose()).multiply(new LUDecomposition(s).getSolver().getInverse());
+                x = x.add(gain.operate(new ArrayRealVector(z[k]).subtract(h.operate(x))));
+                p = MatrixUtils.createRealIdentityMatrix(3).subtract(gain.multiply(h)).multiply(p);
+            }
+            xf[k] = x;
+            pf[k] = p;
+            assertClose(x.toArray(), smoother.getStateEstimation(k, new double[3]), 1e-10);
+            assertClose(p.getData(), smoother.getErrorCovariance(k), 1e-10);
+        }
+
+        // backward pass
+        smoother.smooth();
+        Assert.assertTrue(smoother.isSmoothed());
+        for (int k = z.length - 2; k >= 0; --k) {
+            RealMatrix c = pf[k].multiply(a.transpose()).multiply(new LUDecomposition(pp[k + 1]).getSolver().getInverse());
+            xf[k] = xf[k].add(c.operate(xf[k + 1].subtract(xp[k + 1])));
+            pf[k] = pf[k].add(c.multiply(pf[k + 1].subtract(pp[k + 1])).multiply(c.transpose()));
+        }
+        for (int k = 0; k < z.length; ++k) {
+            assertClose(xf[k].toArray(), smoother.getStateEstimation(k, new double[3]), 1e-9);
+            assertClose(pf[k].getData(), smoother.getErrorCovariance(k), 1e-9);
+        }
+    }
+
+    @Test
+    public void testSpillToFile() throws IOException {
+        double[][] u = controls(new Well19937c(3), 500);
+        double[][] z = measurements(new Well19937c(4), 500);
+        RauchTungStriebelSmoother heap = new RauchTungStriebelSmoother(processModel(), measurementModel());
+        heap.filter(u, z);
+        heap.smooth();
+
+        File file = File.createTempFile("rts", ".bin");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            RauchTungStriebelSmoother mapped =
+                new RauchTungStriebelSmoother(processModel(), measurementModel(), channel, 64);
+            mapped.filter(u, z);
+            mapped.smooth();
+            // the records went to the file, in blocks
+            Assert.assertEquals(8 * 64 * 18 * 8, channel.size());
+            for (int k = 0; k < z.length; ++k) {
+                assertClose(heap.getStateEstimation(k, new double[3]),
+                            mapped.getStateEstimation(k, new double[3]), 0);
+                assertClose(heap.getErrorCovariance(k), mapped.getErrorCovariance(k), 0);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testSmoothingReducesUncertainty() {
+        double[][] u = controls(new Well19937c(5), 200);
+        double[][] z = measurements(new Well19937c(6), 200);
+        RauchTungStriebelSmoother smoother = new RauchTungStriebelSmoother(processModel(), measurementModel());
+        smoother.filter(u, z);
+        double[][][] filtered = new double[z.length][][];
+        double[] last = smoother.getStateEstimation(z.length - 1, new double[3]);
+        for (int k = 0; k < z.length; ++k) {
+            filtered[k] = smoother.getErrorCovariance(k);
+        }
+        smoother.smooth();
+
+        // the last step has no later measurements to learn from
+        assertClose(last, smoother.getStateEstimation(z.length - 1, new double[3]), 0);
+        assertClose(filtered[z.length - 1], smoother.getErrorCovariance(z.length - 1), 0);
+        for (int k = 0; k < z.length - 1; ++k) {
+            double[][] p = smoother.getErrorCovariance(k);
+            for (int i = 0; i < 3; ++i) {
+                Assert.assertTrue(p[i][i] > 0);
+                Assert.assertTrue(p[i][i] <= filtered[k][i][i] * (1 + 1e-12));
+            }
+        }
+        // the gap in the measurements is filled from both sides
+        Assert.assertTrue(smoother.getErrorCovariance(105)[0][0] < 0.5 * filtered[105][0][0]);
+    }
+
+    /** A unit mass pushed by a force, with position, velocity and a force bias. */
+    private static ProcessModel processModel() {
+        RealMatrix a = MatrixUtils.createRealMatrix(new double[][] {
+            { 1, DT, 0.5 * DT * DT }, { 0, 1, DT }, { 0, 0, 1 }
+        });
+        RealMatrix b = MatrixUtils.createRealMatrix(new double[][] { { 0.5 * DT * DT }, { DT }, { 0 } });
+        RealMatrix q = MatrixUtils.createRealDiagonalMatrix(new double[] { 1e-6, 1e-4, 1e-3 });
+        RealVector x0 = new ArrayRealVector(new double[] { 0, 0, 0 });
+        RealMatrix p0 = MatrixUtils.createRealDiagonalMatrix(new double[] { 1, 1, 1 });
+        return new DefaultProcessModel(a, b, q, x0, p0);
+    }
+
+    /** Position and a noisy force reading. */
+    private static MeasurementModel measurementModel() {
+        RealMatrix h = MatrixUtils.createRealMatrix(new double[][] { { 1, 0, 0 }, { 0, 0, 1 } });
+        RealMatrix r = MatrixUtils.createRealDiagonalMatrix(new double[] { 1e-2, 1 });
+        return new DefaultMeasurementModel(h, r);
+    }
+
+    private static double[][] controls(RandomGenerator rng, int steps) {
+        double[][] u = new double[steps][];
+        for (int k = 0; k < steps; ++k) {
+            u[k] = new double[] { rng.nextGaussian() };
+        }
+        return u;
+    }
+
+    /** Random measurements, with a gap from step 100 to 109. */
+    private static double[][] measurements(RandomGenerator rng, int steps) {
+        double[][] z = new double[steps][];
+        for (int k = 0; k < steps; ++k) {
+            if (k < 100 || k >= 110) {
+                z[k] = new double[] { rng.nextGaussian(), rng.nextGaussian() };
+            }
+        }
+        return z;
+    }
+
+    private static void assertClose(double[] expected, double[] actual, double tolerance) {
+        for (int i = 0; i < expected.length; ++i) {
+            Assert.assertEquals(expected[i], actual[i], tolerance * FastMath.max(1, FastMath.abs(expected[i])));
+        }
+    }
+
+    private static void assertClose(double[][] expected, double[][] actual, double tolerance) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i) {
+            assertClose(expected[i], actual[i], tolerance);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package org.apache.commons.math3.filter;
+
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link UnscentedKalmanFilter}.
+ *
+ */
+public class UnscentedKalmanFilterTest {
+
+    @Test(expected=NotStrictlyPositiveException.class)
+    public void testSigmaPointSpread() {
+        // kappa = -n puts all sigma points on the mean
+        new UnscentedKalmanFilter(new ExtendedKalmanFilterTest.ConstantVelocity(),
+                                  new ExtendedKalmanFilterTest.AnalyticRange(),
+                                  1, 2, -2, null);
+    }
+
+    @Test
+    public void testLinearMatchesInPlace() {
+        // the unscented transform is exact for linear models
+        RealMatrix a = MatrixUtils.createRealMatrix(new double[][] {
+            { 1, 0.1, 0.005 }, { 0, 1, 0.1 }, { 0, 0, 1 }
+        });
+        RealMatrix q = MatrixUtils.createRealDiagonalMatrix(new double[] { 1e-6, 1e-4, 1e-2 });
+        RealMatrix h = MatrixUtils.createRealMatrix(new double[][] { { 1, 0, 0 }, { 0, 0, 1 } });
+        RealMatrix r = MatrixUtils.createRealDiagonalMatrix(new double[] { 0.01, 0.1 });
+        RealVector x0 = new ArrayRealVector(new double[] { 1, 0, -1 });
+        RealMatrix p0 = MatrixUtils.createRealDiagonalMatrix(new double[] { 1, 1, 1 });
+
+        for (double alpha : new double[] { 1, 0.5 }) {
+            InPlaceKalmanFilter linear =
+                new InPlaceKalmanFilter(new DefaultProcessModel(a, null, q, x0, p0),
+                                        new DefaultMeasurementModel(h, r));
+            UnscentedKalmanFilter unscented =
+                new UnscentedKalmanFilter(new ExtendedKalmanFilterTest.LinearProcess(a, q, x0, p0),
+                                          new ExtendedKalmanFilterTest.LinearMeasurement(h, r),
+                                          alpha, 2, 0, null);
+            RandomGenerator rng = new Well19937c(5);
+            for (int k = 0; k < 100; ++k) {
+                double[] z = { rng.nextGaussian(), rng.nextGaussian() };
+                linear.predict();
+                linear.correct(z);
+                unscented.predict();
+                unscented.correct(z);
+                ExtendedKalmanFilterTest.assertClose(linear.getStateEstimation(),
+                                                     unscented.getStateEstimation(), 1e-9);
+                ExtendedKalmanFilterTest.assertClose(linear.getErrorCovariance(),
+                                                     unscented.getErrorCovariance(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testTracksRange() {
+        UnscentedKalmanFilter filter =
+            new UnscentedKalmanFilter(new ExtendedKalmanFilterTest.ConstantVelocity(),
+                                      new ExtendedKalmanFilterTest.AnalyticRange());
+        double[][] z = ExtendedKalmanFilterTest.ranges(new Well19937c(3), 150);
+        for (int k = 0; k < z.length; ++k) {
+            filter.predict();
+            filter.correct(z[k]);
+        }
+        double[] x = filter.getStateEstimation();
+        Assert.assertEquals(ExtendedKalmanFilterTest.truePosition(z.length), x[0], 0.2);
+        Assert.assertEquals(1.0, x[1], 0.1);
+        double[][] p = filter.getErrorCovariance();
+        Assert.assertTrue(p[0][0] < 0.05);
+        Assert.assertEquals(p[0][1], p[1][0], 0);
+    }
+
+    @Test
+    public void testSharedWorkspace() {
+        // interleaving filters on one workspace gives the results of separate ones
+        KalmanWorkspace shared = new KalmanWorkspace(2, 1);
+        ExtendedKalmanFilter extended =
+            new ExtendedKalmanFilter(new ExtendedKalmanFilterTest.ConstantVelocity(),
+                                     new ExtendedKalmanFilterTest.AnalyticRange(), false, shared);
+        UnscentedKalmanFilter unscented =
+            new UnscentedKalmanFilter(new ExtendedKalmanFilterTest.ConstantVelocity(),
+                                      new ExtendedKalmanFilterTest.AnalyticRange(), 1, 2, 0, shared);
+        double[][] z = ExtendedKalmanFilterTest.ranges(new Well19937c(6), 60);
+        double[][] extendedStates = new double[z.length][];
+        double[][] unscentedStates = new double[z.length][];
+        new ExtendedKalmanFilter(new ExtendedKalmanFilterTest.ConstantVelocity(),
+                                 new ExtendedKalmanFilterTest.AnalyticRange()).filter(null, z, extendedStates, null);
+        new UnscentedKalmanFilter(new ExtendedKalmanFilterTest.ConstantVelocity(),
+                                  new ExtendedKalmanFilterTest.AnalyticRange()).filter(null, z, unscentedStates, null);
+
+        for (int k = 0; k < z.length; ++k) {
+            extended.predict();
+            unscented.predict();
+            extended.correct(z[k]);
+            unscented.correct(z[k]);
+            ExtendedKalmanFilterTest.assertClose(extendedStates[k], extended.getStateEstimation(), 0);
+            ExtendedKalmanFilterTest.assertClose(unscentedStates[k], unscented.getStateEstimation(), 0);
+        }
+
+        // both filters see the same data, and agree closely once converged
+        Assert.assertEquals(extended.getStateEstimation()[0], unscented.getStateEstimation()[0],
+                            0.1 * FastMath.sqrt(extended.getErrorCovariance()[0][0]) + 0.05);
+    }
+}
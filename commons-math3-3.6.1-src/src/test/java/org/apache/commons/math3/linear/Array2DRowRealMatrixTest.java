@@ -16,6 +16,9 @@
  */
 package org.apache.commons.math3.linear;
 
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
 import org.junit.Test;
 import org.junit.Assert;
 
@@ -315,6 +318,38 @@ public final class Array2DRowRealMatrixTest {
         }
     }
 
+    @Test
+    public void testOperateParallel() {
+        Random random = new Random(0x13198a2e03707344l);
+        // large enough to be split
+        double[][] d = new double[1531][1473];
+        for (double[] row : d) {
+            for (int j = 0; j < row.length; ++j) {
+                row[j] = random.nextDouble();
+            }
+        }
+        final Array2DRowRealMatrix m = new Array2DRowRealMatrix(d, false);
+        final double[] v = d[0].clone();
+        double[] serial = (double[]) ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return m.operate(v, executor);
+            }
+        });
+        for (int i = 0; i < d.length; ++i) {
+            double sum = 0;
+            for (int j = 0; j < v.length; ++j) {
+                sum += d[i][j] * v[j];
+            }
+            Assert.assertEquals(sum, serial[i], 1.0e-12 * v.length);
+        }
+        Assert.assertArrayEquals(serial, m.operate(v), 0.0);
+        ParallelTestUtils.assertRejected(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return m.operate(testVector, executor);
+            }
+        });
+    }
+
     /** test issue MATH-209 */
     @Test
     public void testMath209() {
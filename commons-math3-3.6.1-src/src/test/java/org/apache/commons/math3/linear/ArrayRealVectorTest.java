@@ -16,6 +16,9 @@
  */
 package org.apache.commons.math3.linear;
 
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
 import org.apache.commons.math3.exception.MathIllegalArgumentException;
 import org.junit.Assert;
 import org.junit.Test;
@@ -169,4 +172,32 @@ public class ArrayRealVectorTest extends RealVectorAbstractTest {
         Assert.assertEquals(0, new ArrayRealVector(new double[0], true).getDimension());
         Assert.assertEquals(0, new ArrayRealVector(new double[0], false).getDimension());
     }
+
+    @Test
+    public void testDotProductParallel() {
+        Random random = new Random(0xa4093822299f31d0l);
+        // long enough to be split, with a partial last chunk
+        final double[] a = new double[(1 << 21) + 7];
+        final double[] b = new double[a.length];
+        double expected = 0;
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = random.nextDouble();
+            b[i] = random.nextDouble();
+            expected += a[i] * b[i];
+        }
+        final ArrayRealVector u = new ArrayRealVector(a, false);
+        final ArrayRealVector v = new ArrayRealVector(b, false);
+        double serial = (Double) ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return u.dotProduct(v, executor);
+            }
+        });
+        Assert.assertEquals(expected, serial, 1.0e-10 * expected);
+        Assert.assertEquals(serial, u.dotProduct(v), 0.0);
+        ParallelTestUtils.assertRejected(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return u.dotProduct(new ArrayRealVector(3), executor);
+            }
+        });
+    }
 }
@@ -18,6 +18,7 @@ package org.apache.commons.math3.linear;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
 
 import org.junit.Test;
 import org.junit.Assert;
@@ -301,6 +302,45 @@ public final class BlockRealMatrixTest {
         assertClose(m3.multiply(m4), m5, entryTolerance);
     }
 
+    @Test
+    public void testMultiplyOddShapes() {
+        // every combination of the row pairs and column quadruples of the kernel
+        Random random = new Random(0x5e3b1a7c2d9f4e61l);
+        for (int p : new int[] { 1, 2, 3, 5, 53, 106 }) {
+            for (int q : new int[] { 1, 3, 4, 7, 55 }) {
+                for (int r : new int[] { 1, 2, 4, 6, 57 }) {
+                    BlockRealMatrix m1 = createRandomMatrix(random, p, q);
+                    BlockRealMatrix m2 = createRandomMatrix(random, q, r);
+                    RealMatrix expected = new Array2DRowRealMatrix(m1.getData()).multiply(new Array2DRowRealMatrix(m2.getData()));
+                    assertClose(expected, m1.multiply(m2), 1e-6 * q);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMultiplyParallel() {
+        Random random = new Random(0x2b7e151628aed2a6l);
+        final BlockRealMatrix m1 = createRandomMatrix(random, 157, 171);
+        final BlockRealMatrix m2 = createRandomMatrix(random, 171, 131);
+        final BlockRealMatrix small = createRandomMatrix(random, 10, 10);
+        Assert.assertEquals(m1.multiply(m2), ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return m1.multiply(m2, executor);
+            }
+        }));
+        Assert.assertEquals(small.multiply(small), ParallelTestUtils.assertNotSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return small.multiply(small, executor);
+            }
+        }));
+        ParallelTestUtils.assertRejected(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return m1.multiply(m1, executor);
+            }
+        });
+    }
+
     /** test trace */
     @Test
     public void testTrace() {
@@ -337,6 +377,27 @@ public final class BlockRealMatrixTest {
         }
     }
 
+    @Test
+    public void testOperateParallel() {
+        Random random = new Random(0x3243f6a8885a308dl);
+        // large enough to be split
+        final BlockRealMatrix m = createRandomMatrix(random, 1531, 1473);
+        final double[] v = new double[m.getColumnDimension()];
+        for (int i = 0; i < v.length; ++i) {
+            v[i] = random.nextDouble();
+        }
+        Assert.assertArrayEquals(m.operate(v), (double[]) ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return m.operate(v, executor);
+            }
+        }), 0.0);
+        ParallelTestUtils.assertRejected(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return m.operate(new double[v.length + 1], executor);
+            }
+        });
+    }
+
     @Test
     public void testOperateLarge() {
         int p = (7 * BlockRealMatrix.BLOCK_SIZE) / 2;
@@ -17,6 +17,9 @@
 
 package org.apache.commons.math3.linear;
 
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
 import org.junit.Test;
 import org.junit.Assert;
 
@@ -135,4 +138,38 @@ public class CholeskyDecompositionTest {
         Assert.assertTrue(l  == llt.getL());
         Assert.assertTrue(lt == llt.getLT());
     }
+
+    /** test the parallel decomposition against the serial one */
+    @Test
+    public void testParallel() {
+        Random random = new Random(0x1f2e3d4c5b6a7988l);
+        RealMatrix m = MatrixUtils.createRealMatrix(400, 400);
+        for (int i = 0; i < 400; ++i) {
+            for (int j = 0; j < 400; ++j) {
+                m.setEntry(i, j, 2 * random.nextDouble() - 1);
+            }
+        }
+        final RealMatrix matrix = m.multiply(m.transpose());
+        ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return new CholeskyDecomposition(matrix,
+                                                 CholeskyDecomposition.DEFAULT_RELATIVE_SYMMETRY_THRESHOLD,
+                                                 CholeskyDecomposition.DEFAULT_ABSOLUTE_POSITIVITY_THRESHOLD,
+                                                 executor).getL();
+            }
+        });
+
+        // the panels fit together
+        CholeskyDecomposition serial = new CholeskyDecomposition(matrix);
+        RealMatrix residual = serial.getL().multiply(serial.getLT()).subtract(matrix);
+        Assert.assertEquals(0, residual.getNorm(), 1e-12 * matrix.getNorm());
+    }
+
+    /** test a non positive pivot beyond the first panel */
+    @Test(expected=NonPositiveDefiniteMatrixException.class)
+    public void testNotPositiveDefiniteLaterPanel() {
+        RealMatrix matrix = MatrixUtils.createRealIdentityMatrix(70);
+        matrix.setEntry(50, 50, -1);
+        new CholeskyDecomposition(matrix);
+    }
 }
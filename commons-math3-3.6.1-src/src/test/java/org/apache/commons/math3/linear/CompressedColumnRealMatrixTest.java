@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.linear;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.math3.TestUtils;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the {@link CompressedColumnRealMatrix} class.
+ */
+public final class CompressedColumnRealMatrixTest {
+
+    @Test
+    public void testEntries() {
+        double[][] data = CompressedRowRealMatrixTest.randomSparse(new Random(1234l), 23, 37, 0.1);
+        CompressedColumnRealMatrix m = build(data);
+        Assert.assertEquals(23, m.getRowDimension());
+        Assert.assertEquals(37, m.getColumnDimension());
+        Assert.assertEquals(MatrixUtils.createRealMatrix(data), m);
+
+        RealMatrix expected = MatrixUtils.createRealMatrix(data);
+        m.setEntry(22, 0, 1.5);
+        expected.setEntry(22, 0, 1.5);
+        m.addToEntry(0, 36, -2);
+        expected.addToEntry(0, 36, -2);
+        Assert.assertEquals(expected, m);
+    }
+
+    @Test
+    public void testOperate() {
+        double[][] data = CompressedRowRealMatrixTest.randomSparse(new Random(7l), 50, 40, 0.2);
+        CompressedColumnRealMatrix m = build(data);
+        RealMatrix dense = MatrixUtils.createRealMatrix(data);
+        Random random = new Random(8l);
+        double[] v = new double[40];
+        double[] w = new double[50];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = random.nextGaussian();
+        }
+        for (int i = 0; i < w.length; i++) {
+            w[i] = random.nextGaussian();
+        }
+        TestUtils.assertEquals(dense.operate(v), m.operate(v), 1e-13);
+        TestUtils.assertEquals(dense.preMultiply(w), m.preMultiply(w), 1e-13);
+        TestUtils.assertEquals(dense.operate(v), m.operate(new ArrayRealVector(v)).toArray(), 1e-13);
+        TestUtils.assertEquals(dense.preMultiply(w), m.preMultiply(new ArrayRealVector(w)).toArray(), 1e-13);
+        TestUtils.assertEquals(dense.preMultiply(w), m.preMultiply(new OpenMapRealVector(w)).toArray(), 1e-13);
+    }
+
+    @Test(expected = DimensionMismatchException.class)
+    public void testPreMultiplyDimension() {
+        build(CompressedRowRealMatrixTest.randomSparse(new Random(7l), 5, 4, 0.5)).preMultiply(new double[4]);
+    }
+
+    @Test
+    public void testMultiply() {
+        Random random = new Random(11l);
+        double[][] a = CompressedRowRealMatrixTest.randomSparse(random, 30, 20, 0.15);
+        double[][] b = CompressedRowRealMatrixTest.randomSparse(random, 20, 25, 0.15);
+        RealMatrix expected = MatrixUtils.createRealMatrix(a).multiply(MatrixUtils.createRealMatrix(b));
+        TestUtils.assertEquals("sparse product", expected, build(a).multiply(build(b)), 1e-13);
+        TestUtils.assertEquals("dense product", expected,
+                               build(a).multiply(MatrixUtils.createRealMatrix(b)), 1e-13);
+    }
+
+    @Test
+    public void testTranspose() {
+        double[][] data = CompressedRowRealMatrixTest.randomSparse(new Random(3l), 12, 17, 0.3);
+        CompressedColumnRealMatrix m = build(data);
+        CompressedRowRealMatrix t = m.transpose();
+        Assert.assertEquals(MatrixUtils.createRealMatrix(data).transpose(), t);
+        Assert.assertEquals(m, t.transpose());
+    }
+
+    @Test
+    public void testParallelPreMultiply() {
+        int n = 200000;
+        SparseRealMatrixBuilder builder = new SparseRealMatrixBuilder(n, n);
+        Random random = new Random(5l);
+        for (int j = 0; j < n; j++) {
+            for (int k = 0; k < 4; k++) {
+                builder.addToEntry(random.nextInt(n), j, random.nextGaussian());
+            }
+        }
+        final CompressedColumnRealMatrix m = builder.buildColumnCompressed();
+        final double[] v = new double[n];
+        for (int i = 0; i < n; i++) {
+            v[i] = random.nextGaussian();
+        }
+        Assert.assertArrayEquals(m.preMultiply(v), (double[]) ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return m.preMultiply(v, executor);
+            }
+        }), 0);
+    }
+
+    @Test
+    public void testSerial() {
+        CompressedColumnRealMatrix m = build(CompressedRowRealMatrixTest.randomSparse(new Random(9l), 8, 6, 0.4));
+        Assert.assertEquals(m, TestUtils.serializeAndRecover(m));
+    }
+
+    /** Build a matrix from dense data. */
+    private static CompressedColumnRealMatrix build(double[][] data) {
+        SparseRealMatrixBuilder builder = new SparseRealMatrixBuilder(data.length, data[0].length);
+        for (int i = 0; i < data.length; i++) {
+            for (int j = 0; j < data[i].length; j++) {
+                if (data[i][j] != 0) {
+                    builder.addToEntry(i, j, data[i][j]);
+                }
+            }
+        }
+        return builder.buildColumnCompressed();
+    }
+}
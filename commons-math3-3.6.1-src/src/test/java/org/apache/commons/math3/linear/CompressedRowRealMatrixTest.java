@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.linear;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.math3.TestUtils;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the {@link CompressedRowRealMatrix} class.
+ */
+public final class CompressedRowRealMatrixTest {
+
+    @Test
+    public void testEntries() {
+        double[][] data = randomSparse(new Random(1234l), 37, 23, 0.1);
+        CompressedRowRealMatrix m = build(data);
+        Assert.assertEquals(37, m.getRowDimension());
+        Assert.assertEquals(23, m.getColumnDimension());
+        Assert.assertEquals(MatrixUtils.createRealMatrix(data), m);
+        int nonZero = 0;
+        for (double[] row : data) {
+            for (double x : row) {
+                nonZero += (x == 0) ? 0 : 1;
+            }
+        }
+        Assert.assertEquals(nonZero, m.getNonZeroCount());
+    }
+
+    @Test
+    public void testSetEntry() {
+        double[][] data = randomSparse(new Random(42l), 20, 30, 0.1);
+        CompressedRowRealMatrix m = build(data);
+        RealMatrix expected = MatrixUtils.createRealMatrix(data);
+        Random random = new Random(43l);
+        for (int k = 0; k < 200; k++) {
+            int i = random.nextInt(20);
+            int j = random.nextInt(30);
+            double v = random.nextGaussian();
+            switch (k % 3) {
+            case 0:
+                m.setEntry(i, j, v);
+                expected.setEntry(i, j, v);
+                break;
+            case 1:
+                m.addToEntry(i, j, v);
+                expected.addToEntry(i, j, v);
+                break;
+            default:
+                m.multiplyEntry(i, j, v);
+                expected.multiplyEntry(i, j, v);
+            }
+        }
+        Assert.assertEquals(expected, m);
+
+        // a matrix created empty fills up too
+        CompressedRowRealMatrix empty = m.createMatrix(20, 30);
+        empty.setSubMatrix(expected.getData(), 0, 0);
+        Assert.assertEquals(expected, empty);
+    }
+
+    @Test
+    public void testOperate() {
+        double[][] data = randomSparse(new Random(7l), 50, 40, 0.2);
+        CompressedRowRealMatrix m = build(data);
+        RealMatrix dense = MatrixUtils.createRealMatrix(data);
+        Random random = new Random(8l);
+        double[] v = new double[40];
+        double[] w = new double[50];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = random.nextGaussian();
+        }
+        for (int i = 0; i < w.length; i++) {
+            w[i] = random.nextGaussian();
+        }
+        TestUtils.assertEquals(dense.operate(v), m.operate(v), 1e-13);
+        TestUtils.assertEquals(dense.preMultiply(w), m.preMultiply(w), 1e-13);
+        TestUtils.assertEquals(dense.operate(v), m.operate(new ArrayRealVector(v)).toArray(), 1e-13);
+        TestUtils.assertEquals(dense.operate(v), m.operate(new OpenMapRealVector(v)).toArray(), 1e-13);
+        TestUtils.assertEquals(dense.preMultiply(w), m.preMultiply(new ArrayRealVector(w)).toArray(), 1e-13);
+    }
+
+    @Test(expected = DimensionMismatchException.class)
+    public void testOperateDimension() {
+        build(randomSparse(new Random(7l), 5, 4, 0.5)).operate(new double[5]);
+    }
+
+    @Test(expected = OutOfRangeException.class)
+    public void testGetEntryOutOfRange() {
+        build(randomSparse(new Random(7l), 5, 4, 0.5)).getEntry(5, 0);
+    }
+
+    @Test
+    public void testMultiply() {
+        Random random = new Random(11l);
+        double[][] a = randomSparse(random, 30, 20, 0.15);
+        double[][] b = randomSparse(random, 20, 25, 0.15);
+        RealMatrix expected = MatrixUtils.createRealMatrix(a).multiply(MatrixUtils.createRealMatrix(b));
+        CompressedRowRealMatrix sparse = build(a).multiply(build(b));
+        TestUtils.assertEquals("sparse product", expected, sparse, 1e-13);
+        TestUtils.assertEquals("dense product", expected,
+                               build(a).multiply(MatrixUtils.createRealMatrix(b)), 1e-13);
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 25; j++) {
+                if (expected.getEntry(i, j) == 0) {
+                    Assert.assertEquals(0, sparse.getEntry(i, j), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransposeAndScale() {
+        double[][] data = randomSparse(new Random(3l), 12, 17, 0.3);
+        CompressedRowRealMatrix m = build(data);
+        CompressedColumnRealMatrix t = m.transpose();
+        Assert.assertEquals(MatrixUtils.createRealMatrix(data).transpose(), t);
+        Assert.assertEquals(m, t.transpose());
+        Assert.assertEquals(MatrixUtils.createRealMatrix(data).scalarMultiply(2.5), m.scalarMultiply(2.5));
+
+        // the copies are independent
+        t.setEntry(0, 0, 100);
+        m.copy().setEntry(0, 0, 200);
+        Assert.assertEquals(data[0][0], m.getEntry(0, 0), 0);
+    }
+
+    @Test
+    public void testParallelOperate() {
+        // enough entries for the rows to be split between threads
+        int n = 200000;
+        SparseRealMatrixBuilder builder = new SparseRealMatrixBuilder(n, n);
+        Random random = new Random(5l);
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < 4; k++) {
+                builder.addToEntry(i, random.nextInt(n), random.nextGaussian());
+            }
+        }
+        final CompressedRowRealMatrix m = builder.buildRowCompressed();
+        final double[] v = new double[n];
+        for (int i = 0; i < n; i++) {
+            v[i] = random.nextGaussian();
+        }
+        Assert.assertArrayEquals(m.operate(v), (double[]) ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                return m.operate(v, executor);
+            }
+        }), 0);
+    }
+
+    @Test
+    public void testConjugateGradient() {
+        // 1D Laplacian, symmetric positive definite
+        int n = 500;
+        SparseRealMatrixBuilder builder = new SparseRealMatrixBuilder(n, n);
+        for (int i = 0; i < n; i++) {
+            builder.addToEntry(i, i, 2.0);
+            if (i > 0) {
+                builder.addToEntry(i, i - 1, -1.0);
+                builder.addToEntry(i - 1, i, -1.0);
+            }
+        }
+        CompressedRowRealMatrix a = builder.buildRowCompressed();
+        RealVector expected = new ArrayRealVector(n, 1.0);
+        RealVector b = a.operate(expected);
+        RealVector x = new ConjugateGradient(10 * n, 1e-12, false).solve(a, b);
+        Assert.assertEquals(0, x.subtract(expected).getLInfNorm(), 1e-8);
+    }
+
+    @Test
+    public void testSerial() {
+        CompressedRowRealMatrix m = build(randomSparse(new Random(9l), 8, 6, 0.4));
+        Assert.assertEquals(m, TestUtils.serializeAndRecover(m));
+    }
+
+    /** Random matrix with a given fraction of non-zero entries. */
+    static double[][] randomSparse(Random random, int rows, int columns, double density) {
+        double[][] data = new double[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (random.nextDouble() < density) {
+                    data[i][j] = random.nextGaussian();
+                }
+            }
+        }
+        return data;
+    }
+
+    /** Build a matrix from dense data, with the entries in reverse order and split in two. */
+    private static CompressedRowRealMatrix build(double[][] data) {
+        SparseRealMatrixBuilder builder = new SparseRealMatrixBuilder(data.length, data[0].length);
+        for (int i = data.length - 1; i >= 0; i--) {
+            for (int j = data[i].length - 1; j >= 0; j--) {
+                if (data[i][j] != 0) {
+                    builder.addToEntry(i, j, 0.25 * data[i][j]).addToEntry(i, j, 0.75 * data[i][j]);
+                }
+            }
+        }
+        return builder.buildRowCompressed();
+    }
+}
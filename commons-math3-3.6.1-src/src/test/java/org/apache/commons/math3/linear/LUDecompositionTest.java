@@ -17,6 +17,9 @@
 
 package org.apache.commons.math3.linear;
 
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
 import org.junit.Test;
 import org.junit.Assert;
 
@@ -288,4 +291,37 @@ public class LUDecompositionTest {
         Assert.assertTrue(u == lu.getU());
         Assert.assertTrue(p == lu.getP());
     }
+
+    /** test the parallel decomposition against the serial one */
+    @Test
+    public void testParallel() {
+        Random random = new Random(0x4c5d1e2f3a4b5c6dl);
+        final RealMatrix matrix = MatrixUtils.createRealMatrix(300, 300);
+        for (int i = 0; i < 300; ++i) {
+            for (int j = 0; j < 300; ++j) {
+                matrix.setEntry(i, j, 2 * random.nextDouble() - 1);
+            }
+        }
+        ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                LUDecomposition lu = new LUDecomposition(matrix, 1e-11, executor);
+                return new Object[] { lu.getL(), lu.getU(), lu.getPivot(), lu.getDeterminant() };
+            }
+        });
+
+        // the panels fit together
+        LUDecomposition serial = new LUDecomposition(matrix);
+        RealMatrix residual = serial.getP().multiply(matrix).subtract(serial.getL().multiply(serial.getU()));
+        Assert.assertEquals(0, residual.getNorm(), 1e-12 * matrix.getNorm());
+    }
+
+    /** test singularity found beyond the first panel */
+    @Test
+    public void testSingularLaterPanel() {
+        RealMatrix matrix = MatrixUtils.createRealIdentityMatrix(70);
+        matrix.setRowVector(50, matrix.getRowVector(60));
+        LUDecomposition lu = new LUDecomposition(matrix);
+        Assert.assertFalse(lu.getSolver().isNonSingular());
+        Assert.assertEquals(0, lu.getDeterminant(), 0);
+    }
 }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.linear;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.junit.Assert;
+
+/**
+ * Checks for the kernels that take an optional {@link ExecutorService}.
+ * <p>
+ * A kernel split over an executor must give exactly the result it gives
+ * without one, as each part is computed the same way whichever thread
+ * computes it. The checks run the kernel on a pool that counts the tasks
+ * submitted to it, so a test also fails if its data is too small for the
+ * kernel to be split at all.
+ * </p>
+ */
+public class ParallelTestUtils {
+
+    /** Number of threads of the pool the kernels are run on. */
+    private static final int THREADS = 3;
+
+    /** A computation run with and without an executor. */
+    public interface Kernel {
+        /**
+         * Run the computation.
+         * @param executor executor to split the computation over, may be null
+         * @return the result, an array of the results to compare if there are several
+         */
+        Object compute(ExecutorService executor);
+    }
+
+    /** Pool that counts the tasks submitted to it. */
+    private static class CountingExecutor extends AbstractExecutorService {
+
+        /** Underlying pool. */
+        private final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        /** Number of tasks submitted. */
+        private final AtomicInteger tasks = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        public void execute(Runnable command) {
+            tasks.incrementAndGet();
+            pool.execute(command);
+        }
+
+        /** {@inheritDoc} */
+        public void shutdown() {
+            pool.shutdown();
+        }
+
+        /** {@inheritDoc} */
+        public List<Runnable> shutdownNow() {
+            return pool.shutdownNow();
+        }
+
+        /** {@inheritDoc} */
+        public boolean isShutdown() {
+            return pool.isShutdown();
+        }
+
+        /** {@inheritDoc} */
+        public boolean isTerminated() {
+            return pool.isTerminated();
+        }
+
+        /** {@inheritDoc} */
+        public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+            return pool.awaitTermination(timeout, unit);
+        }
+
+    }
+
+    /** Prevent instantiation. */
+    private ParallelTestUtils() {
+    }
+
+    /**
+     * Check that a kernel is split over an executor and that the result is
+     * the same as without one.
+     * @param kernel kernel to check
+     * @return the result computed without an executor
+     */
+    public static Object assertSplit(Kernel kernel) {
+        return assertSame(kernel, true);
+    }
+
+    /**
+     * Check that a kernel runs in the calling thread when given an executor,
+     * as its data is too small to be split, and that the result is the same
+     * as without one.
+     * @param kernel kernel to check
+     * @return the result computed without an executor
+     */
+    public static Object assertNotSplit(Kernel kernel) {
+        return assertSame(kernel, false);
+    }
+
+    /**
+     * Run a kernel on an executor and check that it is split, for kernels
+     * that take another path without one and so cannot be compared with
+     * themselves.
+     * @param kernel kernel to run
+     * @return the result computed with the executor
+     */
+    public static Object computeSplit(Kernel kernel) {
+        CountingExecutor executor = new CountingExecutor();
+        try {
+            Object parallel = kernel.compute(executor);
+            Assert.assertTrue("no task submitted", executor.tasks.get() > 0);
+            return parallel;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Check that a kernel given an executor rejects its arguments before
+     * submitting any task.
+     * @param kernel kernel to check
+     */
+    public static void assertRejected(Kernel kernel) {
+        CountingExecutor executor = new CountingExecutor();
+        try {
+            kernel.compute(executor);
+            Assert.fail("Expecting MathIllegalArgumentException");
+        } catch (MathIllegalArgumentException ex) {
+            Assert.assertEquals("tasks submitted", 0, executor.tasks.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Run a kernel without and with an executor and compare the results.
+     * @param kernel kernel to check
+     * @param split whether the kernel must submit tasks to the executor
+     * @return the result computed without an executor
+     */
+    private static Object assertSame(Kernel kernel, boolean split) {
+        Object serial = kernel.compute(null);
+        CountingExecutor executor = new CountingExecutor();
+        try {
+            Object parallel = kernel.compute(executor);
+            if (split) {
+                Assert.assertTrue("no task submitted", executor.tasks.get() > 0);
+            } else {
+                Assert.assertEquals("tasks submitted", 0, executor.tasks.get());
+            }
+            // deepEquals compares double arrays and boxed doubles bit for bit
+            Assert.assertTrue("result differs with an executor",
+                              Arrays.deepEquals(new Object[] { serial }, new Object[] { parallel }));
+        } finally {
+            executor.shutdown();
+        }
+        return serial;
+    }
+
+}
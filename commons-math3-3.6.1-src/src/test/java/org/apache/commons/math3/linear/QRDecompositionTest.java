@@ -18,6 +18,8 @@
 package org.apache.commons.math3.linear;
 
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
 import org.apache.commons.math3.linear.SingularMatrixException;
 
 import org.junit.Assert;
@@ -283,4 +285,41 @@ public class QRDecompositionTest {
         new QRDecomposition(a, 1.0e-15).getSolver().solve(b);
     }
 
+
+    /** test the blocked and parallel decompositions against the plain one */
+    @Test
+    public void testBlocked() {
+        Random r = new Random(643895747384642l);
+        RealMatrix deficient = createTestMatrix(r, 400, 300);
+        // zero columns skip their reflector, in the first panel and in a later one
+        deficient.setColumn(5, new double[400]);
+        deficient.setColumn(70, new double[400]);
+        // square enough for parallel trailing updates, then tall enough
+        // for parallel updates within the single panel
+        for (final RealMatrix matrix : new RealMatrix[] {
+            createTestMatrix(r, 400, 300), createTestMatrix(r, 300, 400),
+            deficient, createTestMatrix(r, 120000, 20)
+        }) {
+            QRDecomposition plain = new QRDecomposition(matrix, 0);
+            QRDecomposition blocked = new QRDecomposition(matrix, 0, null);
+            // the trailing updates of the blocked decomposition round differently
+            RealMatrix r0 = plain.getR();
+            double norm = r0.getNorm();
+            Assert.assertEquals(0, r0.subtract(blocked.getR()).getNorm(), normTolerance * norm);
+            if (matrix != deficient) {
+                // H divides by the first element of each reflector, zero when skipped
+                Assert.assertEquals(0, plain.getH().subtract(blocked.getH()).getNorm(),
+                                    normTolerance * plain.getH().getNorm());
+            }
+            if (matrix.getRowDimension() <= 400) {
+                RealMatrix qr = blocked.getQ().multiply(blocked.getR());
+                Assert.assertEquals(0, qr.subtract(matrix).getNorm(), normTolerance * norm);
+            }
+            ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+                public Object compute(ExecutorService executor) {
+                    return new QRDecomposition(matrix, 0, executor).getR();
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.linear;
+
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for the {@link SparseRealMatrixBuilder} class.
+ */
+public final class SparseRealMatrixBuilderTest {
+
+    @Test
+    public void testDuplicatesAndZeros() {
+        SparseRealMatrixBuilder builder = new SparseRealMatrixBuilder(3, 4);
+        builder.addToEntry(2, 3, 1.0).addToEntry(0, 1, 2.0).addToEntry(2, 3, 4.0);
+        builder.addToEntry(1, 2, 3.0).addToEntry(1, 2, -3.0).addToEntry(0, 0, 5.0);
+        Assert.assertEquals(6, builder.getEntryCount());
+
+        RealMatrix expected = MatrixUtils.createRealMatrix(new double[][] {
+            { 5, 2, 0, 0 }, { 0, 0, 0, 0 }, { 0, 0, 0, 5 }
+        });
+        CompressedRowRealMatrix rows = builder.buildRowCompressed();
+        CompressedColumnRealMatrix columns = builder.buildColumnCompressed();
+        Assert.assertEquals(expected, rows);
+        Assert.assertEquals(expected, columns);
+        // the entries summing to zero are dropped
+        Assert.assertEquals(3, rows.getNonZeroCount());
+        Assert.assertEquals(3, columns.getNonZeroCount());
+
+        // the builder is reusable and the matrices independent of it
+        builder.addToEntry(1, 1, 7.0);
+        Assert.assertEquals(0, rows.getEntry(1, 1), 0);
+        Assert.assertEquals(7, builder.buildRowCompressed().getEntry(1, 1), 0);
+    }
+
+    @Test
+    public void testEmpty() {
+        CompressedRowRealMatrix m = new SparseRealMatrixBuilder(2, 2).buildRowCompressed();
+        Assert.assertEquals(0, m.getNonZeroCount());
+        Assert.assertArrayEquals(new double[2], m.operate(new double[] { 1, 1 }), 0);
+    }
+
+    @Test
+    public void testLargeDimensions() {
+        // too many entries in all for an OpenMapRealMatrix
+        SparseRealMatrixBuilder builder = new SparseRealMatrixBuilder(100000, 100000);
+        builder.addToEntry(99999, 99999, 1.0).addToEntry(0, 99999, 2.0);
+        CompressedRowRealMatrix m = builder.buildRowCompressed();
+        Assert.assertEquals(1.0, m.getEntry(99999, 99999), 0);
+        double[] e0 = new double[100000];
+        e0[0] = 1.0;
+        Assert.assertEquals(2.0, m.preMultiply(e0)[99999], 0);
+    }
+
+    @Test(expected = OutOfRangeException.class)
+    public void testRowOutOfRange() {
+        new SparseRealMatrixBuilder(3, 4).addToEntry(3, 0, 1.0);
+    }
+
+    @Test(expected = OutOfRangeException.class)
+    public void testColumnOutOfRange() {
+        new SparseRealMatrixBuilder(3, 4).addToEntry(0, -1, 1.0);
+    }
+
+    @Test(expected = NotStrictlyPositiveException.class)
+    public void testDimension() {
+        new SparseRealMatrixBuilder(0, 4);
+    }
+}
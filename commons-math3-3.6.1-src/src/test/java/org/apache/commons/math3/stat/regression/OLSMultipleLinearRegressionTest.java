@@ -17,13 +17,20 @@
 package org.apache.commons.math3.stat.regression;
 
 
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
 import org.apache.commons.math3.TestUtils;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.DefaultRealMatrixChangingVisitor;
 import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.ParallelTestUtils;
+import org.apache.commons.math3.linear.QRDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.stat.StatUtils;
+import org.apache.commons.math3.util.FastMath;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -461,9 +468,12 @@ public class OLSMultipleLinearRegressionTest extends MultipleLinearRegressionAbs
         // Check residual variance consistency
         double[] residuals = model.calculateResiduals().toArray();
         RealMatrix X = model.getX();
+        // the two sums of squares are accumulated in different orders
+        double expected = StatUtils.variance(model.calculateResiduals().toArray()) * (residuals.length - 1);
         TestUtils.assertEquals(
-                StatUtils.variance(model.calculateResiduals().toArray()) * (residuals.length - 1),
-                model.calculateErrorVariance() * (X.getRowDimension() - X.getColumnDimension()), 1E-20);
+                expected,
+                model.calculateErrorVariance() * (X.getRowDimension() - X.getColumnDimension()),
+                1E-14 * FastMath.abs(expected));
 
     }
 
@@ -817,4 +827,46 @@ public class OLSMultipleLinearRegressionTest extends MultipleLinearRegressionAbs
         OLSMultipleLinearRegression model = new OLSMultipleLinearRegression();
         model.calculateTotalSumOfSquares();
     }
+
+    /**
+     * Regressions without an executor use the plain QR decomposition, and
+     * regressions with one agree with them up to rounding.
+     */
+    @Test
+    public void testExecutor() {
+        Random random = new Random(0x6b8b4567327b23c6l);
+        // enough regressors for the columns after the first panel to be updated in parallel
+        final double[][] x = new double[5000][40];
+        final double[] y = new double[5000];
+        double[][] design = new double[x.length][x[0].length + 1];
+        for (int i = 0; i < x.length; i++) {
+            design[i][0] = 1;
+            for (int j = 0; j < x[i].length; j++) {
+                x[i][j] = random.nextGaussian();
+                design[i][j + 1] = x[i][j];
+                y[i] += (j + 1) * x[i][j];
+            }
+            y[i] += 0.1 * random.nextGaussian();
+        }
+        OLSMultipleLinearRegression serial = new OLSMultipleLinearRegression();
+        serial.newSampleData(y, x);
+        double[] beta = serial.estimateRegressionParameters();
+        QRDecomposition qr = new QRDecomposition(MatrixUtils.createRealMatrix(design));
+        RealVector plain = qr.getSolver().solve(new ArrayRealVector(y));
+        Assert.assertArrayEquals(plain.toArray(), beta, 0);
+        Assert.assertEquals(8, beta[8], 0.01);
+
+        Object[] parallel = (Object[]) ParallelTestUtils.computeSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                OLSMultipleLinearRegression regression = new OLSMultipleLinearRegression(0, executor);
+                regression.newSampleData(y, x);
+                return new Object[] {
+                    regression.estimateRegressionParameters(), regression.calculateResidualSumOfSquares()
+                };
+            }
+        });
+        Assert.assertArrayEquals(beta, (double[]) parallel[0], 1e-12 * beta.length);
+        double rss = serial.calculateResidualSumOfSquares();
+        Assert.assertEquals(rss, (Double) parallel[1], 1e-12 * rss);
+    }
 }
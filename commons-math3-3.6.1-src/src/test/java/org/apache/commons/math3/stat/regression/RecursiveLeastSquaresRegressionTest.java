@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.stat.regression;
+
+import org.apache.commons.math3.TestUtils;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * RecursiveLeastSquaresRegression tests.
+ */
+public class RecursiveLeastSquaresRegressionTest {
+
+    /** Longley data, as used in OLSMultipleLinearRegressionTest. */
+    private static final double[] longley = new double[] {
+        60323,83.0,234289,2356,1590,107608,1947,
+        61122,88.5,259426,2325,1456,108632,1948,
+        60171,88.2,258054,3682,1616,109773,1949,
+        61187,89.5,284599,3351,1650,110929,1950,
+        63221,96.2,328975,2099,3099,112075,1951,
+        63639,98.1,346999,1932,3594,113270,1952,
+        64989,99.0,365385,1870,3547,115094,1953,
+        63761,100.0,363112,3578,3350,116219,1954,
+        66019,101.2,397469,2904,3048,117388,1955,
+        67857,104.6,419180,2822,2857,118734,1956,
+        68169,108.4,442769,2936,2798,120445,1957,
+        66513,110.8,444546,4681,2637,121950,1958,
+        68655,112.6,482704,3813,2552,123366,1959,
+        69564,114.2,502601,3931,2514,125368,1960,
+        69331,115.7,518173,4806,2572,127852,1961,
+        70551,116.9,554894,4007,2827,130081,1962
+    };
+
+    /**
+     * With a forgetting factor of 1 the estimates agree with Miller's
+     * QR based regression on well conditioned data.
+     */
+    @Test
+    public void testMatchesMillerWithoutForgetting() {
+        RandomGenerator random = new Well19937c(1234l);
+        RecursiveLeastSquaresRegression rls = new RecursiveLeastSquaresRegression(3, true, 1.0, 1e10);
+        MillerUpdatingRegression miller = new MillerUpdatingRegression(3, true);
+        MillerUpdatingRegression subset = new MillerUpdatingRegression(1, true);
+        double[] x = new double[3];
+        for (int i = 0; i < 500; i++) {
+            x[0] = random.nextGaussian();
+            x[1] = 10 * random.nextDouble();
+            x[2] = random.nextGaussian() - x[0];
+            double y = 2.0 - 3.0 * x[0] + 0.5 * x[1] + 1.5 * x[2] + 0.1 * random.nextGaussian();
+            rls.addObservation(x, y);
+            miller.addObservation(x, y);
+            subset.addObservation(new double[] {x[1]}, y);
+        }
+        Assert.assertEquals(500, rls.getN());
+        Assert.assertEquals(500.0, rls.getEffectiveN(), 1e-12);
+
+        RegressionResults expected = miller.regress();
+        RegressionResults actual = rls.regress();
+        TestUtils.assertEquals(expected.getParameterEstimates(), actual.getParameterEstimates(), 1e-8);
+        TestUtils.assertEquals(expected.getStdErrorOfEstimates(), actual.getStdErrorOfEstimates(), 1e-8);
+        Assert.assertEquals(expected.getErrorSumSquares(), actual.getErrorSumSquares(), 1e-6);
+        Assert.assertEquals(expected.getRSquared(), actual.getRSquared(), 1e-10);
+        Assert.assertEquals(expected.getMeanSquareError(), actual.getMeanSquareError(), 1e-10);
+        Assert.assertEquals(expected.getCovarianceOfParameters(1, 2),
+                            actual.getCovarianceOfParameters(1, 2), 1e-10);
+
+        // the full subset solves the same problem from the cross products
+        RegressionResults all = rls.regress(new int[] {3, 2, 1, 0});
+        TestUtils.assertEquals(actual.getParameterEstimates(), all.getParameterEstimates(), 1e-8);
+        Assert.assertEquals(actual.getErrorSumSquares(), all.getErrorSumSquares(), 1e-6);
+
+        // x[1] alone, against a model fitted on that column only
+        RegressionResults subsetExpected = subset.regress();
+        RegressionResults subsetActual = rls.regress(new int[] {2, 0, 2});
+        Assert.assertEquals(2, subsetActual.getNumberOfParameters());
+        TestUtils.assertEquals(subsetExpected.getParameterEstimates(), subsetActual.getParameterEstimates(), 1e-8);
+        Assert.assertEquals(subsetExpected.getErrorSumSquares(), subsetActual.getErrorSumSquares(), 1e-6);
+        TestUtils.assertEquals(subsetExpected.getStdErrorOfEstimates(), subsetActual.getStdErrorOfEstimates(), 1e-8);
+    }
+
+    /**
+     * Longley is badly conditioned; the recursive estimates still reach the
+     * certified values, to looser accuracy than the QR based regressions.
+     */
+    @Test
+    public void testLongley() {
+        RecursiveLeastSquaresRegression rls = new RecursiveLeastSquaresRegression(6, true, 1.0, 1e12);
+        double[] x = new double[6];
+        for (int i = 0; i < 16; i++) {
+            System.arraycopy(longley, 7 * i + 1, x, 0, 6);
+            rls.addObservation(x, longley[7 * i]);
+        }
+        RegressionResults result = rls.regress(new int[] {0, 1, 2, 3, 4, 5, 6});
+        double[] expected = new double[] {
+            -3482258.63459582, 15.0618722713733,
+            -0.358191792925910E-01, -2.02022980381683,
+            -1.03322686717359, -0.511041056535807E-01,
+            1829.15146461355};
+        double[] actual = result.getParameterEstimates();
+        for (int i = 0; i < expected.length; i++) {
+            TestUtils.assertRelativelyEquals(expected[i], actual[i], 1e-4);
+        }
+    }
+
+    /**
+     * With forgetting, a step change in the parameters is followed.
+     */
+    @Test
+    public void testTracksParameterChange() {
+        RandomGenerator random = new Well19937c(42l);
+        RecursiveLeastSquaresRegression rls = new RecursiveLeastSquaresRegression(2, true, 0.98);
+        RecursiveLeastSquaresRegression plain = new RecursiveLeastSquaresRegression(2, true, 1.0);
+        double[] x = new double[2];
+        for (int i = 0; i < 2000; i++) {
+            double gain = i < 1000 ? 50 : 80;
+            double damping = i < 1000 ? 0.1 : -0.3;
+            x[0] = random.nextGaussian();
+            x[1] = random.nextGaussian();
+            double y = 5 + gain * x[0] + damping * x[1] + 0.01 * random.nextGaussian();
+            rls.addObservation(x, y);
+            plain.addObservation(x, y);
+            if (i == 999) {
+                Assert.assertEquals(50, rls.getParameterEstimate(1), 1e-2);
+            }
+        }
+        Assert.assertEquals(5, rls.getParameterEstimate(0), 1e-2);
+        Assert.assertEquals(80, rls.getParameterEstimate(1), 1e-2);
+        Assert.assertEquals(-0.3, rls.getParameterEstimate(2), 1e-2);
+        Assert.assertEquals(1 / (1 - 0.98), rls.getEffectiveN(), 1e-6);
+        Assert.assertEquals(2000, rls.getN());
+        // without forgetting the estimate sits between the two models
+        Assert.assertEquals(65, plain.getParameterEstimate(1), 1);
+        x[0] = 1;
+        x[1] = 2;
+        Assert.assertEquals(5 + 80 - 0.6, rls.predict(x), 1e-1);
+    }
+
+    @Test
+    public void testClear() {
+        RecursiveLeastSquaresRegression rls = new RecursiveLeastSquaresRegression(1, false, 1.0);
+        for (int i = 0; i < 10; i++) {
+            rls.addObservation(new double[] {i}, 3.0 * i);
+        }
+        Assert.assertEquals(3.0, rls.regress().getParameterEstimate(0), 1e-7);
+        rls.clear();
+        Assert.assertEquals(0, rls.getN());
+        Assert.assertEquals(0.0, rls.getParameterEstimate(0), 0.0);
+        for (int i = 0; i < 10; i++) {
+            rls.addObservation(new double[] {i}, -2.0 * i);
+        }
+        Assert.assertEquals(-2.0, rls.regress().getParameterEstimate(0), 1e-7);
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testNoRegressors() {
+        new RecursiveLeastSquaresRegression(0, true, 1.0);
+    }
+
+    @Test(expected = OutOfRangeException.class)
+    public void testForgettingFactorTooLarge() {
+        new RecursiveLeastSquaresRegression(2, true, 1.01);
+    }
+
+    @Test(expected = OutOfRangeException.class)
+    public void testForgettingFactorZero() {
+        new RecursiveLeastSquaresRegression(2, true, 0.0);
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testObservationDimension() {
+        RecursiveLeastSquaresRegression rls = new RecursiveLeastSquaresRegression(2, true, 1.0);
+        rls.addObservation(new double[] {1, 2, 3}, 1);
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testAddObservationsMismatch() {
+        RecursiveLeastSquaresRegression rls = new RecursiveLeastSquaresRegression(2, true, 1.0);
+        rls.addObservations(new double[][] {{1, 2}, {3, 4}, {5, 6}}, new double[] {1, 2});
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testNotEnoughData() {
+        RecursiveLeastSquaresRegression rls = new RecursiveLeastSquaresRegression(2, true, 1.0);
+        rls.addObservation(new double[] {1, 2}, 1);
+        rls.addObservation(new double[] {2, 1}, 2);
+        rls.addObservation(new double[] {3, 5}, 3);
+        rls.regress();
+    }
+
+    @Test(expected = OutOfRangeException.class)
+    public void testSubsetIndexOutOfRange() {
+        RecursiveLeastSquaresRegression rls = new RecursiveLeastSquaresRegression(1, true, 1.0);
+        for (int i = 0; i < 5; i++) {
+            rls.addObservation(new double[] {i}, i);
+        }
+        rls.regress(new int[] {0, 2});
+    }
+}
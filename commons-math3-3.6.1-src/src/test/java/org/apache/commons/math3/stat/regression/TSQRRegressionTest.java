@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.stat.regression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.math3.TestUtils;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.linear.ParallelTestUtils;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * TSQRRegression tests.
+ */
+public class TSQRRegressionTest {
+
+    /** Longley data, as used in OLSMultipleLinearRegressionTest. */
+    private static final double[] longley = new double[] {
+        60323,83.0,234289,2356,1590,107608,1947,
+        61122,88.5,259426,2325,1456,108632,1948,
+        60171,88.2,258054,3682,1616,109773,1949,
+        61187,89.5,284599,3351,1650,110929,1950,
+        63221,96.2,328975,2099,3099,112075,1951,
+        63639,98.1,346999,1932,3594,113270,1952,
+        64989,99.0,365385,1870,3547,115094,1953,
+        63761,100.0,363112,3578,3350,116219,1954,
+        66019,101.2,397469,2904,3048,117388,1955,
+        67857,104.6,419180,2822,2857,118734,1956,
+        68169,108.4,442769,2936,2798,120445,1957,
+        66513,110.8,444546,4681,2637,121950,1958,
+        68655,112.6,482704,3813,2552,123366,1959,
+        69564,114.2,502601,3931,2514,125368,1960,
+        69331,115.7,518173,4806,2572,127852,1961,
+        70551,116.9,554894,4007,2827,130081,1962
+    };
+
+    /**
+     * Over many chunks the results agree with the in-memory QR regression.
+     */
+    @Test
+    public void testMatchesOLS() {
+        double[][] x = new double[2345][];
+        double[] y = new double[x.length];
+        generate(new Well19937c(1234l), x, y);
+        TSQRRegression tsqr = new TSQRRegression(4, true, 1e-12, 100, null);
+        tsqr.addObservations(x, y);
+        Assert.assertEquals(x.length, tsqr.getN());
+
+        OLSMultipleLinearRegression ols = new OLSMultipleLinearRegression();
+        ols.newSampleData(y, x);
+        RegressionResults actual = tsqr.regress();
+        TestUtils.assertEquals(ols.estimateRegressionParameters(), actual.getParameterEstimates(), 1e-12);
+        TestUtils.assertEquals(ols.estimateRegressionParametersStandardErrors(),
+                               actual.getStdErrorOfEstimates(), 1e-12);
+        Assert.assertEquals(ols.calculateResidualSumOfSquares(), actual.getErrorSumSquares(), 1e-9);
+        Assert.assertEquals(ols.calculateRSquared(), actual.getRSquared(), 1e-12);
+        Assert.assertEquals(ols.calculateAdjustedRSquared(), actual.getAdjustedRSquared(), 1e-12);
+        Assert.assertEquals(ols.calculateTotalSumOfSquares(), actual.getTotalSumSquares(), 1e-8);
+    }
+
+    /**
+     * The Longley data, which is badly conditioned, gives the certified values.
+     */
+    @Test
+    public void testLongley() {
+        TSQRRegression tsqr = new TSQRRegression(6, true, 1e-12, 5, null);
+        double[] x = new double[6];
+        for (int i = 0; i < 16; i++) {
+            System.arraycopy(longley, 7 * i + 1, x, 0, 6);
+            tsqr.addObservation(x, longley[7 * i]);
+        }
+        RegressionResults result = tsqr.regress();
+        double[] expected = new double[] {
+            -3482258.63459582, 15.0618722713733,
+            -0.358191792925910E-01, -2.02022980381683,
+            -1.03322686717359, -0.511041056535807E-01,
+            1829.15146461355};
+        double[] actual = result.getParameterEstimates();
+        for (int i = 0; i < expected.length; i++) {
+            TestUtils.assertRelativelyEquals(expected[i], actual[i], 1e-8);
+        }
+        Assert.assertEquals(836424.055505915, result.getErrorSumSquares(), 1e-4);
+    }
+
+    /**
+     * Rows, arrays, packed chunks and buffers give identical results, with
+     * or without an executor.
+     */
+    @Test
+    public void testInputsAndExecutor() {
+        final double[][] x = new double[1050][];
+        final double[] y = new double[x.length];
+        generate(new Well19937c(42l), x, y);
+        final double[] packed = new double[5 * x.length];
+        for (int i = 0; i < x.length; i++) {
+            packed[5 * i] = y[i];
+            System.arraycopy(x[i], 0, packed, 5 * i + 1, 4);
+        }
+        final List<double[]> chunks = new ArrayList<double[]>();
+        for (int start = 0; start < x.length; start += 100) {
+            int end = Math.min(x.length, start + 100);
+            double[] chunk = new double[5 * (end - start)];
+            System.arraycopy(packed, 5 * start, chunk, 0, chunk.length);
+            chunks.add(chunk);
+        }
+
+        TSQRRegression rows = new TSQRRegression(4, false, 1e-12, 100, null);
+        for (int i = 0; i < x.length; i++) {
+            rows.addObservation(x[i], y[i]);
+        }
+        double[] expected = rows.regress().getParameterEstimates();
+
+        Object[] estimates = (Object[]) ParallelTestUtils.assertSplit(new ParallelTestUtils.Kernel() {
+            public Object compute(ExecutorService executor) {
+                TSQRRegression arrays = new TSQRRegression(4, false, 1e-12, 100, executor);
+                arrays.addObservations(x, y);
+                TSQRRegression iterated = new TSQRRegression(4, false, 1e-12, 100, executor);
+                iterated.addObservations(chunks.iterator());
+                TSQRRegression buffered = new TSQRRegression(4, false, 1e-12, 100, executor);
+                DoubleBuffer buffer = DoubleBuffer.wrap(packed);
+                buffered.addObservations(buffer);
+                Assert.assertEquals(packed.length, buffer.position());
+                TSQRRegression[] all = new TSQRRegression[] { arrays, iterated, buffered };
+                Object[] results = new Object[all.length];
+                for (int i = 0; i < all.length; i++) {
+                    Assert.assertEquals(x.length, all[i].getN());
+                    results[i] = all[i].regress().getParameterEstimates();
+                }
+                return results;
+            }
+        });
+        for (Object estimate : estimates) {
+            TestUtils.assertEquals(expected, (double[]) estimate, 0);
+        }
+    }
+
+    /**
+     * Rows can be read from a file mapped in memory.
+     */
+    @Test
+    public void testMappedFile() throws IOException {
+        double[][] x = new double[3000][];
+        double[] y = new double[x.length];
+        generate(new Well19937c(7l), x, y);
+        File file = File.createTempFile("tsqr", ".bin");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8l * 5 * x.length);
+            DoubleBuffer out = bytes.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            for (int i = 0; i < x.length; i++) {
+                out.put(y[i]).put(x[i]);
+            }
+            DoubleBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8l * 5 * x.length)
+                                     .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            TSQRRegression tsqr = new TSQRRegression(4, true, 1e-12, 256, null);
+            tsqr.addObservations(in);
+
+            OLSMultipleLinearRegression ols = new OLSMultipleLinearRegression();
+            ols.newSampleData(y, x);
+            TestUtils.assertEquals(ols.estimateRegressionParameters(),
+                                   tsqr.regress().getParameterEstimates(), 1e-12);
+        } finally {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * A subset regression agrees with a regression on the subset alone.
+     */
+    @Test
+    public void testSubset() {
+        double[][] x = new double[600][];
+        double[] y = new double[x.length];
+        generate(new Well19937c(99l), x, y);
+        TSQRRegression tsqr = new TSQRRegression(4, true, 1e-12, 64, null);
+        tsqr.addObservations(x, y);
+        TSQRRegression subset = new TSQRRegression(2, true, 1e-12, 64, null);
+        for (int i = 0; i < x.length; i++) {
+            subset.addObservation(new double[] { x[i][1], x[i][3] }, y[i]);
+        }
+        RegressionResults expected = subset.regress();
+        RegressionResults actual = tsqr.regress(new int[] { 4, 0, 2, 2 });
+        TestUtils.assertEquals(expected.getParameterEstimates(), actual.getParameterEstimates(), 1e-12);
+        TestUtils.assertEquals(expected.getStdErrorOfEstimates(), actual.getStdErrorOfEstimates(), 1e-12);
+        Assert.assertEquals(expected.getErrorSumSquares(), actual.getErrorSumSquares(), 1e-9);
+        Assert.assertEquals(expected.getRSquared(), actual.getRSquared(), 1e-12);
+
+        // the full model is still available and more rows can be added
+        Assert.assertEquals(5, tsqr.regress().getNumberOfParameters());
+        tsqr.addObservation(x[0], y[0]);
+        Assert.assertEquals(x.length + 1, tsqr.getN());
+    }
+
+    @Test
+    public void testClear() {
+        double[][] x = new double[300][];
+        double[] y = new double[x.length];
+        generate(new Well19937c(5l), x, y);
+        TSQRRegression tsqr = new TSQRRegression(4, true, 1e-12, 64, null);
+        tsqr.addObservations(x, y);
+        double[] expected = tsqr.regress().getParameterEstimates();
+        tsqr.clear();
+        Assert.assertEquals(0, tsqr.getN());
+        tsqr.addObservations(x, y);
+        TestUtils.assertEquals(expected, tsqr.regress().getParameterEstimates(), 0);
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testSingular() {
+        TSQRRegression tsqr = new TSQRRegression(2, true);
+        RandomGenerator random = new Well19937c(3l);
+        for (int i = 0; i < 100; i++) {
+            double v = random.nextGaussian();
+            tsqr.addObservation(new double[] { v, 2 * v }, random.nextGaussian());
+        }
+        tsqr.regress();
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testNoRegressors() {
+        new TSQRRegression(0, true);
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testObservationDimension() {
+        new TSQRRegression(2, true).addObservation(new double[3], 1.0);
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testPackedLength() {
+        new TSQRRegression(2, true).addObservations(DoubleBuffer.wrap(new double[10]));
+    }
+
+    @Test(expected = ModelSpecificationException.class)
+    public void testNotEnoughData() {
+        TSQRRegression tsqr = new TSQRRegression(2, true);
+        tsqr.addObservation(new double[] { 1, 2 }, 3);
+        tsqr.addObservation(new double[] { 2, 1 }, 3);
+        tsqr.addObservation(new double[] { 3, 3 }, 5);
+        tsqr.regress();
+    }
+
+    @Test(expected = OutOfRangeException.class)
+    public void testSubsetIndexOutOfRange() {
+        TSQRRegression tsqr = new TSQRRegression(2, false);
+        tsqr.addObservations(new double[][] { { 1, 2 }, { 2, 1 }, { 3, 5 } }, new double[] { 1, 2, 3 });
+        tsqr.regress(new int[] { 2 });
+    }
+
+    /**
+     * Fill a design with four regressors and a noisy linear response.
+     */
+    private static void generate(RandomGenerator random, double[][] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            x[i] = new double[] {
+                random.nextGaussian(), 10 * random.nextDouble(),
+                random.nextGaussian(), random.nextGaussian() + 1
+            };
+            x[i][2] -= x[i][0];
+            y[i] = 2.0 - 3.0 * x[i][0] + 0.5 * x[i][1] + 1.5 * x[i][2] - x[i][3] +
+                   0.1 * random.nextGaussian();
+        }
+    }
+}
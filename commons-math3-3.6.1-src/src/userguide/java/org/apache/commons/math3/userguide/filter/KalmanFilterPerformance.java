@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.userguide.filter;
+
+import org.apache.commons.math3.PerfTestUtils;
+import org.apache.commons.math3.filter.DefaultMeasurementModel;
+import org.apache.commons.math3.filter.DefaultProcessModel;
+import org.apache.commons.math3.filter.InPlaceKalmanFilter;
+import org.apache.commons.math3.filter.KalmanFilter;
+import org.apache.commons.math3.filter.MeasurementModel;
+import org.apache.commons.math3.filter.ProcessModel;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.util.CombinatoricsUtils;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Performance benchmark comparing {@link KalmanFilter} and
+ * {@link InPlaceKalmanFilter} on one predict and correct cycle.
+ *
+ * The process is a chain of n integrators (position, velocity,
+ * acceleration, ...) sampled at 1 kHz, with the position measured, as for
+ * an encoder tracked at its sample rate.
+ */
+public class KalmanFilterPerformance {
+    private static final int REPEAT_CHUNK = Integer.parseInt(System.getProperty("repeatChunk", "10000"));
+    private static final int REPEAT_STAT = Integer.parseInt(System.getProperty("repeatStat", "100"));
+
+    /** Sample period, seconds. */
+    private static final double DT = 1e-3;
+
+    /** Scratch for reading the state without allocating. */
+    private static final double[] STATE = new double[6];
+
+    public static void main(String[] args) {
+        for (int n = 2; n <= 6; n += 2) {
+            compare(n);
+        }
+    }
+
+    private static void compare(final int n) {
+        final ProcessModel pm = integratorChain(n);
+        final MeasurementModel mm = positionMeasurement(n);
+        final KalmanFilter reference = new KalmanFilter(pm, mm);
+        final InPlaceKalmanFilter standard = new InPlaceKalmanFilter(pm, mm, false, null);
+        final InPlaceKalmanFilter joseph = new InPlaceKalmanFilter(pm, mm, true, null);
+        final RandomGenerator rng = new Well19937c(n);
+        final double[] z = new double[1];
+
+        PerfTestUtils.timeAndReport("Kalman filter cycle, " + n + " states",
+                                    REPEAT_CHUNK,
+                                    REPEAT_STAT,
+                                    false,
+                                    new PerfTestUtils.RunTest("KalmanFilter") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            z[0] = rng.nextGaussian();
+                                            reference.predict();
+                                            reference.correct(z);
+                                            return reference.getStateEstimation()[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("InPlaceKalmanFilter") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            z[0] = rng.nextGaussian();
+                                            standard.predict();
+                                            standard.correct(z);
+                                            return standard.getStateEstimation(STATE)[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("InPlaceKalmanFilter (Joseph)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            z[0] = rng.nextGaussian();
+                                            joseph.predict();
+                                            joseph.correct(z);
+                                            return joseph.getStateEstimation(STATE)[0];
+                                        }
+                                    });
+    }
+
+    private static ProcessModel integratorChain(final int n) {
+        final double[][] a = new double[n][n];
+        final double[][] q = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                a[i][j] = FastMath.pow(DT, j - i) / CombinatoricsUtils.factorialDouble(j - i);
+            }
+        }
+        q[n - 1][n - 1] = DT;
+        final RealMatrix p0 = MatrixUtils.createRealIdentityMatrix(n);
+        return new DefaultProcessModel(MatrixUtils.createRealMatrix(a), null,
+                                       MatrixUtils.createRealMatrix(q), null, p0);
+    }
+
+    private static MeasurementModel positionMeasurement(final int n) {
+        final double[][] h = new double[1][n];
+        h[0][0] = 1;
+        return new DefaultMeasurementModel(MatrixUtils.createRealMatrix(h),
+                                           MatrixUtils.createRealMatrix(new double[][] { { 1e-4 } }));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.userguide.linear;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.math3.PerfTestUtils;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
+
+/**
+ * Performance benchmark of the blocked decompositions, each in the calling
+ * thread and on a thread pool with one thread per processor: LU and
+ * Cholesky of square matrices of size 128 to 1024, QR of the same, and
+ * an ordinary least squares fit of 32 regressors over 10<sup>4</sup> to
+ * 10<sup>6</sup> rows, with the plain QR decomposition as reference.
+ *
+ * The number of repeats is scaled down as the work grows; the system
+ * properties "maxSize", "maxRows" and "work" (multiply-adds per chunk)
+ * shorten the run.
+ */
+public class DecompositionPerformance {
+    private static final int MAX_SIZE = Integer.parseInt(System.getProperty("maxSize", "1024"));
+    private static final int MAX_ROWS = Integer.parseInt(System.getProperty("maxRows", "1000000"));
+    private static final double WORK = Double.parseDouble(System.getProperty("work", "1e9"));
+    private static final int REPEAT_STAT = Integer.parseInt(System.getProperty("repeatStat", "5"));
+
+    /** Regressors in the least squares fits. */
+    private static final int REGRESSORS = 32;
+
+    public static void main(String[] args) {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println(threads + " processors");
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int n = 128; n <= MAX_SIZE; n *= 2) {
+                square(n, executor);
+            }
+            for (int rows = 10000; rows <= MAX_ROWS; rows *= 10) {
+                regression(rows, executor);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void square(final int n, final ExecutorService executor) {
+        final RandomGenerator rng = new Well19937c(n);
+        final RealMatrix a = random(rng, n, n);
+        final RealMatrix spd = a.transpose().multiply(a);
+        final int repeatChunk = (int) Math.max(1, WORK / ((double) n * n * n));
+
+        PerfTestUtils.timeAndReport("LU, " + n + " x " + n, repeatChunk, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("LUDecomposition") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return new LUDecomposition(a).getDeterminant();
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("LUDecomposition (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return new LUDecomposition(a, 1e-11, executor).getDeterminant();
+                                        }
+                                    });
+
+        PerfTestUtils.timeAndReport("Cholesky, " + n + " x " + n, repeatChunk, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("CholeskyDecomposition") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return new CholeskyDecomposition(spd).getDeterminant();
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("CholeskyDecomposition (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return new CholeskyDecomposition(spd,
+                                                                             CholeskyDecomposition.DEFAULT_RELATIVE_SYMMETRY_THRESHOLD,
+                                                                             CholeskyDecomposition.DEFAULT_ABSOLUTE_POSITIVITY_THRESHOLD,
+                                                                             executor).getDeterminant();
+                                        }
+                                    });
+
+        compareQR("QR, " + n + " x " + n, a, repeatChunk, executor);
+    }
+
+    private static void regression(final int rows, final ExecutorService executor) {
+        final RandomGenerator rng = new Well19937c(rows);
+        final double[][] x = new double[rows][REGRESSORS];
+        final double[] y = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < REGRESSORS; j++) {
+                x[i][j] = rng.nextGaussian();
+                y[i] += x[i][j];
+            }
+            y[i] += rng.nextGaussian();
+        }
+        final int repeatChunk = (int) Math.max(1, WORK / ((double) rows * REGRESSORS * REGRESSORS));
+        final int repeatStat = rows > 100000 ? 1 : REPEAT_STAT;
+
+        PerfTestUtils.timeAndReport("OLS, " + rows + " rows", repeatChunk, repeatStat, false,
+                                    new PerfTestUtils.RunTest("OLSMultipleLinearRegression") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            final OLSMultipleLinearRegression ols = new OLSMultipleLinearRegression();
+                                            ols.newSampleData(y, x);
+                                            return ols.estimateRegressionParameters()[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("OLSMultipleLinearRegression (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            final OLSMultipleLinearRegression ols =
+                                                new OLSMultipleLinearRegression(0, executor);
+                                            ols.newSampleData(y, x);
+                                            return ols.estimateRegressionParameters()[0];
+                                        }
+                                    });
+    }
+
+    private static void compareQR(final String title, final RealMatrix a, final int repeatChunk,
+                                  final ExecutorService executor) {
+        PerfTestUtils.timeAndReport(title, repeatChunk, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("QRDecomposition") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return new QRDecomposition(a, 0).getR().getEntry(0, 0);
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("QRDecomposition (blocked)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return new QRDecomposition(a, 0, null).getR().getEntry(0, 0);
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("QRDecomposition (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return new QRDecomposition(a, 0, executor).getR().getEntry(0, 0);
+                                        }
+                                    });
+    }
+
+    private static RealMatrix random(final RandomGenerator rng, final int rows, final int columns) {
+        final double[][] data = new double[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                data[i][j] = rng.nextDouble() - 0.5;
+            }
+        }
+        return new Array2DRowRealMatrix(data, false);
+    }
+}
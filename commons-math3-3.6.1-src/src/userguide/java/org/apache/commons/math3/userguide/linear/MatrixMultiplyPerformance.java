@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.userguide.linear;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.math3.PerfTestUtils;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.BlockRealMatrix;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+
+/**
+ * Performance benchmark of matrix multiplication, for square matrices of
+ * size 64 to 4096: {@link Array2DRowRealMatrix}, {@link BlockRealMatrix}
+ * in the calling thread, and {@link BlockRealMatrix} on a thread pool
+ * with one thread per processor.
+ *
+ * The number of repeats is scaled down as n<sup>3</sup> grows; the system
+ * properties "maxSize" and "work" (multiply-adds per chunk) shorten the run.
+ */
+public class MatrixMultiplyPerformance {
+    private static final int MAX_SIZE = Integer.parseInt(System.getProperty("maxSize", "4096"));
+    private static final double WORK = Double.parseDouble(System.getProperty("work", "1e9"));
+    private static final int REPEAT_STAT = Integer.parseInt(System.getProperty("repeatStat", "5"));
+
+    public static void main(String[] args) {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println(threads + " processors");
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int n = 64; n <= MAX_SIZE; n *= 2) {
+                compare(n, executor);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void compare(final int n, final ExecutorService executor) {
+        final RandomGenerator rng = new Well19937c(n);
+        final double[][] a = random(rng, n);
+        final double[][] b = random(rng, n);
+        final Array2DRowRealMatrix arrayA = new Array2DRowRealMatrix(a, false);
+        final Array2DRowRealMatrix arrayB = new Array2DRowRealMatrix(b, false);
+        final BlockRealMatrix blockA = new BlockRealMatrix(a);
+        final BlockRealMatrix blockB = new BlockRealMatrix(b);
+        final int repeatChunk = (int) Math.max(1, WORK / ((double) n * n * n));
+        final int repeatStat = n > 1024 ? 1 : REPEAT_STAT;
+
+        PerfTestUtils.RunTest array = new PerfTestUtils.RunTest("Array2DRowRealMatrix") {
+            @Override
+            public Double call() throws Exception {
+                return arrayA.multiply(arrayB).getEntry(0, 0);
+            }
+        };
+        PerfTestUtils.RunTest block = new PerfTestUtils.RunTest("BlockRealMatrix") {
+            @Override
+            public Double call() throws Exception {
+                return blockA.multiply(blockB).getEntry(0, 0);
+            }
+        };
+        PerfTestUtils.RunTest parallel = new PerfTestUtils.RunTest("BlockRealMatrix (parallel)") {
+            @Override
+            public Double call() throws Exception {
+                return blockA.multiply(blockB, executor).getEntry(0, 0);
+            }
+        };
+
+        final String title = "multiply, " + n + " x " + n;
+        if (n <= 1024) {
+            PerfTestUtils.timeAndReport(title, repeatChunk, repeatStat, false, array, block, parallel);
+        } else {
+            // the row-major product is too slow to wait for at these sizes
+            PerfTestUtils.timeAndReport(title, repeatChunk, repeatStat, false, block, parallel);
+        }
+    }
+
+    private static double[][] random(final RandomGenerator rng, final int n) {
+        final double[][] data = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                data[i][j] = rng.nextDouble() - 0.5;
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.userguide.linear;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.math3.PerfTestUtils;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CompressedRowRealMatrix;
+import org.apache.commons.math3.linear.ConjugateGradient;
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
+import org.apache.commons.math3.linear.RealLinearOperator;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SparseRealMatrixBuilder;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+
+/**
+ * Performance benchmark of {@link CompressedRowRealMatrix} against
+ * {@link OpenMapRealMatrix}, on a symmetric positive definite matrix of
+ * size 40000 with about 1M non-zero entries: building, products by a
+ * vector, in the calling thread and on a thread pool with one thread per
+ * processor, and a few iterations of {@link ConjugateGradient}.
+ *
+ * The products of an {@link OpenMapRealMatrix} by a vector are the
+ * generic loops over every entry, a minute or more each at the default size, so
+ * they are timed once each and left out of the solver timing.
+ *
+ * The system properties "size" and "perRow" (off-diagonal pairs per row)
+ * change the problem.
+ */
+public class SparseMatrixPerformance {
+    private static final int SIZE = Integer.parseInt(System.getProperty("size", "40000"));
+    private static final int PER_ROW = Integer.parseInt(System.getProperty("perRow", "12"));
+    private static final int REPEAT_STAT = Integer.parseInt(System.getProperty("repeatStat", "5"));
+
+    /** Conjugate gradient iterations per solve. */
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println(threads + " processors");
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            compare(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void compare(final ExecutorService executor) {
+        // diagonally dominant with random symmetric off-diagonal pairs
+        final RandomGenerator rng = new Well19937c(SIZE);
+        final int pairs = SIZE * PER_ROW;
+        final int[] rows = new int[pairs];
+        final int[] columns = new int[pairs];
+        final double[] values = new double[pairs];
+        for (int k = 0; k < pairs; k++) {
+            rows[k] = rng.nextInt(SIZE);
+            columns[k] = rng.nextInt(SIZE);
+            values[k] = rng.nextDouble() - 0.5;
+        }
+
+        PerfTestUtils.timeAndReport("build, " + SIZE + " x " + SIZE, 1, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("OpenMapRealMatrix") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return (double) openMap(rows, columns, values).getRowDimension();
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("SparseRealMatrixBuilder") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return (double) compressed(rows, columns, values).getNonZeroCount();
+                                        }
+                                    });
+
+        final OpenMapRealMatrix map = openMap(rows, columns, values);
+        final CompressedRowRealMatrix csr = compressed(rows, columns, values);
+        System.out.println(csr.getNonZeroCount() + " non-zero entries");
+        final double[] v = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            v[i] = rng.nextGaussian();
+        }
+        final RealVector b = new ArrayRealVector(v, false);
+
+        PerfTestUtils.timeAndReport("products, OpenMapRealMatrix", 1, 1, false,
+                                    new PerfTestUtils.RunTest("operate") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return map.operate(v)[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("preMultiply") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return map.preMultiply(v)[0];
+                                        }
+                                    });
+
+        PerfTestUtils.timeAndReport("products, CompressedRowRealMatrix", 100, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("operate") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return csr.operate(v)[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("operate (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return csr.operate(v, executor)[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("preMultiply") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return csr.preMultiply(v)[0];
+                                        }
+                                    });
+
+        // the iterative solvers take any operator, so the parallel product
+        // is used by wrapping it
+        final RealLinearOperator parallel = new RealLinearOperator() {
+            @Override
+            public int getRowDimension() {
+                return SIZE;
+            }
+
+            @Override
+            public int getColumnDimension() {
+                return SIZE;
+            }
+
+            @Override
+            public RealVector operate(RealVector x) {
+                return csr.operate(x, executor);
+            }
+        };
+        final ConjugateGradient cg = new ConjugateGradient(ITERATIONS, 0, false);
+        PerfTestUtils.timeAndReport("conjugate gradient, " + ITERATIONS + " iterations", 5, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("CompressedRowRealMatrix") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return solve(cg, csr, b);
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("CompressedRowRealMatrix (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return solve(cg, parallel, b);
+                                        }
+                                    });
+    }
+
+    private static double solve(ConjugateGradient cg, RealLinearOperator a, RealVector b) {
+        // the solve stops at the iteration limit, which is what is timed
+        try {
+            return cg.solve(a, b).getEntry(0);
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static OpenMapRealMatrix openMap(int[] rows, int[] columns, double[] values) {
+        final OpenMapRealMatrix m = new OpenMapRealMatrix(SIZE, SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            m.setEntry(i, i, PER_ROW + 1);
+        }
+        for (int k = 0; k < rows.length; k++) {
+            m.addToEntry(rows[k], columns[k], values[k]);
+            m.addToEntry(columns[k], rows[k], values[k]);
+        }
+        return m;
+    }
+
+    private static CompressedRowRealMatrix compressed(int[] rows, int[] columns, double[] values) {
+        final SparseRealMatrixBuilder builder = new SparseRealMatrixBuilder(SIZE, SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            builder.addToEntry(i, i, PER_ROW + 1);
+        }
+        for (int k = 0; k < rows.length; k++) {
+            builder.addToEntry(rows[k], columns[k], values[k]);
+            builder.addToEntry(columns[k], rows[k], values[k]);
+        }
+        return builder.buildRowCompressed();
+    }
+}
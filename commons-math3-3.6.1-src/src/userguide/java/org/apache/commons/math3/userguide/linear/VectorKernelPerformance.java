@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.math3.userguide.linear;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.math3.PerfTestUtils;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.BlockRealMatrix;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+
+/**
+ * Performance benchmark of the dense vector kernels, against the plain
+ * loops they replaced: dot product, norm and linear combination of
+ * {@link ArrayRealVector} of length 10<sup>3</sup> to 10<sup>7</sup>, and
+ * matrix-vector products by {@link Array2DRowRealMatrix} and
+ * {@link BlockRealMatrix} of size 256 to 4096, in the calling thread and
+ * on a thread pool with one thread per processor.
+ *
+ * The number of repeats is scaled down as the work grows; the system
+ * properties "maxLength", "maxSize" and "work" (multiply-adds per chunk)
+ * shorten the run.
+ */
+public class VectorKernelPerformance {
+    private static final int MAX_LENGTH = Integer.parseInt(System.getProperty("maxLength", "10000000"));
+    private static final int MAX_SIZE = Integer.parseInt(System.getProperty("maxSize", "4096"));
+    private static final double WORK = Double.parseDouble(System.getProperty("work", "1e8"));
+    private static final int REPEAT_STAT = Integer.parseInt(System.getProperty("repeatStat", "10"));
+
+    public static void main(String[] args) {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println(threads + " processors");
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int n = 1000; n <= MAX_LENGTH; n *= 100) {
+                vector(n, executor);
+            }
+            for (int n = 256; n <= MAX_SIZE; n *= 4) {
+                operate(n, executor);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void vector(final int n, final ExecutorService executor) {
+        final RandomGenerator rng = new Well19937c(n);
+        final double[] a = random(rng, n);
+        final double[] b = random(rng, n);
+        final ArrayRealVector u = new ArrayRealVector(a, false);
+        final ArrayRealVector v = new ArrayRealVector(b, false);
+        final ArrayRealVector w = new ArrayRealVector(n);
+        final double[] c = w.getDataRef();
+        final int repeatChunk = (int) Math.max(1, WORK / n);
+
+        PerfTestUtils.timeAndReport("dot product, length " + n, repeatChunk, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("plain loop") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            double dot = 0;
+                                            for (int i = 0; i < n; i++) {
+                                                dot += a[i] * b[i];
+                                            }
+                                            return dot;
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("ArrayRealVector") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return u.dotProduct(v);
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("ArrayRealVector (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return u.dotProduct(v, executor);
+                                        }
+                                    });
+
+        PerfTestUtils.timeAndReport("norm, length " + n, repeatChunk, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("plain loop") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            double sum = 0;
+                                            for (final double x : a) {
+                                                sum += x * x;
+                                            }
+                                            return Math.sqrt(sum);
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("ArrayRealVector") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return u.getNorm();
+                                        }
+                                    });
+
+        PerfTestUtils.timeAndReport("linear combination, length " + n, repeatChunk, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("plain loop") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            for (int i = 0; i < n; i++) {
+                                                c[i] = 0.5 * c[i] + 0.25 * b[i];
+                                            }
+                                            return c[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("ArrayRealVector") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return w.combineToSelf(0.5, 0.25, v).getEntry(0);
+                                        }
+                                    });
+    }
+
+    private static void operate(final int n, final ExecutorService executor) {
+        final RandomGenerator rng = new Well19937c(n);
+        final double[][] data = new double[n][];
+        for (int i = 0; i < n; i++) {
+            data[i] = random(rng, n);
+        }
+        final Array2DRowRealMatrix dense = new Array2DRowRealMatrix(data, false);
+        final BlockRealMatrix block = new BlockRealMatrix(data);
+        final double[] x = random(rng, n);
+        final int repeatChunk = (int) Math.max(1, WORK / ((double) n * n));
+
+        PerfTestUtils.timeAndReport("operate, " + n + " x " + n, repeatChunk, REPEAT_STAT, false,
+                                    new PerfTestUtils.RunTest("plain loop") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            final double[] out = new double[n];
+                                            for (int i = 0; i < n; i++) {
+                                                final double[] row = data[i];
+                                                double sum = 0;
+                                                for (int j = 0; j < n; j++) {
+                                                    sum += row[j] * x[j];
+                                                }
+                                                out[i] = sum;
+                                            }
+                                            return out[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("Array2DRowRealMatrix") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return dense.operate(x)[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("Array2DRowRealMatrix (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return dense.operate(x, executor)[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("BlockRealMatrix") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return block.operate(x)[0];
+                                        }
+                                    },
+                                    new PerfTestUtils.RunTest("BlockRealMatrix (parallel)") {
+                                        @Override
+                                        public Double call() throws Exception {
+                                            return block.operate(x, executor)[0];
+                                        }
+                                    });
+    }
+
+    private static double[] random(final RandomGenerator rng, final int n) {
+        final double[] data = new double[n];
+        for (int i = 0; i < n; i++) {
+            data[i] = rng.nextDouble() - 0.5;
+        }
+        return data;
+    }
+}